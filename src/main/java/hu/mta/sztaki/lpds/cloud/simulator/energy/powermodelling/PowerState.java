@@ -104,6 +104,11 @@ public class PowerState {
 	 * the list of those objects who are prepared to handle power state changes
 	 */
 	private final ArrayList<PowerCharacteristicsChange> listeners = new ArrayList<PowerState.PowerCharacteristicsChange>();
+	/**
+	 * Shows if the characteristics of this power state can no longer be
+	 * changed (e.g., because it is shared by several spreaders)
+	 */
+	private boolean frozen = false;
 
 	/**
 	 * Allow the creation of a new power state object with initial power state
@@ -195,6 +200,18 @@ public class PowerState {
 		}
 	}
 
+	/**
+	 * Ensures the characteristics of this power state can be changed
+	 * 
+	 * @throws IllegalStateException
+	 *             if the power state is frozen
+	 */
+	private void checkAlterable() {
+		if (frozen) {
+			throw new IllegalStateException("The characteristics of a frozen power state cannot be altered: " + this);
+		}
+	}
+
 	/**
 	 * Allows to set the minimum consumption for this power state (good for DVFS
 	 * and similar behavior). Before the change the power state change listeners
@@ -202,8 +219,11 @@ public class PowerState {
 	 * 
 	 * @param minConsumption
 	 *            the new consumption value to be set in W
+	 * @throws IllegalStateException
+	 *             if the power state is frozen
 	 */
 	public void setMinConsumption(final double minConsumption) {
+		checkAlterable();
 		notifyCharacteristisListeners();
 		this.minConsumption = minConsumption;
 	}
@@ -215,8 +235,11 @@ public class PowerState {
 	 * 
 	 * @param cr
 	 *            the new consumption range value to be set in W
+	 * @throws IllegalStateException
+	 *             if the power state is frozen
 	 */
 	public void setConsumptionRange(final double cr) {
+		checkAlterable();
 		notifyCharacteristisListeners();
 		this.consumptionRange = cr;
 	}
@@ -229,7 +252,10 @@ public class PowerState {
 	 *            the object where the events should be sent
 	 */
 	public void subscribePowerCharacteristicsChanges(PowerCharacteristicsChange listener) {
-		listeners.add(listener);
+		if (!frozen) {
+			// frozen power states never change, their listeners are not kept
+			listeners.add(listener);
+		}
 	}
 
 	/**
@@ -240,7 +266,42 @@ public class PowerState {
 	 *            the object which no longer needs notification event
 	 */
 	public void unsubscribePowerCharacteristicsChanges(PowerCharacteristicsChange listener) {
-		listeners.remove(listener);
+		if (!frozen) {
+			listeners.remove(listener);
+		}
+	}
+
+	/**
+	 * Creates a copy of this power state whose characteristics cannot be
+	 * changed. Such copies can be shared by any number of spreaders: they
+	 * reject DVFS like changes with an IllegalStateException and, as they
+	 * never change, they do not keep track of their listeners.
+	 * 
+	 * @return the frozen copy (or this power state if it is already frozen)
+	 */
+	public PowerState frozenCopy() {
+		if (frozen) {
+			return this;
+		}
+		final PowerState copy;
+		try {
+			copy = new PowerState(minConsumption, consumptionRange, model.getClass());
+		} catch (ReflectiveOperationException | SecurityException e) {
+			// the model class was already instantiated for this power state
+			throw new IllegalStateException("Cannot copy the consumption model of " + this, e);
+		}
+		copy.frozen = true;
+		return copy;
+	}
+
+	/**
+	 * Determines if the characteristics of this power state can still be
+	 * changed
+	 * 
+	 * @return <i>true</i> if the power state is a frozen copy
+	 */
+	public boolean isFrozen() {
+		return frozen;
 	}
 
 	/**
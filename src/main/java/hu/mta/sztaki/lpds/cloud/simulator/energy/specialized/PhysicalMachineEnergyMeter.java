@@ -58,8 +58,8 @@ public class PhysicalMachineEnergyMeter extends AggregatedEnergyMeter
 	 */
 	public PhysicalMachineEnergyMeter(final PhysicalMachine pm) {
 		super(Arrays.asList(new EnergyMeter[] { new DirectEnergyMeter(pm),
-				new DirectEnergyMeter(pm.localDisk.diskinbws), new DirectEnergyMeter(pm.localDisk.diskoutbws),
-				new DirectEnergyMeter(pm.localDisk.inbws), new DirectEnergyMeter(pm.localDisk.outbws) }));
+				new DirectEnergyMeter(pm.localDisk.getDiskinbws()), new DirectEnergyMeter(pm.localDisk.getDiskoutbws()),
+				new DirectEnergyMeter(pm.localDisk.getInbws()), new DirectEnergyMeter(pm.localDisk.getOutbws()) }));
 		observed = pm;
 	}
 
@@ -39,6 +39,8 @@ import hu.mta.sztaki.lpds.cloud.simulator.iaas.constraints.ResourceConstraints;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.constraints.UnalterableConstraintsPropagator;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.pmscheduling.PhysicalMachineController;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.vmscheduling.Scheduler;
+import hu.mta.sztaki.lpds.cloud.simulator.io.ImageCache;
+import hu.mta.sztaki.lpds.cloud.simulator.io.ImageSwarm;
 import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkNode;
 import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkNode.NetworkException;
 import hu.mta.sztaki.lpds.cloud.simulator.io.Repository;
@@ -158,6 +160,25 @@ public class IaaSService implements VMManager<IaaSService, PhysicalMachine>, Phy
 	 */
 	public final List<Repository> repositories = Collections.unmodifiableList(internalRepositories);
 
+	/**
+	 * the swarm through which the PMs share the VAs amongst each other, null if
+	 * the PMs fetch their VAs directly from the VA's repository
+	 */
+	private ImageSwarm vaSwarm = null;
+	/**
+	 * the VA cache budget for the PMs joining the swarm later on
+	 */
+	private long vaCacheBudget;
+	/**
+	 * the VA cache eviction policy for the PMs joining the swarm later on
+	 */
+	private ImageCache.EvictionPolicy vaCachePolicy;
+
+	/**
+	 * shows if the VMs placed on the same PM share the transfer of their VA
+	 */
+	private boolean multicastDeployment = false;
+
 	/**
 	 * the VM scheduler applied by this IaaSservice object
 	 */
@@ -356,6 +377,12 @@ public class IaaSService implements VMManager<IaaSService, PhysicalMachine>, Phy
 				stateChanged(pm, PhysicalMachine.State.RUNNING, PhysicalMachine.State.RUNNING);
 			}
 			pm.subscribeStateChangeEvents(this);
+			if (vaSwarm != null) {
+				joinVASwarm(pm);
+			}
+			if (multicastDeployment && pm.localDisk.getMulticastDelivery() == null) {
+				pm.localDisk.enableMulticastDelivery();
+			}
 			caps[i] = pm.getCapacities();
 			maxPcPP = Math.max(caps[i].getRequiredProcessingPower(), maxPcPP);
 		}
@@ -364,6 +391,71 @@ public class IaaSService implements VMManager<IaaSService, PhysicalMachine>, Phy
 		capacityListenerManager.notifyListeners(newPMs);
 	}
 
+	/**
+	 * Lets the PMs of this IaaS serve the VAs they already received to each
+	 * other. This way a mass deployment does not need to transfer all copies
+	 * of the VA from its repository. Every PM (including the ones registered
+	 * later on) gets a VA cache on its local disk that joins a common swarm.
+	 * 
+	 * @param cacheBudget
+	 *            the amount of VAs a single PM's local disk keeps
+	 * @param policy
+	 *            determines which VAs to drop when the budget is exhausted
+	 * @param fanout
+	 *            the number of transfers a single PM or repository serves at a
+	 *            time
+	 * @return the swarm of the PMs
+	 * @throws IllegalStateException
+	 *             if peer assisted distribution is already enabled
+	 */
+	public ImageSwarm enablePeerAssistedDistribution(final long cacheBudget, final ImageCache.EvictionPolicy policy,
+			final int fanout) {
+		if (vaSwarm != null) {
+			throw new IllegalStateException("Peer assisted VA distribution is already enabled");
+		}
+		final ImageSwarm swarm = new ImageSwarm(fanout);
+		vaCacheBudget = cacheBudget;
+		vaCachePolicy = policy;
+		vaSwarm = swarm;
+		for (PhysicalMachine pm : internalMachines) {
+			joinVASwarm(pm);
+		}
+		return swarm;
+	}
+
+	/**
+	 * Ensures the PM's local disk caches the VAs and shares them in the swarm
+	 * of this IaaS.
+	 * 
+	 * @param pm
+	 *            the PM to join
+	 */
+	private void joinVASwarm(final PhysicalMachine pm) {
+		ImageCache cache = pm.localDisk.getImageCache();
+		if (cache == null) {
+			cache = pm.localDisk.enableImageCache(vaCacheBudget, vaCachePolicy);
+		}
+		if (cache.getSwarm() != vaSwarm) {
+			// the PM could be registered again after a deregistration
+			vaSwarm.join(cache);
+		}
+	}
+
+	/**
+	 * Lets the VMs placed on the same PM at the same time share the transfer of
+	 * their VA. Only the first VM's VA crosses the network, the rest of the
+	 * VMs get local copies of it. This applies to the PMs registered later on
+	 * as well.
+	 */
+	public void enableMulticastDeployment() {
+		multicastDeployment = true;
+		for (PhysicalMachine pm : internalMachines) {
+			if (pm.localDisk.getMulticastDelivery() == null) {
+				pm.localDisk.enableMulticastDelivery();
+			}
+		}
+	}
+
 	/**
 	 * Really deregisters a PM from the list of PMs.
 	 * 
@@ -372,6 +464,11 @@ public class IaaSService implements VMManager<IaaSService, PhysicalMachine>, Phy
 	 */
 	private void realDeregistration(PhysicalMachine pm) {
 		pm.unsubscribeStateChangeEvents(this);
+		final ImageCache cache = pm.localDisk.getImageCache();
+		if (vaSwarm != null && cache != null && cache.getSwarm() == vaSwarm) {
+			// the PM no longer serves its VAs to the others
+			vaSwarm.leave(cache);
+		}
 		ResourceConstraints caps = pm.getCapacities();
 		final double suspectedmax = caps.getRequiredProcessingPower();
 		totalCapacity.subtract(caps);
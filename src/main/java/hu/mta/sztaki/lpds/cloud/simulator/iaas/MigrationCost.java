@@ -0,0 +1,136 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor 
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *  
+ *  This file is part of DISSECT-CF.
+ *  
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *  
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package hu.mta.sztaki.lpds.cloud.simulator.iaas;
+
+/**
+ * Estimates the cost of a pre-copy live migration without simulating it. The
+ * estimate follows the memory copy rounds of VirtualMachine.migrate(): the
+ * first round copies the complete memory of the VM, every further round
+ * copies the memory dirtied while the previous round was transferred (eq. 17
+ * of "<i>De Maio, V., Kecskemeti, G., & Prodan, R. (2016, December). An
+ * improved model for live migration in data centre simulators. In Utility
+ * and Cloud Computing (UCC), 2016 IEEE/ACM 9th International Conference on
+ * (pp. 108-117). IEEE.</i>"). The round in which the dirtied memory falls
+ * below the terminal size, or the one after the maximum number of rounds, is
+ * done with the VM stopped.
+ * 
+ * Unlike the simulation, the estimate assumes that every round gets the full
+ * bandwidth and ignores the latency of the network.
+ * 
+ * @author "agent, (c) 2026"
+ */
+public class MigrationCost {
+	/**
+	 * Maximum number of memory transfers to be done before giving up and doing
+	 * a non-live final transfer
+	 */
+	public final static long maxRounds = 5;
+	/**
+	 * Smallest written working set size that still allows new memory copy
+	 * rounds
+	 */
+	public final static long WWS_TERMINAL_SIZE = 262144;
+
+	/** The number of memory copy rounds including the final, non-live one */
+	public final int rounds;
+	/** The total amount of memory transferred (in bytes) */
+	public final long transferredBytes;
+	/** The time needed for the complete migration (in ticks) */
+	public final double duration;
+	/** The time the VM is stopped for the final round (in ticks) */
+	public final double downtime;
+
+	/**
+	 * Estimates the cost of migrating a VM.
+	 * 
+	 * @param memSize
+	 *            the amount of memory of the VM (in bytes)
+	 * @param dirtyingRates
+	 *            the memory dirtying rate of each task running on the VM (the
+	 *            portion of the task's memory written in a tick)
+	 * @param taskMemSizes
+	 *            the amount of memory used by each task (in bytes)
+	 * @param bandwidth
+	 *            the bandwidth available for the migration (in bytes/tick)
+	 * @throws IllegalArgumentException
+	 *             if the bandwidth is not positive or the task arrays differ
+	 *             in length
+	 */
+	public MigrationCost(final long memSize, final double[] dirtyingRates, final long[] taskMemSizes,
+			final double bandwidth) {
+		if (bandwidth <= 0) {
+			throw new IllegalArgumentException("The bandwidth of a migration must be positive");
+		}
+		if (dirtyingRates.length != taskMemSizes.length) {
+			throw new IllegalArgumentException("Every task needs a dirtying rate and a memory size");
+		}
+		long size = memSize;
+		long total = 0;
+		double time = 0;
+		int round = 0;
+		boolean last = false;
+		while (true) {
+			final double roundTime = size / bandwidth;
+			total += size;
+			time += roundTime;
+			if (last) {
+				downtime = roundTime;
+				break;
+			}
+			double dirtied = 0;
+			for (int i = 0; i < dirtyingRates.length; i++) {
+				dirtied += Math.min(1, roundTime * dirtyingRates[i]) * taskMemSizes[i];
+			}
+			size = (long) dirtied;
+			last = round++ >= maxRounds || size < WWS_TERMINAL_SIZE;
+		}
+		rounds = round + 1;
+		transferredBytes = total;
+		duration = time;
+	}
+
+	/**
+	 * Estimates the cost of migrating a VM with tasks of a uniform dirtying
+	 * rate.
+	 * 
+	 * @param memSize
+	 *            the amount of memory of the VM (in bytes)
+	 * @param dirtyingRate
+	 *            the portion of the written memory dirtied in a tick
+	 * @param writtenMemSize
+	 *            the amount of memory written by the tasks of the VM (in bytes)
+	 * @param bandwidth
+	 *            the bandwidth available for the migration (in bytes/tick)
+	 */
+	public MigrationCost(final long memSize, final double dirtyingRate, final long writtenMemSize,
+			final double bandwidth) {
+		this(memSize, new double[] { dirtyingRate }, new long[] { writtenMemSize }, bandwidth);
+	}
+
+	@Override
+	public String toString() {
+		return "MigrationCost(rounds=" + rounds + ", bytes=" + transferredBytes + ", duration=" + duration
+				+ ", downtime=" + downtime + ")";
+	}
+}
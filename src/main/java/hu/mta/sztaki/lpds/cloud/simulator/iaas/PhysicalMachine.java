@@ -58,6 +58,7 @@ import hu.mta.sztaki.lpds.cloud.simulator.io.StorageObject;
 import hu.mta.sztaki.lpds.cloud.simulator.io.VirtualAppliance;
 import hu.mta.sztaki.lpds.cloud.simulator.notifications.SingleNotificationHandler;
 import hu.mta.sztaki.lpds.cloud.simulator.notifications.StateDependentEventHandler;
+import hu.mta.sztaki.lpds.cloud.simulator.util.HardwareProfile;
 import hu.mta.sztaki.lpds.cloud.simulator.util.PowerTransitionGenerator;
 
 /**
@@ -820,7 +821,7 @@ public class PhysicalMachine extends MaxMinProvider implements VMManager<Physica
 		freeCapacities = new UnalterableConstraintsPropagator(internalReallyFreeCaps);
 		localDisk = disk;
 
-		hostPowerBehavior = Collections.unmodifiableMap(cpuPowerTransitions);
+		hostPowerBehavior = HardwareProfile.unmodifiable(cpuPowerTransitions);
 		onTransition = new double[turnonOperations.length];
 		onDelayEstimate = prepareTransitionalTasks(true, turnonOperations);
 		offTransition = new double[switchoffOperations.length];
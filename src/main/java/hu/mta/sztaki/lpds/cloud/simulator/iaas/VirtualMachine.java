@@ -29,7 +29,7 @@ package hu.mta.sztaki.lpds.cloud.simulator.iaas;
 
 import java.util.ArrayList;
 import java.util.EnumSet;
-import java.util.HashMap;
+import java.util.EnumMap;
 
 import org.apache.commons.lang3.tuple.Triple;
 
@@ -39,7 +39,10 @@ import hu.mta.sztaki.lpds.cloud.simulator.iaas.VMManager.VMManagementException;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.resourcemodel.ConsumptionEventAdapter;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.resourcemodel.MaxMinConsumer;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.resourcemodel.ResourceConsumption;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.resourcemodel.TaskGroup;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.statenotifications.VMStateChangeNotificationHandler;
+import hu.mta.sztaki.lpds.cloud.simulator.io.ImageCache;
+import hu.mta.sztaki.lpds.cloud.simulator.io.MulticastDelivery;
 import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkNode;
 import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkNode.NetworkException;
 import hu.mta.sztaki.lpds.cloud.simulator.io.Repository;
@@ -370,10 +373,50 @@ public class VirtualMachine extends MaxMinConsumer {
 	 */
 	private ArrayList<ResourceConsumption> suspendedTasks;
 
+	/**
+	 * The kinds of background operations the virtual machine monitor could
+	 * perform for this VM. A VM has at most one operation of each kind at a
+	 * time.
+	 */
+	private static enum VMMOperation {
+		/**
+		 * creating the disk of the VM from its VA
+		 */
+		INITIAL_TRANSFER,
+		/**
+		 * saving the memory state of the VM to the disk of its host
+		 */
+		SUSPEND,
+		/**
+		 * loading the saved memory state of the VM
+		 */
+		RESUME,
+		/**
+		 * moving the disk of the VM to its new host
+		 */
+		DISK_MIGRATION,
+		/**
+		 * moving the memory state of the VM to its new host
+		 */
+		MEMORY_MIGRATION
+	}
+
 	/**
 	 * represents operations required for handling the virtual machine monitor
 	 */
-	private HashMap<String, ResourceConsumption> currentVMMOperations = new HashMap<String, ResourceConsumption>();
+	private final EnumMap<VMMOperation, ResourceConsumption> currentVMMOperations = new EnumMap<VMMOperation, ResourceConsumption>(
+			VMMOperation.class);
+
+	/**
+	 * The id of the storage object representing the disk of this VM
+	 */
+	private final String diskId = "VMDisk-of-" + hashCode();
+
+	/**
+	 * The id of the storage object representing the memory state of this VM
+	 * while it is suspended
+	 */
+	private final String memoryStateId = "VM-Memory-State-of-" + hashCode();
 
 	/**
 	 * Instantiates a VM object
@@ -547,27 +590,34 @@ public class VirtualMachine extends MaxMinConsumer {
 		if (State.INITIAL_TR.equals(currState)) {
 			this.vasource = vasource;
 			this.vatarget = vatarget;
-			final String diskid = "VMDisk-of-" + Integer.toString(hashCode());
 			ResourceConsumption currentVMMOperation = null;
 			if (bgnwload > 0) {
 				// Remote scenario
-				currentVMMOperation = vasource.duplicateContent(va.id, diskid,
-						new InitialTransferEvent(vasource, es, diskid));
+				currentVMMOperation = vasource.duplicateContent(va.id, diskId,
+						new InitialTransferEvent(vasource, es, diskId));
 			} else {
 				if (vasource == null) {
 					// Entirely local scenario
 					if (vatarget != null) {
-						currentVMMOperation = vatarget.duplicateContent(va.id, diskid,
-								new InitialTransferEvent(vatarget, es, diskid));
+						currentVMMOperation = vatarget.duplicateContent(va.id, diskId,
+								new InitialTransferEvent(vatarget, es, diskId));
 					}
 				} else {
 					// Mixed scenario
-					currentVMMOperation = vasource.requestContentDelivery(va.id, diskid, vatarget,
-							new InitialTransferEvent(vatarget, es, diskid));
+					final InitialTransferEvent ite = new InitialTransferEvent(vatarget, es, diskId);
+					final ImageCache cache = vatarget == null ? null : vatarget.getImageCache();
+					final MulticastDelivery multicast = vatarget == null ? null : vatarget.getMulticastDelivery();
+					if (cache != null) {
+						currentVMMOperation = cache.createDisk(va.id, vasource, diskId, ite);
+					} else if (multicast != null) {
+						currentVMMOperation = multicast.deliver(va.id, vasource, diskId, ite);
+					} else {
+						currentVMMOperation = vasource.requestContentDelivery(va.id, diskId, vatarget, ite);
+					}
 				}
 			}
 			if (currentVMMOperation != null) {
-				currentVMMOperations.put(currState.toString(), currentVMMOperation);
+				currentVMMOperations.put(VMMOperation.INITIAL_TRANSFER, currentVMMOperation);
 			} else {
 				setState(oldState);
 				throw new VMManagementException("Initial transfer failed");
@@ -671,11 +721,11 @@ public class VirtualMachine extends MaxMinConsumer {
 			 * Maximum number of memory transfers to be done before giving up and doing a
 			 * non-live final transfer
 			 */
-			public final static long maxRounds = 5;
+			public final static long maxRounds = MigrationCost.maxRounds;
 			/**
 			 * Smallest written working set size that still allows new memory copy rounds
 			 */
-			public final static long WWS_TERMINAL_SIZE = 262144;
+			public final static long WWS_TERMINAL_SIZE = MigrationCost.WWS_TERMINAL_SIZE;
 			/**
 			 * the secondary resource allocation of this VM (this is only not null when the
 			 * VM is in migration)
@@ -729,7 +779,7 @@ public class VirtualMachine extends MaxMinConsumer {
 					eventcounter++;
 					ResourceConsumption currentVMMOperation;
 					if ((currentVMMOperation = vatarget.requestContentDelivery(disk.id, to, this)) != null) {
-						currentVMMOperations.put(currState.toString() + disk.id, currentVMMOperation);
+						currentVMMOperations.put(VMMOperation.DISK_MIGRATION, currentVMMOperation);
 					} else {
 						setState(prevState);
 						throw new VMManagementException(
@@ -751,7 +801,7 @@ public class VirtualMachine extends MaxMinConsumer {
 				// If we come from suspend, savedmemory is used.
 				final long memSize = savedmemory == null ? identifyWWS() : savedmemory.size;
 				// This replaces any previous memory related transfers
-				currentVMMOperations.put(currState.toString() + "Migrate Memory",
+				currentVMMOperations.put(VMMOperation.MEMORY_MIGRATION,
 						NetworkNode.initTransfer(memSize, ResourceConsumption.unlimitedProcessing, vatarget, to, this));
 				return memSize;
 			}
@@ -985,7 +1035,7 @@ public class VirtualMachine extends MaxMinConsumer {
 		}
 		suspendTasks();
 		final Repository pmdisk = ra.getHost().localDisk;
-		savedmemory = new StorageObject("VM-Memory-State-of-" + hashCode(), getMemSize(), false);
+		savedmemory = new StorageObject(memoryStateId, getMemSize(), false);
 		setState(State.SUSPEND_TR);
 		ResourceConsumption currentVMMOperation = null;
 		if ((currentVMMOperation = pmdisk.storeInMemoryObject(savedmemory, new ConsumptionEventAdapter() {
@@ -1008,7 +1058,7 @@ public class VirtualMachine extends MaxMinConsumer {
 			savedmemory = null;
 			throw new VMManagementException("Not enough space on localDisk for the suspend operation of " + sid);
 		} else {
-			currentVMMOperations.put(currState.toString(), currentVMMOperation);
+			currentVMMOperations.put(VMMOperation.SUSPEND, currentVMMOperation);
 		}
 	}
 
@@ -1096,7 +1146,7 @@ public class VirtualMachine extends MaxMinConsumer {
 			throw new VMManagementException("Failed to fetch the stored memory " + savedmemory + " from PM "
 					+ pmdisk.getName() + " for the resume operation of VM " + hashCode());
 		} else {
-			currentVMMOperations.put(currState.toString(), currentVMMOperation);
+			currentVMMOperations.put(VMMOperation.RESUME, currentVMMOperation);
 		}
 	}
 
@@ -1166,19 +1216,103 @@ public class VirtualMachine extends MaxMinConsumer {
 		}
 		ResourceConsumption cons = new ResourceConsumption(total, limit, VirtualMachine.this, ra.getHost(), e);
 		if (cons.registerConsumption()) {
-			final long bgnwload = va.getBgNetworkLoad();
-			if (bgnwload > 0) {
-				final long minBW = Math.min(bgnwload,
-						Math.min(ra.getHost().localDisk.getOutputbw(), vasource.getInputbw()));
-				NetworkNode.initTransfer(minBW * cons.getCompletionDistance(), minBW, ra.getHost().localDisk, vasource,
-						new ConsumptionEventAdapter());
-			}
+			startBackgroundLoad(cons);
 			return cons;
 		} else {
 			return null;
 		}
 	}
 
+	/**
+	 * Creates several identical computing tasks on the VM at once. The tasks
+	 * are registered together, and instead of notifying about the completion of
+	 * each task, the returned group notifies only once when all of its tasks
+	 * have finished. Background network load is simulated for each task just
+	 * like with newComputeTask.
+	 * 
+	 * @param total
+	 *            the amount of processing to be done by each task (in number of
+	 *            instructions)
+	 * @param limit
+	 *            the amount of processing each task is allowed to do in a single
+	 *            tick (in instructions/tick)
+	 * @param count
+	 *            the number of tasks to create
+	 * @param e
+	 *            the object to be notified when all tasks have finished
+	 * @return the group of the tasks. Could return null if the tasks cannot be
+	 *         registered or when there is no resoruce for the VM
+	 * @throws NetworkException
+	 *             if the background network load is not possible to simulate.
+	 */
+	public TaskGroup newComputeTasks(final double total, final double limit, final int count,
+			final TaskGroup.TaskGroupEvent e) throws NetworkException {
+		return newComputeTasks(total, limit, count, false, e);
+	}
+
+	/**
+	 * Creates several identical computing tasks on the VM at once, optionally
+	 * representing them with a single aggregated consumption. Aggregated tasks
+	 * are accounted as separate tasks in the resource sharing but they always
+	 * complete (or get cancelled) together. Their background network load is
+	 * represented by a single aggregated transfer as well.
+	 * 
+	 * @param total
+	 *            the amount of processing to be done by each task (in number of
+	 *            instructions)
+	 * @param limit
+	 *            the amount of processing each task is allowed to do in a single
+	 *            tick (in instructions/tick)
+	 * @param count
+	 *            the number of tasks to create
+	 * @param aggregated
+	 *            <i>true</i> if the tasks should be represented by a single
+	 *            consumption
+	 * @param e
+	 *            the object to be notified when all tasks have finished
+	 * @return the group of the tasks. Could return null if the tasks cannot be
+	 *         registered or when there is no resoruce for the VM
+	 * @throws NetworkException
+	 *             if the background network load is not possible to simulate.
+	 */
+	public TaskGroup newComputeTasks(final double total, final double limit, final int count,
+			final boolean aggregated, final TaskGroup.TaskGroupEvent e) throws NetworkException {
+		if (ra == null) {
+			return null;
+		}
+		final TaskGroup group = new TaskGroup(total, limit, count, aggregated, VirtualMachine.this, ra.getHost(),
+				e);
+		if (group.register()) {
+			for (int i = 0; i < group.getConsumptionCount(); i++) {
+				startBackgroundLoad(group.getConsumption(i));
+			}
+			return group;
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Simulates the background network load of the VA (if there is any) for the
+	 * duration of a just registered computing task.
+	 * 
+	 * @param cons
+	 *            the computing task
+	 * @throws NetworkException
+	 *             if the background network load is not possible to simulate.
+	 */
+	private void startBackgroundLoad(final ResourceConsumption cons) throws NetworkException {
+		final long bgnwload = va.getBgNetworkLoad();
+		if (bgnwload > 0) {
+			final long minBW = Math.min(bgnwload, Math.min(ra.getHost().localDisk.getOutputbw(), vasource.getInputbw()));
+			final ResourceConsumption bgTransfer = NetworkNode.initTransfer(minBW * cons.getCompletionDistance(), minBW,
+					ra.getHost().localDisk, vasource, new ConsumptionEventAdapter());
+			if (bgTransfer != null && cons.getMultiplicity() > 1) {
+				bgTransfer.setMultiplicity(cons.getMultiplicity());
+			}
+		}
+	}
+
 	public ResourceConsumption newComputeTask(final double total, final double limit,
 			final ResourceConsumption.ConsumptionEvent e, final double dirtyingRate, final long memSize)
 			throws StateChangeException, NetworkException {
@@ -1246,6 +1380,44 @@ public class VirtualMachine extends MaxMinConsumer {
 		return this.ra.allocated.getRequiredMemory();
 	}
 
+	/**
+	 * Estimates how long a live migration of the VM would take and how much
+	 * memory it would transfer, if started now with its current tasks.
+	 * 
+	 * @param bandwidth
+	 *            the bandwidth available for the migration (in bytes/tick)
+	 * @return the estimated cost of the migration
+	 */
+	public MigrationCost estimateLiveMigration(final double bandwidth) {
+		final double[] rates = new double[underProcessing.size()];
+		final long[] sizes = new long[rates.length];
+		int i = 0;
+		for (ResourceConsumption r : underProcessing) {
+			rates[i] = r.getMemDirtyingRate();
+			sizes[i++] = r.getMemSize();
+		}
+		return new MigrationCost(getMemSize(), rates, sizes, bandwidth);
+	}
+
+	/**
+	 * Estimates the live migration of the VM on the path migrate() would
+	 * use: the memory is sent from the storage the VM was prepared on (for
+	 * VMs with local disks, this follows the VM to its current host, while
+	 * VMs with remote disks keep it on their first host). The target is not
+	 * known in advance, so only the output bandwidth of this storage is taken
+	 * into account.
+	 * 
+	 * @return the estimated cost of the migration
+	 * @throws IllegalStateException
+	 *             if the VM has no storage for its disk yet
+	 */
+	public MigrationCost estimateLiveMigration() {
+		if (vatarget == null) {
+			throw new IllegalStateException("The VM has no disk storage to migrate from");
+		}
+		return estimateLiveMigration(vatarget.getOutputbw());
+	}
+
 	/**
 	 * A nice single line output for the VM that shows its state and resource
 	 * allocation as well as the tasks it is running. Good for debugging and
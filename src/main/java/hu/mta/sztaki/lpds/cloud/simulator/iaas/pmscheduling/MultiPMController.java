@@ -25,7 +25,7 @@
  */
 package hu.mta.sztaki.lpds.cloud.simulator.iaas.pmscheduling;
 
-import java.util.ArrayList;
+import java.util.LinkedHashSet;
 
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.IaaSService;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.PhysicalMachine;
@@ -58,7 +58,7 @@ public class MultiPMController extends SchedulingDependentMachines {
 	/**
 	 * the list of machines that are currently turned on by this controller.
 	 */
-	private final ArrayList<PhysicalMachine> currentlyStartingPMs = new ArrayList<PhysicalMachine>();
+	private final LinkedHashSet<PhysicalMachine> currentlyStartingPMs = new LinkedHashSet<PhysicalMachine>();
 
 	/**
 	 * Removes PMs from the currentlyStartingPMs list if they started properly
@@ -115,7 +115,7 @@ public class MultiPMController extends SchedulingDependentMachines {
 	/**
 	 * Turns on as many PMs as many required to fulfill the total resource
 	 * requirements of the queued VMs at the VM scheduler of the parent
-	 * IaasService
+	 * IaasService. Larger PMs are turned on first.
 	 */
 	protected void turnOnSomeMachines() {
 		final int pmsize = parent.machines.size();
@@ -124,21 +124,20 @@ public class MultiPMController extends SchedulingDependentMachines {
 			final AlterableResourceConstraints toSwitchOn = new AlterableResourceConstraints(
 					parent.sched.getTotalQueued());
 			final double fltfix=toSwitchOn.getRequiredCPUs()/(pmsize*1000);
-			final int startingLen = currentlyStartingPMs.size();
-			for (int i = 0; i < startingLen; i++) {
-				final PhysicalMachine pm = currentlyStartingPMs.get(i);
+			for (final PhysicalMachine pm : currentlyStartingPMs) {
 				if (!pm.isRunning()) {
-					toSwitchOn.subtract(currentlyStartingPMs.get(i).getCapacities());
+					toSwitchOn.subtract(pm.getCapacities());
 				}
 			}
-			for (int i = 0; i < pmsize && toSwitchOn.getRequiredCPUs() > fltfix; i++) {
-				final PhysicalMachine n = parent.machines.get(i);
-				if (PhysicalMachine.ToOfforOff.contains(n.getState())) {
-					currentlyStartingPMs.add(n);
-					n.turnon();
-					n.subscribeStateChangeEvents(sweeper);
-					toSwitchOn.subtract(n.getCapacities());
+			while (toSwitchOn.getRequiredCPUs() > fltfix) {
+				final PhysicalMachine n = pmIndex.getLargest(PhysicalMachine.ToOfforOff);
+				if (n == null) {
+					break;
 				}
+				currentlyStartingPMs.add(n);
+				n.turnon();
+				n.subscribeStateChangeEvents(sweeper);
+				toSwitchOn.subtract(n.getCapacities());
 			}
 			notInTurnonLoop = true;
 		}
@@ -0,0 +1,193 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor 
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *  
+ *  This file is part of DISSECT-CF.
+ *  
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *  
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package hu.mta.sztaki.lpds.cloud.simulator.iaas.pmscheduling;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.TreeSet;
+
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.PhysicalMachine;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.PhysicalMachine.State;
+
+/**
+ * Keeps the PMs of an IaaS indexed by their power states, so PM controllers
+ * can find machines in a particular state (e.g., ones that could be turned on)
+ * without scanning all the machines of the IaaS. The index follows the state
+ * changes of its PMs via their state change events.
+ * 
+ * Within a state, the PMs are ordered by their capacities (largest first);
+ * equally sized PMs are ordered by the time they were added to the index.
+ * Capacities are recorded when a PM is added.
+ * 
+ * @author "agent, (c) 2026"
+ */
+public class PMStateIndex implements PhysicalMachine.StateChangeListener {
+	/**
+	 * The position of a PM in the index
+	 */
+	private static class Slot implements Comparable<Slot> {
+		final PhysicalMachine pm;
+		final double processingPower;
+		final long memory;
+		final long seq;
+		/**
+		 * the state under which the PM is currently filed
+		 */
+		State filedUnder;
+
+		Slot(final PhysicalMachine pm, final long seq) {
+			this.pm = pm;
+			this.seq = seq;
+			processingPower = pm.getCapacities().getTotalProcessingPower();
+			memory = pm.getCapacities().getRequiredMemory();
+			filedUnder = pm.getState();
+		}
+
+		@Override
+		public int compareTo(final Slot o) {
+			int res = Double.compare(o.processingPower, processingPower);
+			if (res == 0) {
+				res = Long.compare(o.memory, memory);
+				if (res == 0) {
+					res = Long.compare(seq, o.seq);
+				}
+			}
+			return res;
+		}
+	}
+
+	/**
+	 * The PMs filed under each state
+	 */
+	private final EnumMap<State, TreeSet<Slot>> byState = new EnumMap<State, TreeSet<Slot>>(State.class);
+	/**
+	 * The slot of each indexed PM
+	 */
+	private final HashMap<PhysicalMachine, Slot> slots = new HashMap<PhysicalMachine, Slot>();
+	/**
+	 * The sequence number of the next PM added to the index
+	 */
+	private long nextSeq = 0;
+
+	public PMStateIndex() {
+		for (final State s : State.values()) {
+			byState.put(s, new TreeSet<Slot>());
+		}
+	}
+
+	/**
+	 * Starts following the state of a PM. Adding an already indexed PM has no
+	 * effect.
+	 * 
+	 * @param pm
+	 *            the PM to index
+	 */
+	public void add(final PhysicalMachine pm) {
+		if (!slots.containsKey(pm)) {
+			final Slot slot = new Slot(pm, nextSeq++);
+			slots.put(pm, slot);
+			byState.get(slot.filedUnder).add(slot);
+			pm.subscribeStateChangeEvents(this);
+		}
+	}
+
+	/**
+	 * Stops following the state of a PM.
+	 * 
+	 * @param pm
+	 *            the PM to drop from the index
+	 */
+	public void remove(final PhysicalMachine pm) {
+		final Slot slot = slots.remove(pm);
+		if (slot != null) {
+			byState.get(slot.filedUnder).remove(slot);
+			pm.unsubscribeStateChangeEvents(this);
+		}
+	}
+
+	/**
+	 * Files the PM under its new state.
+	 */
+	@Override
+	public void stateChanged(final PhysicalMachine pm, final State oldState, final State newState) {
+		refile(slots.get(pm));
+	}
+
+	private void refile(final Slot slot) {
+		if (slot != null && slot.filedUnder != slot.pm.getState()) {
+			byState.get(slot.filedUnder).remove(slot);
+			slot.filedUnder = slot.pm.getState();
+			byState.get(slot.filedUnder).add(slot);
+		}
+	}
+
+	/**
+	 * Finds the largest PM in any of the given states.
+	 * 
+	 * @param states
+	 *            the acceptable states of the PM (e.g.,
+	 *            PhysicalMachine.ToOfforOff to find a PM to be turned on)
+	 * @return the largest PM that is in one of the states, <b>null</b> if there
+	 *         is no such PM in the index
+	 */
+	public PhysicalMachine getLargest(final EnumSet<State> states) {
+		Slot best;
+		do {
+			best = null;
+			for (final State s : states) {
+				final TreeSet<Slot> filed = byState.get(s);
+				if (!filed.isEmpty()) {
+					final Slot candidate = filed.first();
+					if (best == null || candidate.compareTo(best) < 0) {
+						best = candidate;
+					}
+				}
+			}
+			if (best == null || states.contains(best.pm.getState())) {
+				return best == null ? null : best.pm;
+			}
+			// The PM's state change notification is not yet processed
+			refile(best);
+		} while (true);
+	}
+
+	/**
+	 * Determines the number of PMs in a given state.
+	 * 
+	 * @param state
+	 *            the state in question
+	 * @return the number of indexed PMs filed under the state
+	 */
+	public int count(final State state) {
+		return byState.get(state).size();
+	}
+
+	/**
+	 * @return the number of PMs in the index
+	 */
+	public int size() {
+		return slots.size();
+	}
+}
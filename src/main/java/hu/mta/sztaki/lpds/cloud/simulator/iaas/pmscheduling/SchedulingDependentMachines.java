@@ -173,6 +173,11 @@ public class SchedulingDependentMachines extends PhysicalMachineController {
 	 * shows what is the actual machine that is switching on.
 	 */
 	private PhysicalMachine currentlyStartingPM = null;
+	/**
+	 * the controlled PMs indexed by their states, allows finding the PMs to be
+	 * turned on without scanning all the PMs of the parent IaaSService.
+	 */
+	protected final PMStateIndex pmIndex = new PMStateIndex();
 
 	/**
 	 * Constructs the scheduler and passes the parent IaaSService to the
@@ -205,6 +210,9 @@ public class SchedulingDependentMachines extends PhysicalMachineController {
 				final int pmNum = alteredPMs.size();
 				if (newRegistration) {
 					// Management of capacity increase
+					for (int i = 0; i < pmNum; i++) {
+						pmIndex.add(alteredPMs.get(i));
+					}
 					for (int i = pmNum - 1; i >= 0; i--) {
 						final PhysicalMachine pm = alteredPMs.get(i);
 						capacityManagers.put(pm, new CapacityChangeManager(pm));
@@ -212,7 +220,9 @@ public class SchedulingDependentMachines extends PhysicalMachineController {
 				} else {
 					// Management of capacity decrease
 					for (int i = pmNum - 1; i >= 0; i--) {
-						capacityManagers.remove(alteredPMs.get(i)).cancelEvents();
+						final PhysicalMachine pm = alteredPMs.get(i);
+						capacityManagers.remove(pm).cancelEvents();
+						pmIndex.remove(pm);
 					}
 				}
 			}
@@ -246,19 +256,16 @@ public class SchedulingDependentMachines extends PhysicalMachineController {
 
 	/**
 	 * switches on a not yet switched on machine from the parent IaaS's PM set.
-	 * if there are no more machines in the IaaS that can be turned on then the
-	 * calling of this function is ignored.
+	 * The largest of the switched off machines is selected. if there are no
+	 * more machines in the IaaS that can be turned on then the calling of this
+	 * function is ignored.
 	 */
 	protected void turnOnAMachine() {
-		final int pmsize = parent.machines.size();
-		if (parent.runningMachines.size() != pmsize) {
-			for (int i = 0; i < pmsize; i++) {
-				final PhysicalMachine n = parent.machines.get(i);
-				if (PhysicalMachine.ToOfforOff.contains(n.getState())) {
-					currentlyStartingPM = n;
-					n.turnon();
-					break;
-				}
+		if (parent.runningMachines.size() != parent.machines.size()) {
+			final PhysicalMachine n = pmIndex.getLargest(PhysicalMachine.ToOfforOff);
+			if (n != null) {
+				currentlyStartingPM = n;
+				n.turnon();
 			}
 		}
 	}
@@ -44,8 +44,9 @@ public abstract class MaxMinFairSpreader extends ResourceSpreader {
 	 */
 	private double currentUnProcessed;
 	/**
-	 * The number of resource consumptions for which this spreader still did not
-	 * assign temporal resource utilization limits - see: p(c,s,t) in the paper
+	 * The number of resource consumptions (counted with their multiplicities)
+	 * for which this spreader still did not assign temporal resource
+	 * utilization limits - see: p(c,s,t) in the paper
 	 * titled
 	 * "DISSECT-CF: a simulator to foster energy-aware scheduling in infrastructure clouds"
 	 * .
@@ -83,15 +84,19 @@ public abstract class MaxMinFairSpreader extends ResourceSpreader {
 	 *         processed by this spreader.
 	 */
 	private boolean initializeFreqUpdate() {
-		unassignedNum = upLen = underProcessing.size();
-		if (unassignedNum == 0) {
+		upLen = underProcessing.size();
+		if (upLen == 0) {
+			unassignedNum = 0;
 			return false;
 		}
+		int weightedLen = 0;
 		for (int i = 0; i < upLen; i++) {
 			final ResourceConsumption con = underProcessing.get(i);
 			con.limithelper = 0;
 			con.unassigned = true;
+			weightedLen += con.multiplicity;
 		}
+		unassignedNum = weightedLen;
 		currentUnProcessed = perTickProcessingPower;
 		return true;
 	}
@@ -127,13 +132,13 @@ public abstract class MaxMinFairSpreader extends ResourceSpreader {
 					if (con.inassginmentprocess) {
 						final double limit = con.getProcessingLimit() - con.limithelper;
 						if (limit < maxShare) {
-							currentProcessable -= limit;
+							currentProcessable -= limit * con.multiplicity;
 							updateConsumptionLimit(con, limit);
 							// we move an unprocessed item from the back here
 							// then allow reevaluation
 							// and also make sure the currlen is reduced
 							con.inassginmentprocess = false;
-							currlen--;
+							currlen -= con.multiplicity;
 						} else {
 							newlastindex = i;
 							if (firstIndexNotSetUp) {
@@ -201,12 +206,13 @@ public abstract class MaxMinFairSpreader extends ResourceSpreader {
 					if (con.unassigned) {
 						con.limithelper += minProcessing;
 						final MaxMinFairSpreader counterpart = (MaxMinFairSpreader) mmfs.getCounterPart(con);
-						mmfs.currentUnProcessed -= minProcessing;
-						counterpart.currentUnProcessed -= minProcessing;
+						final double weightedProcessing = minProcessing * con.multiplicity;
+						mmfs.currentUnProcessed -= weightedProcessing;
+						counterpart.currentUnProcessed -= weightedProcessing;
 						if (Math.abs(con.getRealLimit() - minProcessing) <= minProcessing * 0.000000001) {
 							con.unassigned = false;
-							mmfs.unassignedNum--;
-							counterpart.unassignedNum--;
+							mmfs.unassignedNum -= con.multiplicity;
+							counterpart.unassignedNum -= con.multiplicity;
 						}
 					}
 				}
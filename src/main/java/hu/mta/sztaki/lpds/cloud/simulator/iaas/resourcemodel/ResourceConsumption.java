@@ -186,6 +186,32 @@ public class ResourceConsumption {
 	 * MaxMinFairSpreader
 	 */
 	boolean inassginmentprocess;
+	/**
+	 * The number of identical consumptions this object stands for. All amounts
+	 * and limits of the consumption are meant for a single one of these, the
+	 * spreaders account for all of them together (e.g., a single weighted item
+	 * represents several identical transfers in the max-min fairness
+	 * computation).
+	 * 
+	 * <i>WARNING:</i> this is necessary for the internal behavior of
+	 * MaxMinFairSpreader
+	 */
+	int multiplicity = 1;
+	/**
+	 * The consumption representing the same flow on another part of its path
+	 * (e.g., another segment of a transfer), null if this consumption is
+	 * shared on its own.
+	 */
+	private ResourceConsumption coupled = null;
+	/**
+	 * The processing limit imposed by the coupled consumption
+	 */
+	private double couplingLimit = unlimitedProcessing;
+	/**
+	 * The relative difference under which two limits are considered equal
+	 * when coupling consumptions
+	 */
+	private static final double couplingTolerance = 0.000000001;
 
 	/**
 	 * Added for live migration memDirtyingRate: percentage of memory dirtied
@@ -330,6 +356,43 @@ public class ResourceConsumption {
 		return false;
 	}
 
+	/**
+	 * Initiates the processing of several resource consumptions at once. The
+	 * result is the same as calling registerConsumption on each of them, but
+	 * the influence group of the consumptions is only notified once for all
+	 * the consumptions sharing the same provider/consumer pair. Thus this
+	 * function is best used for many consumptions between the same pair.
+	 * 
+	 * @param cons
+	 *            the consumptions to be registered
+	 * @return the number of consumptions that were successfully registered (or
+	 *         completed immediately because they had nothing to process)
+	 */
+	public static int registerConsumptions(final ResourceConsumption... cons) {
+		final ResourceConsumption[] toRegister = new ResourceConsumption[cons.length];
+		int len = 0;
+		int done = 0;
+		for (final ResourceConsumption con : cons) {
+			if (!con.registered) {
+				if (con.getUnProcessed() == 0) {
+					con.fireCompleteEvent();
+					done++;
+				} else if (con.resumable && con.provider != null && con.consumer != null) {
+					con.updateHardLimit();
+					toRegister[len++] = con;
+				}
+			}
+		}
+		final boolean[] success = ResourceSpreader.registerConsumptions(toRegister, len);
+		for (int i = 0; i < len; i++) {
+			if (success[i]) {
+				toRegister[i].registered = true;
+				done++;
+			}
+		}
+		return done;
+	}
+
 	/**
 	 * Returns the amount of processing still remaining in this resource
 	 * consumption.
@@ -365,6 +428,38 @@ public class ResourceConsumption {
 		}
 	}
 
+	/**
+	 * Determines how many identical consumptions are represented by this object.
+	 * 
+	 * @return the multiplicity of the consumption
+	 */
+	public int getMultiplicity() {
+		return multiplicity;
+	}
+
+	/**
+	 * Allows to set the number of identical consumptions represented by this
+	 * object. The processing amounts and the limits of the consumption are all
+	 * understood for a single one of the represented consumptions.
+	 * 
+	 * If the consumption is already under way, the processing done so far is
+	 * accounted with the old multiplicity and the resource shares are
+	 * recalculated with the new one.
+	 * 
+	 * @param multiplicity
+	 *            the number of identical consumptions to represent, must be
+	 *            positive
+	 */
+	public void setMultiplicity(final int multiplicity) {
+		if (multiplicity < 1) {
+			throw new IllegalArgumentException("The multiplicity of a consumption must be positive");
+		}
+		if (registered) {
+			ResourceSpreader.reweightConsumption(this);
+		}
+		this.multiplicity = multiplicity;
+	}
+
 	/**
 	 * Allows to set a provider for the consumption if the consumption is not yet
 	 * under way.
@@ -516,7 +611,51 @@ public class ResourceConsumption {
 	 */
 
 	public double getProcessingLimit() {
-		return processingLimit;
+		return coupled != null && coupled.registered && couplingLimit < processingLimit ? couplingLimit
+				: processingLimit;
+	}
+
+	/**
+	 * Couples the rates of two consumptions representing the same flow on
+	 * different parts of its path (e.g., the segments of a transfer that
+	 * passes through links modelled by different spreaders). Whenever the
+	 * resource shares of one of them are determined, the other one is limited
+	 * to its real limit, unless that limit was imposed by the other one in the
+	 * first place. Thus the faster part leaves the share it could not use to
+	 * the other consumptions of its spreaders.
+	 * 
+	 * @param first
+	 *            one of the consumptions to be coupled
+	 * @param second
+	 *            the other consumption to be coupled
+	 * @throws IllegalStateException
+	 *             if either of the consumptions is already coupled
+	 */
+	public static void couple(final ResourceConsumption first, final ResourceConsumption second) {
+		if (first == second || first.coupled != null || second.coupled != null) {
+			throw new IllegalStateException("A consumption can only be coupled with a single other one");
+		}
+		first.coupled = second;
+		second.coupled = first;
+	}
+
+	/**
+	 * Offers the just determined real limit to the coupled consumption. If
+	 * the limit of the coupled consumption changes, its influence group is
+	 * rescheduled.
+	 */
+	private void offerLimitToCoupled() {
+		final double limit = getProcessingLimit();
+		// a limit imposed by the coupled consumption is not offered back
+		final boolean boundByCoupling = limit < processingLimit && realLimit >= limit * (1 - couplingTolerance);
+		final double offered = boundByCoupling ? unlimitedProcessing : realLimit;
+		final double current = coupled.couplingLimit;
+		if (Math.abs(offered - current) > couplingTolerance * Math.min(offered, current)) {
+			coupled.couplingLimit = offered;
+			if (coupled.registered && coupled.provider.getSyncer() != provider.getSyncer()) {
+				ResourceSpreader.reweightConsumption(coupled);
+			}
+		}
 	}
 
 	/**
@@ -598,6 +737,9 @@ public class ResourceConsumption {
 		setRealLimit(rlTrial);
 		if (updateCD) {
 			calcCompletionDistance();
+			if (coupled != null) {
+				offerLimitToCoupled();
+			}
 		}
 		return realLimit;
 	}
@@ -719,6 +719,60 @@ public abstract class ResourceSpreader {
 	 *         </ul>
 	 */
 	static boolean registerConsumption(final ResourceConsumption con) {
+		if (addConsumption(con)) {
+			nudgeGroupOf(con);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Registers several consumptions with a single influence group
+	 * notification per provider/consumer pair. The consumptions are expected to
+	 * be sorted by their provider/consumer pairs (e.g., all of them are
+	 * between the same pair), otherwise the notifications are only merged for
+	 * the consecutive consumptions of a pair.
+	 * 
+	 * WARNING: This function should not be called by anyone else but the
+	 * registration function of the resource consumption!
+	 * 
+	 * @param cons
+	 *            the consumptions to be registered
+	 * @param len
+	 *            the number of consumptions to be registered from the array
+	 * @return for each consumption: <i>true</i> if its registration was
+	 *         successful
+	 */
+	static boolean[] registerConsumptions(final ResourceConsumption[] cons, final int len) {
+		final boolean[] registered = new boolean[len];
+		ResourceConsumption lastAdded = null;
+		for (int i = 0; i < len; i++) {
+			final ResourceConsumption con = cons[i];
+			if (addConsumption(con)) {
+				registered[i] = true;
+				if (lastAdded != null && (lastAdded.getProvider() != con.getProvider()
+						|| lastAdded.getConsumer() != con.getConsumer())) {
+					nudgeGroupOf(lastAdded);
+				}
+				lastAdded = con;
+			}
+		}
+		if (lastAdded != null) {
+			nudgeGroupOf(lastAdded);
+		}
+		return registered;
+	}
+
+	/**
+	 * Adds the consumption to the addition lists of its provider and consumer
+	 * if they both accept it.
+	 * 
+	 * @param con
+	 *            The consumption object to be added
+	 * @return <i>false</i> if the consumption was already registered or if the
+	 *         consumption is not acceptable by its set provider or consumer.
+	 */
+	private static boolean addConsumption(final ResourceConsumption con) {
 		final ResourceSpreader provider = con.getProvider();
 		final ResourceSpreader consumer = con.getConsumer();
 		if (con.isRegistered() || !(provider.isAcceptableConsumption(con) && consumer.isAcceptableConsumption(con))) {
@@ -730,7 +784,20 @@ public abstract class ResourceSpreader {
 
 		provider.underAddition.add(con);
 		consumer.underAddition.add(con);
+		return true;
+	}
 
+	/**
+	 * Ensures the influence group(s) of the provider and consumer of a just
+	 * added consumption are rescheduled, or forms a new influence group for
+	 * them if they are not yet members of any.
+	 * 
+	 * @param con
+	 *            the consumption just added
+	 */
+	private static void nudgeGroupOf(final ResourceConsumption con) {
+		final ResourceSpreader provider = con.getProvider();
+		final ResourceSpreader consumer = con.getConsumer();
 		boolean notnudged = true;
 		if (provider.mySyncer != null) {
 			provider.mySyncer.nudge();
@@ -745,8 +812,6 @@ public abstract class ResourceSpreader {
 			// We just form our new influence group
 			new FreqSyncer(provider, consumer).nudge();
 		}
-
-		return true;
 	}
 
 	/**
@@ -788,6 +853,23 @@ public abstract class ResourceSpreader {
 		consumer.removeTheseConsumptions(sinlgeConsumption, 1);
 	}
 
+	/**
+	 * Prepares the influence group of a registered consumption for a change in
+	 * the multiplicity or the limits of the consumption: the processing is
+	 * brought up to the current time (so it is accounted with the old values)
+	 * and the group is nudged so the resource shares are recalculated.
+	 * 
+	 * @param con
+	 *            the consumption to be reweighted
+	 */
+	static void reweightConsumption(final ResourceConsumption con) {
+		final FreqSyncer syncer = con.getProvider().mySyncer;
+		if (syncer != null) {
+			syncer.outOfOrderProcessing(Timed.getFireCount());
+			syncer.nudge();
+		}
+	}
+
 	/**
 	 * The main resource processing loop. This loop is responsible for actually
 	 * offering resources to consumers in case of providers or in case of
@@ -815,14 +897,14 @@ public abstract class ResourceSpreader {
 			final ResourceConsumption con = underProcessing.get(i);
 			final double processed = processSingleConsumption(con, ticksPassed);
 			if (processed < 0) {
-				totalProcessed -= processed;
+				totalProcessed -= processed * con.multiplicity;
 				if (firsthit) {
 					toRemove = new ResourceConsumption[underProcessingLen - i];
 					firsthit = false;
 				}
 				toRemove[remIdx++] = con;
 			} else {
-				totalProcessed += processed;
+				totalProcessed += processed * con.multiplicity;
 			}
 		}
 		if (remIdx > 0) {
@@ -0,0 +1,270 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor 
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *  
+ *  This file is part of DISSECT-CF.
+ *  
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *  
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package hu.mta.sztaki.lpds.cloud.simulator.iaas.resourcemodel;
+
+import java.util.ArrayList;
+
+/**
+ * A handle for a group of identical tasks submitted together between the same
+ * consumer and provider (e.g., the tasks of a batch job submitted to a VM in a
+ * single tick). Instead of a completion event per task, the group notifies its
+ * creator only once: when all of its tasks have finished (either by
+ * completing or by being cancelled).
+ * 
+ * The tasks of the group are represented by resource consumptions that are
+ * registered together and share a single completion event object. If the
+ * group is aggregated, all its tasks are represented by a single consumption
+ * with the multiplicity of the number of tasks. This keeps the spreaders'
+ * lists short for large bag-of-tasks workloads, as identical tasks would
+ * progress together anyway. On the other hand, the tasks of an aggregated
+ * group can only be completed or cancelled together.
+ * 
+ * @author "agent, (c) 2026"
+ */
+public class TaskGroup {
+	/**
+	 * The interface to be implemented by those who want to know when all tasks
+	 * of a group finished.
+	 */
+	public interface TaskGroupEvent {
+		/**
+		 * Called once all tasks of the group have either completed or were
+		 * cancelled.
+		 * 
+		 * @param group
+		 *            the group that just finished
+		 */
+		void tasksFinished(TaskGroup group);
+	}
+
+	/**
+	 * The consumptions representing the tasks of the group
+	 */
+	private final ArrayList<ResourceConsumption> members;
+	/**
+	 * The number of tasks represented by a single member consumption
+	 */
+	private final int tasksPerMember;
+	/**
+	 * To be notified when all tasks have finished
+	 */
+	private final TaskGroupEvent ev;
+	/**
+	 * The number of tasks that have completed so far
+	 */
+	private int completed = 0;
+	/**
+	 * The number of tasks that were cancelled so far
+	 */
+	private int cancelled = 0;
+	/**
+	 * The single event object shared by all member consumptions
+	 */
+	private final ResourceConsumption.ConsumptionEvent memberEvent = new ResourceConsumption.ConsumptionEvent() {
+		@Override
+		public void conComplete() {
+			completed += tasksPerMember;
+			checkFinished();
+		}
+
+		@Override
+		public void conCancelled(final ResourceConsumption problematic) {
+			cancelled += tasksPerMember;
+			checkFinished();
+		}
+	};
+
+	/**
+	 * Prepares the consumptions of a task group, they are not registered until
+	 * the register function is called.
+	 * 
+	 * @param total
+	 *            the amount of processing to be done by a single task
+	 * @param limit
+	 *            the amount of processing a single task is allowed to do in a
+	 *            single tick
+	 * @param count
+	 *            the number of tasks in the group
+	 * @param consumer
+	 *            the consumer of all tasks
+	 * @param provider
+	 *            the provider of all tasks
+	 * @param ev
+	 *            the event to be fired when all tasks have finished
+	 */
+	public TaskGroup(final double total, final double limit, final int count, final ResourceSpreader consumer,
+			final ResourceSpreader provider, final TaskGroupEvent ev) {
+		this(total, limit, count, false, consumer, provider, ev);
+	}
+
+	/**
+	 * Prepares the consumptions of a task group, they are not registered until
+	 * the register function is called.
+	 * 
+	 * @param total
+	 *            the amount of processing to be done by a single task
+	 * @param limit
+	 *            the amount of processing a single task is allowed to do in a
+	 *            single tick
+	 * @param count
+	 *            the number of tasks in the group
+	 * @param aggregated
+	 *            <i>true</i> if the tasks should be represented by a single
+	 *            consumption with the multiplicity of the number of tasks,
+	 *            <i>false</i> if every task should have its own consumption.
+	 * @param consumer
+	 *            the consumer of all tasks
+	 * @param provider
+	 *            the provider of all tasks
+	 * @param ev
+	 *            the event to be fired when all tasks have finished
+	 */
+	public TaskGroup(final double total, final double limit, final int count, final boolean aggregated,
+			final ResourceSpreader consumer, final ResourceSpreader provider, final TaskGroupEvent ev) {
+		if (count < 1) {
+			throw new IllegalArgumentException("A task group must have at least a single task");
+		}
+		if (ev == null) {
+			throw new IllegalStateException("Cannot create a task group without an event to be fired");
+		}
+		this.ev = ev;
+		if (aggregated) {
+			tasksPerMember = count;
+			members = new ArrayList<ResourceConsumption>(1);
+			final ResourceConsumption con = new ResourceConsumption(total, limit, consumer, provider, memberEvent);
+			con.setMultiplicity(count);
+			members.add(con);
+		} else {
+			tasksPerMember = 1;
+			members = new ArrayList<ResourceConsumption>(count);
+			for (int i = 0; i < count; i++) {
+				members.add(new ResourceConsumption(total, limit, consumer, provider, memberEvent));
+			}
+		}
+	}
+
+	/**
+	 * Registers all consumptions of the group at once. The consumptions that
+	 * could not be registered are dropped from the group (and their tasks are
+	 * not counted as part of it).
+	 * 
+	 * @return <i>true</i> if at least a single task of the group is under way
+	 *         (or completed already)
+	 */
+	public boolean register() {
+		final int size = members.size();
+		final int done = ResourceConsumption
+				.registerConsumptions(members.toArray(new ResourceConsumption[size]));
+		if (done != size) {
+			final ArrayList<ResourceConsumption> accepted = new ArrayList<ResourceConsumption>(done);
+			for (final ResourceConsumption con : members) {
+				if (con.isRegistered() || con.getUnProcessed() == 0) {
+					accepted.add(con);
+				}
+			}
+			members.clear();
+			members.addAll(accepted);
+		}
+		return done > 0;
+	}
+
+	private void checkFinished() {
+		if (isFinished()) {
+			ev.tasksFinished(this);
+		}
+	}
+
+	/**
+	 * Cancels all the tasks of the group that are still under way.
+	 */
+	public void cancel() {
+		for (final ResourceConsumption con : members) {
+			if (con.isRegistered()) {
+				con.cancel();
+			}
+		}
+	}
+
+	/**
+	 * @return the total number of tasks in the group
+	 */
+	public int getTaskCount() {
+		return members.size() * tasksPerMember;
+	}
+
+	/**
+	 * @return the number of consumptions used to represent the tasks of the
+	 *         group
+	 */
+	public int getConsumptionCount() {
+		return members.size();
+	}
+
+	/**
+	 * @return <i>true</i> if the tasks of the group are represented by a
+	 *         single consumption
+	 */
+	public boolean isAggregated() {
+		return tasksPerMember > 1;
+	}
+
+	/**
+	 * @return the number of tasks completed so far
+	 */
+	public int getCompletedTasks() {
+		return completed;
+	}
+
+	/**
+	 * @return the number of tasks cancelled so far
+	 */
+	public int getCancelledTasks() {
+		return cancelled;
+	}
+
+	/**
+	 * @return <i>true</i> if all tasks of the group have either completed or
+	 *         were cancelled
+	 */
+	public boolean isFinished() {
+		return completed + cancelled == getTaskCount();
+	}
+
+	/**
+	 * Allows read only access to the consumptions of the group.
+	 * 
+	 * @param index
+	 *            the index of the consumption
+	 * @return the consumption at the given index
+	 */
+	public ResourceConsumption getConsumption(final int index) {
+		return members.get(index);
+	}
+
+	@Override
+	public String toString() {
+		return "TaskGroup(tasks: " + getTaskCount() + " completed: " + completed + " cancelled: " + cancelled
+				+ ")";
+	}
+}
@@ -1,7 +1,10 @@
 package hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import java.util.Vector;
+import java.util.function.IntConsumer;
 
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.IaaSService;
 
@@ -52,6 +55,16 @@ public class AbcConsolidator extends SolutionBasedConsolidator {
 		probabilities = new Vector<>();
 	}
 
+	/**
+	 * Creates AbcConsolidator with empty population and the given configuration.
+	 */
+	public AbcConsolidator(IaaSService toConsolidate, long consFreq, ConsolidationConfig config) {
+		super(toConsolidate, consFreq, config);
+		population = new Vector<>();
+		numTrials = new Vector<>();
+		probabilities = new Vector<>();
+	}
+
 	/**
 	 * If s is better than the best solution found so far, then bestSolution and
 	 * bestFitness are updated.
@@ -67,13 +80,28 @@ public class AbcConsolidator extends SolutionBasedConsolidator {
 	/**
 	 * Initializes the population with the previously determined solutions. After
 	 * that the same mapping as existing before consolidation has started is
-	 * put inside a solution.
+	 * put inside a solution. If warm starts are configured, the best solutions
+	 * of the previous round replace some of the random ones.
 	 */
 	private void initializePopulation() {
 		population.clear();
+		final Solution[] randoms = new Solution[randomCreations];
+		for (int i = 0; i < randomCreations; i++) {
+			randoms[i] = newSolution(mutationProb);
+		}
+		final int warm = warmStarts(randomCreations);
+		forEachMember(randomCreations, new IntConsumer() {
+			@Override
+			public void accept(int i) {
+				if (i < warm) {
+					warmStart(randoms[i], i);
+				} else {
+					randoms[i].fillRandomly();
+				}
+			}
+		});
 		for(int i = 0; i < randomCreations; i++) {
-			Solution s = new Solution(bins, mutationProb);
-			s.fillRandomly();
+			Solution s = randoms[i];
 			population.add(s);
 			numTrials.add(0);
 			if (i == 0) {
@@ -84,7 +112,7 @@ public class AbcConsolidator extends SolutionBasedConsolidator {
 			}
 		}
 		if(firstFitCreations != 0) {
-			Solution s0 = new Solution(bins, mutationProb);
+			Solution s0 = newSolution(mutationProb);
 			s0.createFirstFitSolution();
 			population.add(s0);
 			numTrials.add(0);
@@ -97,7 +125,7 @@ public class AbcConsolidator extends SolutionBasedConsolidator {
 			}
 		}
 		if(unchangedCreations != 0) {
-			Solution s0 = new Solution(bins, mutationProb);
+			Solution s0 = newSolution(mutationProb);
 			s0.createUnchangedSolution();
 			population.add(s0);
 			numTrials.add(0);
@@ -143,8 +171,16 @@ public class AbcConsolidator extends SolutionBasedConsolidator {
 	 * population, otherwise not.
 	 */
 	private void mutateAndCheck(int j) {
+		check(j, population.get(j).mutate());
+	}
+
+	/**
+	 * Check whether the mutated solution is better than the jth member of the
+	 * population. If it is better, it replaces the old one in the population,
+	 * otherwise not.
+	 */
+	private void check(int j, Solution s2) {
 		Solution s1 = population.get(j);
-		Solution s2 = s1.mutate();
 		if (s2.evaluate().isBetterThan(s1.evaluate())) {
 			population.set(j, s2);
 			numTrials.set(j, 0);
@@ -156,32 +192,43 @@ public class AbcConsolidator extends SolutionBasedConsolidator {
 	}
 
 	/**
-	 * Reads the properties file and sets the constant values for consolidation.
+	 * Takes over the constant values for consolidation from the configuration.
 	 */
 	@Override
 	protected void processProps() {
 		super.processProps();
-		this.populationSize = Integer.parseInt(props.getProperty("abcPopulationSize"));
-		this.nrIterations = Integer.parseInt(props.getProperty("abcNrIterations"));
-		this.limitTrials = Integer.parseInt(props.getProperty("abcLimitTrials"));
-		this.random = new Random(Long.parseLong(props.getProperty("seed")));
+		this.populationSize = config.abcPopulationSize;
+		this.nrIterations = config.abcNrIterations;
+		this.limitTrials = config.abcLimitTrials;
+		this.random = new Random(config.seed);
 		
 		determineCreations(populationSize);
 	}
 
 	/**
-	 * The actual ABC algorithm.
+	 * The actual ABC algorithm. The iterations stop early if no solution
+	 * improves or the budget of the round is used up, the best solution found
+	 * so far is implemented in both cases.
 	 */
 	@Override
 	protected void optimize() {
 		//System.err.println("ABC nrIterations="+nrIterations+", populationSize="+populationSize);
 		initializePopulation();
+		stats.evaluated(populationSize);
 		for (int iter = 0; iter < nrIterations; iter++) {
+			if (budgetExhausted())
+				break;
 			improved=false;
-			// employed bees phase
+			// employed bees phase, the bees work independently
+			final Solution[] mutants = new Solution[populationSize];
+			forEachMember(populationSize, new IntConsumer() {
+				@Override
+				public void accept(int j) {
+					mutants[j] = population.get(j).mutate();
+				}
+			});
 			for (int j = 0; j < populationSize; j++) {
-//				Logger.getGlobal().info("populationSize: " + populationSize + ", j: " + j);
-				mutateAndCheck(j);
+				check(j, mutants[j]);
 			}
 			// onlooker bees phase
 			determineProbabilities();
@@ -208,16 +255,24 @@ public class AbcConsolidator extends SolutionBasedConsolidator {
 				}
 			}
 			if (maxTrials >= limitTrials) {
-				Solution s = new Solution(bins, mutationProb);
+				Solution s = newSolution(mutationProb);
 				s.fillRandomly();
 				population.set(maxTrialsIndex, s);
 				numTrials.set(maxTrialsIndex, 0);
 				checkIfBest(s);
+				stats.evaluated(1);
 			}
+			// the employed and the onlooker bees
+			stats.evaluated(2 * populationSize);
+			stats.iterationDone(bestFitness);
 			//System.err.println("ABC iteration carried out: "+iter);
 			if(!improved)
 				break;
 		}
+		// The best solution may have been abandoned by its bee already
+		List<Solution> members = new ArrayList<>(population);
+		members.add(0, bestSolution);
+		rememberElites(members);
 		// Implement best solution in the model
 		bestSolution.implement();
 		adaptPmStates();
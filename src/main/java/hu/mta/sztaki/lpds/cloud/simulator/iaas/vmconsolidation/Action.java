@@ -80,8 +80,18 @@ public abstract class Action{
 
 	/**
 	 * This Method determines the predecessors of this action, based on its type.
+	 * It indexes the given actions first, so if the predecessors of several
+	 * actions are needed, the indexed variant should be used instead.
 	 */
-	public abstract void determinePredecessors(List<Action> actions);
+	public void determinePredecessors(List<Action> actions) {
+		determinePredecessors(new ActionIndex(actions));
+	}
+
+	/**
+	 * This Method determines the predecessors of this action, based on its type,
+	 * by only looking at the actions of the PMs it touches.
+	 */
+	public abstract void determinePredecessors(ActionIndex index);
 	
 	/**
 	 * This method is individualized by every subclass and performs the actions.
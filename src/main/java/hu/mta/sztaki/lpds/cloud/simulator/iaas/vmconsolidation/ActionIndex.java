@@ -0,0 +1,97 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor 
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *  
+ *  This file is part of DISSECT-CF.
+ *  
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *  
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Groups the actions of a consolidation round by the PMs they touch, so the
+ * predecessors of an action can be found by only looking at the actions of
+ * its own PMs instead of the complete action list.
+ * 
+ * @author "agent, (c) 2026"
+ */
+public class ActionIndex {
+	/** The start actions of each PM */
+	private final IdentityHashMap<ModelPM, List<Action>> starts = new IdentityHashMap<>();
+	/** The migrations leaving each PM */
+	private final IdentityHashMap<ModelPM, List<Action>> migrationsFrom = new IdentityHashMap<>();
+
+	/**
+	 * Indexes the given actions. The actions of a PM are kept in the order of
+	 * the list.
+	 * 
+	 * @param actions
+	 *            the action-list of the round
+	 */
+	public ActionIndex(List<Action> actions) {
+		for (Action a : actions) {
+			switch (a.getType()) {
+			case START:
+				add(starts, ((StartAction) a).getPmToStart(), a);
+				break;
+			case MIGRATION:
+				add(migrationsFrom, ((MigrationAction) a).getSource(), a);
+				break;
+			default:
+				// nothing depends on shutdowns
+			}
+		}
+	}
+
+	private static void add(IdentityHashMap<ModelPM, List<Action>> index, ModelPM pm, Action a) {
+		List<Action> list = index.get(pm);
+		if (list == null) {
+			list = new ArrayList<>(2);
+			index.put(pm, list);
+		}
+		list.add(a);
+	}
+
+	private static List<Action> get(IdentityHashMap<ModelPM, List<Action>> index, ModelPM pm) {
+		final List<Action> list = index.get(pm);
+		return list == null ? Collections.<Action>emptyList() : list;
+	}
+
+	/**
+	 * @param pm
+	 *            the PM in question
+	 * @return the actions starting the PM
+	 */
+	public List<Action> getStartsOf(ModelPM pm) {
+		return get(starts, pm);
+	}
+
+	/**
+	 * @param pm
+	 *            the PM in question
+	 * @return the migrations with the PM as their source
+	 */
+	public List<Action> getMigrationsFrom(ModelPM pm) {
+		return get(migrationsFrom, pm);
+	}
+}
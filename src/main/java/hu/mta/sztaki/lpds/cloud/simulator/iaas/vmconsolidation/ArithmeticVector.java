@@ -21,6 +21,16 @@ public class ArithmeticVector extends ArrayList<Double>{
 	public ArithmeticVector(double highestID) {
 		this.highestID = highestID;
 	}
+
+	/**
+	 * Creates a copy of the given vector.
+	 * 
+	 * @param toCopy The vector to copy.
+	 */
+	public ArithmeticVector(ArithmeticVector toCopy) {
+		super(toCopy);
+		this.highestID = toCopy.highestID;
+	}
 	
 	/**
 	 * The toString-method, used for debugging.
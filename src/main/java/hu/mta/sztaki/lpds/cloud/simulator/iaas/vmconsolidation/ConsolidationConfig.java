@@ -0,0 +1,605 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor 
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *  
+ *  This file is part of DISSECT-CF.
+ *  
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *  
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * The typed and immutable set of parameters used by the model based
+ * consolidators. The configuration is meant to be loaded once (either from a
+ * properties file or built programmatically without any file access) and then
+ * shared by the consolidator and all the solutions it creates.
+ * 
+ * The properties file uses the following keys: lowerThreshold,
+ * upperThreshold, mutationProb, seed, doLocalSearch1, doLocalSearch2,
+ * gaPopulationSize, gaNrIterations, gaNrCrossovers, abcPopulationSize,
+ * abcNrIterations, abcLimitTrials, psoSwarmSize, psoNrIterations, psoC1,
+ * psoC2, parallelism, timeBudget, evaluationBudget, decisionLatency,
+ * warmStartElites, maxMigrationsPerPm, maxMigrationsPerLink and
+ * migrationCostAware. Missing keys are replaced by the defaults of the
+ * builder, while unknown keys are kept and can be queried with getProperty().
+ * 
+ * @author "agent, (c) 2026"
+ */
+public final class ConsolidationConfig {
+	/**
+	 * The properties file read by the consolidators if they are not given a
+	 * configuration explicitly
+	 */
+	public static final String defaultFile = "consolidationProperties.xml";
+
+	/** The relative load under which a PM is considered underloaded */
+	public final double lowerThreshold;
+	/** The relative load over which a PM is considered overloaded */
+	public final double upperThreshold;
+	/** The probability of a gene to be replaced during mutation */
+	public final double mutationProb;
+	/** The seed of all random number generators used by the consolidators */
+	public final long seed;
+	/** Controls whether new solutions are improved with the BFD local search */
+	public final boolean doLocalSearch1;
+	/**
+	 * Controls whether new solutions are improved with the local search of the
+	 * simple consolidator
+	 */
+	public final boolean doLocalSearch2;
+	/** The number of individuals in the population of the GA */
+	public final int gaPopulationSize;
+	/** The number of generations of the GA */
+	public final int gaNrIterations;
+	/** The number of recombinations in a generation of the GA */
+	public final int gaNrCrossovers;
+	/** The number of food sources of the ABC */
+	public final int abcPopulationSize;
+	/** The number of iterations of the ABC */
+	public final int abcNrIterations;
+	/** The number of trials before a food source is abandoned in the ABC */
+	public final int abcLimitTrials;
+	/** The number of particles of the PSO */
+	public final int psoSwarmSize;
+	/** The number of iterations of the PSO */
+	public final int psoNrIterations;
+	/** The first learning factor of the PSO */
+	public final int psoC1;
+	/** The second learning factor of the PSO */
+	public final int psoC2;
+	/**
+	 * The number of threads generating and evaluating the members of a
+	 * population/swarm. With 1 (the default) no thread pool is used.
+	 */
+	public final int parallelism;
+	/**
+	 * The wall clock time (in ms) a consolidation round is allowed to spend
+	 * optimising, 0 if unlimited. The budget is checked between iterations and
+	 * the best solution found so far is used once it runs out.
+	 */
+	public final long timeBudget;
+	/**
+	 * The number of solution evaluations a consolidation round is allowed to
+	 * make, 0 if unlimited. Checked between iterations like the time budget.
+	 */
+	public final long evaluationBudget;
+	/**
+	 * The number of simulated ticks between taking the snapshot of the IaaS
+	 * and applying the decision based on it. With 0 (the default) the
+	 * optimisation stops the simulation; otherwise it runs in the background
+	 * while the simulation proceeds.
+	 */
+	public final long decisionLatency;
+	/**
+	 * The number of the best solutions of a round used to seed the
+	 * population/swarm of the next round, 0 (the default) if every round
+	 * starts from scratch.
+	 */
+	public final int warmStartElites;
+	/**
+	 * The number of live migrations a PM can take part in at the same time
+	 * (as source or target), 0 (the default) if unlimited.
+	 */
+	public final int maxMigrationsPerPm;
+	/**
+	 * The number of live migrations that can run between the same two PMs at
+	 * the same time, 0 (the default) if unlimited.
+	 */
+	public final int maxMigrationsPerLink;
+	/**
+	 * If set, the fitness prefers the plans that transfer less memory (see
+	 * VirtualMachine.estimateLiveMigration()) over those with fewer migrations.
+	 */
+	public final boolean migrationCostAware;
+	/**
+	 * The complete set of properties (including those not known by this class)
+	 */
+	private final Properties props;
+
+	/**
+	 * Allows the step by step construction of configurations. The builder
+	 * starts from the defaults shipped with the simulator.
+	 * 
+	 * @author "agent, (c) 2026"
+	 */
+	public static class Builder {
+		private double lowerThreshold = 0.25;
+		private double upperThreshold = 1.0;
+		private double mutationProb = 0.2;
+		private long seed = 50;
+		private boolean doLocalSearch1 = true;
+		private boolean doLocalSearch2 = false;
+		private int gaPopulationSize = 10;
+		private int gaNrIterations = 50;
+		private int gaNrCrossovers = 10;
+		private int abcPopulationSize = 10;
+		private int abcNrIterations = 50;
+		private int abcLimitTrials = 5;
+		private int psoSwarmSize = 20;
+		private int psoNrIterations = 50;
+		private int psoC1 = 2;
+		private int psoC2 = 2;
+		private int parallelism = 1;
+		private long timeBudget = 0;
+		private long evaluationBudget = 0;
+		private long decisionLatency = 0;
+		private int warmStartElites = 0;
+		private int maxMigrationsPerPm = 0;
+		private int maxMigrationsPerLink = 0;
+		private boolean migrationCostAware = false;
+		/**
+		 * The properties not known by the configuration
+		 */
+		private final Properties extra = new Properties();
+
+		/**
+		 * Starts a builder with the default values
+		 */
+		public Builder() {
+		}
+
+		/**
+		 * Starts a builder with the values present in the properties, the
+		 * values not present are left at their defaults.
+		 * 
+		 * @param props
+		 *            the source of the values
+		 * @throws NumberFormatException
+		 *             if some of the numeric values cannot be parsed
+		 */
+		public Builder(final Properties props) {
+			for (String key : props.stringPropertyNames()) {
+				set(key, props.getProperty(key));
+			}
+		}
+
+		/**
+		 * Sets a single value by its key in the properties file.
+		 * 
+		 * @param key
+		 *            the name of the property
+		 * @param value
+		 *            the textual representation of the property
+		 * @return this builder
+		 * @throws NumberFormatException
+		 *             if a numeric value cannot be parsed
+		 */
+		public Builder set(final String key, final String value) {
+			switch (key) {
+			case "lowerThreshold":
+				return setLowerThreshold(Double.parseDouble(value));
+			case "upperThreshold":
+				return setUpperThreshold(Double.parseDouble(value));
+			case "mutationProb":
+				return setMutationProb(Double.parseDouble(value));
+			case "seed":
+				return setSeed(Long.parseLong(value));
+			case "doLocalSearch1":
+				return setDoLocalSearch1(Boolean.parseBoolean(value));
+			case "doLocalSearch2":
+				return setDoLocalSearch2(Boolean.parseBoolean(value));
+			case "gaPopulationSize":
+				return setGaPopulationSize(Integer.parseInt(value));
+			case "gaNrIterations":
+				return setGaNrIterations(Integer.parseInt(value));
+			case "gaNrCrossovers":
+				return setGaNrCrossovers(Integer.parseInt(value));
+			case "abcPopulationSize":
+				return setAbcPopulationSize(Integer.parseInt(value));
+			case "abcNrIterations":
+				return setAbcNrIterations(Integer.parseInt(value));
+			case "abcLimitTrials":
+				return setAbcLimitTrials(Integer.parseInt(value));
+			case "psoSwarmSize":
+				return setPsoSwarmSize(Integer.parseInt(value));
+			case "psoNrIterations":
+				return setPsoNrIterations(Integer.parseInt(value));
+			case "psoC1":
+				return setPsoC1(Integer.parseInt(value));
+			case "psoC2":
+				return setPsoC2(Integer.parseInt(value));
+			case "parallelism":
+				return setParallelism(Integer.parseInt(value));
+			case "timeBudget":
+				return setTimeBudget(Long.parseLong(value));
+			case "evaluationBudget":
+				return setEvaluationBudget(Long.parseLong(value));
+			case "decisionLatency":
+				return setDecisionLatency(Long.parseLong(value));
+			case "warmStartElites":
+				return setWarmStartElites(Integer.parseInt(value));
+			case "maxMigrationsPerPm":
+				return setMaxMigrationsPerPm(Integer.parseInt(value));
+			case "maxMigrationsPerLink":
+				return setMaxMigrationsPerLink(Integer.parseInt(value));
+			case "migrationCostAware":
+				return setMigrationCostAware(Boolean.parseBoolean(value));
+			default:
+				extra.setProperty(key, value);
+				return this;
+			}
+		}
+
+		public Builder setLowerThreshold(final double lowerThreshold) {
+			this.lowerThreshold = lowerThreshold;
+			return this;
+		}
+
+		public Builder setUpperThreshold(final double upperThreshold) {
+			this.upperThreshold = upperThreshold;
+			return this;
+		}
+
+		public Builder setMutationProb(final double mutationProb) {
+			this.mutationProb = mutationProb;
+			return this;
+		}
+
+		public Builder setSeed(final long seed) {
+			this.seed = seed;
+			return this;
+		}
+
+		public Builder setDoLocalSearch1(final boolean doLocalSearch1) {
+			this.doLocalSearch1 = doLocalSearch1;
+			return this;
+		}
+
+		public Builder setDoLocalSearch2(final boolean doLocalSearch2) {
+			this.doLocalSearch2 = doLocalSearch2;
+			return this;
+		}
+
+		public Builder setGaPopulationSize(final int gaPopulationSize) {
+			this.gaPopulationSize = gaPopulationSize;
+			return this;
+		}
+
+		public Builder setGaNrIterations(final int gaNrIterations) {
+			this.gaNrIterations = gaNrIterations;
+			return this;
+		}
+
+		public Builder setGaNrCrossovers(final int gaNrCrossovers) {
+			this.gaNrCrossovers = gaNrCrossovers;
+			return this;
+		}
+
+		public Builder setAbcPopulationSize(final int abcPopulationSize) {
+			this.abcPopulationSize = abcPopulationSize;
+			return this;
+		}
+
+		public Builder setAbcNrIterations(final int abcNrIterations) {
+			this.abcNrIterations = abcNrIterations;
+			return this;
+		}
+
+		public Builder setAbcLimitTrials(final int abcLimitTrials) {
+			this.abcLimitTrials = abcLimitTrials;
+			return this;
+		}
+
+		public Builder setPsoSwarmSize(final int psoSwarmSize) {
+			this.psoSwarmSize = psoSwarmSize;
+			return this;
+		}
+
+		public Builder setPsoNrIterations(final int psoNrIterations) {
+			this.psoNrIterations = psoNrIterations;
+			return this;
+		}
+
+		public Builder setPsoC1(final int psoC1) {
+			this.psoC1 = psoC1;
+			return this;
+		}
+
+		public Builder setPsoC2(final int psoC2) {
+			this.psoC2 = psoC2;
+			return this;
+		}
+
+		/**
+		 * @param parallelism
+		 *            the number of threads to be used by the consolidators
+		 * @return this builder
+		 * @throws IllegalArgumentException
+		 *             if less than one thread is requested
+		 */
+		public Builder setParallelism(final int parallelism) {
+			if (parallelism < 1) {
+				throw new IllegalArgumentException("At least one thread is needed for consolidation");
+			}
+			this.parallelism = parallelism;
+			return this;
+		}
+
+		/**
+		 * @param timeBudget
+		 *            the wall clock time limit of a round in ms (0 for none)
+		 * @return this builder
+		 * @throws IllegalArgumentException
+		 *             if the budget is negative
+		 */
+		public Builder setTimeBudget(final long timeBudget) {
+			if (timeBudget < 0) {
+				throw new IllegalArgumentException("The time budget cannot be negative");
+			}
+			this.timeBudget = timeBudget;
+			return this;
+		}
+
+		/**
+		 * @param evaluationBudget
+		 *            the number of evaluations allowed in a round (0 for no
+		 *            limit)
+		 * @return this builder
+		 * @throws IllegalArgumentException
+		 *             if the budget is negative
+		 */
+		public Builder setEvaluationBudget(final long evaluationBudget) {
+			if (evaluationBudget < 0) {
+				throw new IllegalArgumentException("The evaluation budget cannot be negative");
+			}
+			this.evaluationBudget = evaluationBudget;
+			return this;
+		}
+
+		/**
+		 * @param decisionLatency
+		 *            the number of ticks the consolidation decisions are
+		 *            applied after the snapshot (0 for synchronous operation)
+		 * @return this builder
+		 * @throws IllegalArgumentException
+		 *             if the latency is negative
+		 */
+		public Builder setDecisionLatency(final long decisionLatency) {
+			if (decisionLatency < 0) {
+				throw new IllegalArgumentException("The decision latency cannot be negative");
+			}
+			this.decisionLatency = decisionLatency;
+			return this;
+		}
+
+		/**
+		 * @param warmStartElites
+		 *            the number of solutions carried over to the next round (0
+		 *            for none)
+		 * @return this builder
+		 * @throws IllegalArgumentException
+		 *             if the number is negative
+		 */
+		public Builder setWarmStartElites(final int warmStartElites) {
+			if (warmStartElites < 0) {
+				throw new IllegalArgumentException("The number of warm start elites cannot be negative");
+			}
+			this.warmStartElites = warmStartElites;
+			return this;
+		}
+
+		/**
+		 * @param maxMigrationsPerPm
+		 *            the number of concurrent migrations of a PM (0 for no
+		 *            limit)
+		 * @return this builder
+		 * @throws IllegalArgumentException
+		 *             if the limit is negative
+		 */
+		public Builder setMaxMigrationsPerPm(final int maxMigrationsPerPm) {
+			if (maxMigrationsPerPm < 0) {
+				throw new IllegalArgumentException("The migration limit of the PMs cannot be negative");
+			}
+			this.maxMigrationsPerPm = maxMigrationsPerPm;
+			return this;
+		}
+
+		/**
+		 * @param maxMigrationsPerLink
+		 *            the number of concurrent migrations between two PMs (0
+		 *            for no limit)
+		 * @return this builder
+		 * @throws IllegalArgumentException
+		 *             if the limit is negative
+		 */
+		public Builder setMaxMigrationsPerLink(final int maxMigrationsPerLink) {
+			if (maxMigrationsPerLink < 0) {
+				throw new IllegalArgumentException("The migration limit of the links cannot be negative");
+			}
+			this.maxMigrationsPerLink = maxMigrationsPerLink;
+			return this;
+		}
+
+		public Builder setMigrationCostAware(final boolean migrationCostAware) {
+			this.migrationCostAware = migrationCostAware;
+			return this;
+		}
+
+		/**
+		 * Creates the immutable configuration out of the values collected so
+		 * far. The builder can be further used afterwards without affecting
+		 * the already built configurations.
+		 * 
+		 * @return the new configuration
+		 */
+		public ConsolidationConfig build() {
+			return new ConsolidationConfig(this);
+		}
+	}
+
+	/**
+	 * Copies the values of the builder
+	 * 
+	 * @param b
+	 *            the source of the values
+	 */
+	private ConsolidationConfig(final Builder b) {
+		lowerThreshold = b.lowerThreshold;
+		upperThreshold = b.upperThreshold;
+		mutationProb = b.mutationProb;
+		seed = b.seed;
+		doLocalSearch1 = b.doLocalSearch1;
+		doLocalSearch2 = b.doLocalSearch2;
+		gaPopulationSize = b.gaPopulationSize;
+		gaNrIterations = b.gaNrIterations;
+		gaNrCrossovers = b.gaNrCrossovers;
+		abcPopulationSize = b.abcPopulationSize;
+		abcNrIterations = b.abcNrIterations;
+		abcLimitTrials = b.abcLimitTrials;
+		psoSwarmSize = b.psoSwarmSize;
+		psoNrIterations = b.psoNrIterations;
+		psoC1 = b.psoC1;
+		psoC2 = b.psoC2;
+		parallelism = b.parallelism;
+		timeBudget = b.timeBudget;
+		evaluationBudget = b.evaluationBudget;
+		decisionLatency = b.decisionLatency;
+		warmStartElites = b.warmStartElites;
+		maxMigrationsPerPm = b.maxMigrationsPerPm;
+		maxMigrationsPerLink = b.maxMigrationsPerLink;
+		migrationCostAware = b.migrationCostAware;
+		props = new Properties();
+		props.putAll(b.extra);
+		props.setProperty("lowerThreshold", Double.toString(lowerThreshold));
+		props.setProperty("upperThreshold", Double.toString(upperThreshold));
+		props.setProperty("mutationProb", Double.toString(mutationProb));
+		props.setProperty("seed", Long.toString(seed));
+		props.setProperty("doLocalSearch1", Boolean.toString(doLocalSearch1));
+		props.setProperty("doLocalSearch2", Boolean.toString(doLocalSearch2));
+		props.setProperty("gaPopulationSize", Integer.toString(gaPopulationSize));
+		props.setProperty("gaNrIterations", Integer.toString(gaNrIterations));
+		props.setProperty("gaNrCrossovers", Integer.toString(gaNrCrossovers));
+		props.setProperty("abcPopulationSize", Integer.toString(abcPopulationSize));
+		props.setProperty("abcNrIterations", Integer.toString(abcNrIterations));
+		props.setProperty("abcLimitTrials", Integer.toString(abcLimitTrials));
+		props.setProperty("psoSwarmSize", Integer.toString(psoSwarmSize));
+		props.setProperty("psoNrIterations", Integer.toString(psoNrIterations));
+		props.setProperty("psoC1", Integer.toString(psoC1));
+		props.setProperty("psoC2", Integer.toString(psoC2));
+		props.setProperty("parallelism", Integer.toString(parallelism));
+		props.setProperty("timeBudget", Long.toString(timeBudget));
+		props.setProperty("evaluationBudget", Long.toString(evaluationBudget));
+		props.setProperty("decisionLatency", Long.toString(decisionLatency));
+		props.setProperty("warmStartElites", Integer.toString(warmStartElites));
+		props.setProperty("maxMigrationsPerPm", Integer.toString(maxMigrationsPerPm));
+		props.setProperty("maxMigrationsPerLink", Integer.toString(maxMigrationsPerLink));
+		props.setProperty("migrationCostAware", Boolean.toString(migrationCostAware));
+	}
+
+	/**
+	 * Reads a configuration from an XML properties file.
+	 * 
+	 * @param file
+	 *            the properties file to read
+	 * @return the configuration described in the file
+	 * @throws IOException
+	 *             if the file cannot be read or it is not a properties file
+	 */
+	public static ConsolidationConfig load(final File file) throws IOException {
+		final Properties props = new Properties();
+		final FileInputStream fileInput = new FileInputStream(file);
+		try {
+			props.loadFromXML(fileInput);
+		} finally {
+			fileInput.close();
+		}
+		return new Builder(props).build();
+	}
+
+	/**
+	 * Reads the configuration from the default properties file in the working
+	 * directory. If the file cannot be read, the default configuration is
+	 * used.
+	 * 
+	 * @return the configuration to be used by the consolidators that were not
+	 *         given one explicitly
+	 */
+	public static ConsolidationConfig loadDefault() {
+		try {
+			return load(new File(defaultFile));
+		} catch (IOException e) {
+			e.printStackTrace();
+			return new Builder().build();
+		}
+	}
+
+	/**
+	 * Allows the query of properties that are not represented by the typed
+	 * fields of this configuration (e.g., parameters of custom consolidators).
+	 * 
+	 * @param key
+	 *            the name of the property
+	 * @return the textual value of the property or <i>null</i> if it was not
+	 *         specified
+	 */
+	public String getProperty(final String key) {
+		return props.getProperty(key);
+	}
+
+	/**
+	 * Creates a copy of all properties in this configuration, e.g., to allow
+	 * its storage in a file.
+	 * 
+	 * @return a new properties object with all values of this configuration
+	 */
+	public Properties toProperties() {
+		final Properties copy = new Properties();
+		copy.putAll(props);
+		return copy;
+	}
+
+	/**
+	 * Creates a builder initialised with the values of this configuration so
+	 * a slightly altered configuration can be created.
+	 * 
+	 * @return the new builder
+	 */
+	public Builder toBuilder() {
+		return new Builder(props);
+	}
+
+	@Override
+	public String toString() {
+		return "ConsolidationConfig" + props;
+	}
+}
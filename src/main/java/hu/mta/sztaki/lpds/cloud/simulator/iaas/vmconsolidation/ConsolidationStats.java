@@ -0,0 +1,160 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor 
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *  
+ *  This file is part of DISSECT-CF.
+ *  
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *  
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects the convergence statistics of a single consolidation round of a
+ * model based consolidator: the best fitness reached after each iteration,
+ * the number of solutions evaluated and the wall clock time spent on the
+ * optimization. These allow trading the quality of the consolidation against
+ * the throughput of the simulation (see the time and evaluation budgets of
+ * ConsolidationConfig).
+ * 
+ * @author "agent, (c) 2026"
+ */
+public class ConsolidationStats {
+	/** The wall clock time when the round started (in ns) */
+	private final long startNanos = System.nanoTime();
+	/** The wall clock time when the round finished (in ns), -1 if running */
+	private long endNanos = -1;
+	/** The number of solutions evaluated so far */
+	private long evaluations;
+	/** The best fitness known after each iteration */
+	private final ArrayList<Fitness> bestPerIteration = new ArrayList<>();
+	/** Shows if the optimization was stopped by the budget */
+	private boolean budgetExhausted;
+	/** The number of members seeded from the previous round */
+	private int warmStarts;
+
+	/**
+	 * Records the evaluation of new solutions.
+	 * 
+	 * @param count
+	 *            the number of solutions evaluated
+	 */
+	void evaluated(final int count) {
+		evaluations += count;
+	}
+
+	/**
+	 * Records the end of an iteration of the optimization.
+	 * 
+	 * @param best
+	 *            the best fitness known at the end of the iteration (copied, so
+	 *            later changes to it are not reflected in the statistics)
+	 */
+	void iterationDone(final Fitness best) {
+		bestPerIteration.add(best.copy());
+	}
+
+	/**
+	 * Records the members of the population/swarm seeded from the solutions
+	 * of the previous round.
+	 * 
+	 * @param count
+	 *            the number of seeded members
+	 */
+	void warmStarted(final int count) {
+		warmStarts += count;
+	}
+
+	/**
+	 * Marks that the optimization was stopped early because the budget ran out.
+	 */
+	void budgetExhausted() {
+		budgetExhausted = true;
+	}
+
+	/**
+	 * Marks the end of the consolidation round.
+	 */
+	void finish() {
+		endNanos = System.nanoTime();
+	}
+
+	/**
+	 * @return the number of solutions evaluated in the round
+	 */
+	public long getEvaluations() {
+		return evaluations;
+	}
+
+	/**
+	 * @return the number of completed iterations
+	 */
+	public int getIterations() {
+		return bestPerIteration.size();
+	}
+
+	/**
+	 * @return the best fitness known after each completed iteration
+	 */
+	public List<Fitness> getBestPerIteration() {
+		return Collections.unmodifiableList(bestPerIteration);
+	}
+
+	/**
+	 * @return the wall clock time spent in the round so far (or in total if the
+	 *         round has finished) in nanoseconds
+	 */
+	public long getElapsedNanos() {
+		return (endNanos < 0 ? System.nanoTime() : endNanos) - startNanos;
+	}
+
+	/**
+	 * @return the average number of evaluations per second of wall clock time
+	 */
+	public double getEvaluationsPerSecond() {
+		final long elapsed = getElapsedNanos();
+		return elapsed == 0 ? 0 : evaluations * 1e9 / elapsed;
+	}
+
+	/**
+	 * @return the number of members seeded from the previous round
+	 */
+	public int getWarmStarts() {
+		return warmStarts;
+	}
+
+	/**
+	 * @return <i>true</i> if the optimization was stopped because its time or
+	 *         evaluation budget was used up
+	 */
+	public boolean isBudgetExhausted() {
+		return budgetExhausted;
+	}
+
+	@Override
+	public String toString() {
+		return "ConsolidationStats(iterations=" + getIterations() + ", evaluations=" + evaluations + ", time="
+				+ getElapsedNanos() / 1000000 + "ms, eval/s=" + (long) getEvaluationsPerSecond()
+				+ (budgetExhausted ? ", budget exhausted" : "") + (warmStarts > 0 ? ", warm starts=" + warmStarts : "")
+				+ ", best="
+				+ (bestPerIteration.isEmpty() ? "-" : bestPerIteration.get(bestPerIteration.size() - 1)) + ")";
+	}
+}
@@ -28,6 +28,21 @@ public class FirstFitConsolidator extends ModelBasedConsolidator {
 	public FirstFitConsolidator(IaaSService toConsolidate, long consFreq) {
 		super(toConsolidate, consFreq);
 	}
+
+	/**
+	 * The constructor for the First-Fit-Consolidator with an already loaded 
+	 * configuration.
+	 * 
+	 * @param toConsolidate
+	 * 			The IaaSService of the superclass Consolidator.
+	 * @param consFreq
+	 * 			This value determines, how often the consolidation should run.
+	 * @param config
+	 * 			The parameters of the consolidation (only the thresholds are used).
+	 */
+	public FirstFitConsolidator(IaaSService toConsolidate, long consFreq, ConsolidationConfig config) {
+		super(toConsolidate, consFreq, config);
+	}
 	
 	@Override
 	protected void processProps() {
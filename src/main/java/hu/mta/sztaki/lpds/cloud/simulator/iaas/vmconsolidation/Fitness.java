@@ -13,6 +13,16 @@ public class Fitness {
 	int nrActivePms;
 	/** Number of migrations necessary from original placement of the VMs */
 	int nrMigrations;
+	/**
+	 * Estimated amount of memory transferred by the migrations (in bytes), 0
+	 * unless the consolidation is migration cost aware
+	 */
+	long migrationCost;
+	/**
+	 * Estimated total duration of the migrations (in ticks), 0 unless the
+	 * consolidation is migration cost aware
+	 */
+	long migrationTime;
 
 	/**
 	 * Decides if this fitness value is better than the other. Note that
@@ -34,6 +44,17 @@ public class Fitness {
 			return true;
 		if(other.nrActivePms<this.nrActivePms)
 			return false;
+		//Then the plan transferring clearly (>1%) less memory is preferred.
+		if(this.migrationCost<other.migrationCost*0.99)
+			return true;
+		if(other.migrationCost<this.migrationCost*0.99)
+			return false;
+		//With similar amounts, the plan finishing its migrations clearly
+		//(>1%) sooner is preferred (e.g., it uses faster links).
+		if(this.migrationTime<other.migrationTime*0.99)
+			return true;
+		if(other.migrationTime<this.migrationTime*0.99)
+			return false;
 		//If there is no significant difference in the total overload, nor
 		//in the number of active PMs, then the number of migrations decides.
 		if(this.nrMigrations<other.nrMigrations)
@@ -41,8 +62,57 @@ public class Fitness {
 		return false;
 	}
 
+	/**
+	 * Creates an independent copy of this fitness value.
+	 * @return the copy
+	 */
+	Fitness copy() {
+		Fitness result=new Fitness();
+		result.totalOverAllocated=totalOverAllocated;
+		result.nrActivePms=nrActivePms;
+		result.nrMigrations=nrMigrations;
+		result.migrationCost=migrationCost;
+		result.migrationTime=migrationTime;
+		return result;
+	}
+
+	/**
+	 * @return the total amount of PM overloads
+	 */
+	public double getTotalOverAllocated() {
+		return totalOverAllocated;
+	}
+
+	/**
+	 * @return the number of PMs that are on
+	 */
+	public int getNrActivePms() {
+		return nrActivePms;
+	}
+
+	/**
+	 * @return the number of migrations necessary
+	 */
+	public int getNrMigrations() {
+		return nrMigrations;
+	}
+
+	/**
+	 * @return the estimated amount of memory the migrations transfer
+	 */
+	public long getMigrationCost() {
+		return migrationCost;
+	}
+
+	/**
+	 * @return the estimated total duration of the migrations
+	 */
+	public long getMigrationTime() {
+		return migrationTime;
+	}
+
 	public String toString() {
-		String result="("+totalOverAllocated+","+nrActivePms+","+nrMigrations+")";
+		String result="("+totalOverAllocated+","+nrActivePms+","+nrMigrations+(migrationCost>0?","+migrationCost+","+migrationTime:"")+")";
 		return result;
 	}
 }
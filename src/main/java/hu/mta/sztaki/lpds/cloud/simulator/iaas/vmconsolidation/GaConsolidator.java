@@ -1,7 +1,9 @@
 package hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation;
 
+import java.util.Arrays;
 import java.util.Random;
 import java.util.Vector;
+import java.util.function.IntConsumer;
 
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.IaaSService;
 
@@ -47,20 +49,40 @@ public class GaConsolidator extends SolutionBasedConsolidator {
 		population = new Vector<>();
 	}
 
+	/**
+	 * Creates GaConsolidator with empty population and the given configuration.
+	 */
+	public GaConsolidator(IaaSService toConsolidate, long consFreq, ConsolidationConfig config) {
+		super(toConsolidate, consFreq, config);
+		population = new Vector<>();
+	}
+
 	/**
 	 * Initializes the population with the previously determined solutions. After
 	 * that the same mapping as existing before consolidation has started is
-	 * put inside a solution.
+	 * put inside a solution. If warm starts are configured, the best solutions
+	 * of the previous round replace some of the random ones.
 	 */
 	private void initializePopulation() {
 		population.clear();
+		final Solution[] randoms = new Solution[randomCreations];
 		for (int i = 0; i < randomCreations; i++) {
-			Solution s = new Solution(bins, mutationProb);
-			s.fillRandomly();
-			population.add(s);
+			randoms[i] = newSolution(mutationProb);
 		}
+		final int warm = warmStarts(randomCreations);
+		forEachMember(randomCreations, new IntConsumer() {
+			@Override
+			public void accept(int i) {
+				if (i < warm) {
+					warmStart(randoms[i], i);
+				} else {
+					randoms[i].fillRandomly();
+				}
+			}
+		});
+		population.addAll(Arrays.asList(randoms));
 		if(firstFitCreations != 0) {
-			Solution s0 = new Solution(bins, mutationProb);
+			Solution s0 = newSolution(mutationProb);
 			s0.createFirstFitSolution();
 			population.add(s0);
 			for(int i = 1; i < firstFitCreations; i++) {
@@ -69,7 +91,7 @@ public class GaConsolidator extends SolutionBasedConsolidator {
 			}
 		}
 		if(unchangedCreations != 0) {
-			Solution s0 = new Solution(bins, mutationProb);
+			Solution s0 = newSolution(mutationProb);
 			s0.createUnchangedSolution();
 			population.add(s0);
 			for(int i = 1; i < unchangedCreations; i++) {
@@ -109,8 +131,17 @@ public class GaConsolidator extends SolutionBasedConsolidator {
 	 * mapping corresponding to the best found solution.
 	 */
 	private void implementBestSolution() {
-		// Determine "best" solution (i.e. a solution, compared to which there is no
-		// better one)
+		findBestSolution();
+		// Implement solution in the model
+		bestSolution.implement();
+		adaptPmStates();
+	}
+
+	/**
+	 * Determine "best" solution (i.e. a solution, compared to which there is no
+	 * better one) in the current population.
+	 */
+	private void findBestSolution() {
 		bestSolution = population.get(0);
 		bestFitness = bestSolution.evaluate();
 		for (int i = 1; i < populationSize; i++) {
@@ -120,43 +151,53 @@ public class GaConsolidator extends SolutionBasedConsolidator {
 				bestFitness = fitness;
 			}
 		}
-		// Implement solution in the model
-		bestSolution.implement();
-		adaptPmStates();
 	}
 
 	/**
-	 * Reads the properties file and sets the constant values for consolidation.
+	 * Takes over the constant values for consolidation from the configuration.
 	 */
 	@Override
 	protected void processProps() {
 		super.processProps();
 
-		this.populationSize = Integer.parseInt(props.getProperty("gaPopulationSize"));
-		this.nrIterations = Integer.parseInt(props.getProperty("gaNrIterations"));
-		this.nrCrossovers = Integer.parseInt(props.getProperty("gaNrCrossovers"));
-		this.random = new Random(Long.parseLong(props.getProperty("seed")));
+		this.populationSize = config.gaPopulationSize;
+		this.nrIterations = config.gaNrIterations;
+		this.nrCrossovers = config.gaNrCrossovers;
+		this.random = new Random(config.seed);
 		
 		determineCreations(populationSize);
 	}
 
 	/**
-	 * Perform the genetic algorithm to optimize the mapping of VMs to PMs.
+	 * Perform the genetic algorithm to optimize the mapping of VMs to PMs. The
+	 * iterations stop early if the population does not improve or the budget
+	 * of the round is used up, the best individual is implemented in both
+	 * cases.
 	 */
 	@Override
 	protected void optimize() {
 		//System.err.println("GA nrIterations="+nrIterations+", populationSize="+populationSize+", nrCrossovers="+nrCrossovers);
 		initializePopulation();
+		stats.evaluated(populationSize);
 		// Logger.getGlobal().info("Population after initialization:
 		// "+populationToString());
 		for (int iter = 0; iter < nrIterations; iter++) {
+			if (budgetExhausted())
+				break;
 			improved=false;
 			// From each individual in the population, create an offspring using
 			// mutation. If the child is better than its parent, it replaces it
 			// in the population, otherwise it is discarded.
+			final Solution[] children = new Solution[populationSize];
+			forEachMember(populationSize, new IntConsumer() {
+				@Override
+				public void accept(int i) {
+					children[i] = population.get(i).mutate();
+				}
+			});
 			for (int i = 0; i < populationSize; i++) {
 				Solution parent = population.get(i);
-				Solution child = parent.mutate();
+				Solution child = children[i];
 				if (child.evaluate().isBetterThan(parent.evaluate())) {
 					population.set(i, child);
 					improved=true;
@@ -166,11 +207,15 @@ public class GaConsolidator extends SolutionBasedConsolidator {
 			for (int i = 0; i < nrCrossovers; i++) {
 				crossover();
 			}
+			stats.evaluated(populationSize + nrCrossovers);
+			findBestSolution();
+			stats.iterationDone(bestFitness);
 //			 Logger.getGlobal().info("Population after iteration "+iter+":"+populationToString());
 			//System.err.println("GA iteration carried out: "+iter);
 			if(!improved)
 				break;
 		}
+		rememberElites(population);
 		implementBestSolution();
 	}
 
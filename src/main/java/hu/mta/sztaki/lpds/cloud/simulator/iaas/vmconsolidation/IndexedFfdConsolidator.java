@@ -0,0 +1,311 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor 
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *  
+ *  This file is part of DISSECT-CF.
+ *  
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *  
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Logger;
+
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.IaaSService;
+
+/**
+ * A first fit decreasing consolidator meant for very large clouds. The free
+ * capacities of the PMs (below their upper thresholds) are kept in
+ * {@link PmCapacityIndex}es ordered by the free processing power and then by
+ * the free memory. The indexes also track the largest free memory of their
+ * subtrees, thus the tightest fitting PM for a VM is found with an expected
+ * logarithmic query instead of a scan through all PMs, even if memory is the
+ * scarce resource.
+ * 
+ * A round works in three steps:
+ * <ol>
+ * <li>the overloaded PMs are relieved by removing their largest VMs until they
+ * are not overloaded anymore,</li>
+ * <li>the removed VMs are placed in decreasing order of their size, on a PM
+ * already hosting VMs if possible, on an empty one otherwise,</li>
+ * <li>the PMs are emptied (the least loaded first) if all their VMs fit on
+ * the other non-empty PMs.</li>
+ * </ol>
+ * VMs that do not fit anywhere stay on their original PM.
+ * 
+ * @author "agent, (c) 2026"
+ */
+public class IndexedFfdConsolidator extends ModelBasedConsolidator {
+	/** The dense representation of the current model */
+	private Solution.Problem problem;
+	/** The index of the host of each VM */
+	private int[] hosts;
+	/** The VMs hosted by each PM */
+	private List<List<Integer>> hosted;
+	/** The processing power left below the upper threshold of each PM */
+	private double[] freeProc;
+	/** The memory left below the upper threshold of each PM */
+	private double[] freeMem;
+	/** The PMs hosting at least one VM, ordered by their free capacities */
+	private PmCapacityIndex loadedPms;
+	/** The empty PMs, ordered by their free capacities */
+	private PmCapacityIndex emptyPms;
+
+	/**
+	 * Creates the consolidator with the default configuration.
+	 * 
+	 * @param toConsolidate
+	 *            The IaaSService of the superclass Consolidator.
+	 * @param consFreq
+	 *            This value determines, how often the consolidation should run.
+	 */
+	public IndexedFfdConsolidator(IaaSService toConsolidate, long consFreq) {
+		super(toConsolidate, consFreq);
+	}
+
+	/**
+	 * Creates the consolidator with an already loaded configuration.
+	 * 
+	 * @param toConsolidate
+	 *            The IaaSService of the superclass Consolidator.
+	 * @param consFreq
+	 *            This value determines, how often the consolidation should run.
+	 * @param config
+	 *            The parameters of the consolidation (only the thresholds are
+	 *            used).
+	 */
+	public IndexedFfdConsolidator(IaaSService toConsolidate, long consFreq, ConsolidationConfig config) {
+		super(toConsolidate, consFreq, config);
+	}
+
+	@Override
+	protected void processProps() {
+		// only the thresholds are used, they are taken over by the superclass
+	}
+
+	/**
+	 * Relieves the overloaded PMs and empties the underloaded ones, then
+	 * updates the model according to the new placement.
+	 */
+	@Override
+	protected void optimize() {
+		buildIndex();
+		final List<Integer> evicted = relieveOverloadedPms();
+		for (int vm : evicted) {
+			if (!place(vm)) {
+				// stays where it was, overloading its host
+				put(vm, problem.initialHosts[vm]);
+			}
+		}
+		emptyLightPms();
+		int migrations = 0;
+		for (int vm = 0; vm < hosts.length; vm++) {
+			final ModelVM item = problem.vms[vm];
+			final ModelPM target = problem.pms[hosts[vm]];
+			if (item.gethostPM() != target) {
+				item.gethostPM().migrateVM(item, target);
+				migrations++;
+			}
+		}
+		stats.evaluated(1);
+		adaptPmStates();
+		Logger.getGlobal().info("Indexed FFD planned " + migrations + " migrations");
+	}
+
+	/**
+	 * Creates the dense representation of the model and fills the indexes
+	 * with the current placement.
+	 */
+	private void buildIndex() {
+		problem = new Solution.Problem(bins);
+		final int pmCount = problem.pms.length;
+		hosts = new int[problem.vms.length];
+		hosted = new ArrayList<>(pmCount);
+		freeProc = new double[pmCount];
+		freeMem = new double[pmCount];
+		for (int pm = 0; pm < pmCount; pm++) {
+			hosted.add(new ArrayList<Integer>());
+			freeProc[pm] = problem.procUpper[pm];
+			freeMem[pm] = problem.memUpper[pm];
+		}
+		for (int vm = 0; vm < hosts.length; vm++) {
+			final int pm = problem.initialHosts[vm];
+			hosts[vm] = pm;
+			hosted.get(pm).add(vm);
+			freeProc[pm] -= problem.vmProc[vm];
+			freeMem[pm] -= problem.vmMem[vm];
+		}
+		loadedPms = new PmCapacityIndex(freeProc, freeMem);
+		emptyPms = new PmCapacityIndex(freeProc, freeMem);
+		for (int pm = 0; pm < pmCount; pm++) {
+			(hosted.get(pm).isEmpty() ? emptyPms : loadedPms).add(pm);
+		}
+	}
+
+	/**
+	 * Orders VMs by decreasing processing power, then by decreasing memory.
+	 */
+	private final Comparator<Integer> bySizeDecreasing = new Comparator<Integer>() {
+		@Override
+		public int compare(Integer vm1, Integer vm2) {
+			final int c = Double.compare(problem.vmProc[vm2], problem.vmProc[vm1]);
+			return c == 0 ? Long.compare(problem.vmMem[vm2], problem.vmMem[vm1]) : c;
+		}
+	};
+
+	private boolean isOverloaded(int pm) {
+		return freeProc[pm] < 0 || freeMem[pm] < 0;
+	}
+
+	/**
+	 * Removes a VM from its host, keeping the indexes up to date.
+	 */
+	private void take(int vm) {
+		final int pm = hosts[vm];
+		indexOf(pm).remove(pm);
+		hosted.get(pm).remove(Integer.valueOf(vm));
+		freeProc[pm] += problem.vmProc[vm];
+		freeMem[pm] += problem.vmMem[vm];
+		hosts[vm] = -1;
+		indexOf(pm).add(pm);
+	}
+
+	/**
+	 * Puts a VM on a PM, keeping the indexes up to date.
+	 */
+	private void put(int vm, int pm) {
+		indexOf(pm).remove(pm);
+		hosted.get(pm).add(vm);
+		freeProc[pm] -= problem.vmProc[vm];
+		freeMem[pm] -= problem.vmMem[vm];
+		hosts[vm] = pm;
+		indexOf(pm).add(pm);
+	}
+
+	private PmCapacityIndex indexOf(int pm) {
+		return hosted.get(pm).isEmpty() ? emptyPms : loadedPms;
+	}
+
+	/**
+	 * Finds the PM with the least free processing power that can still take
+	 * the VM.
+	 * 
+	 * @param index
+	 *            the PMs to search
+	 * @param vm
+	 *            the VM to place
+	 * @return the tightest fitting PM or -1 if the VM fits nowhere
+	 */
+	private int tightestFit(PmCapacityIndex index, int vm) {
+		return index.firstFit(problem.vmProc[vm], problem.vmMem[vm]);
+	}
+
+	/**
+	 * Places the VM on the tightest fitting non-empty PM, or on an empty one
+	 * if none of them can take it.
+	 * 
+	 * @return <i>true</i> if the VM was placed
+	 */
+	private boolean place(int vm) {
+		int pm = tightestFit(loadedPms, vm);
+		if (pm == -1) {
+			pm = tightestFit(emptyPms, vm);
+		}
+		if (pm == -1) {
+			return false;
+		}
+		put(vm, pm);
+		return true;
+	}
+
+	/**
+	 * Removes the largest VMs of the overloaded PMs until they are not
+	 * overloaded anymore.
+	 * 
+	 * @return the removed VMs in decreasing order of their size
+	 */
+	private List<Integer> relieveOverloadedPms() {
+		final List<Integer> evicted = new ArrayList<>();
+		for (int pm = 0; pm < hosted.size(); pm++) {
+			if (!isOverloaded(pm)) {
+				continue;
+			}
+			final Integer[] vms = hosted.get(pm).toArray(new Integer[0]);
+			Arrays.sort(vms, bySizeDecreasing);
+			for (int i = 0; i < vms.length && isOverloaded(pm); i++) {
+				take(vms[i]);
+				evicted.add(vms[i]);
+			}
+		}
+		evicted.sort(bySizeDecreasing);
+		return evicted;
+	}
+
+	/**
+	 * Empties the PMs, the least loaded first. A PM is only emptied if all of
+	 * its VMs fit on the other non-empty PMs. PMs that already received VMs in
+	 * this round are not emptied, so VMs are not moved back and forth.
+	 */
+	private void emptyLightPms() {
+		final List<Integer> candidates = loadedPms.toList();
+		candidates.sort(new Comparator<Integer>() {
+			@Override
+			public int compare(Integer pm1, Integer pm2) {
+				return Double.compare(problem.procUpper[pm1] - freeProc[pm1],
+						problem.procUpper[pm2] - freeProc[pm2]);
+			}
+		});
+		final int[] received = new int[hosted.size()];
+		for (int pm : candidates) {
+			if (received[pm] > 0 || isOverloaded(pm)) {
+				continue;
+			}
+			final Integer[] vms = hosted.get(pm).toArray(new Integer[0]);
+			Arrays.sort(vms, bySizeDecreasing);
+			// the PM cannot be the target of its own VMs
+			loadedPms.remove(pm);
+			int moved = 0;
+			int target;
+			while (moved < vms.length && (target = tightestFit(loadedPms, vms[moved])) != -1) {
+				hosted.get(pm).remove(vms[moved]);
+				freeProc[pm] += problem.vmProc[vms[moved]];
+				freeMem[pm] += problem.vmMem[vms[moved]];
+				put(vms[moved], target);
+				received[target]++;
+				moved++;
+			}
+			if (moved < vms.length) {
+				// not all VMs fit elsewhere, the PM keeps them all
+				for (int i = 0; i < moved; i++) {
+					received[hosts[vms[i]]]--;
+					take(vms[i]);
+					hosted.get(pm).add(vms[i]);
+					freeProc[pm] -= problem.vmProc[vms[i]];
+					freeMem[pm] -= problem.vmMem[vms[i]];
+					hosts[vms[i]] = pm;
+				}
+				loadedPms.add(pm);
+			} else {
+				emptyPms.add(pm);
+			}
+		}
+	}
+}
@@ -1,6 +1,5 @@
 package hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation;
 
-import java.util.List;
 //import java.util.logging.Logger;
 import java.util.logging.Logger;
 
@@ -24,6 +23,9 @@ public class MigrationAction extends Action implements VirtualMachine.StateChang
 	//Reference to the model of the VM, which needs be migrated
 	ModelVM vm;
 
+	//Limits the concurrent migrations, null if there is no limit
+	MigrationThrottle throttle;
+
 	/**
 	 * Constructor for an action which shall migrate a VM inside the simulator.
 	 * @param id The ID of this action.
@@ -32,10 +34,24 @@ public class MigrationAction extends Action implements VirtualMachine.StateChang
 	 * @param vm The reference to the VM which shall be migrated.
 	 */
 	public MigrationAction(int id, ModelPM source, ModelPM target, ModelVM vm) {
+		this(id, source, target, vm, null);
+	}
+
+	/**
+	 * Constructor for a migration that has to wait for a free slot before it
+	 * starts.
+	 * @param id The ID of this action.
+	 * @param source The PM which is currently hosting the VM.
+	 * @param target The PM which shall host this VM after migration.
+	 * @param vm The reference to the VM which shall be migrated.
+	 * @param throttle The limits of the concurrent migrations, null if there are none.
+	 */
+	public MigrationAction(int id, ModelPM source, ModelPM target, ModelVM vm, MigrationThrottle throttle) {
 		super(id);
 		this.source = source;
 		this.target = target;
 		this.vm = vm;
+		this.throttle = throttle;
 	}
 
 	/**
@@ -71,22 +87,16 @@ public class MigrationAction extends Action implements VirtualMachine.StateChang
 	 * TODO: this needs improvement, as it can currently lead to deadlocks.
 	 */
 	@Override
-	public void determinePredecessors(List<Action> actions) {
+	public void determinePredecessors(ActionIndex index) {
 		//looking for actions where a PM gets started, that is the target of this migration
-		for(Action action : actions) {
-			if(action.getType().equals(Type.START)){
-				if((((StartAction) action).getPmToStart()).equals(getTarget())){
-					this.addPredecessor(action);
-				}
-			}
-			// If two PMs would like to migrate one VM to each other,
-			// there could be a loop. Not solved yet.
-			if(action.getType().equals(Type.MIGRATION)){
-				if((((MigrationAction) action).getSource()).equals(this.getTarget())){
-					this.addPredecessor(action);
-				}
-			}
-		}	
+		for(Action action : index.getStartsOf(getTarget())) {
+			this.addPredecessor(action);
+		}
+		// If two PMs would like to migrate one VM to each other,
+		// there could be a loop. Not solved yet.
+		for(Action action : index.getMigrationsFrom(getTarget())) {
+			this.addPredecessor(action);
+		}
 	}
 
 	@Override
@@ -100,36 +110,57 @@ public class MigrationAction extends Action implements VirtualMachine.StateChang
 	}
 
 	/**
-	 * Method for doing the migration inside the simulator.
+	 * Method for doing the migration inside the simulator. If there is no free
+	 * slot for the migration, it is postponed by the throttle.
 	 */
 	@Override
 	public void execute() {
+		if(throttle != null && !throttle.admit(this))
+			return;
 		Logger.getGlobal().info("Executing at "+Timed.getFireCount()+": "+toString()+", hash="+Integer.toHexString(System.identityHashCode(this)));
 		if(! source.getPM().publicVms.contains(vm.getVM())) {
 			Logger.getGlobal().info("VM is not on the source PM anymore -> there is nothing to do");
-			finished();
+			completed();
 		} else if(vm.getVM().getMemSize()>target.getPM().freeCapacities.getRequiredMemory()
 		|| vm.getVM().getPerTickProcessingPower()>target.getPM().freeCapacities.getTotalProcessingPower()) {
 			Logger.getGlobal().info("Target PM does not have sufficient capacity anymore -> there is nothing to do");
-			finished();
+			completed();
 		} else if(vm.getVM().getState()!=VirtualMachine.State.RUNNING && vm.getVM().getState()!=VirtualMachine.State.SUSPENDED) {
 			Logger.getGlobal().info("State of the VM inappropriate for migration ("+vm.getVM().getState()+") -> there is nothing to do");
-			finished();
+			completed();
 		} else if(!(target.getPM().isRunning())) {
 			Logger.getGlobal().info("Target PM not running -> there is nothing to do");
-			finished();
+			completed();
 		} else {
 			vm.getVM().subscribeStateChange(this);		// observe the VM which shall be migrated
 			try {
 				source.getPM().migrateVM(vm.getVM(), target.getPM());
 			} catch (VMManagementException e) {
 				e.printStackTrace();
+				releaseSlot();
 			} catch (NetworkException e) { 
 				e.printStackTrace();
+				releaseSlot();
 			}
 		}
 	}
 
+	/**
+	 * Lets the waiting migrations use the slot of this one.
+	 */
+	private void releaseSlot() {
+		if(throttle != null)
+			throttle.release(this);
+	}
+
+	/**
+	 * Called when the migration is over (or turned out to be unnecessary).
+	 */
+	private void completed() {
+		releaseSlot();
+		finished();
+	}
+
 	/**
 	 * The stateChanged-logic, if the VM changes its state to RUNNING after migrating,
 	 * then it do not has to be observed any longer.
@@ -140,7 +171,7 @@ public class MigrationAction extends Action implements VirtualMachine.StateChang
 			vm.unsubscribeStateChange(this);
 			//Logger.getGlobal().info("Migration action finished");
 			//Logger.getGlobal().info("Finished at "+Timed.getFireCount()+": "+toString()+", hash="+Integer.toHexString(System.identityHashCode(this)));
-			finished();
+			completed();
 		}
 	}
 
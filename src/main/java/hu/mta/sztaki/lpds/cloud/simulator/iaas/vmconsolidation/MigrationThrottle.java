@@ -0,0 +1,184 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor 
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *  
+ *  This file is part of DISSECT-CF.
+ *  
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *  
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.logging.Logger;
+
+import hu.mta.sztaki.lpds.cloud.simulator.Timed;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.PhysicalMachine;
+
+/**
+ * Limits the number of live migrations running at the same time on a PM
+ * (either as their source or as their target) and on a network link (i.e.,
+ * between the same source and target PM). Migrations that would exceed the
+ * limits are postponed until a running migration completes. The migrations
+ * are started in the order they became ready.
+ * 
+ * A single throttle is used by all rounds of a consolidator, as the
+ * migrations of a round could still run when the next one starts.
+ * 
+ * @author "agent, (c) 2026"
+ */
+public class MigrationThrottle {
+	/** The maximum number of concurrent migrations of a PM, 0 if unlimited */
+	public final int perPm;
+	/** The maximum number of concurrent migrations of a link, 0 if unlimited */
+	public final int perLink;
+	/** The number of running migrations of each PM */
+	private final IdentityHashMap<PhysicalMachine, Integer> pmLoad = new IdentityHashMap<>();
+	/** The number of running migrations of each link: source -> target -> count */
+	private final IdentityHashMap<PhysicalMachine, IdentityHashMap<PhysicalMachine, Integer>> linkLoad = new IdentityHashMap<>();
+	/** The migrations waiting for a free slot */
+	private final ArrayDeque<MigrationAction> waiting = new ArrayDeque<>();
+	/** Shows if the waiting migrations are being started */
+	private boolean draining = false;
+
+	/**
+	 * Creates a throttle with the given limits.
+	 * 
+	 * @param perPm
+	 *            the maximum number of concurrent migrations of a PM (0 for
+	 *            no limit)
+	 * @param perLink
+	 *            the maximum number of concurrent migrations between two PMs
+	 *            (0 for no limit)
+	 */
+	public MigrationThrottle(final int perPm, final int perLink) {
+		if (perPm < 0 || perLink < 0) {
+			throw new IllegalArgumentException("The migration limits cannot be negative");
+		}
+		this.perPm = perPm;
+		this.perLink = perLink;
+	}
+
+	private static int count(IdentityHashMap<PhysicalMachine, Integer> loads, PhysicalMachine pm) {
+		final Integer c = loads.get(pm);
+		return c == null ? 0 : c;
+	}
+
+	private static void change(IdentityHashMap<PhysicalMachine, Integer> loads, PhysicalMachine pm, int delta) {
+		final int c = count(loads, pm) + delta;
+		if (c == 0) {
+			loads.remove(pm);
+		} else {
+			loads.put(pm, c);
+		}
+	}
+
+	private IdentityHashMap<PhysicalMachine, Integer> linksFrom(PhysicalMachine source) {
+		IdentityHashMap<PhysicalMachine, Integer> links = linkLoad.get(source);
+		if (links == null) {
+			links = new IdentityHashMap<>();
+			linkLoad.put(source, links);
+		}
+		return links;
+	}
+
+	/**
+	 * Checks if the migration would fit in the limits.
+	 */
+	private boolean fits(MigrationAction a) {
+		final PhysicalMachine source = a.getSource().getPM();
+		final PhysicalMachine target = a.getTarget().getPM();
+		if (perPm > 0 && (count(pmLoad, source) >= perPm || count(pmLoad, target) >= perPm)) {
+			return false;
+		}
+		if (perLink > 0) {
+			final IdentityHashMap<PhysicalMachine, Integer> links = linkLoad.get(source);
+			return links == null || count(links, target) < perLink;
+		}
+		return true;
+	}
+
+	private void change(MigrationAction a, int delta) {
+		final PhysicalMachine source = a.getSource().getPM();
+		final PhysicalMachine target = a.getTarget().getPM();
+		change(pmLoad, source, delta);
+		change(pmLoad, target, delta);
+		final IdentityHashMap<PhysicalMachine, Integer> links = linksFrom(source);
+		change(links, target, delta);
+		if (links.isEmpty()) {
+			linkLoad.remove(source);
+		}
+	}
+
+	/**
+	 * Reserves a slot for the migration if the limits allow, otherwise the
+	 * migration is queued and executed again once a slot frees up.
+	 * 
+	 * @param a
+	 *            the migration about to start
+	 * @return <i>true</i> if the migration can start now
+	 */
+	boolean admit(MigrationAction a) {
+		if (!fits(a)) {
+			Logger.getGlobal().info("Postponed at " + Timed.getFireCount() + ": " + a);
+			waiting.add(a);
+			return false;
+		}
+		change(a, 1);
+		return true;
+	}
+
+	/**
+	 * Frees up the slot of a migration admitted earlier and starts the
+	 * waiting migrations that fit into the limits now.
+	 * 
+	 * @param a
+	 *            the migration that completed (or did not start at all)
+	 */
+	void release(MigrationAction a) {
+		change(a, -1);
+		if (draining) {
+			// the outer release will see the freed up slot as well
+			return;
+		}
+		draining = true;
+		boolean started;
+		do {
+			started = false;
+			final Iterator<MigrationAction> it = waiting.iterator();
+			while (it.hasNext()) {
+				final MigrationAction next = it.next();
+				if (fits(next)) {
+					it.remove();
+					next.execute();
+					started = true;
+					break;
+				}
+			}
+		} while (started);
+		draining = false;
+	}
+
+	/**
+	 * @return the number of migrations waiting for a free slot
+	 */
+	public int getWaiting() {
+		return waiting.size();
+	}
+}
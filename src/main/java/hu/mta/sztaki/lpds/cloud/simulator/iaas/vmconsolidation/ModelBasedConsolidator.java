@@ -1,16 +1,21 @@
 package hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.InvalidPropertiesFormatException;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Logger;
 
+import hu.mta.sztaki.lpds.cloud.simulator.DeferredEvent;
 import hu.mta.sztaki.lpds.cloud.simulator.Timed;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.IaaSService;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.MigrationCost;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.PhysicalMachine;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.VirtualMachine;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.consolidation.Consolidator;
@@ -32,6 +37,10 @@ import hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation.ModelPM.State;
  *         Classes. Afterwards a graph is created with an ordered list of all actions.
  *         At last the graph is being executed and the changes are made to the non-
  *         abstract IaaS-System.
+ *         
+ *         If the configuration specifies a decision latency, the optimization is
+ *         done on a background thread while the simulation proceeds. The
+ *         actions are then derived and applied once the latency has passed.
  */
 public abstract class ModelBasedConsolidator extends Consolidator {
 	
@@ -42,14 +51,33 @@ public abstract class ModelBasedConsolidator extends Consolidator {
 	protected List<ModelVM> items;
 	protected double lowerThreshold, upperThreshold;
 
-	protected Properties props;
+	/** The parameters of the consolidation, shared with the solutions */
+	protected final ConsolidationConfig config;
+	/**
+	 * The statistics of the current (or the last) consolidation round, only to
+	 * be used by the optimization itself
+	 */
+	protected ConsolidationStats stats;
+	/**
+	 * The statistics of the last completed round. With a decision latency,
+	 * they are only published once the background optimization is over.
+	 */
+	private ConsolidationStats publishedStats;
+
+	/** The background thread optimizing the model (only with decision latency) */
+	private ExecutorService asyncExecutor;
+	/** The optimization of the model that is not applied yet */
+	private Future<?> pendingRound;
+	/** Limits the concurrent migrations, null if there are no limits */
+	private final MigrationThrottle throttle;
 	
 	public static boolean doingConsolidation = false;
 
 	/**
-	 * The constructor for VM consolidation. It expects an IaaSService, a value for
-	 * the upper threshold, a value for the lower threshold and a variable which
-	 * says how often the consolidation shall occur.
+	 * The constructor for VM consolidation. It expects an IaaSService and a
+	 * variable which says how often the consolidation shall occur. The rest of
+	 * the parameters are read from the default properties file (see
+	 * ConsolidationConfig.loadDefault()).
 	 * 
 	 * @param toConsolidate
 	 *            The used IaaSService.
@@ -57,19 +85,34 @@ public abstract class ModelBasedConsolidator extends Consolidator {
 	 *            This value determines, how often the consolidation should run.
 	 */
 	public ModelBasedConsolidator(IaaSService toConsolidate, long consFreq) {
+		this(toConsolidate, consFreq, ConsolidationConfig.loadDefault());
+	}
+
+	/**
+	 * The constructor for VM consolidation with an already loaded
+	 * configuration (e.g., one that is shared amongst several consolidators or
+	 * one that was built programmatically).
+	 * 
+	 * @param toConsolidate
+	 *            The used IaaSService.
+	 * @param consFreq
+	 *            This value determines, how often the consolidation should run.
+	 * @param config
+	 *            The parameters of the consolidation (e.g., the thresholds).
+	 */
+	public ModelBasedConsolidator(IaaSService toConsolidate, long consFreq, ConsolidationConfig config) {
 		super(toConsolidate, consFreq);
 		
 		this.toConsolidate = toConsolidate;
+		this.config = config;
+		throttle = config.maxMigrationsPerPm > 0 || config.maxMigrationsPerLink > 0
+				? new MigrationThrottle(config.maxMigrationsPerPm, config.maxMigrationsPerLink) : null;
 
 		bins = new ArrayList<>();
 		items = new ArrayList<>();
-		try {
-			loadProps();
-		} catch (InvalidPropertiesFormatException e) {
-			e.printStackTrace();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		lowerThreshold = config.lowerThreshold;
+		upperThreshold = config.upperThreshold;
+		processProps();
 	}
 
 	/**
@@ -81,44 +124,202 @@ public abstract class ModelBasedConsolidator extends Consolidator {
 	 * created with an ordered list of all actions. At last the graph is being 
 	 * executed and the changes are made to the non-abstract IaaS-System.
 	 * 
+	 * With a decision latency, the model is optimized in the background and
+	 * the actions are applied decisionLatency ticks later. No new round is
+	 * started until the pending one is applied.
+	 * 
 	 * @param pmList
 	 *            All PMs which are currently registered in the IaaS service.
 	 */
 	protected void doConsolidation(PhysicalMachine[] pmList) {
+		if (config.decisionLatency > 0) {
+			if (pendingRound == null) {
+				startAsyncRound(pmList);
+			}
+			return;
+		}
 		doingConsolidation = true;
 		instantiate(pmList);
+		stats = new ConsolidationStats();
 		optimize();
-		Logger.getGlobal().info("Optimized model: " + toString());
+		stats.finish();
+		publishedStats = stats;
+		applyModel();
+		doingConsolidation = false;
+	}
+
+	/**
+	 * Takes the snapshot of the IaaS and hands it over to the background
+	 * thread for optimization. The result is applied by a deferred event once
+	 * the decision latency has passed; if the optimization is still running
+	 * by then, the simulation waits for it.
+	 * 
+	 * @param pmList
+	 *            All PMs which are currently registered in the IaaS service.
+	 */
+	private void startAsyncRound(PhysicalMachine[] pmList) {
+		instantiate(pmList);
+		final ConsolidationStats roundStats = new ConsolidationStats();
+		stats = roundStats;
+		if (asyncExecutor == null) {
+			asyncExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "Consolidation-" + ModelBasedConsolidator.this.getClass().getSimpleName());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		pendingRound = asyncExecutor.submit(new Runnable() {
+			@Override
+			public void run() {
+				optimize();
+				roundStats.finish();
+			}
+		});
+		new DeferredEvent(config.decisionLatency) {
+			@Override
+			protected void eventAction() {
+				try {
+					pendingRound.get();
+				} catch (InterruptedException | ExecutionException e) {
+					throw new IllegalStateException("The background consolidation has failed", e);
+				} finally {
+					pendingRound = null;
+				}
+				// get() ensures the changes of the background thread are visible
+				publishedStats = roundStats;
+				doingConsolidation = true;
+				applyModel();
+				doingConsolidation = false;
+			}
+		};
+	}
+
+	/**
+	 * Stops the background thread used for the rounds with a decision
+	 * latency. A round already pending is still completed and applied. If the
+	 * consolidator starts another round afterwards, a new thread is created
+	 * for it.
+	 */
+	public void shutdown() {
+		if (asyncExecutor != null) {
+			asyncExecutor.shutdown();
+			asyncExecutor = null;
+		}
+	}
+
+	/**
+	 * Determines whether there is an optimized model waiting to be applied.
+	 * 
+	 * @return <i>true</i> if a background round is in progress
+	 */
+	public boolean isRoundPending() {
+		return pendingRound != null;
+	}
+
+	/**
+	 * Turns the optimized model into actions and executes them on the IaaS.
+	 */
+	private void applyModel() {
+		Logger.getGlobal().info("Optimized model: " + toString() + " " + stats);
 		List<Action> actions = modelDiff();
+		if (config.decisionLatency > 0) {
+			dropStaleActions(actions);
+		}
 		Logger.getGlobal().info(actionsToString(actions));
 		// Logger.getGlobal().info("Number of actions: "+actions.size());
 		createGraph(actions);
 		// printGraph(actions);
 		performActions(actions);
-		doingConsolidation = false;
 	}
 
-	public static void clearStatics() {
-		SimpleConsolidator.migrationCount = 0;
+	/**
+	 * The IaaS could have changed since the snapshot was taken. Removes the
+	 * actions on PMs that were deregistered since and the migrations of VMs
+	 * that left their original PM in the meantime. The remaining actions are
+	 * still checked against the IaaS when they are executed.
+	 * 
+	 * @param actions
+	 *            The action-list derived from the optimized model.
+	 */
+	private void dropStaleActions(List<Action> actions) {
+		Set<PhysicalMachine> registered = new HashSet<>(toConsolidate.machines);
+		Iterator<Action> it = actions.iterator();
+		while (it.hasNext()) {
+			Action a = it.next();
+			boolean stale;
+			switch (a.getType()) {
+			case MIGRATION:
+				MigrationAction ma = (MigrationAction) a;
+				stale = !registered.contains(ma.getSource().getPM())
+						|| !registered.contains(ma.getTarget().getPM())
+						|| !ma.getSource().getPM().publicVms.contains(ma.getVm().getVM());
+				break;
+			case START:
+				stale = !registered.contains(((StartAction) a).getPmToStart().getPM());
+				break;
+			default:
+				stale = !registered.contains(((ShutDownAction) a).getPmToShutDown().getPM());
+			}
+			if (stale) {
+				Logger.getGlobal().info("Dropping outdated action: " + a);
+				if (a.getType() == Action.Type.MIGRATION) {
+					SimpleConsolidator.migrationCount--;
+				}
+				it.remove();
+			}
+		}
 	}
 
-	private void loadProps() throws InvalidPropertiesFormatException, IOException {
-		props = new Properties();
-		File file = new File("consolidationProperties.xml");
-		FileInputStream fileInput = new FileInputStream(file);
-		props.loadFromXML(fileInput);
-		fileInput.close();
-		lowerThreshold = Double.parseDouble(props.getProperty("lowerThreshold"));
-		upperThreshold = Double.parseDouble(props.getProperty("upperThreshold"));
-		processProps();
+	public static void clearStatics() {
+		SimpleConsolidator.migrationCount = 0;
 	}
 
 	/**
 	 * To be implemented by all model based consolidator derivatives so they can
-	 * load the relevant parameters from the file
+	 * take over the relevant parameters from the configuration
 	 */
 	protected abstract void processProps();
 
+	/**
+	 * Determines if the optimization should stop and use the best solution
+	 * found so far. To be called by the consolidators between their
+	 * iterations.
+	 * 
+	 * @return <i>true</i> if the time or the evaluation budget of the current
+	 *         round is used up
+	 */
+	protected boolean budgetExhausted() {
+		if ((config.evaluationBudget > 0 && stats.getEvaluations() >= config.evaluationBudget)
+				|| (config.timeBudget > 0 && stats.getElapsedNanos() >= config.timeBudget * 1000000)) {
+			stats.budgetExhausted();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Getter for the statistics of the optimization.
+	 * 
+	 * @return The statistics of the last completed consolidation round,
+	 *         <i>null</i> if there was no consolidation yet. A round with a
+	 *         decision latency is completed when its result is applied.
+	 */
+	public ConsolidationStats getStats() {
+		return publishedStats;
+	}
+
+	/**
+	 * Getter for the configuration used by this consolidator.
+	 * 
+	 * @return The configuration.
+	 */
+	public ConsolidationConfig getConfig() {
+		return config;
+	}
+
 	/**
 	 * In this part all PMs and VMs will be put inside this abstract model. For that
 	 * the bins-list contains all PMs as ModelPMs and all VMs as ModelVMs
@@ -144,6 +345,12 @@ public abstract class ModelBasedConsolidator extends Consolidator {
 				ModelVM item = new ModelVM(vm, bin, vm.getResourceAllocation().allocated.getRequiredCPUs(),
 						vm.getResourceAllocation().allocated.getRequiredProcessingPower(),
 						vm.getResourceAllocation().allocated.getRequiredMemory(), vmIndex);
+				if (config.migrationCostAware) {
+					// estimated here, as the model could be optimized in the background
+					MigrationCost cost = vm.estimateLiveMigration();
+					item.setMigrationCost(cost.transferredBytes);
+					item.setMigrationTime((long) Math.ceil(cost.duration));
+				}
 				bin.addVM(item);
 				items.add(item);
 			}
@@ -181,7 +388,7 @@ public abstract class ModelBasedConsolidator extends Consolidator {
 			}
 			for (ModelVM item : bin.getVMs()) {
 				if (item.gethostPM() != item.getInitialPm()) {
-					actions.add(new MigrationAction(i++, item.getInitialPm(), item.gethostPM(), item));
+					actions.add(new MigrationAction(i++, item.getInitialPm(), item.gethostPM(), item, throttle));
 					SimpleConsolidator.migrationCount++;
 				}
 			}
@@ -190,15 +397,18 @@ public abstract class ModelBasedConsolidator extends Consolidator {
 	}
 
 	/**
-	 * Determines the dependencies between the actions.
+	 * Determines the dependencies between the actions. The actions are indexed
+	 * by their PMs first, so every action only looks at the actions of its own
+	 * PMs.
 	 * 
 	 * @param actions
 	 *            The action-list with all changes that have to be done inside the
 	 *            simulator.
 	 */
 	private void createGraph(List<Action> actions) {
+		final ActionIndex index = new ActionIndex(actions);
 		for (Action action : actions) {
-			action.determinePredecessors(actions);
+			action.determinePredecessors(index);
 		}
 	}
 
@@ -17,6 +17,8 @@ public class ModelVM {
 	private ModelPM initialHost;
 	private int id;
 	private ResourceVector neededResources;
+	private long migrationCost;
+	private long migrationTime;
 
 	/**
 	 * This represents a VirtualMachine of the simulator. For that this class contains the real VM itself,
@@ -92,6 +94,38 @@ public class ModelVM {
 		this.hostPM = bin;
 	}
 
+	/** Getter
+	 * @return The estimated amount of memory transferred if this VM is migrated, 0 if not estimated.
+	 */
+	public long getMigrationCost() {
+		return migrationCost;
+	}
+
+	/**
+	 * Setter for the migration cost.
+	 * @param bytes
+	 * 			The estimated amount of memory transferred when migrating this VM.
+	 */
+	public void setMigrationCost(long bytes) {
+		this.migrationCost = bytes;
+	}
+
+	/** Getter
+	 * @return The estimated duration of the migration of this VM (in ticks), 0 if not estimated.
+	 */
+	public long getMigrationTime() {
+		return migrationTime;
+	}
+
+	/**
+	 * Setter for the migration time.
+	 * @param ticks
+	 * 			The estimated duration of the migration of this VM.
+	 */
+	public void setMigrationTime(long ticks) {
+		this.migrationTime = ticks;
+	}
+
 	/** Getter
 	 * @return initialHost PM.
 	 */
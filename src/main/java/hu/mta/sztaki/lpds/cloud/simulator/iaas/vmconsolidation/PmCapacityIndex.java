@@ -0,0 +1,248 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *
+ *  This file is part of DISSECT-CF.
+ *
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A set of PMs ordered by their free processing power, then by their free
+ * memory and finally by their index. The set is a treap whose nodes are the
+ * PMs themselves. Every node also knows the largest free memory in its
+ * subtree, thus the first PM having enough processing power <i>and</i> enough
+ * memory is found in expected logarithmic time, regardless of how many PMs
+ * have enough processing power but too little memory.
+ *
+ * The free capacities are read from the arrays shared with the user of the
+ * index. The capacities of a PM must not change while it is in the index:
+ * remove it, change its capacities, then add it again.
+ *
+ * @author "agent, (c) 2026"
+ */
+class PmCapacityIndex {
+	private static final int NONE = -1;
+
+	/** The processing power left on each PM */
+	private final double[] freeProc;
+	/** The memory left on each PM */
+	private final double[] freeMem;
+	/** The heap priorities of the nodes, fixed for reproducible shapes */
+	private final int[] priority;
+	private final int[] left;
+	private final int[] right;
+	/** The largest free memory in the subtree of each node */
+	private final double[] maxMem;
+	private final boolean[] contained;
+	private int root = NONE;
+
+	/**
+	 * Creates an empty index.
+	 *
+	 * @param freeProc
+	 *            the free processing power of the PMs, indexed by the PMs
+	 * @param freeMem
+	 *            the free memory of the PMs, indexed by the PMs
+	 */
+	PmCapacityIndex(double[] freeProc, double[] freeMem) {
+		if (freeProc.length != freeMem.length) {
+			throw new IllegalArgumentException("The capacity arrays should have the same length");
+		}
+		this.freeProc = freeProc;
+		this.freeMem = freeMem;
+		final int pmCount = freeProc.length;
+		priority = new int[pmCount];
+		final Random rnd = new Random(pmCount);
+		for (int pm = 0; pm < pmCount; pm++) {
+			priority[pm] = rnd.nextInt();
+		}
+		left = new int[pmCount];
+		right = new int[pmCount];
+		maxMem = new double[pmCount];
+		contained = new boolean[pmCount];
+		Arrays.fill(left, NONE);
+		Arrays.fill(right, NONE);
+	}
+
+	boolean contains(int pm) {
+		return contained[pm];
+	}
+
+	void add(int pm) {
+		if (contained[pm]) {
+			throw new IllegalStateException("PM " + pm + " is already indexed");
+		}
+		contained[pm] = true;
+		left[pm] = NONE;
+		right[pm] = NONE;
+		maxMem[pm] = freeMem[pm];
+		root = insert(root, pm);
+	}
+
+	void remove(int pm) {
+		if (!contained[pm]) {
+			throw new IllegalStateException("PM " + pm + " is not indexed");
+		}
+		contained[pm] = false;
+		root = delete(root, pm);
+	}
+
+	/**
+	 * Finds the first PM in the order of the index that can take the given
+	 * amount of resources.
+	 *
+	 * @return the PM with the least free processing power that has enough of
+	 *         both resources, or -1 if there is no such PM
+	 */
+	int firstFit(double proc, double mem) {
+		return find(root, proc, mem);
+	}
+
+	/**
+	 * @return the indexed PMs in the order of the index
+	 */
+	List<Integer> toList() {
+		final List<Integer> pms = new ArrayList<>();
+		final int[] path = new int[freeProc.length];
+		int depth = 0;
+		int node = root;
+		while (node != NONE || depth > 0) {
+			while (node != NONE) {
+				path[depth++] = node;
+				node = left[node];
+			}
+			node = path[--depth];
+			pms.add(node);
+			node = right[node];
+		}
+		return pms;
+	}
+
+	private boolean precedes(int pm1, int pm2) {
+		int c = Double.compare(freeProc[pm1], freeProc[pm2]);
+		if (c == 0) {
+			c = Double.compare(freeMem[pm1], freeMem[pm2]);
+		}
+		return c == 0 ? pm1 < pm2 : c < 0;
+	}
+
+	private double subtreeMem(int node) {
+		return node == NONE ? Double.NEGATIVE_INFINITY : maxMem[node];
+	}
+
+	private void update(int node) {
+		maxMem[node] = Math.max(freeMem[node], Math.max(subtreeMem(left[node]), subtreeMem(right[node])));
+	}
+
+	private int rotateRight(int node) {
+		final int pivot = left[node];
+		left[node] = right[pivot];
+		right[pivot] = node;
+		update(node);
+		update(pivot);
+		return pivot;
+	}
+
+	private int rotateLeft(int node) {
+		final int pivot = right[node];
+		right[node] = left[pivot];
+		left[pivot] = node;
+		update(node);
+		update(pivot);
+		return pivot;
+	}
+
+	private int insert(int node, int pm) {
+		if (node == NONE) {
+			return pm;
+		}
+		if (precedes(pm, node)) {
+			left[node] = insert(left[node], pm);
+			if (priority[left[node]] > priority[node]) {
+				return rotateRight(node);
+			}
+		} else {
+			right[node] = insert(right[node], pm);
+			if (priority[right[node]] > priority[node]) {
+				return rotateLeft(node);
+			}
+		}
+		update(node);
+		return node;
+	}
+
+	private int delete(int node, int pm) {
+		if (node == pm) {
+			return merge(left[node], right[node]);
+		}
+		if (precedes(pm, node)) {
+			left[node] = delete(left[node], pm);
+		} else {
+			right[node] = delete(right[node], pm);
+		}
+		update(node);
+		return node;
+	}
+
+	/**
+	 * Merges two subtrees where all nodes of the first precede the nodes of
+	 * the second.
+	 */
+	private int merge(int first, int second) {
+		if (first == NONE) {
+			return second;
+		}
+		if (second == NONE) {
+			return first;
+		}
+		if (priority[first] > priority[second]) {
+			right[first] = merge(right[first], second);
+			update(first);
+			return first;
+		}
+		left[second] = merge(first, left[second]);
+		update(second);
+		return second;
+	}
+
+	/**
+	 * Subtrees without enough memory are skipped entirely, so apart from the
+	 * path along the processing power bound only a single path is walked
+	 * down, into a subtree known to contain a fitting PM.
+	 */
+	private int find(int node, double proc, double mem) {
+		if (node == NONE || maxMem[node] < mem) {
+			return NONE;
+		}
+		if (freeProc[node] < proc) {
+			return find(right[node], proc, mem);
+		}
+		final int found = find(left[node], proc, mem);
+		if (found != NONE) {
+			return found;
+		}
+		return freeMem[node] >= mem ? node : find(right[node], proc, mem);
+	}
+}
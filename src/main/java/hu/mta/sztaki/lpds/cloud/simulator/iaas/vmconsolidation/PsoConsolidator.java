@@ -1,8 +1,9 @@
 package hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 import java.util.Vector;
+import java.util.function.IntConsumer;
 
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.IaaSService;
 
@@ -35,9 +36,6 @@ public class PsoConsolidator extends SolutionBasedConsolidator {
 	/** used to get a new velocity for each particle */
 	private final double w = 0.6;
 	
-	/** For generating random numbers */
-	private Random generator;
-	
 	/** counter for creating particles */
 	private int particleCounter = 1; 
 
@@ -65,16 +63,29 @@ public class PsoConsolidator extends SolutionBasedConsolidator {
 	}
 	
 	/**
-	 * Reads the properties file and sets the constant values for consolidation.
+	 * Creates the consolidator with an already loaded configuration.
+	 * 
+	 * @param toConsolidate
+	 * 			The iaas service with the machines to consolidate.	
+	 * @param consFreq
+	 * 			This value determines, how often the consolidation should run.
+	 * @param config
+	 * 			The parameters of the consolidation.
+	 */
+	public PsoConsolidator(IaaSService toConsolidate, long consFreq, ConsolidationConfig config) {
+		super(toConsolidate, consFreq, config);
+	}
+	
+	/**
+	 * Takes over the constant values for consolidation from the configuration.
 	 */
 	@Override
 	protected void processProps() {
-	
-		this.swarmSize = Integer.parseInt(props.getProperty("psoSwarmSize"));
-		this.nrIterations = Integer.parseInt(props.getProperty("psoNrIterations"));
-		this.c1 = Integer.parseInt(props.getProperty("psoC1"));
-		this.c2 = Integer.parseInt(props.getProperty("psoC2"));
-		this.generator = new Random(Long.parseLong(props.getProperty("seed")));
+		super.processProps();
+		this.swarmSize = config.psoSwarmSize;
+		this.nrIterations = config.psoNrIterations;
+		this.c1 = config.psoC1;
+		this.c2 = config.psoC2;
 		
 		determineCreations(swarmSize);
 	}
@@ -90,7 +101,8 @@ public class PsoConsolidator extends SolutionBasedConsolidator {
 	/**
 	 * Method to create a swarm and the defined amount of particles. Each Particle gets a 
 	 * random location and velocity except one, which represents the situation before 
-	 * starting consolidating.
+	 * starting consolidating. If warm starts are configured, the best locations of the 
+	 * previous round replace some of the random ones.
 	 */
 	private void initializeSwarm() {
 		swarm.clear();
@@ -100,12 +112,21 @@ public class PsoConsolidator extends SolutionBasedConsolidator {
 		}
 		
 		//create random solutions
-		for(int i = 0; i < randomCreations; i++) {
-			Particle p = swarm.get(i);
-			p.fillRandomly();
-			p.updateLocation();
-			p.initVelocity();
-		}
+		final int warm = warmStarts(randomCreations);
+		forEachMember(randomCreations, new IntConsumer() {
+			@Override
+			public void accept(int i) {
+				Particle p = swarm.get(i);
+				if(i < warm) {
+					warmStart(p, i);
+				}
+				else {
+					p.fillRandomly();
+				}
+				p.updateLocation();
+				p.initVelocity();
+			}
+		});
 		//create firstfit solutions
 		for(int i = randomCreations; i < firstFitCreations + randomCreations; i++) {
 			Particle p = swarm.get(i);
@@ -125,12 +146,15 @@ public class PsoConsolidator extends SolutionBasedConsolidator {
 	
 	/**
 	 * Perform the particle swarm optimization algorithm to optimize the mapping of VMs to PMs.
+	 * If the budget of the round is used up, the particles stop moving and the global best
+	 * location found so far is implemented.
 	 */
 	@Override
 	protected void optimize() {
 		// get the dimension by getting the amount of VMs on the actual PMs
 		this.dimension = items.size();
 		initializeSwarm();
+		stats.evaluated(swarmSize);
 		
 		int iterations = 0;
 		
@@ -143,15 +167,16 @@ public class PsoConsolidator extends SolutionBasedConsolidator {
 				
 				//p.evaluateFitnessFunction();	
 				
+				// the fitness and the location are copied, as the particle changes them while moving
 				if(iterations == 0) {
-					p.setPBest(p.evaluateFitnessFunction());
-					p.setPBestLocation(p.getLocation());
+					p.setPBest(p.evaluateFitnessFunction().copy());
+					p.setPBestLocation(new ArithmeticVector(p.getLocation()));
 				}				
 				
 				//the aim is to minimize the function
 				if(p.evaluateFitnessFunction().isBetterThan(p.getPBest())) {
-					p.setPBest(p.evaluateFitnessFunction());
-					p.setPBestLocation(p.getLocation());
+					p.setPBest(p.evaluateFitnessFunction().copy());
+					p.setPBestLocation(new ArithmeticVector(p.getLocation()));
 				}
 				//Logger.getGlobal().info("Iteration " + t + ", Particle " + p.getNumber() + ", " + p.toString());
 			}
@@ -162,73 +187,95 @@ public class PsoConsolidator extends SolutionBasedConsolidator {
 			
 			// set the new global best fitness / location
 			if(iterations == 0 || swarm.get(bestParticleIndex).evaluateFitnessFunction().isBetterThan(globalBest)) {
-				globalBest = swarm.get(bestParticleIndex).evaluateFitnessFunction();
-				globalBestLocation = swarm.get(bestParticleIndex).getLocation();		
+				// copied, as the particles change their fitness and reuse their location while moving
+				globalBest = swarm.get(bestParticleIndex).evaluateFitnessFunction().copy();
+				globalBestLocation = new ArithmeticVector(swarm.get(bestParticleIndex).getLocation());		
 			}
 			
 			//Logger.getGlobal().info("GlobalBest: " + globalBest + ", GlobalBestLocation: " + globalBestLocation);
+			if(iterations > 0) {
+				// the moves of the previous iteration are evaluated by now
+				stats.iterationDone(globalBest);
+			}
+			if(budgetExhausted())
+				break;
 			
-			for(int i = 0; i < swarmSize; i++) {
-				Particle p = swarm.get(i);
+			// the particles move independently of each other
+			final boolean first = iterations == 0;
+			forEachMember(swarmSize, new IntConsumer() {
+				@Override
+				public void accept(int i) {
+					Particle p = swarm.get(i);
 				
-				if(iterations == 0) {
-					ArithmeticVector newLoc = p.getLocation().addUp(p.getVelocity());	// adds up the velocity to create the updated location
-					p.setLocation(newLoc);		
-					p.updateMappings();   	// adjusts the mappings with the new location
-					
-					// we do not have to update the velocity, because it is updated before updating the location in the loop
-				}
-				else {
-					double r1 = generator.nextDouble();
-					double r2 = generator.nextDouble();
-					
-					// step 3 - update velocity
-					
-					/**
-					 * Comment on the function to update the velocity:
-					 * 
-					 * At first the actual Velocity of the Particle has to be multiplied with the user-supplied coefficient w,
-					 * which is called the inertiaComponent. After this the cognitiveComponent has to be added to the 
-					 * inertiaComponent, which inherits the multiplication of the coefficients c1 and r1, multiplied with the 
-					 * result of the personalBestLocation of the Particle minus the actual location of it. Afterwards the 
-					 * socialComponent also has to be added to the parts before. It inherits the multiplication of the
-					 * coefficients c2 and r2, multiplied with the result of the subtraction of the globalBestLocation with the
-					 * actual location of the Particle.
-					 */
-					
-					ArithmeticVector inertiaComponent = p.getVelocity().multiply(w);
-					ArithmeticVector cognitiveComponent = (p.getPBestLocation().subtract(p.getLocation()).multiply(c1 * r1));
-					ArithmeticVector socialComponent = (globalBestLocation.subtract(p.getLocation()).multiply(c2 * r2));
-					ArithmeticVector newVel = inertiaComponent.addUp(cognitiveComponent).addUp(socialComponent);
-					
-					p.setVelocity(newVel);
-					
-					//Logger.getGlobal().info("Particle: " + p.getNumber() + ", new Velocity: " + newVel);
-					
-					// step 4 - update location
-
-					// now the mapping has to be converted to an ArithmeticVector
-					p.updateLocation();	
-					ArithmeticVector newLoc = p.getLocation().addUp(p.getVelocity());	// adds up the velocity to create the updated location
-					p.setLocation(newLoc);		
-					p.updateMappings();   	// adjusts the mappings with the new location
-										
-					if(p.doLocalSearch1) {
-						p.improve();
-						p.updateLocation();	// we have to update the location afterwards
+					if(first) {
+						ArithmeticVector newLoc = p.getLocation().addUp(p.getVelocity());	// adds up the velocity to create the updated location
+						p.setLocation(newLoc);		
+						p.updateMappings();   	// adjusts the mappings with the new location
+				
+						// we do not have to update the velocity, because it is updated before updating the location in the loop
 					}
-					else if(p.doLocalSearch2){
-						p.simpleConsolidatorImprove();
-						p.updateLocation();	// we have to update the location afterwards
+					else {
+						double r1 = p.random.nextDouble();
+						double r2 = p.random.nextDouble();
+				
+						// step 3 - update velocity
+				
+						/**
+						 * Comment on the function to update the velocity:
+						 * 
+						 * At first the actual Velocity of the Particle has to be multiplied with the user-supplied coefficient w,
+						 * which is called the inertiaComponent. After this the cognitiveComponent has to be added to the 
+						 * inertiaComponent, which inherits the multiplication of the coefficients c1 and r1, multiplied with the 
+						 * result of the personalBestLocation of the Particle minus the actual location of it. Afterwards the 
+						 * socialComponent also has to be added to the parts before. It inherits the multiplication of the
+						 * coefficients c2 and r2, multiplied with the result of the subtraction of the globalBestLocation with the
+						 * actual location of the Particle.
+						 */
+				
+						ArithmeticVector inertiaComponent = p.getVelocity().multiply(w);
+						ArithmeticVector cognitiveComponent = (p.getPBestLocation().subtract(p.getLocation()).multiply(c1 * r1));
+						ArithmeticVector socialComponent = (globalBestLocation.subtract(p.getLocation()).multiply(c2 * r2));
+						ArithmeticVector newVel = inertiaComponent.addUp(cognitiveComponent).addUp(socialComponent);
+				
+						p.setVelocity(newVel);
+				
+						//Logger.getGlobal().info("Particle: " + p.getNumber() + ", new Velocity: " + newVel);
+				
+						// step 4 - update location
+
+						// now the mapping has to be converted to an ArithmeticVector
+						p.updateLocation();	
+						ArithmeticVector newLoc = p.getLocation().addUp(p.getVelocity());	// adds up the velocity to create the updated location
+						p.setLocation(newLoc);		
+						p.updateMappings();   	// adjusts the mappings with the new location
+									
+						if(p.doLocalSearch1) {
+							p.improve();
+							p.updateLocation();	// we have to update the location afterwards
+						}
+						else if(p.doLocalSearch2){
+							p.simpleConsolidatorImprove();
+							p.updateLocation();	// we have to update the location afterwards
+						}
+				
+						//Logger.getGlobal().info("Iteration " + t + ", Updated Particle " + p.getNumber() + System.getProperty("line.separator") + p.toString());
 					}
-					
-					//Logger.getGlobal().info("Iteration " + t + ", Updated Particle " + p.getNumber() + System.getProperty("line.separator") + p.toString());
 				}
-				
-			}			
+			});			
+			stats.evaluated(swarmSize);
 			//Logger.getGlobal().info("In iteration " + t + ", GlobalBest: " + globalBest + ", GlobalBestLocation: " + globalBestLocation);
 			iterations++;
 		}				
+		if(config.warmStartElites > 0) {
+			// the global best location is not necessarily held by any particle at the end
+			Particle best = new Particle(bins, 0);
+			best.createUnchangedSolution();
+			best.setLocation(new ArithmeticVector(globalBestLocation));
+			best.updateMappings();
+			List<Solution> members = new ArrayList<Solution>(swarm);
+			members.add(0, best);
+			rememberElites(members);
+		}
 		implementSolution();
 	}	
 	
@@ -294,7 +341,7 @@ public class PsoConsolidator extends SolutionBasedConsolidator {
 	 	 * @param number The id of this particle.
 	 	 */
 		public Particle(List<ModelPM> bins, int number) {
-			super(bins, 0);
+			super(problem(), 0, PsoConsolidator.this.config, nextStream());
 			this.number = number;
 			this.location = new ArithmeticVector(bins.size());
 		}
@@ -310,13 +357,8 @@ public class PsoConsolidator extends SolutionBasedConsolidator {
 			location.clear();
 
 			for(ModelVM v : items) {
-				ModelPM p=mapping.get(v);
-				for(int i=0;i<bins.size();i++) {
-					if(bins.get(i)==p) {
-						location.add((double)i+1);
-						break;
-					}
-				}
+				// the ids of the location start at one
+				location.add((double) mapping[problem.vmIndex.get(v)] + 1);
 			}
 			
 			//Logger.getGlobal().info("After updateLocation(), new location: " + location + ", mapping: " + mappingToString());
@@ -324,7 +366,7 @@ public class PsoConsolidator extends SolutionBasedConsolidator {
 		
 		/**
 		 * We use the actual location do update the current mapping. For that we have to check each of
-		 * the mappings (loads, mapping, used) and update them depending on the changeds inside the 
+		 * the genes and update them depending on the changeds inside the 
 		 * location. Note that there is a difference in saving the pms inside the mappings and inside 
 		 * the location.
 		 */
@@ -338,37 +380,14 @@ public class PsoConsolidator extends SolutionBasedConsolidator {
 			for (int i = 0; i < location.size(); i++) {
 				
 				ModelVM currentVm = items.get(i);	// the first vm of the location
-				//System.out.println("bins.size="+bins.size()+", location[i]="+location.get(i));
-				ModelPM locPm = bins.get( location.get(i).intValue() - 1 );	// the host of this vm, has to be done 
-																				// because the ids start at one
-				
-				ModelPM mappedPm = mapping.get(currentVm);
-				
-				// now we have to check if both hosts are similar, then we can move on with the next.
-				// Otherwise we have to adjust the mappings
-				if(locPm == mappedPm) {
-					continue;	// pms are the same
-				}
-				else {
-					// pms are not the same
-					fitness.nrMigrations++;
-					mapping.put(currentVm, locPm);	//put the new pm
-					
-					loads.get(mappedPm).subtract(currentVm.getResources());
-					loads.get(locPm).singleAdd(currentVm.getResources());
-					
-					// mark the pm out of the location as "used", after that check
-					// if the mappedPm is still used/hosting vms, if not, mark it
-					// as "unused"
-					used.put(locPm, true);
-					if(!mappedPm.isHostingVMs())
-						used.put(mappedPm, false);
-					
-				}
+				// the host of this vm, has to be done because the ids start at one
+				int locPm = location.get(i).intValue() - 1;
+
+				// moving only changes the mapping if the hosts are different,
+				// the loads and the migration count are adjusted accordingly
+				moveVm(problem.vmIndex.get(currentVm), locPm);
 			}
-			
-			// determine the fitness
-			this.countActivePmsAndOverloads();
+			// the fitness is updated by each move
 			
 			//Logger.getGlobal().info("After updateMappings(), location: " + location + ", mapping: " + mappingToString());
 			
@@ -381,10 +400,10 @@ public class PsoConsolidator extends SolutionBasedConsolidator {
 		public void initVelocity() {
 			ArithmeticVector vel = new ArithmeticVector(bins.size());
 			
-			for(int j = 0; j < mapping.keySet().size(); j++) {			
+			for(int j = 0; j < mapping.length; j++) {			
 				double a;			
 				// here we make a random chance of getting a lower id or a higher id
-				if(generator.nextBoolean()) {
+				if(random.nextBoolean()) {
 					a = + 1;
 				}				
 				else {
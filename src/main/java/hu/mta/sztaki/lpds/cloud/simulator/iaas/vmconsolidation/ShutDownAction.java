@@ -1,6 +1,5 @@
 package hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation;
 
-import java.util.List;
 //import java.util.logging.Logger;
 import java.util.logging.Logger;
 
@@ -41,14 +40,10 @@ public class ShutDownAction extends Action {
 	 * a shut-down action is a migration from this PM.
 	 */
 	@Override
-	public void determinePredecessors(List<Action> actions) {		
+	public void determinePredecessors(ActionIndex index) {		
 		//looking for migrations with this PM as source
-		for(Action action : actions) {
-			if(action.getType().equals(Type.MIGRATION)){
-				if((((MigrationAction) action).getSource()).equals(this.getPmToShutDown())){
-					this.addPredecessor(action);
-				}
-			}
+		for(Action action : index.getMigrationsFrom(getPmToShutDown())) {
+			this.addPredecessor(action);
 		}
 	}
 
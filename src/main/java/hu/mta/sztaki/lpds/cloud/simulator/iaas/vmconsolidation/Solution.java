@@ -1,36 +1,175 @@
 package hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Properties;
-import java.util.Random;
-import java.util.Vector;
+import java.util.SplittableRandom;
 
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.PhysicalMachine;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.VirtualMachine;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.constraints.ConstantConstraints;
 
 /**
  * Represents a possible solution of the VM consolidation problem, i.e., a
  * mapping of VMs to PMs. Can be used as an individual in the population.
+ *
+ * The mapping is encoded with dense indexes: the VMs are indexed in the order
+ * they are hosted by the bins (see Problem), the PMs are indexed with their
+ * position in the bins list. The genes of the solution are stored in an int
+ * array (VM index to PM index), while the loads of the PMs are kept in
+ * parallel primitive arrays. Thus cloning, mutation and recombination are
+ * simple array operations.
+ *
+ * The fitness is maintained incrementally: every time a gene changes, the
+ * loads, the overload contribution and the VM list of the two affected PMs
+ * are updated together with the fitness in constant time. The PMs changed
+ * since the last local search are remembered, so the local search only needs
+ * to look at those.
  */
 public class Solution {
+	/**
+	 * The dense representation of a consolidation problem. It is created once
+	 * for a list of bins and shared by all solutions derived from each other.
+	 */
+	static final class Problem {
+		/** List of all available bins */
+		final List<ModelPM> bins;
+		/** The bins indexed by their dense ids */
+		final ModelPM[] pms;
+		/** The VMs indexed by their dense ids */
+		final ModelVM[] vms;
+		/** The index of the PM hosting each VM before consolidation */
+		final int[] initialHosts;
+		/** The processing power needed by each VM */
+		final double[] vmProc;
+		/** The memory needed by each VM */
+		final long[] vmMem;
+		/** The estimated memory transferred when migrating each VM */
+		final long[] vmMigrationCost;
+		/** The estimated duration of the migration of each VM */
+		final long[] vmMigrationTime;
+		/** The processing power of each PM usable below the upper threshold */
+		final double[] procUpper;
+		/** The memory of each PM usable below the upper threshold */
+		final double[] memUpper;
+		/** The processing power of each PM under which it is underloaded */
+		final double[] procLower;
+		/** The memory of each PM under which it is underloaded */
+		final double[] memLower;
+		/** Allows finding the dense id of a PM */
+		final IdentityHashMap<ModelPM, Integer> pmIndex;
+		/** Allows finding the dense id of a VM */
+		final IdentityHashMap<ModelVM, Integer> vmIndex;
+		/** Allows finding the dense id of a bin from the PM it models */
+		final IdentityHashMap<PhysicalMachine, Integer> hostIndex;
+
+		/**
+		 * Determines the dense ids of the bins and the VMs they host.
+		 *
+		 * @param bins
+		 *            the PMs of the consolidation problem
+		 */
+		Problem(List<ModelPM> bins) {
+			this.bins = bins;
+			pms = bins.toArray(new ModelPM[bins.size()]);
+			pmIndex = new IdentityHashMap<>(pms.length);
+			hostIndex = new IdentityHashMap<>(pms.length);
+			procUpper = new double[pms.length];
+			memUpper = new double[pms.length];
+			procLower = new double[pms.length];
+			memLower = new double[pms.length];
+			int vmCount = 0;
+			for (int i = 0; i < pms.length; i++) {
+				pmIndex.put(pms[i], i);
+				hostIndex.put(pms[i].getPM(), i);
+				ConstantConstraints cap = pms[i].getTotalResources();
+				procUpper[i] = cap.getTotalProcessingPower() * pms[i].getUpperThreshold();
+				memUpper[i] = cap.getRequiredMemory() * pms[i].getUpperThreshold();
+				procLower[i] = cap.getTotalProcessingPower() * pms[i].getLowerThreshold();
+				memLower[i] = cap.getRequiredMemory() * pms[i].getLowerThreshold();
+				vmCount += pms[i].getVMs().size();
+			}
+			vms = new ModelVM[vmCount];
+			vmIndex = new IdentityHashMap<>(vmCount);
+			initialHosts = new int[vmCount];
+			vmProc = new double[vmCount];
+			vmMem = new long[vmCount];
+			vmMigrationCost = new long[vmCount];
+			vmMigrationTime = new long[vmCount];
+			int v = 0;
+			for (int i = 0; i < pms.length; i++) {
+				for (ModelVM vm : pms[i].getVMs()) {
+					vms[v] = vm;
+					vmIndex.put(vm, v);
+					final Integer initial = pmIndex.get(vm.getInitialPm());
+					initialHosts[v] = initial == null ? i : initial;
+					vmProc[v] = vm.getResources().getTotalProcessingPower();
+					vmMem[v] = vm.getResources().getRequiredMemory();
+					vmMigrationCost[v] = vm.getMigrationCost();
+					vmMigrationTime[v] = vm.getMigrationTime();
+					v++;
+				}
+			}
+		}
+
+		/**
+		 * Checks whether this problem was created for the given bins.
+		 *
+		 * @param other
+		 *            the bins of the current model
+		 * @return true if the bins (and their order) are the same
+		 */
+		boolean isFor(List<ModelPM> other) {
+			if (other.size() != pms.length)
+				return false;
+			int i = 0;
+			for (ModelPM pm : other) {
+				if (pms[i++] != pm)
+					return false;
+			}
+			return true;
+		}
+	}
+
 	/** List of all available bins */
 	protected List<ModelPM> bins;
-	/** Mapping of VMs to PMs */
-	protected Map<ModelVM, ModelPM> mapping;
-	/** Current resource use of the PMs */
-	protected Map<ModelPM, ResourceVector> loads;
-	/** Flags for each PM whether it is in use */
-	protected Map<ModelPM, Boolean> used;
-	/** For generating random numbers */
-	protected Random random;
+	/** The dense representation of the problem solved */
+	protected final Problem problem;
+	/** Mapping of VMs to PMs: the index of the host PM for each VM index */
+	protected final int[] mapping;
+	/** Current processing power use of the PMs */
+	protected final double[] procLoads;
+	/** Current memory use of the PMs */
+	protected final long[] memLoads;
+	/** The number of VMs mapped to each PM, a PM is in use if it hosts a VM */
+	protected final int[] vmCounts;
+	/** The contribution of each PM to fitness.totalOverAllocated */
+	private final double[] overloads;
+	/** The number of PMs with a non-zero overload contribution */
+	private int overloadedPms;
+	/** The first VM on the list of VMs hosted by each PM (-1 if none) */
+	private final int[] firstVms;
+	/** The next VM on the list of VMs hosted by the same PM (-1 if none) */
+	private final int[] nextVms;
+	/** The previous VM on the list of VMs hosted by the same PM (-1 if none) */
+	private final int[] prevVms;
+	/**
+	 * The PMs changed since the last local search and the PMs the last local
+	 * search left overloaded or underloaded (first dirtyCount items)
+	 */
+	private final int[] dirtyPms;
+	/** The number of PMs listed in dirtyPms */
+	private int dirtyCount;
+	/** Flags for each PM whether it is listed in dirtyPms */
+	private final boolean[] isDirty;
+	/**
+	 * For generating random numbers, the offspring of this solution receive
+	 * streams split from this one
+	 */
+	protected SplittableRandom random;
 	/** Each gene is replaced by a random value with this probability during mutation */
 	private double mutationProb;
 	/** Fitness of the solution */
@@ -40,238 +179,445 @@ public class Solution {
 	/** simple consolidator local search */
 	protected boolean doLocalSearch2=false;
 
-	Properties props;
+	/** The parameters of the consolidation this solution is created for */
+	protected final ConsolidationConfig config;
 
 	/**
 	 * Creates a solution with an empty mapping that will need to be filled somehow,
-	 * e.g., using #fillRandomly().
+	 * e.g., using #fillRandomly(). The configuration is read from the default
+	 * properties file (see ConsolidationConfig.loadDefault()).
+	 *
+	 * @param bins
+	 *            the PMs available for the mapping
+	 * @param mp
+	 *            the probability of a gene to be replaced during mutation
+	 * @deprecated reads the properties file for every solution, use
+	 *             Solution(List, double, ConsolidationConfig) with the
+	 *             configuration of the consolidator instead
 	 */
+	@Deprecated
 	public Solution(List<ModelPM> bins, double mp) {
-		this.bins = bins;
+		this(bins, mp, ConsolidationConfig.loadDefault());
+	}
+
+	/**
+	 * Creates a solution with an empty mapping that will need to be filled somehow,
+	 * e.g., using #fillRandomly().
+	 *
+	 * @param bins
+	 *            the PMs available for the mapping
+	 * @param mp
+	 *            the probability of a gene to be replaced during mutation
+	 * @param config
+	 *            the configuration shared by the solutions of a consolidator
+	 *            (determines the seed and the local searches to be used)
+	 */
+	public Solution(List<ModelPM> bins, double mp, ConsolidationConfig config) {
+		this(new Problem(bins), mp, config, new SplittableRandom(config.seed));
+	}
+
+	/**
+	 * Creates a solution with an empty mapping that uses its own random number
+	 * stream. Solutions created with independent streams can be filled and
+	 * evolved concurrently.
+	 *
+	 * @param bins
+	 *            the PMs available for the mapping
+	 * @param mp
+	 *            the probability of a gene to be replaced during mutation
+	 * @param config
+	 *            the configuration shared by the solutions of a consolidator
+	 * @param random
+	 *            the random number stream exclusively used by this solution
+	 *            (and split for its offspring)
+	 */
+	public Solution(List<ModelPM> bins, double mp, ConsolidationConfig config, SplittableRandom random) {
+		this(new Problem(bins), mp, config, random);
+	}
+
+	/**
+	 * Creates a solution with an empty mapping for an already indexed problem.
+	 *
+	 * @param problem
+	 *            the dense representation of the problem
+	 * @param mp
+	 *            the probability of a gene to be replaced during mutation
+	 * @param config
+	 *            the configuration shared by the solutions of a consolidator
+	 * @param random
+	 *            the random number stream exclusively used by this solution
+	 */
+	Solution(Problem problem, double mp, ConsolidationConfig config, SplittableRandom random) {
+		this.problem = problem;
+		this.bins = problem.bins;
+		this.config = config;
 		mutationProb = mp;
-		mapping = new HashMap<>();
-		loads=new HashMap<>();
-		used=new HashMap<>();
+		mapping = new int[problem.vms.length];
+		procLoads = new double[problem.pms.length];
+		memLoads = new long[problem.pms.length];
+		vmCounts = new int[problem.pms.length];
+		overloads = new double[problem.pms.length];
+		firstVms = new int[problem.pms.length];
+		Arrays.fill(firstVms, -1);
+		nextVms = new int[problem.vms.length];
+		prevVms = new int[problem.vms.length];
+		dirtyPms = new int[problem.pms.length];
+		isDirty = new boolean[problem.pms.length];
 		fitness=new Fitness();
 
-		for (ModelPM pm : bins) {
-			loads.put(pm, new ResourceVector(0, 0, 0));
-			used.put(pm, false);
-		}
-		
-		props = new Properties();		
-		try {
-			File file = new File("consolidationProperties.xml");
-			FileInputStream fileInput = new FileInputStream(file);
-			props.loadFromXML(fileInput);
-			fileInput.close();
-			random = new Random(Long.parseLong(props.getProperty("seed")));
-			doLocalSearch1=Boolean.parseBoolean(props.getProperty("doLocalSearch1"));
-			doLocalSearch2=Boolean.parseBoolean(props.getProperty("doLocalSearch2"));
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-		
+		this.random = random;
+		doLocalSearch1 = config.doLocalSearch1;
+		doLocalSearch2 = config.doLocalSearch2;
 	}
 
 	/**
 	 * Creates a clone of this solution with the same mappings.
-	 * 
+	 *
 	 * @return A new object containing the same mappings as this solution.
 	 */
 	public Solution clone() {
-		Solution newSol=new Solution(bins, mutationProb);
-		
-		//TODO maybe we have to make a deep copy for the mappings
-		newSol.mapping.putAll(this.mapping);
-		
-		// clone all ResourceVectors for each pm and put it inside the used-mapping
-		for(ModelPM pm : loads.keySet()) {
-			newSol.loads.put(pm, loads.get(pm).clone());
-			newSol.used.put(pm,true);
-		}
-		
+		Solution newSol=new Solution(problem, mutationProb, config, random.split());
+		System.arraycopy(mapping, 0, newSol.mapping, 0, mapping.length);
+		System.arraycopy(procLoads, 0, newSol.procLoads, 0, procLoads.length);
+		System.arraycopy(memLoads, 0, newSol.memLoads, 0, memLoads.length);
+		System.arraycopy(vmCounts, 0, newSol.vmCounts, 0, vmCounts.length);
+		System.arraycopy(overloads, 0, newSol.overloads, 0, overloads.length);
+		newSol.overloadedPms = overloadedPms;
+		System.arraycopy(firstVms, 0, newSol.firstVms, 0, firstVms.length);
+		System.arraycopy(nextVms, 0, newSol.nextVms, 0, nextVms.length);
+		System.arraycopy(prevVms, 0, newSol.prevVms, 0, prevVms.length);
+		System.arraycopy(dirtyPms, 0, newSol.dirtyPms, 0, dirtyCount);
+		newSol.dirtyCount = dirtyCount;
+		System.arraycopy(isDirty, 0, newSol.isDirty, 0, isDirty.length);
 		newSol.fitness.nrMigrations=this.fitness.nrMigrations;
-		
-		// after cloning everything else we can determine the missing fitness values
-		newSol.countActivePmsAndOverloads();
+		newSol.fitness.migrationCost=this.fitness.migrationCost;
+		newSol.fitness.migrationTime=this.fitness.migrationTime;
+		newSol.fitness.nrActivePms=this.fitness.nrActivePms;
+		newSol.fitness.totalOverAllocated=this.fitness.totalOverAllocated;
 		return newSol;
 	}
 
 	/**
-	 * Auxiliary method.
-	 * PRE: the maps #loads and #used are already filled
-	 * POST: fitness.nrActivePms and fitness.totalOverAllocated are correct
+	 * Maps a not yet mapped VM to a PM and updates the loads and the fitness
+	 * accordingly.
+	 *
+	 * @param vm
+	 *            the index of the VM
+	 * @param pm
+	 *            the index of the new host
 	 */
-	protected void countActivePmsAndOverloads() {
-		fitness.nrActivePms=0;
-		fitness.totalOverAllocated=0;
-		for (ModelPM pm : bins) {
-			if(used.get(pm))
-				fitness.nrActivePms++;
-			ResourceVector allocation = loads.get(pm);
-			ConstantConstraints cap = pm.getTotalResources();
-			if (allocation.getTotalProcessingPower() > cap.getTotalProcessingPower() * pm.getUpperThreshold())
-				fitness.totalOverAllocated += allocation.getTotalProcessingPower()
-						/ (cap.getTotalProcessingPower() * pm.getUpperThreshold());
-			if (allocation.getRequiredMemory() > cap.getRequiredMemory() * pm.getUpperThreshold())
-				fitness.totalOverAllocated += allocation.getRequiredMemory() / (cap.getRequiredMemory() * pm.getUpperThreshold());
+	private void assign(int vm, int pm) {
+		mapping[vm] = pm;
+		procLoads[pm] += problem.vmProc[vm];
+		memLoads[pm] += problem.vmMem[vm];
+		if (vmCounts[pm]++ == 0)
+			fitness.nrActivePms++;
+		if (pm != problem.initialHosts[vm]) {
+			fitness.nrMigrations++;
+			fitness.migrationCost += problem.vmMigrationCost[vm];
+			fitness.migrationTime += problem.vmMigrationTime[vm];
 		}
+		prevVms[vm] = -1;
+		nextVms[vm] = firstVms[pm];
+		if (firstVms[pm] != -1)
+			prevVms[firstVms[pm]] = vm;
+		firstVms[pm] = vm;
+		loadChanged(pm);
 	}
 
 	/**
-	 * Creates a random mapping: for each VM, one PM is chosen uniformly randomly.
+	 * Removes the load of a VM from its current host. The VM must be assigned
+	 * again before the solution is used.
+	 *
+	 * @param vm
+	 *            the index of the VM
 	 */
-	void fillRandomly() {
-		fitness.nrMigrations=0;
-		for (ModelPM pm : bins) {
-			for (ModelVM vm : pm.getVMs()) {
-				ModelPM randPm = bins.get(random.nextInt(bins.size()));
-				mapping.put(vm, randPm);
-				loads.get(randPm).singleAdd(vm.getResources());
-				used.put(randPm,true);
-				if(pm!=randPm)
-					fitness.nrMigrations++;
+	private void unassign(int vm) {
+		int pm = mapping[vm];
+		procLoads[pm] -= problem.vmProc[vm];
+		memLoads[pm] -= problem.vmMem[vm];
+		if (--vmCounts[pm] == 0) {
+			fitness.nrActivePms--;
+			// avoid the accumulation of rounding errors on empty PMs
+			procLoads[pm] = 0;
+		}
+		if (pm != problem.initialHosts[vm]) {
+			fitness.nrMigrations--;
+			fitness.migrationCost -= problem.vmMigrationCost[vm];
+			fitness.migrationTime -= problem.vmMigrationTime[vm];
+		}
+		if (prevVms[vm] == -1)
+			firstVms[pm] = nextVms[vm];
+		else
+			nextVms[prevVms[vm]] = nextVms[vm];
+		if (nextVms[vm] != -1)
+			prevVms[nextVms[vm]] = prevVms[vm];
+		loadChanged(pm);
+	}
+
+	/**
+	 * Updates the overload related part of the fitness after the load of a PM
+	 * has changed and remembers the PM for the next local search.
+	 *
+	 * @param pm
+	 *            the index of the PM
+	 */
+	private void loadChanged(int pm) {
+		double overload = 0;
+		if (procLoads[pm] > problem.procUpper[pm])
+			overload += procLoads[pm] / problem.procUpper[pm];
+		if (memLoads[pm] > problem.memUpper[pm])
+			overload += memLoads[pm] / problem.memUpper[pm];
+		if (overloads[pm] == 0 && overload != 0)
+			overloadedPms++;
+		else if (overloads[pm] != 0 && overload == 0)
+			overloadedPms--;
+		fitness.totalOverAllocated += overload - overloads[pm];
+		overloads[pm] = overload;
+		if (overloadedPms == 0)
+			// no rounding errors for the most common case
+			fitness.totalOverAllocated = 0;
+		if (!isDirty[pm]) {
+			isDirty[pm] = true;
+			dirtyPms[dirtyCount++] = pm;
+		}
+	}
+
+	/**
+	 * Changes the host of a VM, the fitness is updated in constant time.
+	 *
+	 * @param vm
+	 *            the index of the VM
+	 * @param pm
+	 *            the index of the new host
+	 */
+	protected void moveVm(int vm, int pm) {
+		if (mapping[vm] != pm) {
+			unassign(vm);
+			assign(vm, pm);
+		}
+	}
+
+	/**
+	 * Forgets the PMs changed so far, except the ones the local search would
+	 * still act on (i.e., the overloaded and the underloaded PMs). This keeps
+	 * the invariant that all PMs the local search would act on are listed in
+	 * dirtyPms: a PM not listed there was found to be neither overloaded nor
+	 * underloaded and its load did not change since.
+	 */
+	private void clearDirty() {
+		int kept = 0;
+		for (int i = 0; i < dirtyCount; i++) {
+			final int pm = dirtyPms[i];
+			if (isOverloaded(pm) || isUnderloaded(pm)) {
+				dirtyPms[kept++] = pm;
+			} else {
+				isDirty[pm] = false;
 			}
 		}
-		countActivePmsAndOverloads();
+		dirtyCount = kept;
+	}
+
+	/**
+	 * Lets the next local search examine all PMs, as if all of them were
+	 * changed since the last one.
+	 */
+	void markAllDirty() {
+		for (int pm = 0; pm < isDirty.length; pm++) {
+			if (!isDirty[pm]) {
+				isDirty[pm] = true;
+				dirtyPms[dirtyCount++] = pm;
+			}
+		}
+	}
+
+	/**
+	 * Determines whether a PM is overloaded in this solution.
+	 */
+	private boolean isOverloaded(int pm) {
+		return procLoads[pm] > problem.procUpper[pm] || memLoads[pm] > problem.memUpper[pm];
+	}
+
+	/**
+	 * Determines whether a PM hosts VMs, but so few that it should be emptied.
+	 */
+	private boolean isUnderloaded(int pm) {
+		return vmCounts[pm] > 0 && procLoads[pm] <= problem.procLower[pm] && memLoads[pm] <= problem.memLower[pm];
+	}
+
+	/**
+	 * Applies the local search requested in the configuration.
+	 */
+	private void localSearch() {
 		if(doLocalSearch1) {
 			improve();
 		} else if(doLocalSearch2){
 			simpleConsolidatorImprove();
 		}
-		// System.err.println("fillRandomly() -> mapping: "+mappingToString());
+	}
+
+	/**
+	 * Creates a random mapping: for each VM, one PM is chosen uniformly randomly.
+	 */
+	void fillRandomly() {
+		for (int vm = 0; vm < mapping.length; vm++) {
+			assign(vm, random.nextInt(procLoads.length));
+		}
+		localSearch();
 	}
 
 	/**
 	 * Creates the same mapping as existing before consolidation has started.
 	 */
 	void createUnchangedSolution() {
-		fitness.nrMigrations=0;
-		for(ModelPM pm : bins) {
-			for(ModelVM vm : pm.getVMs()) {
-				mapping.put(vm, pm);
-				loads.get(pm).singleAdd(vm.getResources());
-				used.put(pm,true);
-			}
+		for (int vm = 0; vm < mapping.length; vm++) {
+			assign(vm, problem.initialHosts[vm]);
+		}
+	}
+
+	/**
+	 * Recreates the placement of a solution of an earlier round on the current
+	 * model. VMs that were not part of that solution (e.g., because they were
+	 * created since) and VMs whose host is no longer part of the model stay on
+	 * their current PM, VMs that were removed since are ignored. The local
+	 * search then repairs the PMs overloaded this way.
+	 *
+	 * @param placement
+	 *            the hosts of the VMs in the earlier solution (see
+	 *            getPlacement())
+	 */
+	void createFromPlacement(Map<VirtualMachine, PhysicalMachine> placement) {
+		for (int vm = 0; vm < mapping.length; vm++) {
+			final PhysicalMachine host = placement.get(problem.vms[vm].getVM());
+			final Integer pm = host == null ? null : problem.hostIndex.get(host);
+			assign(vm, pm == null ? problem.initialHosts[vm] : pm);
 		}
-		countActivePmsAndOverloads();
-		// System.err.println("createUnchangedSolution() -> mapping: "+mappingToString());
+		localSearch();
+	}
+
+	/**
+	 * Determines the placement represented by this solution in terms of the
+	 * simulated machines, so it stays meaningful after the model is rebuilt in
+	 * the next consolidation round.
+	 *
+	 * @return the host PM of each VM
+	 */
+	Map<VirtualMachine, PhysicalMachine> getPlacement() {
+		final IdentityHashMap<VirtualMachine, PhysicalMachine> placement = new IdentityHashMap<>(mapping.length);
+		for (int vm = 0; vm < mapping.length; vm++) {
+			placement.put(problem.vms[vm].getVM(), problem.pms[mapping[vm]].getPM());
+		}
+		return placement;
 	}
 
 	/**
 	 * Improving a solution by relieving overloaded PMs, emptying underloaded
 	 * PMs, and finding new hosts for the thus removed VMs using BFD.
+	 * 
+	 * Only the PMs listed in dirtyPms are examined. All other PMs are neither
+	 * overloaded nor underloaded (see clearDirty()), so a scan of all PMs
+	 * would skip them as well. The listed PMs are examined in the order of
+	 * their indexes, thus the result is the same as with a scan of all PMs,
+	 * while mutations and recombinations touching a few genes are improved
+	 * without going through all PMs.
 	 */
 	protected void improve() {
-		List<ModelVM> vmsToMigrate=new ArrayList<>();
-		//create inverse mapping
-		Map<ModelPM,Vector<ModelVM>> vmsOfPms=new HashMap<>();
-		for(ModelPM pm : bins) {
-			vmsOfPms.put(pm, new Vector<>());
-		}
-		for(ModelVM vm : mapping.keySet()) {
-			vmsOfPms.get(mapping.get(vm)).add(vm);
-		}
-		
 		//relieve overloaded PMs + empty underloaded PMs
-		for(ModelPM pm : bins) {
-			ConstantConstraints cap=pm.getTotalResources();
-//			Logger.getGlobal().info("ConstantConstraints: " + cap.getTotalProcessingPower() + ", " + cap.getRequiredMemory() + 
-//					", loads: " + loads.get(pm).getTotalProcessingPower() + ", " + loads.get(pm).getRequiredMemory());
-			while(loads.get(pm).getTotalProcessingPower()>cap.getTotalProcessingPower()*pm.getUpperThreshold()
-					|| loads.get(pm).getRequiredMemory()>cap.getRequiredMemory()*pm.getUpperThreshold()) {
+		final List<Integer> vmsToMigrate = new ArrayList<>();
+		Arrays.sort(dirtyPms, 0, dirtyCount);
+		for (int i = 0; i < dirtyCount; i++) {
+			final int pm = dirtyPms[i];
+			while (isOverloaded(pm)) {
 				//PM is overloaded
-				Vector<ModelVM> vmsOfPm=vmsOfPms.get(pm);
-				
-				//Logger.getGlobal().info("overloaded, vmsOfPm, size: " + vmsOfPm.size() + ", " + vmsOfPm.toString());
-				
-				ModelVM vm=vmsOfPm.remove(vmsOfPm.size()-1);
+				int vm = firstVms[pm];
 				vmsToMigrate.add(vm);
-				loads.get(pm).subtract(vm.getResources());
-				if(vmsOfPm.isEmpty())
-					used.put(pm, false);
+				unassign(vm);
 			}
-			if(loads.get(pm).getTotalProcessingPower()<=cap.getTotalProcessingPower()*pm.getLowerThreshold()
-					&& loads.get(pm).getRequiredMemory()<=cap.getRequiredMemory()*pm.getLowerThreshold()) {
+			if (isUnderloaded(pm)) {
 				//PM is underloaded
-				Vector<ModelVM> vmsOfPm=vmsOfPms.get(pm);
-				
-				//Logger.getGlobal().info("underloaded, vmsOfPm, size: " + vmsOfPm.size());
-				
-				for(ModelVM vm : vmsOfPm) {
+				while (firstVms[pm] != -1) {
+					int vm = firstVms[pm];
 					vmsToMigrate.add(vm);
-					loads.get(pm).subtract(vm.getResources());
+					unassign(vm);
 				}
-				vmsOfPm.removeAllElements();
-				used.put(pm, false);
 			}
 		}
+		if (vmsToMigrate.isEmpty()) {
+			clearDirty();
+			return;
+		}
 		//find new host for the VMs to migrate using BFD
-		Collections.sort(vmsToMigrate, new Comparator<ModelVM>() {
+		Integer[] toMigrate = vmsToMigrate.toArray(new Integer[vmsToMigrate.size()]);
+		Arrays.sort(toMigrate, new Comparator<Integer>() {
 			@Override
-			public int compare(ModelVM vm1, ModelVM vm2) {
-				return Double.compare(vm2.getResources().getTotalProcessingPower(), vm1.getResources().getTotalProcessingPower());
+			public int compare(Integer vm1, Integer vm2) {
+				return Double.compare(problem.vmProc[vm2], problem.vmProc[vm1]);
 			}
 		});
-		List<ModelPM> binsToTry=new ArrayList<>(bins);
-		Collections.sort(binsToTry, new Comparator<ModelPM>() {
+		// only the loaded PMs need sorting, the empty ones are tried last in
+		// their original order
+		final int pmCount = vmCounts.length;
+		int loaded = 0;
+		for (int pm = 0; pm < pmCount; pm++) {
+			if (procLoads[pm] > 0)
+				loaded++;
+		}
+		Integer[] loadedBins = new Integer[loaded];
+		int[] binsToTry = new int[pmCount];
+		int empty = loaded;
+		loaded = 0;
+		for (int pm = 0; pm < pmCount; pm++) {
+			if (procLoads[pm] > 0)
+				loadedBins[loaded++] = pm;
+			else
+				binsToTry[empty++] = pm;
+		}
+		Arrays.sort(loadedBins, new Comparator<Integer>() {
 			@Override
-			public int compare(ModelPM pm1, ModelPM pm2) {
-				return Double.compare(loads.get(pm2).getTotalProcessingPower(), loads.get(pm1).getTotalProcessingPower());
+			public int compare(Integer pm1, Integer pm2) {
+				return Double.compare(procLoads[pm2], procLoads[pm1]);
 			}
 		});
-		for(ModelVM vm : vmsToMigrate) {
-			ModelPM targetPm=null;
-			for(ModelPM pm : binsToTry) {
-				ResourceVector newLoad=loads.get(pm).clone();
-				newLoad.singleAdd(vm.getResources());
-				ConstantConstraints cap=pm.getTotalResources();
-				if(newLoad.getTotalProcessingPower()<=cap.getTotalProcessingPower()*pm.getUpperThreshold()
-						&& newLoad.getRequiredMemory()<=cap.getRequiredMemory()*pm.getUpperThreshold()) {
-					targetPm=pm;
+		for (int i = 0; i < loaded; i++) {
+			binsToTry[i] = loadedBins[i];
+		}
+		for (int vm : toMigrate) {
+			int targetPm = -1;
+			for (int pm : binsToTry) {
+				if (procLoads[pm] + problem.vmProc[vm] <= problem.procUpper[pm]
+						&& memLoads[pm] + problem.vmMem[vm] <= problem.memUpper[pm]) {
+					targetPm = pm;
 					break;
 				}
 			}
-			if(targetPm==null)
-				targetPm=vm.getInitialPm();
-			mapping.put(vm, targetPm);
-			loads.get(targetPm).singleAdd(vm.getResources());
-			used.put(targetPm, true);
-			if(targetPm!=vm.getInitialPm())
-				fitness.nrMigrations++;
+			if (targetPm == -1)
+				targetPm = problem.initialHosts[vm];
+			assign(vm, targetPm);
 		}
-		countActivePmsAndOverloads();
+		clearDirty();
 	}
-	
+
 	/**
 	 * The algorithm out of the simple consolidator, adjusted to work with the abstract model.
 	 */
 	protected void simpleConsolidatorImprove() {
-//		Logger.getGlobal().info("starting to improve with second local search");
-		
-		// create an array out of the bins
-		ModelPM[] arr = new ModelPM[bins.size()];
-		for(int i = 0; i < bins.size(); i++) {			
-			arr[i] = bins.get(i);
-		}
-		
-		// now filter out the not running machines
-		int runningLen = 0;
-		for (int i = 0; i < arr.length; i++) {
-			if (arr[i].isRunning()) {
-				arr[runningLen++] =arr[i];
+		// filter out the not running machines
+		List<ModelPM> running = new ArrayList<>();
+		for (ModelPM pm : bins) {
+			if (pm.isRunning()) {
+				running.add(pm);
 			}
 		}
-		ModelPM[] pmList = new ModelPM[runningLen];
-		System.arraycopy(arr, 0, pmList, 0, runningLen);		
-		
-//		Logger.getGlobal().info("size of the pmList: " + pmList.length);
+		ModelPM[] pmList = running.toArray(new ModelPM[running.size()]);
+		int runningLen = pmList.length;
+		// the model is not changed by the search, so each VM is relocated at
+		// most once to make sure the search terminates
+		final boolean[] relocated = new boolean[mapping.length];
 
 		boolean didMove;
 		do {
 			didMove = false;
-			
+
 			// sort the array from highest to lowest free capacity with an adjusted version of the fitting pm comparator
 			Arrays.sort(pmList, new Comparator<ModelPM>() {
 				@Override
@@ -279,37 +625,33 @@ public class Solution {
 					return -pm1.getFreeResources().compareTo(pm2.getFreeResources());
 				}
 			});
-			
+
 			int lastItem = runningLen - 1;
-			
-//			Logger.getGlobal().info("filtered array: " + Arrays.toString(pmList));
-			
+
 			for(int i = 0; i < pmList.length; i++) {
 				ModelPM source = pmList[i];
 				if( source.isHostingVMs() ) {
 					ModelVM[] vmList = source.getVMs().toArray(new ModelVM[source.getVMs().size()]);
-					
+
 					for (int vmidx = 0; vmidx < vmList.length; vmidx++) {
 						ModelVM vm = vmList[vmidx];
+						final int v = problem.vmIndex.get(vm);
+						if (relocated[v])
+							continue;
 						// ModelVMs can only run, so we need not to check the state (there is none either)
 						for (int j = lastItem; j > i; j--) {
 							ModelPM target = pmList[j];
 							if (target.getFreeResources().getTotalProcessingPower() < 0.00000001) {
-								// Ensures that those PMs that barely have resources will not be 
+								// Ensures that those PMs that barely have resources will not be
 								// considered in future runs of this loop
-								
+
 								lastItem = j;
 								continue;
 							}
-							
+
 							if(target.isMigrationPossible(vm)) {
-								mapping.put(vm, target);
-								loads.get(target).singleAdd(vm.getResources());
-								used.put(target, true);
-								
-								if(target!=vm.getInitialPm())
-									fitness.nrMigrations++;
-								
+								moveVm(v, problem.pmIndex.get(target));
+								relocated[v] = true;
 								didMove = true;
 								break;
 							}
@@ -318,16 +660,14 @@ public class Solution {
 				}
 			}
 		} while (didMove);
-		countActivePmsAndOverloads();
 	}
 
 	/**
-	 * Creates a mapping based on FirstFit. 
+	 * Creates a mapping based on FirstFit.
 	 */
 	void createFirstFitSolution() {
 		createUnchangedSolution();
 		improve();
-		// System.err.println("createFirstFitSolution() -> mapping: "+mappingToString());
 	}
 
 	/**
@@ -342,28 +682,25 @@ public class Solution {
 	 * mapping of each VM) is replaced by a random one with probability mutationProb
 	 * and simply copied otherwise. Note that the current solution (this) is not
 	 * changed.
+	 *
+	 * The genes to be replaced are found by drawing the geometrically
+	 * distributed gaps between them, so only the replaced genes cost random
+	 * numbers and fitness updates.
 	 */
 	Solution mutate() {
-		Solution result = new Solution(bins, mutationProb);
-		result.fitness.nrMigrations=0;
-		for (ModelVM vm : mapping.keySet()) {
-			ModelPM pm;
-			if (random.nextDouble() < mutationProb)
-				pm = bins.get(random.nextInt(bins.size()));
-			else
-				pm = mapping.get(vm);
-			result.mapping.put(vm, pm);
-			result.loads.get(pm).singleAdd(vm.getResources());
-			result.used.put(pm,true);
-			if(pm!=vm.getInitialPm())
-				result.fitness.nrMigrations++;
-		}
-		result.countActivePmsAndOverloads();
-		if(doLocalSearch1) {
-			result.improve();
-		} else if(doLocalSearch2){
-			result.simpleConsolidatorImprove();
+		Solution result = clone();
+		if (mutationProb > 0) {
+			final double logKeep = Math.log(1 - mutationProb);
+			double vm = -1;
+			while (true) {
+				// the number of genes kept before the next replaced one
+				vm += 1 + (mutationProb >= 1 ? 0 : Math.floor(Math.log(1 - random.nextDouble()) / logKeep));
+				if (vm >= mapping.length)
+					break;
+				result.moveVm((int) vm, random.nextInt(procLoads.length));
+			}
 		}
+		result.localSearch();
 		return result;
 	}
 
@@ -371,32 +708,19 @@ public class Solution {
 	 * Create a new solution by recombinating this solution with another. Each gene
 	 * (i.e., the mapping of each VM) is taken randomly either from this or the
 	 * other parent. Note that the two parents are not changed.
-	 * 
+	 *
 	 * @param other
 	 *            The other parent for the recombination
 	 * @return A new solution resulting from the recombination
 	 */
 	Solution recombinate(Solution other) {
-		Solution result = new Solution(bins, mutationProb);
-		result.fitness.nrMigrations=0;
-		for (ModelVM vm : mapping.keySet()) {
-			ModelPM pm;
-			if (random.nextBoolean())
-				pm = other.mapping.get(vm);
-			else
-				pm = this.mapping.get(vm);
-			result.mapping.put(vm, pm);
-			result.loads.get(pm).singleAdd(vm.getResources());
-			result.used.put(pm,true);
-			if(pm!=vm.getInitialPm())
-				result.fitness.nrMigrations++;
-		}
-		result.countActivePmsAndOverloads();
-		if(doLocalSearch1) {
-			result.improve();
-		} else if(doLocalSearch2){
-			result.simpleConsolidatorImprove();
+		Solution result = clone();
+		for (int vm = 0; vm < mapping.length; vm++) {
+			// genes equal in the parents need no random decision
+			if (other.mapping[vm] != mapping[vm] && random.nextBoolean())
+				result.moveVm(vm, other.mapping[vm]);
 		}
+		result.localSearch();
 		return result;
 	}
 
@@ -404,88 +728,87 @@ public class Solution {
 	 * Implement solution in the model by performing the necessary migrations.
 	 */
 	public void implement() {
-		for (ModelVM vm : mapping.keySet()) {
-			ModelPM oldPm = vm.gethostPM();
-			ModelPM newPm = mapping.get(vm);
+		for (int vm = 0; vm < mapping.length; vm++) {
+			ModelPM oldPm = problem.vms[vm].gethostPM();
+			ModelPM newPm = problem.pms[mapping[vm]];
 			if (newPm != oldPm)
-				oldPm.migrateVM(vm, newPm);
+				oldPm.migrateVM(problem.vms[vm], newPm);
 		}
 	}
 
+	/**
+	 * Determines the host of a VM in this solution.
+	 *
+	 * @param vm
+	 *            the VM in question
+	 * @return the PM hosting the VM according to this solution
+	 */
+	public ModelPM getHost(ModelVM vm) {
+		return problem.pms[mapping[problem.vmIndex.get(vm)]];
+	}
+
 	/**
 	 * String representation of both the mapping and the fitness of the given
 	 * solution.
 	 */
 	public String toString() {
-		String result = "[m=(";
-		boolean first = true;
-		for (ModelVM vm : mapping.keySet()) {
-			if (!first)
-				result = result + ",";
-			result = result + vm.hashCode() + "->" + mapping.get(vm).hashCode();
-			first = false;
+		return "[m=(" + genesToString() + "),f=" + fitness.toString() + "]";
+	}
+
+	/**
+	 * Lists the mapping in the form of VM id->PM id pairs.
+	 */
+	private String genesToString() {
+		StringBuilder result = new StringBuilder();
+		for (int vm = 0; vm < mapping.length; vm++) {
+			if (vm != 0)
+				result.append(',');
+			result.append(problem.vms[vm].hashCode()).append("->").append(problem.pms[mapping[vm]].hashCode());
 		}
-		result = result + "),f=" + fitness.toString() + "]";
-		return result;
+		return result.toString();
 	}
 
 	/**
 	 * String representation of the mapping of the given solution.
 	 */
 	public String mappingToString() {
-		String result = "[mapping=(";
-		boolean first = true;
-		for (ModelVM vm : mapping.keySet()) {
-			if (!first)
-				result = result + ",";
-			result = result + vm.hashCode() + "->" + mapping.get(vm).hashCode();
-			first = false;
-		}
-		result = result + ")]";
-		return result;
+		return "[mapping=(" + genesToString() + ")]";
 	}
-	
+
 	/**
 	 * String representation of the loads of each pm of the current mapping.
 	 */
 	public String loadsToString() {
-		String result = "[loads=(";
+		StringBuilder result = new StringBuilder("[loads=(");
 		boolean first = true;
-		for (ModelPM pm : loads.keySet()) {
-			
-			
-			if(!loads.get(pm).isEmpty()) {
+		for (int pm = 0; pm < procLoads.length; pm++) {
+			if (vmCounts[pm] > 0) {
 				if (!first)
-					result = result + ",";
-				
-				result = result + pm.hashCode() + "::" + loads.get(pm).toString();
+					result.append(',');
+				result.append(problem.pms[pm].hashCode()).append("::").append(procLoads[pm]).append('/')
+						.append(memLoads[pm]);
 				first = false;
 			}
 		}
-		result = result + ")]";
-		return result;
+		result.append(")]");
+		return result.toString();
 	}
-	
+
 	/**
-	 * String representation of the used-mapping of the given solution.
+	 * String representation of the used PMs of the given solution.
 	 */
 	public String usedToString() {
-		String result = "[used=(";
+		StringBuilder result = new StringBuilder("[used=(");
 		boolean first = true;
-		for (ModelPM pm : used.keySet()) {
-			
-			if(!used.get(pm))
-				continue;
-			else {
+		for (int pm = 0; pm < vmCounts.length; pm++) {
+			if (vmCounts[pm] > 0) {
 				if (!first)
-					result = result + ", ";
-				
-				result = result + pm.hashCode();
+					result.append(", ");
+				result.append(problem.pms[pm].hashCode());
 				first = false;
-			}			
-			
+			}
 		}
-		result = result + ")]";
-		return result;
+		result.append(")]");
+		return result.toString();
 	}
 }
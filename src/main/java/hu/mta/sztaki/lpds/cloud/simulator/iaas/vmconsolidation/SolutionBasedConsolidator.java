@@ -23,13 +23,38 @@
  */
 package hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
 import java.util.logging.Logger;
 
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.IaaSService;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.PhysicalMachine;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.VirtualMachine;
 
 /**
  * This class is to be sub-classed by all workload consolidators that use the
- * Solution class. It allows the loading of the mutation probability
+ * Solution class. It allows the loading of the mutation probability and
+ * offers the generation and evaluation of population members on a fork/join
+ * pool (if the configuration asks for more than one thread). The pools are
+ * shared by all consolidators asking for the same number of threads, so
+ * creating many consolidators does not create many idle pools.
+ * 
+ * Every solution created with newSolution() receives its own random number
+ * stream split from a root stream seeded with the configured seed. As the
+ * streams are handed out in the order of the population members (and not to
+ * the worker threads), the results of the consolidation do not depend on the
+ * number of threads used.
+ * 
+ * If the configuration asks for it, the best solutions of a round are
+ * remembered and used to seed the population/swarm of the next round instead
+ * of some of the random members.
  * 
  * @author "Gabor Kecskemeti, Department of Computer Science, Liverpool John
  *         Moores University, (c) 2017"
@@ -41,13 +66,206 @@ public abstract class SolutionBasedConsolidator extends ModelBasedConsolidator {
 	protected int unchangedCreations;
 	protected int firstFitCreations;
 
+	/** The root of the random number streams of the created solutions */
+	private SplittableRandom streams;
+	/** Generates the population members concurrently, null if sequential */
+	private ForkJoinPool pool;
+	/** The pools shared by the consolidators, keyed by their parallelism */
+	private static final HashMap<Integer, ForkJoinPool> sharedPools = new HashMap<>();
+	/** The dense representation of the model of the current round */
+	private Solution.Problem problem;
+	/** The placements of the best solutions of the previous round */
+	private final List<Map<VirtualMachine, PhysicalMachine>> elites = new ArrayList<>();
+
+	/**
+	 * Processes a range of population members by splitting it until single
+	 * members remain.
+	 */
+	private static class MemberTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int from, to;
+		private final IntConsumer action;
+
+		MemberTask(final int from, final int to, final IntConsumer action) {
+			this.from = from;
+			this.to = to;
+			this.action = action;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				action.accept(from);
+			} else {
+				final int mid = (from + to) >>> 1;
+				invokeAll(new MemberTask(from, mid, action), new MemberTask(mid, to, action));
+			}
+		}
+	}
+
 	public SolutionBasedConsolidator(IaaSService toConsolidate, long consFreq) {
 		super(toConsolidate, consFreq);
 	}
 
+	public SolutionBasedConsolidator(IaaSService toConsolidate, long consFreq, ConsolidationConfig config) {
+		super(toConsolidate, consFreq, config);
+	}
+
 	@Override
 	protected void processProps() {
-		this.mutationProb = Double.parseDouble(props.getProperty("mutationProb"));		
+		this.mutationProb = config.mutationProb;
+		this.streams = new SplittableRandom(config.seed);
+		if (config.parallelism > 1) {
+			pool = sharedPool(config.parallelism);
+		}
+	}
+
+	/**
+	 * Determines the pool to be used by the consolidators with a particular
+	 * parallelism. The pool is created on first use. Its worker threads are
+	 * daemons that terminate after some idle time, thus the pool does not
+	 * need to be shut down when the consolidators are no longer used.
+	 * 
+	 * @param parallelism
+	 *            the number of threads the consolidator may use
+	 * @return the pool shared by all consolidators with this parallelism
+	 */
+	static ForkJoinPool sharedPool(int parallelism) {
+		synchronized (sharedPools) {
+			ForkJoinPool shared = sharedPools.get(parallelism);
+			if (shared == null) {
+				shared = new ForkJoinPool(parallelism);
+				sharedPools.put(parallelism, shared);
+			}
+			return shared;
+		}
+	}
+
+	/**
+	 * Shuts down all shared pools. Consolidators created afterwards receive
+	 * new pools, while the already existing parallel consolidators must no
+	 * longer be used.
+	 */
+	public static void shutdownSharedPools() {
+		synchronized (sharedPools) {
+			for (ForkJoinPool shared : sharedPools.values()) {
+				shared.shutdown();
+			}
+			sharedPools.clear();
+		}
+	}
+
+	/**
+	 * Determines the dense representation of the current model. It is created
+	 * once per consolidation round and shared by all solutions of the round.
+	 */
+	Solution.Problem problem() {
+		if (problem == null || !problem.isFor(bins)) {
+			problem = new Solution.Problem(bins);
+		}
+		return problem;
+	}
+
+	/**
+	 * Splits a new random number stream for a solution. Must be called in the
+	 * thread of the consolidator so the streams are handed out in a
+	 * deterministic order.
+	 */
+	SplittableRandom nextStream() {
+		return streams.split();
+	}
+
+	/**
+	 * Creates a solution with an empty mapping for the current model that uses
+	 * its own random number stream.
+	 * 
+	 * @param mp
+	 *            the probability of a gene to be replaced during mutation
+	 * @return the new solution
+	 */
+	protected Solution newSolution(double mp) {
+		return new Solution(problem(), mp, config, nextStream());
+	}
+
+	/**
+	 * Runs the given action for all members of the population/swarm. If the
+	 * configuration allows parallelism, the members are processed
+	 * concurrently on the pool of the consolidator, thus the action must only
+	 * touch the member with the given index. The simple consolidator local
+	 * search alters the shared model, therefore the members are always
+	 * processed sequentially if it is in use.
+	 * 
+	 * @param count
+	 *            the number of members to process
+	 * @param action
+	 *            receives the index of the member to process
+	 */
+	protected void forEachMember(int count, IntConsumer action) {
+		if (pool == null || count < 2 || config.doLocalSearch2) {
+			for (int i = 0; i < count; i++) {
+				action.accept(i);
+			}
+		} else {
+			pool.invoke(new MemberTask(0, count, action));
+		}
+	}
+	
+	/**
+	 * Remembers the best (distinct) members of the population/swarm so the
+	 * next round can start from them. Does nothing if warm starts are not
+	 * configured.
+	 * 
+	 * @param members
+	 *            the final population/swarm of the round
+	 */
+	protected void rememberElites(List<? extends Solution> members) {
+		elites.clear();
+		final List<Solution> candidates = new ArrayList<>(members);
+		final List<Solution> chosen = new ArrayList<>();
+		while (chosen.size() < config.warmStartElites && !candidates.isEmpty()) {
+			int best = 0;
+			for (int i = 1; i < candidates.size(); i++) {
+				if (candidates.get(i).evaluate().isBetterThan(candidates.get(best).evaluate()))
+					best = i;
+			}
+			final Solution s = candidates.remove(best);
+			boolean duplicate = false;
+			for (Solution c : chosen) {
+				duplicate |= Arrays.equals(c.mapping, s.mapping);
+			}
+			if (!duplicate) {
+				chosen.add(s);
+				elites.add(s.getPlacement());
+			}
+		}
+	}
+
+	/**
+	 * Determines how many members of the population/swarm can be seeded from
+	 * the previous round. Records the seeded members in the statistics.
+	 * 
+	 * @param max
+	 *            the number of members that would be created randomly
+	 * @return the number of members to seed with warmStart()
+	 */
+	protected int warmStarts(int max) {
+		final int count = Math.min(max, elites.size());
+		stats.warmStarted(count);
+		return count;
+	}
+
+	/**
+	 * Seeds a member with a solution of the previous round, remapped onto the
+	 * current model (see Solution.createFromPlacement()).
+	 * 
+	 * @param s
+	 *            the empty solution to fill
+	 * @param elite
+	 *            the index of the solution of the previous round, below the
+	 *            value returned by warmStarts()
+	 */
+	protected void warmStart(Solution s, int elite) {
+		s.createFromPlacement(elites.get(elite));
 	}
 	
 	/**
@@ -1,6 +1,5 @@
 package hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation;
 
-import java.util.List;
 import java.util.logging.Logger;
 
 import hu.mta.sztaki.lpds.cloud.simulator.Timed;
@@ -41,7 +40,7 @@ public class StartAction extends Action implements PhysicalMachine.StateChangeLi
 	 * There are no predecessors for a starting action.
 	 */
 	@Override
-	public void determinePredecessors(List<Action> actions) {
+	public void determinePredecessors(ActionIndex index) {
 	}
 
 	@Override
@@ -0,0 +1,346 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor 
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *  
+ *  This file is part of DISSECT-CF.
+ *  
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *  
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package hu.mta.sztaki.lpds.cloud.simulator.io;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.resourcemodel.ResourceConsumption;
+import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkNode.NetworkException;
+
+/**
+ * A delivery of a storage object split into fixed sized chunks. Every replica
+ * of the object transfers a chunk at a time, when a replica finishes its chunk
+ * it takes the next one not yet transferred. Thus large objects are
+ * transferred in parallel from all their replicas.
+ * 
+ * If a chunk's transfer is cancelled, its replica is no longer used and the
+ * others take over its chunks. The delivery is interrupted if no replica is
+ * left (or if the delivery is cancelled), the chunks already received are kept
+ * and the delivery can be resumed later on. The object is only registered in
+ * the target repository after all of its chunks arrived.
+ * 
+ * The storage for the object is reserved in the target repository for the
+ * whole life of the delivery, use <i>abandon</i> to release it if the
+ * delivery is not resumed.
+ * 
+ * @author "agent, (c) 2026"
+ */
+public class ChunkedTransfer {
+	/**
+	 * The transfer of a single chunk from one of the replicas
+	 */
+	private class Chunk implements ResourceConsumption.ConsumptionEvent {
+		final int index;
+		final long size;
+		final Repository from;
+		ResourceConsumption rc;
+
+		Chunk(final int index, final Repository from) {
+			this.index = index;
+			this.from = from;
+			size = Math.min(chunkSize, object.size - index * chunkSize);
+		}
+
+		@Override
+		public void conComplete() {
+			active.remove(from);
+			from.underTransfer.remove(object.id);
+			received[index] = true;
+			receivedChunks++;
+			receivedBytes += size;
+			if (receivedChunks == received.length) {
+				finish();
+			} else {
+				if (!stopping) {
+					dispatch();
+				}
+				if (active.isEmpty()) {
+					interrupt(null);
+				}
+			}
+		}
+
+		@Override
+		public void conCancelled(final ResourceConsumption problematic) {
+			active.remove(from);
+			from.underTransfer.remove(object.id);
+			if (!stopping) {
+				// The replica failed, the others take over its chunks
+				usable.remove(from);
+				dispatch();
+			}
+			if (active.isEmpty()) {
+				interrupt(problematic);
+			}
+		}
+	}
+
+	/**
+	 * The object to be delivered
+	 */
+	public final StorageObject object;
+	/**
+	 * The name of the delivered copy, null if it keeps the original name
+	 */
+	public final String newId;
+	/**
+	 * The repository receiving the object
+	 */
+	public final Repository target;
+	/**
+	 * The maximum size of a single chunk
+	 */
+	public final long chunkSize;
+	/**
+	 * The repositories holding a replica of the object
+	 */
+	private final List<Repository> sources;
+	/**
+	 * The replicas not failed since the delivery was (re)started
+	 */
+	private final ArrayList<Repository> usable = new ArrayList<Repository>();
+	/**
+	 * The chunk under transfer from each replica
+	 */
+	private final HashMap<Repository, Chunk> active = new HashMap<Repository, Chunk>();
+	/**
+	 * Shows which chunks have already arrived
+	 */
+	private final boolean[] received;
+	/**
+	 * The event to be fired on completion or interruption
+	 */
+	private final ResourceConsumption.ConsumptionEvent ev;
+	private int receivedChunks = 0;
+	private long receivedBytes = 0;
+	/**
+	 * Shows if the ongoing chunk transfers are being cancelled
+	 */
+	private boolean stopping = false;
+	private boolean interrupted = false;
+	private boolean complete = false;
+	/**
+	 * Shows if the storage for the object is still reserved in the target
+	 */
+	private boolean promised = true;
+
+	/**
+	 * Prepares the delivery, use Repository.requestChunkedDelivery to create
+	 * and start it.
+	 */
+	ChunkedTransfer(final StorageObject object, final String newId, final Repository target, final long chunkSize,
+			final List<Repository> sources, final ResourceConsumption.ConsumptionEvent ev) {
+		this.object = object;
+		this.newId = newId;
+		this.target = target;
+		this.chunkSize = chunkSize;
+		this.sources = sources;
+		this.ev = ev;
+		received = new boolean[(int) ((object.size + chunkSize - 1) / chunkSize)];
+	}
+
+	/**
+	 * Starts transferring the missing chunks from all the replicas still
+	 * holding the object.
+	 * 
+	 * @return <i>true</i> if at least a single chunk transfer has started
+	 */
+	boolean start() {
+		stopping = false;
+		usable.clear();
+		for (Repository r : sources) {
+			if (r.lookup(object.id) != null) {
+				usable.add(r);
+			}
+		}
+		if (received.length == 0) {
+			// Empty object, nothing to transfer
+			finish();
+			return true;
+		}
+		dispatch();
+		if (active.isEmpty()) {
+			return false;
+		}
+		interrupted = false;
+		return true;
+	}
+
+	/**
+	 * Registers the object in the target after all of its chunks arrived.
+	 */
+	private void finish() {
+		complete = true;
+		promised = false;
+		target.releasePromise(object.size);
+		target.registerObject((newId != null || sources.contains(target)) ? object.newCopy(newId) : object);
+		if (ev != null) {
+			ev.conComplete();
+		}
+	}
+
+	/**
+	 * Lets every idle replica transfer a chunk not yet received or under
+	 * transfer.
+	 */
+	private void dispatch() {
+		int next = 0;
+		final Repository[] idle = usable.toArray(new Repository[usable.size()]);
+		for (Repository from : idle) {
+			if (active.containsKey(from)) {
+				continue;
+			}
+			while (next < received.length && (received[next] || isActive(next))) {
+				next++;
+			}
+			if (next == received.length) {
+				break;
+			}
+			final Chunk c = new Chunk(next, from);
+			try {
+				c.rc = NetworkNode.initTransfer(c.size, ResourceConsumption.unlimitedProcessing, from, target, c);
+				from.underTransfer.add(object.id);
+				active.put(from, c);
+			} catch (NetworkException e) {
+				usable.remove(from);
+			}
+		}
+	}
+
+	private boolean isActive(final int chunk) {
+		for (Chunk c : active.values()) {
+			if (c.index == chunk) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void interrupt(final ResourceConsumption problematic) {
+		stopping = false;
+		interrupted = true;
+		if (ev != null) {
+			ev.conCancelled(problematic);
+		}
+	}
+
+	/**
+	 * Cancels the ongoing chunk transfers. The chunks already received are
+	 * kept, the delivery can be resumed later.
+	 */
+	public void cancel() {
+		if (active.isEmpty()) {
+			return;
+		}
+		stopping = true;
+		for (Chunk c : active.values().toArray(new Chunk[active.size()])) {
+			c.rc.cancel();
+		}
+	}
+
+	/**
+	 * Continues an interrupted delivery with the chunks not yet received.
+	 * 
+	 * @return <i>true</i> if the delivery continues
+	 * @throws IllegalStateException
+	 *             if the delivery is not interrupted
+	 */
+	public boolean resume() {
+		if (!interrupted || !promised) {
+			throw new IllegalStateException("Only interrupted deliveries can be resumed");
+		}
+		return start();
+	}
+
+	/**
+	 * Stops the delivery for good and releases the storage reserved for the
+	 * object in the target repository.
+	 */
+	public void abandon() {
+		cancel();
+		if (promised) {
+			promised = false;
+			target.releasePromise(object.size);
+		}
+	}
+
+	/**
+	 * @return the fraction of the object already delivered, including the
+	 *         progress of the chunks under transfer
+	 */
+	public double getProgress() {
+		if (object.size == 0) {
+			return complete ? 1 : 0;
+		}
+		double done = receivedBytes;
+		for (Chunk c : active.values()) {
+			done += c.size - c.rc.getUnProcessed();
+		}
+		return done / object.size;
+	}
+
+	/**
+	 * @return the number of chunks the object is split into
+	 */
+	public int getChunkCount() {
+		return received.length;
+	}
+
+	/**
+	 * @return the number of chunks already received
+	 */
+	public int getReceivedChunks() {
+		return receivedChunks;
+	}
+
+	/**
+	 * @return the number of replicas currently transferring chunks
+	 */
+	public int getActiveSources() {
+		return active.size();
+	}
+
+	/**
+	 * @return <i>true</i> if all the chunks arrived and the object is
+	 *         registered in the target
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * @return <i>true</i> if the delivery stopped before all chunks arrived
+	 */
+	public boolean isInterrupted() {
+		return interrupted;
+	}
+
+	@Override
+	public String toString() {
+		return "ChunkedTransfer(" + object.id + " Chunks:" + getReceivedChunks() + "/" + received.length
+				+ " Sources:" + active.size() + "/" + usable.size() + ")";
+	}
+}
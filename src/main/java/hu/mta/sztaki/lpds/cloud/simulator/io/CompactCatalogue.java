@@ -0,0 +1,161 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor 
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *  
+ *  This file is part of DISSECT-CF.
+ *  
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *  
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package hu.mta.sztaki.lpds.cloud.simulator.io;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+/**
+ * A catalogue for repositories with millions of small storage objects. Plain
+ * storage objects are not kept as objects: their ids are mapped to slots in
+ * an open addressing primitive map, and their sizes are kept in an array
+ * indexed by these slots. Lookups create a new storage object with the same id
+ * and size every time, thus the returned objects are equivalent but not
+ * identical with the registered ones.
+ * 
+ * Objects of the subclasses of StorageObject (e.g., virtual appliances) are
+ * kept as they are, so lookups return them unaltered.
+ * 
+ * @author "agent, (c) 2026"
+ */
+public class CompactCatalogue implements StorageCatalogue {
+	/**
+	 * the slot of each object, -1 if the object is not in the catalogue
+	 */
+	private final TObjectIntHashMap<String> slots;
+	/**
+	 * the id of the object in each slot, null for free slots
+	 */
+	private String[] ids;
+	/**
+	 * the size of the object in each slot
+	 */
+	private long[] sizes;
+	/**
+	 * the objects not stored in the compact form, indexed by their slots
+	 */
+	private final TIntObjectHashMap<StorageObject> kept = new TIntObjectHashMap<StorageObject>();
+	/**
+	 * the slots freed by removals, reused before new slots are allocated
+	 */
+	private final TIntArrayList freeSlots = new TIntArrayList();
+	/**
+	 * the number of slots ever allocated
+	 */
+	private int allocated = 0;
+
+	/**
+	 * Creates an empty catalogue with the default initial capacity.
+	 */
+	public CompactCatalogue() {
+		this(16);
+	}
+
+	/**
+	 * Creates an empty catalogue.
+	 * 
+	 * @param initialCapacity
+	 *            the number of objects the catalogue can hold without resizing
+	 */
+	public CompactCatalogue(final int initialCapacity) {
+		final int capacity = Math.max(initialCapacity, 1);
+		slots = new TObjectIntHashMap<String>(capacity, 0.5f, -1);
+		ids = new String[capacity];
+		sizes = new long[capacity];
+	}
+
+	@Override
+	public StorageObject get(final String id) {
+		final int slot = slots.get(id);
+		return slot == -1 ? null : materialize(slot);
+	}
+
+	private StorageObject materialize(final int slot) {
+		final StorageObject so = kept.get(slot);
+		return so == null ? new StorageObject(ids[slot], sizes[slot], false) : so;
+	}
+
+	@Override
+	public boolean contains(final String id) {
+		return slots.containsKey(id);
+	}
+
+	@Override
+	public void put(final StorageObject so) {
+		final int slot;
+		if (freeSlots.isEmpty()) {
+			if (allocated == ids.length) {
+				ids = Arrays.copyOf(ids, allocated * 2);
+				sizes = Arrays.copyOf(sizes, allocated * 2);
+			}
+			slot = allocated++;
+		} else {
+			slot = freeSlots.removeAt(freeSlots.size() - 1);
+		}
+		ids[slot] = so.id;
+		sizes[slot] = so.size;
+		if (so.getClass() != StorageObject.class) {
+			kept.put(slot, so);
+		}
+		slots.put(so.id, slot);
+	}
+
+	@Override
+	public StorageObject remove(final String id) {
+		final int slot = slots.remove(id);
+		if (slot == -1) {
+			return null;
+		}
+		final StorageObject removed = materialize(slot);
+		ids[slot] = null;
+		kept.remove(slot);
+		freeSlots.add(slot);
+		return removed;
+	}
+
+	@Override
+	public int size() {
+		return slots.size();
+	}
+
+	/**
+	 * Materializes all objects of the catalogue, thus it should be used
+	 * sparingly on large catalogues.
+	 */
+	@Override
+	public Collection<StorageObject> values() {
+		final ArrayList<StorageObject> all = new ArrayList<StorageObject>(slots.size());
+		for (int slot = 0; slot < allocated; slot++) {
+			if (ids[slot] != null) {
+				all.add(materialize(slot));
+			}
+		}
+		return all;
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor 
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *  
+ *  This file is part of DISSECT-CF.
+ *  
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *  
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package hu.mta.sztaki.lpds.cloud.simulator.io;
+
+/**
+ * A copy of a storage object made in a repository with copy on write
+ * semantics. The copy has the same (logical) size as the object it was made
+ * of, but it only occupies the bytes expected to be written to it in its
+ * repository. The rest of its contents are shared with its base.
+ * 
+ * When transferred to another repository, the copy is transferred in full.
+ * 
+ * @author "agent, (c) 2026"
+ */
+public class CopyOnWriteObject extends StorageObject {
+	/**
+	 * the storage object holding the shared contents of this copy
+	 */
+	public final StorageObject base;
+	/**
+	 * the amount of data that diverged from the base, this is what is stored
+	 * for the copy in its repository
+	 * 
+	 * unit: bytes
+	 */
+	public final long divergentBytes;
+
+	/**
+	 * Creates a copy on write object on top of a base object.
+	 * 
+	 * @param myid
+	 *            the id of the copy
+	 * @param base
+	 *            the object sharing its contents with the copy
+	 * @param divergentBytes
+	 *            the amount of data the copy does not share with its base
+	 */
+	CopyOnWriteObject(final String myid, final StorageObject base, final long divergentBytes) {
+		super(myid, base.size, false);
+		this.base = base;
+		this.divergentBytes = divergentBytes;
+	}
+
+	@Override
+	public String toString() {
+		return "CoW" + super.toString() + "[base:" + base.id + " divergent:" + divergentBytes + "]";
+	}
+}
@@ -0,0 +1,403 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor 
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *  
+ *  This file is part of DISSECT-CF.
+ *  
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *  
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package hu.mta.sztaki.lpds.cloud.simulator.io;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.resourcemodel.ResourceConsumption;
+import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkNode.NetworkException;
+
+/**
+ * Keeps the base images (e.g., virtual appliances) fetched from remote
+ * repositories in a local repository, so later VMs using the same image only
+ * need a local copy of it instead of a network transfer. The cache is limited
+ * to a storage budget, if a new image does not fit, the cached images are
+ * evicted according to the eviction policy of the cache.
+ * 
+ * Concurrent requests for an image not yet in the cache share a single
+ * transfer from the remote repository. Each request gets its own handle
+ * though: cancelling it before the image arrives only withdraws that request,
+ * the transfer itself is cancelled when no request waits for it anymore.
+ * 
+ * @author "agent, (c) 2026"
+ */
+public class ImageCache {
+	/**
+	 * The ways to select the cached image to be dropped when space is needed
+	 * for a new one.
+	 */
+	public static enum EvictionPolicy {
+		/**
+		 * drops the least recently used image
+		 */
+		LRU,
+		/**
+		 * drops the least frequently used image (the least recently used one
+		 * amongst the equally used ones)
+		 */
+		LFU,
+		/**
+		 * drops the largest image, so the least number of images are lost
+		 */
+		SIZE
+	}
+
+	/**
+	 * The bookkeeping of a single cached image
+	 */
+	private static class Entry {
+		final long size;
+		long lastUse;
+		long uses;
+
+		Entry(final long size) {
+			this.size = size;
+		}
+	}
+
+	/**
+	 * A disk requested while its image was being fetched
+	 */
+	private class Waiter extends SharedDeliveryHandle {
+		final String imageId;
+		final long size;
+		final String diskId;
+
+		Waiter(final String imageId, final long size, final String diskId,
+				final ResourceConsumption.ConsumptionEvent ev) {
+			super(size, ev);
+			this.imageId = imageId;
+			this.size = size;
+			this.diskId = diskId;
+		}
+
+		@Override
+		boolean detach() {
+			final ArrayList<Waiter> waiters = fetching.get(imageId);
+			waiters.remove(this);
+			if (!waiters.isEmpty()) {
+				return false;
+			}
+			// no one needs the image anymore, its reservation is dropped
+			fetching.remove(imageId);
+			fetches.remove(imageId);
+			usage -= size;
+			return true;
+		}
+	}
+
+	/**
+	 * The repository storing the cached images
+	 */
+	public final Repository repository;
+	/**
+	 * The total size of the images the cache is allowed to keep
+	 */
+	public final long capacity;
+	/**
+	 * The way images are selected for eviction
+	 */
+	public final EvictionPolicy policy;
+	/**
+	 * The images currently in the cache
+	 */
+	private final HashMap<String, Entry> cached = new HashMap<String, Entry>();
+	/**
+	 * The images under transfer with the disks waiting for them
+	 */
+	private final HashMap<String, ArrayList<Waiter>> fetching = new HashMap<String, ArrayList<Waiter>>();
+	/**
+	 * The transfers of the images being fetched
+	 */
+	private final HashMap<String, ResourceConsumption> fetches = new HashMap<String, ResourceConsumption>();
+	/**
+	 * The swarm the images are fetched through, null if they are fetched
+	 * directly from their source
+	 */
+	ImageSwarm swarm = null;
+	/**
+	 * Orders the uses of the images for the LRU policy
+	 */
+	private long useCounter = 0;
+	/**
+	 * The total size of the cached images and the ones under transfer
+	 */
+	private long usage = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+	private long fetchedBytes = 0;
+
+	/**
+	 * Creates the cache, use Repository.enableImageCache to attach it to its
+	 * repository.
+	 */
+	ImageCache(final Repository repository, final long capacity, final EvictionPolicy policy) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("The capacity of the image cache cannot be negative");
+		}
+		if (policy == null) {
+			throw new IllegalArgumentException("The image cache needs an eviction policy");
+		}
+		this.repository = repository;
+		this.capacity = capacity;
+		this.policy = policy;
+	}
+
+	/**
+	 * Creates a new disk in the cache's repository from an image. If the image
+	 * is already in the repository, the disk is created by a local copy.
+	 * Otherwise the image is fetched from the source first (evicting other
+	 * images if needed), then the local copy is made. Images not fitting the
+	 * cache at all are transferred directly as the disk.
+	 * 
+	 * @param imageId
+	 *            the storage object id of the image
+	 * @param source
+	 *            the repository to fetch the image from if it is not cached
+	 * @param diskId
+	 *            the storage object id of the new disk
+	 * @param ev
+	 *            the event to be fired when the disk is ready
+	 * @return the consumption object representing the creation of this disk
+	 *         (cancelling it does not affect the other disks waiting for the
+	 *         same image) or <b>null</b> if it is not possible to initiate
+	 * @throws NetworkException
+	 *             if the image cannot be fetched from the source
+	 */
+	public ResourceConsumption createDisk(final String imageId, final Repository source, final String diskId,
+			final ResourceConsumption.ConsumptionEvent ev) throws NetworkException {
+		if (repository.lookup(imageId) != null && !fetching.containsKey(imageId)) {
+			hits++;
+			final Entry e = cached.get(imageId);
+			if (e != null) {
+				e.lastUse = ++useCounter;
+				e.uses++;
+			}
+			return repository.duplicateContent(imageId, diskId, ev);
+		}
+		misses++;
+		final Entry stale = cached.remove(imageId);
+		if (stale != null && !fetching.containsKey(imageId)) {
+			// dropped from the repository behind the cache's back
+			usage -= stale.size;
+		}
+		final ArrayList<Waiter> waiters = fetching.get(imageId);
+		if (waiters != null) {
+			final Waiter w = new Waiter(imageId, waiters.get(0).size, diskId, ev);
+			w.shared = fetches.get(imageId);
+			waiters.add(w);
+			return w;
+		}
+		final StorageObject image = source.lookup(imageId);
+		if (image == null) {
+			return null;
+		}
+		if (!makeRoom(image.size)) {
+			// Does not fit the cache, no local copy is kept
+			fetchedBytes += image.size;
+			return source.requestContentDelivery(imageId, diskId, repository, ev);
+		}
+		final Waiter first = new Waiter(imageId, image.size, diskId, ev);
+		final ArrayList<Waiter> newWaiters = new ArrayList<Waiter>();
+		newWaiters.add(first);
+		fetching.put(imageId, newWaiters);
+		final ResourceConsumption.ConsumptionEvent fetched = new ResourceConsumption.ConsumptionEvent() {
+			@Override
+			public void conComplete() {
+				if (fetching.get(imageId) != newWaiters) {
+					// all waiters left before the image arrived
+					if (!fetching.containsKey(imageId) && !cached.containsKey(imageId)) {
+						repository.deregisterObject(imageId);
+					}
+					return;
+				}
+				fetches.remove(imageId);
+				final Entry e = new Entry(image.size);
+				e.lastUse = ++useCounter;
+				cached.put(imageId, e);
+				for (Waiter w : fetching.remove(imageId)) {
+					e.uses++;
+					try {
+						w.own = repository.duplicateContent(imageId, w.diskId, w.ev);
+					} catch (NetworkException ex) {
+						// local copies do not cross the network
+					}
+					if (w.own == null) {
+						w.fail(w);
+					}
+				}
+			}
+
+			@Override
+			public void conCancelled(final ResourceConsumption problematic) {
+				if (fetching.get(imageId) != newWaiters) {
+					// cancelled as its last waiter left
+					return;
+				}
+				fetches.remove(imageId);
+				usage -= image.size;
+				for (Waiter w : fetching.remove(imageId)) {
+					w.fail(problematic);
+				}
+			}
+		};
+		final ResourceConsumption fetch = swarm == null ? source.requestContentDelivery(imageId, repository, fetched)
+				: swarm.fetch(this, imageId, source, fetched);
+		if (fetch == null) {
+			fetching.remove(imageId);
+			usage -= image.size;
+			return null;
+		}
+		fetchedBytes += image.size;
+		fetches.put(imageId, fetch);
+		first.shared = fetch;
+		return first;
+	}
+
+	/**
+	 * Evicts images until the requested amount of space is available in the
+	 * cache's budget. The space is reserved if it could be freed up. Images
+	 * still being copied or shared by copy on write disks are not evicted.
+	 * 
+	 * @param size
+	 *            the amount of space needed
+	 * @return <i>true</i> if the space is now reserved
+	 */
+	private boolean makeRoom(final long size) {
+		if (size > capacity) {
+			return false;
+		}
+		while (usage + size > capacity) {
+			String victim = null;
+			Entry victimEntry = null;
+			for (Map.Entry<String, Entry> c : cached.entrySet()) {
+				if (repository.underTransfer.contains(c.getKey())) {
+					// a disk is being created from it
+					continue;
+				}
+				if (repository.hasCopyOnWriteCopies(c.getKey())) {
+					// its disks share its storage, evicting it would free nothing
+					continue;
+				}
+				if (victim == null || isBetterVictim(c.getValue(), victimEntry)) {
+					victim = c.getKey();
+					victimEntry = c.getValue();
+				}
+			}
+			if (victim == null) {
+				return false;
+			}
+			cached.remove(victim);
+			repository.deregisterObject(victim);
+			usage -= victimEntry.size;
+			evictions++;
+		}
+		usage += size;
+		return true;
+	}
+
+	private boolean isBetterVictim(final Entry candidate, final Entry current) {
+		switch (policy) {
+		case LFU:
+			if (candidate.uses != current.uses) {
+				return candidate.uses < current.uses;
+			}
+			break;
+		case SIZE:
+			if (candidate.size != current.size) {
+				return candidate.size > current.size;
+			}
+			break;
+		default:
+			break;
+		}
+		return candidate.lastUse < current.lastUse;
+	}
+
+	/**
+	 * Determines if an image is kept by the cache
+	 * 
+	 * @param imageId
+	 *            the storage object id of the image
+	 * @return <i>true</i> if the image is in the cache
+	 */
+	public boolean isCached(final String imageId) {
+		return cached.containsKey(imageId);
+	}
+
+	/**
+	 * @return the swarm the cache fetches its images through, <b>null</b> if
+	 *         it fetches them directly from their source
+	 */
+	public ImageSwarm getSwarm() {
+		return swarm;
+	}
+
+	/**
+	 * @return the number of disks created from an image already in the
+	 *         repository
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of disks that needed their image to be fetched
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of images dropped to make room for others
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return the amount of data transferred from remote repositories through
+	 *         the cache
+	 */
+	public long getFetchedBytes() {
+		return fetchedBytes;
+	}
+
+	/**
+	 * @return the total size of the cached images (including the ones under
+	 *         transfer)
+	 */
+	public long getUsage() {
+		return usage;
+	}
+
+	@Override
+	public String toString() {
+		return "ImageCache(" + policy + " Used:" + usage + "/" + capacity + " Hits:" + hits + " Misses:" + misses
+				+ " Evictions:" + evictions + ")";
+	}
+}
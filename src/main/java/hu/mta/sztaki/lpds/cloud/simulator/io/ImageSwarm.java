@@ -0,0 +1,406 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor 
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *  
+ *  This file is part of DISSECT-CF.
+ *  
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *  
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package hu.mta.sztaki.lpds.cloud.simulator.io;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.resourcemodel.ResourceConsumption;
+import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkNode.NetworkException;
+
+/**
+ * Lets image caches serve the images they hold to each other, so a mass
+ * deployment does not need to fetch every copy of an image from its original
+ * repository. Every repository holding an image (the original one and the
+ * caches that already fetched it) serves at most <i>fanout</i> transfers at a
+ * time. Requests arriving when all of these are busy wait until one of the
+ * transfers completes, then are served by the least busy holder. As every
+ * completed transfer introduces a new holder, the number of copies grows
+ * exponentially and the deployment time of N VMs grows logarithmically with
+ * N.
+ * 
+ * Waiting requests get their own handle: cancelling it while the request
+ * waits only removes the request from the queue, once the request is served
+ * the handle controls its own transfer. Members that left the swarm or whose
+ * repository is not running do not serve the others.
+ * 
+ * @author "agent, (c) 2026"
+ */
+public class ImageSwarm {
+	/**
+	 * The handle of a request for an image that could not be served
+	 * immediately. It never participates in the resource sharing directly:
+	 * while the request waits, it only represents the position in the queue,
+	 * afterwards it reports the state of the transfer serving the request.
+	 */
+	private class Pending extends ResourceConsumption {
+		final ImageCache requester;
+		final Repository origin;
+		final String imageId;
+		final ResourceConsumption.ConsumptionEvent ev;
+		/**
+		 * The transfer serving the request, null while the request waits
+		 */
+		ResourceConsumption served = null;
+
+		Pending(final ImageCache requester, final Repository origin, final String imageId, final long size,
+				final ResourceConsumption.ConsumptionEvent ev) {
+			super(size, ResourceConsumption.unlimitedProcessing, null, null, ev);
+			this.requester = requester;
+			this.origin = origin;
+			this.imageId = imageId;
+			this.ev = ev;
+		}
+
+		@Override
+		public double getUnProcessed() {
+			return served == null ? super.getUnProcessed() : served.getUnProcessed();
+		}
+
+		@Override
+		public double getRealLimit() {
+			return served == null ? 0 : served.getRealLimit();
+		}
+
+		@Override
+		public long getCompletionDistance() {
+			return served == null ? super.getCompletionDistance() : served.getCompletionDistance();
+		}
+
+		@Override
+		public boolean isRegistered() {
+			return served != null && served.isRegistered();
+		}
+
+		@Override
+		public boolean isResumable() {
+			return served == null ? super.isResumable() : served.isResumable();
+		}
+
+		@Override
+		public boolean registerConsumption() {
+			return served != null && served.registerConsumption();
+		}
+
+		@Override
+		public void suspend() {
+			if (served != null) {
+				served.suspend();
+			}
+		}
+
+		/**
+		 * Cancels the transfer serving the request, or just removes the
+		 * request from its queue if it still waits.
+		 */
+		@Override
+		public void cancel() {
+			if (served != null) {
+				served.cancel();
+				return;
+			}
+			final ArrayList<Pending> queue = queues.get(imageId);
+			if (queue != null && queue.remove(this) && queue.isEmpty()) {
+				queues.remove(imageId);
+			}
+			super.cancel();
+		}
+	}
+
+	/**
+	 * An ongoing transfer of an image between two members (or from the
+	 * original repository to a member)
+	 */
+	private class Transfer implements ResourceConsumption.ConsumptionEvent {
+		final Repository seed;
+		final String imageId;
+		final ResourceConsumption.ConsumptionEvent ev;
+		ResourceConsumption rc;
+
+		Transfer(final Repository seed, final String imageId, final ResourceConsumption.ConsumptionEvent ev) {
+			this.seed = seed;
+			this.imageId = imageId;
+			this.ev = ev;
+		}
+
+		private void finish() {
+			uploads.put(seed, uploads.get(seed) - 1);
+			transfers.get(imageId).remove(rc);
+		}
+
+		@Override
+		public void conComplete() {
+			finish();
+			ev.conComplete();
+			dispatch();
+		}
+
+		@Override
+		public void conCancelled(final ResourceConsumption problematic) {
+			finish();
+			ev.conCancelled(problematic);
+			dispatch();
+		}
+	}
+
+	/**
+	 * The maximum number of transfers a single repository serves at a time
+	 */
+	public final int fanout;
+	/**
+	 * The caches participating in the swarm
+	 */
+	private final ArrayList<ImageCache> members = new ArrayList<ImageCache>();
+	/**
+	 * The number of ongoing transfers served by each repository
+	 */
+	private final HashMap<Repository, Integer> uploads = new HashMap<Repository, Integer>();
+	/**
+	 * The ongoing transfers of each image
+	 */
+	private final HashMap<String, ArrayList<ResourceConsumption>> transfers = new HashMap<String, ArrayList<ResourceConsumption>>();
+	/**
+	 * The requests waiting for a free repository, per image in the order of
+	 * their arrival
+	 */
+	private final LinkedHashMap<String, ArrayList<Pending>> queues = new LinkedHashMap<String, ArrayList<Pending>>();
+	private long originTransfers = 0;
+	private long peerTransfers = 0;
+
+	/**
+	 * Creates an empty swarm.
+	 * 
+	 * @param fanout
+	 *            the maximum number of transfers a single repository serves at
+	 *            a time
+	 */
+	public ImageSwarm(final int fanout) {
+		if (fanout < 1) {
+			throw new IllegalArgumentException("The swarm needs to allow at least a single upload per repository");
+		}
+		this.fanout = fanout;
+	}
+
+	/**
+	 * Makes the images of a cache available for the other members, and lets
+	 * the cache fetch its images from them.
+	 * 
+	 * @param cache
+	 *            the new member
+	 * @throws IllegalStateException
+	 *             if the cache is already in a swarm
+	 */
+	public void join(final ImageCache cache) {
+		if (cache.swarm != null) {
+			throw new IllegalStateException("The cache already participates in a swarm");
+		}
+		cache.swarm = this;
+		members.add(cache);
+	}
+
+	/**
+	 * Withdraws a cache from the swarm. Its images are no longer served to
+	 * the other members, its transfers already in progress are completed
+	 * though. Its requests still waiting are cancelled.
+	 * 
+	 * @param cache
+	 *            the leaving member
+	 * @throws IllegalStateException
+	 *             if the cache is not a member of this swarm
+	 */
+	public void leave(final ImageCache cache) {
+		if (cache.swarm != this) {
+			throw new IllegalStateException("The cache does not participate in this swarm");
+		}
+		cache.swarm = null;
+		members.remove(cache);
+		final ArrayList<Pending> abandoned = new ArrayList<Pending>();
+		for (ArrayList<Pending> queue : queues.values()) {
+			for (Pending p : queue) {
+				if (p.requester == cache) {
+					abandoned.add(p);
+				}
+			}
+		}
+		// Notified only after all requests are collected
+		for (Pending p : abandoned) {
+			p.cancel();
+		}
+	}
+
+	/**
+	 * Fetches an image to a member's repository from the least busy
+	 * repository holding it.
+	 * 
+	 * @param requester
+	 *            the member needing the image
+	 * @param imageId
+	 *            the storage object id of the image
+	 * @param origin
+	 *            the repository the image originally comes from
+	 * @param ev
+	 *            the event to be fired when the image arrived
+	 * @return the consumption object representing the transfer of the image
+	 *         (or the handle of the waiting request) or <b>null</b> if it is
+	 *         not possible to initiate
+	 * @throws NetworkException
+	 *             if the image cannot be transferred from the chosen
+	 *             repository
+	 */
+	ResourceConsumption fetch(final ImageCache requester, final String imageId, final Repository origin,
+			final ResourceConsumption.ConsumptionEvent ev) throws NetworkException {
+		final Repository seed = freeSeed(requester, imageId, origin);
+		final ArrayList<ResourceConsumption> ongoing = transfers.get(imageId);
+		if (seed == null && ongoing != null && !ongoing.isEmpty()) {
+			ArrayList<Pending> queue = queues.get(imageId);
+			if (queue == null) {
+				queues.put(imageId, queue = new ArrayList<Pending>());
+			}
+			final Pending p = new Pending(requester, origin, imageId, origin.lookup(imageId).size, ev);
+			queue.add(p);
+			return p;
+		}
+		// The holders are busy with other images, the origin serves anyway
+		return transfer(seed == null ? origin : seed, requester, imageId, ev);
+	}
+
+	/**
+	 * Finds the least busy repository that holds the image and could serve
+	 * another transfer. Repositories not running are skipped.
+	 * 
+	 * @return the repository to transfer from, or <b>null</b> if all holders
+	 *         are busy
+	 */
+	private Repository freeSeed(final ImageCache requester, final String imageId, final Repository origin) {
+		Repository best = null;
+		int bestUploads = fanout;
+		if (isServing(origin) && origin.lookup(imageId) != null) {
+			best = origin;
+			bestUploads = uploadsOf(origin);
+		}
+		for (ImageCache member : members) {
+			if (member != requester && member.isCached(imageId) && isServing(member.repository)
+					&& member.repository.lookup(imageId) != null) {
+				final int memberUploads = uploadsOf(member.repository);
+				if (memberUploads < bestUploads) {
+					best = member.repository;
+					bestUploads = memberUploads;
+				}
+			}
+		}
+		return bestUploads < fanout ? best : null;
+	}
+
+	private static boolean isServing(final Repository r) {
+		return NetworkNode.State.RUNNING.equals(r.currState);
+	}
+
+	private int uploadsOf(final Repository r) {
+		final Integer count = uploads.get(r);
+		return count == null ? 0 : count;
+	}
+
+	private ResourceConsumption transfer(final Repository seed, final ImageCache requester, final String imageId,
+			final ResourceConsumption.ConsumptionEvent ev) throws NetworkException {
+		final Transfer t = new Transfer(seed, imageId, ev);
+		uploads.put(seed, uploadsOf(seed) + 1);
+		ArrayList<ResourceConsumption> ongoing = transfers.get(imageId);
+		if (ongoing == null) {
+			transfers.put(imageId, ongoing = new ArrayList<ResourceConsumption>());
+		}
+		t.rc = seed.requestContentDelivery(imageId, requester.repository, t);
+		if (t.rc == null) {
+			uploads.put(seed, uploads.get(seed) - 1);
+			return null;
+		}
+		ongoing.add(t.rc);
+		final ImageCache seedCache = seed.getImageCache();
+		if (seedCache != null && seedCache.swarm == this) {
+			peerTransfers++;
+		} else {
+			originTransfers++;
+		}
+		return t.rc;
+	}
+
+	/**
+	 * Serves the waiting requests as long as there are free repositories for
+	 * them.
+	 */
+	private void dispatch() {
+		final ArrayList<Pending> failed = new ArrayList<Pending>();
+		final Iterator<Map.Entry<String, ArrayList<Pending>>> it = queues.entrySet().iterator();
+		while (it.hasNext()) {
+			final Map.Entry<String, ArrayList<Pending>> queue = it.next();
+			final ArrayList<Pending> waiting = queue.getValue();
+			while (!waiting.isEmpty()) {
+				final Pending p = waiting.get(0);
+				final Repository seed = freeSeed(p.requester, queue.getKey(), p.origin);
+				if (seed == null) {
+					break;
+				}
+				waiting.remove(0);
+				try {
+					p.served = transfer(seed, p.requester, queue.getKey(), p.ev);
+				} catch (NetworkException e) {
+					// reported as a cancellation below
+				}
+				if (p.served == null) {
+					failed.add(p);
+				}
+			}
+			if (waiting.isEmpty()) {
+				it.remove();
+			}
+		}
+		// Notified only after the queues are consistent again
+		for (Pending p : failed) {
+			p.cancel();
+		}
+	}
+
+	/**
+	 * @return the number of image transfers served by the original
+	 *         repositories
+	 */
+	public long getOriginTransfers() {
+		return originTransfers;
+	}
+
+	/**
+	 * @return the number of image transfers served by members of the swarm
+	 */
+	public long getPeerTransfers() {
+		return peerTransfers;
+	}
+
+	@Override
+	public String toString() {
+		return "ImageSwarm(Members:" + members.size() + " Fanout:" + fanout + " Origin:" + originTransfers + " Peer:"
+				+ peerTransfers + ")";
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor 
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *  
+ *  This file is part of DISSECT-CF.
+ *  
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *  
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package hu.mta.sztaki.lpds.cloud.simulator.io;
+
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * The default catalogue of repositories, keeps the storage objects themselves
+ * in a hash map.
+ * 
+ * @author "agent, (c) 2026"
+ */
+public class MapCatalogue implements StorageCatalogue {
+	/**
+	 * the objects indexed by their ids
+	 */
+	private final HashMap<String, StorageObject> objects = new HashMap<String, StorageObject>(16);
+
+	@Override
+	public StorageObject get(final String id) {
+		return objects.get(id);
+	}
+
+	@Override
+	public boolean contains(final String id) {
+		return objects.containsKey(id);
+	}
+
+	@Override
+	public void put(final StorageObject so) {
+		objects.put(so.id, so);
+	}
+
+	@Override
+	public StorageObject remove(final String id) {
+		return objects.remove(id);
+	}
+
+	@Override
+	public int size() {
+		return objects.size();
+	}
+
+	@Override
+	public Collection<StorageObject> values() {
+		return objects.values();
+	}
+}
@@ -0,0 +1,260 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor 
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *  
+ *  This file is part of DISSECT-CF.
+ *  
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *  
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package hu.mta.sztaki.lpds.cloud.simulator.io;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.resourcemodel.ResourceConsumption;
+import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkNode.NetworkException;
+
+/**
+ * Coordinates the deliveries of the same storage object to a repository (e.g.,
+ * the VA of several VMs placed on the same PM). The object crosses the network
+ * only once and is staged in the repository under its own id. The delivered
+ * copies (the first one included) are created locally from the staged object,
+ * which is dropped once all of them are done. The storage of every copy is
+ * reserved when its delivery is requested, so the joining deliveries cannot
+ * over-commit the repository.
+ * 
+ * Every delivery gets its own handle. Cancelling it before the object arrived
+ * only withdraws that delivery (and releases its reservation), the network
+ * transfer is cancelled when no delivery needs it anymore.
+ * 
+ * @author "agent, (c) 2026"
+ */
+public class MulticastDelivery {
+	/**
+	 * A delivery waiting for the staged object to arrive
+	 */
+	private class Follower extends SharedDeliveryHandle {
+		final Group group;
+		final String newId;
+
+		Follower(final Group group, final String newId, final ResourceConsumption.ConsumptionEvent ev) {
+			super(group.size, ev);
+			this.group = group;
+			this.newId = newId;
+		}
+
+		@Override
+		boolean detach() {
+			group.followers.remove(this);
+			repository.releasePromise(group.size);
+			if (group.followers.isEmpty()) {
+				// no one else joins the transfer about to be cancelled
+				if (groups.get(group.id) == group) {
+					groups.remove(group.id);
+				}
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * The deliveries of a single object sharing a network transfer
+	 */
+	private class Group implements ResourceConsumption.ConsumptionEvent {
+		final String id;
+		final Repository source;
+		/**
+		 * The size of the object, reserved for every delivery in the group
+		 */
+		final long size;
+		final ArrayList<Follower> followers = new ArrayList<Follower>();
+		ResourceConsumption rc;
+		/**
+		 * The local copies still in progress, the staged object is dropped
+		 * when it reaches zero
+		 */
+		int unfinished;
+
+		Group(final String id, final Repository source, final long size) {
+			this.id = id;
+			this.source = source;
+			this.size = size;
+		}
+
+		@Override
+		public void conComplete() {
+			if (groups.get(id) == this) {
+				groups.remove(id);
+			}
+			final Follower[] arrived = followers.toArray(new Follower[followers.size()]);
+			followers.clear();
+			unfinished = arrived.length;
+			if (unfinished == 0) {
+				repository.deregisterObject(id);
+			}
+			for (final Follower f : arrived) {
+				// the copy makes its own reservation
+				repository.releasePromise(size);
+				try {
+					f.own = repository.duplicateContent(id, f.newId, new ResourceConsumption.ConsumptionEvent() {
+						@Override
+						public void conComplete() {
+							copyDone();
+							if (f.ev != null) {
+								f.ev.conComplete();
+							}
+						}
+
+						@Override
+						public void conCancelled(final ResourceConsumption problematic) {
+							copyDone();
+							if (f.ev != null) {
+								f.ev.conCancelled(problematic);
+							}
+						}
+					});
+				} catch (NetworkException e) {
+					// local copies do not cross the network
+				}
+				if (f.own == null) {
+					copyDone();
+					f.fail(rc);
+				}
+			}
+		}
+
+		private void copyDone() {
+			if (--unfinished == 0) {
+				repository.deregisterObject(id);
+			}
+		}
+
+		@Override
+		public void conCancelled(final ResourceConsumption problematic) {
+			if (groups.get(id) == this) {
+				groups.remove(id);
+			}
+			final Follower[] abandoned = followers.toArray(new Follower[followers.size()]);
+			followers.clear();
+			for (Follower f : abandoned) {
+				repository.releasePromise(size);
+				f.fail(problematic);
+			}
+		}
+	}
+
+	/**
+	 * The repository receiving the deliveries
+	 */
+	public final Repository repository;
+	/**
+	 * The deliveries in progress, indexed by the id of the delivered object
+	 */
+	private final HashMap<String, Group> groups = new HashMap<String, Group>();
+	private long sharedDeliveries = 0;
+	private long savedBytes = 0;
+
+	/**
+	 * Creates the coordinator, use Repository.enableMulticastDelivery to
+	 * attach it to its repository.
+	 */
+	MulticastDelivery(final Repository repository) {
+		this.repository = repository;
+	}
+
+	/**
+	 * Delivers a storage object to the coordinator's repository under a new
+	 * name. If the same object is already on its way from the same source, the
+	 * new copy is created locally after its arrival. If the repository already
+	 * holds an object with the same id, the object is transferred directly
+	 * under its new name.
+	 * 
+	 * @param id
+	 *            the storage object to be delivered
+	 * @param source
+	 *            the repository holding the object
+	 * @param newId
+	 *            the name of the delivered copy
+	 * @param ev
+	 *            the event to be fired when the copy is ready
+	 * @return the handle of the delivery (or the consumption object of the
+	 *         network transfer if it is not shared) or <b>null</b> if it is not
+	 *         possible to initiate
+	 * @throws NetworkException
+	 *             if the object cannot be transferred from the source
+	 */
+	public ResourceConsumption deliver(final String id, final Repository source, final String newId,
+			final ResourceConsumption.ConsumptionEvent ev) throws NetworkException {
+		final StorageObject so = source.lookup(id);
+		if (so == null) {
+			return null;
+		}
+		final Group inFlight = groups.get(id);
+		if (inFlight != null && inFlight.source == source && repository.reservePromise(so.size)) {
+			final Follower f = new Follower(inFlight, newId, ev);
+			f.shared = inFlight.rc;
+			inFlight.followers.add(f);
+			sharedDeliveries++;
+			savedBytes += so.size;
+			return f;
+		}
+		if (inFlight != null || newId == null || newId.equals(id) || repository.lookup(id) != null) {
+			// the object cannot be staged under its own id
+			return source.requestContentDelivery(id, newId, repository, ev);
+		}
+		if (!repository.reservePromise(so.size)) {
+			return null;
+		}
+		final Group g = new Group(id, source, so.size);
+		final Follower first = new Follower(g, newId, ev);
+		g.followers.add(first);
+		try {
+			g.rc = source.requestContentDelivery(id, repository, g);
+		} finally {
+			if (g.rc == null) {
+				repository.releasePromise(so.size);
+			}
+		}
+		if (g.rc == null) {
+			return null;
+		}
+		first.shared = g.rc;
+		groups.put(id, g);
+		return first;
+	}
+
+	/**
+	 * @return the number of deliveries served with local copies
+	 */
+	public long getSharedDeliveries() {
+		return sharedDeliveries;
+	}
+
+	/**
+	 * @return the amount of data that did not need to cross the network
+	 */
+	public long getSavedBytes() {
+		return savedBytes;
+	}
+
+	@Override
+	public String toString() {
+		return "MulticastDelivery(Shared:" + sharedDeliveries + " Saved:" + savedBytes + ")";
+	}
+}
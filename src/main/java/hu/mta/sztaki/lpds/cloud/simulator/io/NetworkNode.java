@@ -25,15 +25,18 @@
 
 package hu.mta.sztaki.lpds.cloud.simulator.io;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Map;
 
 import hu.mta.sztaki.lpds.cloud.simulator.DeferredEvent;
+import hu.mta.sztaki.lpds.cloud.simulator.Timed;
 import hu.mta.sztaki.lpds.cloud.simulator.energy.powermodelling.PowerState;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.resourcemodel.MaxMinConsumer;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.resourcemodel.MaxMinProvider;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.resourcemodel.ResourceConsumption;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.resourcemodel.ResourceSpreader;
+import hu.mta.sztaki.lpds.cloud.simulator.util.HardwareProfile;
 import hu.mta.sztaki.lpds.cloud.simulator.util.PowerTransitionGenerator;
 
 /**
@@ -50,6 +53,17 @@ import hu.mta.sztaki.lpds.cloud.simulator.util.PowerTransitionGenerator;
  */
 public class NetworkNode {
 
+	/**
+	 * If set to <i>true</i>, the transfers with the same source, destination,
+	 * size and limit that are initiated in the same tick are simulated as a
+	 * single weighted consumption (see AggregatedFlow). This reduces the
+	 * number of consumptions the resource sharing mechanism has to handle
+	 * without altering the share of the individual transfers. Transfers
+	 * without latency and transfers crossing racks of a topology are never
+	 * aggregated.
+	 */
+	public static boolean aggregateIdenticalTransfers = false;
+
 	public static class NetworkException extends Exception {
 		private static final long serialVersionUID = 5173643896341066497L;
 
@@ -109,6 +123,445 @@ public class NetworkNode {
 		}
 	}
 
+	/**
+	 * Couples the segments of a transfer that crosses racks: the transfer between
+	 * the two nodes and the transfer over the spine between the two racks. The
+	 * transfer is reported complete only when all of its segments are complete.
+	 * If any of the segments is cancelled, the others are cancelled as well.
+	 * 
+	 * The rates of the segments are coupled as well (see
+	 * ResourceConsumption.couple), so the faster segment is throttled to the
+	 * share the transfer gets on its slower segment. E.g., when the uplink of a
+	 * rack is oversubscribed, the transfers crossing it leave the unused part
+	 * of their nodes' network bandwidth to the other transfers of the nodes.
+	 * 
+	 * <i>WARNING</i> this is an internal representation of the transfer. This
+	 * class is not supposed to be used outside of the context of the
+	 * NetworkNode.
+	 * 
+	 * @author "agent, (c) 2026"
+	 */
+	static class SegmentedTransferEvent implements ResourceConsumption.ConsumptionEvent {
+		/**
+		 * The event to be fired once all segments are complete
+		 */
+		private final ResourceConsumption.ConsumptionEvent ev;
+		/**
+		 * The segments of the transfer
+		 */
+		private final ResourceConsumption[] segments;
+		/**
+		 * The number of segments not yet complete
+		 */
+		private int pending;
+		/**
+		 * Shows if the transfer was already cancelled
+		 */
+		private boolean cancelled = false;
+		/**
+		 * The handle representing the transfer towards its initiator
+		 */
+		private SegmentedTransfer handle;
+
+		/**
+		 * Prepares the coupling for a particular number of segments
+		 * 
+		 * @param segmentCount
+		 *            the number of segments the transfer will have
+		 * @param e
+		 *            the event to be fired once all segments are complete
+		 */
+		private SegmentedTransferEvent(final int segmentCount, final ResourceConsumption.ConsumptionEvent e) {
+			ev = e;
+			segments = new ResourceConsumption[segmentCount];
+			pending = segmentCount;
+		}
+
+		@Override
+		public void conComplete() {
+			if (--pending == 0 && !cancelled) {
+				ev.conComplete();
+			}
+		}
+
+		@Override
+		public void conCancelled(final ResourceConsumption problematic) {
+			if (!cancelled) {
+				cancelled = true;
+				for (ResourceConsumption seg : segments) {
+					// Segments not yet created will not be created at all
+					if (seg != null && seg != problematic) {
+						seg.cancel();
+					}
+				}
+				ev.conCancelled(handle);
+			}
+		}
+	}
+
+	/**
+	 * The handle of a transfer that crosses racks. This object never
+	 * participates in the resource sharing directly, instead it reports the
+	 * combined state of the segments of the transfer: the transfer is as far
+	 * as its slowest segment. Cancelling, suspending and re-registering the
+	 * handle affects all segments.
+	 * 
+	 * <i>WARNING</i> this is an internal representation of the transfer. This
+	 * class is not supposed to be used outside of the context of the
+	 * NetworkNode.
+	 * 
+	 * @author "agent, (c) 2026"
+	 */
+	static class SegmentedTransfer extends ResourceConsumption {
+		/**
+		 * The coupling of the segments represented by this handle
+		 */
+		private final SegmentedTransferEvent coupling;
+
+		private SegmentedTransfer(final SegmentedTransferEvent coupling, final long tottr, final double limit,
+				final MaxMinConsumer in, final MaxMinProvider out) {
+			super(tottr, limit, in, out, coupling);
+			this.coupling = coupling;
+			coupling.handle = this;
+		}
+
+		@Override
+		public double getUnProcessed() {
+			double left = 0;
+			for (ResourceConsumption seg : coupling.segments) {
+				if (seg != null) {
+					left = Math.max(left, seg.getUnProcessed());
+				}
+			}
+			return left;
+		}
+
+		@Override
+		public double getRealLimit() {
+			double limit = -1;
+			for (ResourceConsumption seg : coupling.segments) {
+				if (seg != null && seg.isRegistered() && (limit < 0 || seg.getRealLimit() < limit)) {
+					limit = seg.getRealLimit();
+				}
+			}
+			return limit < 0 ? 0 : limit;
+		}
+
+		@Override
+		public long getCompletionDistance() {
+			long distance = 0;
+			for (ResourceConsumption seg : coupling.segments) {
+				if (seg != null && seg.isRegistered()) {
+					distance = Math.max(distance, seg.getCompletionDistance());
+				}
+			}
+			return distance;
+		}
+
+		@Override
+		public boolean isRegistered() {
+			for (ResourceConsumption seg : coupling.segments) {
+				if (seg != null && seg.isRegistered()) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public boolean isResumable() {
+			if (coupling.cancelled) {
+				return false;
+			}
+			for (ResourceConsumption seg : coupling.segments) {
+				if (seg == null || !seg.isResumable()) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Re-registers all segments that still have data to transfer.
+		 * 
+		 * @return <i>true</i> if at least one of the segments got registered
+		 */
+		@Override
+		public boolean registerConsumption() {
+			boolean any = false;
+			if (!coupling.cancelled) {
+				for (ResourceConsumption seg : coupling.segments) {
+					if (seg != null && !seg.isRegistered() && seg.getUnProcessed() > 0) {
+						any |= seg.registerConsumption();
+					}
+				}
+			}
+			return any;
+		}
+
+		@Override
+		public void suspend() {
+			for (ResourceConsumption seg : coupling.segments) {
+				if (seg != null) {
+					seg.suspend();
+				}
+			}
+		}
+
+		/**
+		 * Cancels all unfinished segments, the coupling takes care of the
+		 * notification of the initiator.
+		 */
+		@Override
+		public void cancel() {
+			if (!coupling.cancelled && coupling.pending > 0) {
+				for (ResourceConsumption seg : coupling.segments) {
+					if (seg != null && (seg.isRegistered() || seg.getUnProcessed() > 0)) {
+						seg.cancel();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Represents a group of identical transfers (i.e., with the same source,
+	 * destination, size and limit) that were initiated in the same tick. The
+	 * group is simulated with a single weighted consumption (the carrier) so
+	 * the resource sharing mechanism sees a single item instead of the members
+	 * of the group, while the fair share of each member remains the same as if
+	 * it would have been simulated on its own. The events of the carrier are
+	 * forwarded to all members of the group.
+	 * 
+	 * <i>WARNING</i> this is an internal representation of the transfer. This
+	 * class is not supposed to be used outside of the context of the
+	 * NetworkNode.
+	 * 
+	 * @author "agent, (c) 2026"
+	 */
+	static class AggregatedFlow implements ResourceConsumption.ConsumptionEvent {
+		/**
+		 * The destination of the transfers in the group
+		 */
+		private final NetworkNode to;
+		/**
+		 * The size of each transfer in the group
+		 */
+		private final long size;
+		/**
+		 * The limit of each transfer in the group
+		 */
+		private final double limit;
+		/**
+		 * The transfers that are still represented by the carrier
+		 */
+		private final ArrayList<AggregatedTransfer> members = new ArrayList<AggregatedTransfer>();
+		/**
+		 * The weighted consumption that actually participates in the resource
+		 * sharing on behalf of the members
+		 */
+		private SingleTransfer carrier;
+
+		private AggregatedFlow(final NetworkNode to, final long size, final double limit) {
+			this.to = to;
+			this.size = size;
+			this.limit = limit;
+		}
+
+		/**
+		 * Determines if a new transfer could be simulated as part of this group
+		 * 
+		 * @return <i>true</i> if the transfer can join this group
+		 */
+		private boolean canJoin(final long otherSize, final double otherLimit) {
+			return size == otherSize && limit == otherLimit && !members.isEmpty() && carrier.isResumable()
+					&& !carrier.isRegistered();
+		}
+
+		/**
+		 * Adds a new member to the group
+		 */
+		private AggregatedTransfer join(final NetworkNode from, final ResourceConsumption.ConsumptionEvent e) {
+			final AggregatedTransfer member = new AggregatedTransfer(this, size, limit, to.getInbws(),
+					from.getOutbws(), e);
+			members.add(member);
+			carrier.setMultiplicity(members.size());
+			return member;
+		}
+
+		/**
+		 * Removes a member from the group. If the group becomes empty, the
+		 * carrier is cancelled. Otherwise the weight of the carrier is reduced.
+		 */
+		private void leave(final AggregatedTransfer member) {
+			members.remove(member);
+			if (members.isEmpty()) {
+				carrier.cancel();
+			} else {
+				carrier.setMultiplicity(members.size());
+			}
+		}
+
+		/**
+		 * Detaches all members from the group so they can be notified about the
+		 * fate of the carrier.
+		 */
+		private AggregatedTransfer[] detachAll() {
+			final AggregatedTransfer[] all = members.toArray(new AggregatedTransfer[members.size()]);
+			members.clear();
+			for (AggregatedTransfer m : all) {
+				m.attached = false;
+				m.leftWhenDetached = carrier.getUnProcessed();
+			}
+			return all;
+		}
+
+		@Override
+		public void conComplete() {
+			for (AggregatedTransfer m : detachAll()) {
+				m.completed = true;
+				m.memberEv.conComplete();
+			}
+		}
+
+		@Override
+		public void conCancelled(final ResourceConsumption problematic) {
+			for (AggregatedTransfer m : detachAll()) {
+				m.cancel();
+			}
+		}
+	}
+
+	/**
+	 * The handle of a single transfer simulated as part of an aggregated flow.
+	 * This object never participates in the resource sharing directly, instead
+	 * it reports the state of the carrier of its flow. Members can be cancelled
+	 * and suspended individually: suspending a member detaches it from its
+	 * flow, while registering it again continues its remaining data as a
+	 * standalone transfer between the same nodes.
+	 * 
+	 * <i>WARNING</i> this is an internal representation of the transfer. This
+	 * class is not supposed to be used outside of the context of the
+	 * NetworkNode.
+	 * 
+	 * @author "agent, (c) 2026"
+	 */
+	static class AggregatedTransfer extends ResourceConsumption {
+		/**
+		 * The flow this transfer is part of
+		 */
+		private final AggregatedFlow flow;
+		/**
+		 * The event to be fired when the transfer completes
+		 */
+		private final ResourceConsumption.ConsumptionEvent memberEv;
+		/**
+		 * Shows if the transfer is still represented by the carrier of its flow
+		 */
+		private boolean attached = true;
+		/**
+		 * Shows if the completion event was already fired for this transfer
+		 */
+		private boolean completed = false;
+		/**
+		 * The amount of data still to be transferred at the time the transfer
+		 * got detached from its flow
+		 */
+		private double leftWhenDetached;
+		/**
+		 * The transfer carrying the remaining data after the member was resumed
+		 * outside of its flow (null if the member was not resumed)
+		 */
+		private SingleTransfer standalone;
+
+		private AggregatedTransfer(final AggregatedFlow flow, final long tottr, final double limit,
+				final MaxMinConsumer in, final MaxMinProvider out, final ResourceConsumption.ConsumptionEvent e) {
+			super(tottr, limit, in, out, e);
+			this.flow = flow;
+			memberEv = e;
+		}
+
+		@Override
+		public double getUnProcessed() {
+			if (attached) {
+				return flow.carrier.getUnProcessed();
+			}
+			return standalone == null ? leftWhenDetached : standalone.getUnProcessed();
+		}
+
+		@Override
+		public double getRealLimit() {
+			if (attached) {
+				return flow.carrier.getRealLimit();
+			}
+			return standalone == null ? 0 : standalone.getRealLimit();
+		}
+
+		@Override
+		public boolean isRegistered() {
+			return attached ? flow.carrier.isRegistered() : standalone != null && standalone.isRegistered();
+		}
+
+		@Override
+		public boolean isResumable() {
+			return standalone == null ? super.isResumable() : standalone.isResumable();
+		}
+
+		/**
+		 * Members attached to their flow are registered through the carrier of
+		 * the flow. Suspended members continue with their remaining data as a
+		 * standalone transfer.
+		 * 
+		 * @return <i>true</i> if the remaining data is transferred again
+		 */
+		@Override
+		public boolean registerConsumption() {
+			if (attached || completed || !isResumable()) {
+				return false;
+			}
+			if (standalone != null) {
+				return standalone.registerConsumption();
+			}
+			standalone = new SingleTransfer(0, (long) Math.ceil(leftWhenDetached), flow.limit,
+					(MaxMinConsumer) getConsumer(), (MaxMinProvider) getProvider(),
+					new ResourceConsumption.ConsumptionEvent() {
+						@Override
+						public void conComplete() {
+							completed = true;
+							memberEv.conComplete();
+						}
+
+						@Override
+						public void conCancelled(final ResourceConsumption problematic) {
+							memberEv.conCancelled(AggregatedTransfer.this);
+						}
+					});
+			return standalone.isRegistered() || completed;
+		}
+
+		@Override
+		public void suspend() {
+			if (attached) {
+				attached = false;
+				flow.leave(this);
+				leftWhenDetached = flow.carrier.getUnProcessed();
+			} else if (standalone != null) {
+				standalone.suspend();
+			}
+		}
+
+		@Override
+		public void cancel() {
+			if (!completed) {
+				if (standalone == null) {
+					super.cancel();
+				} else {
+					standalone.cancel();
+				}
+			}
+		}
+	}
+
 	/**
 	 * Represents the possible states of the network nodes modeled in the system
 	 * 
@@ -130,31 +583,60 @@ public class NetworkNode {
 
 	State currState;
 	/**
-	 * Models the incoming network connections of this network node
+	 * Models the incoming network connections of this network node (only
+	 * created when first needed, use getInbws to access)
 	 */
-	public final MaxMinConsumer inbws;
+	private MaxMinConsumer inbws;
 	/**
-	 * Models the outgoing network connections of this network node
+	 * Models the outgoing network connections of this network node (only
+	 * created when first needed, use getOutbws to access)
 	 */
-	public final MaxMinProvider outbws;
+	private MaxMinProvider outbws;
 	/**
-	 * Models the write bandwidth of the disk of this network node
+	 * Models the write bandwidth of the disk of this network node (only created
+	 * when first needed, use getDiskinbws to access)
 	 */
-	public final MaxMinConsumer diskinbws;
+	private MaxMinConsumer diskinbws;
 	/**
-	 * Models the read bandwidth of the disk of this network node
+	 * Models the read bandwidth of the disk of this network node (only created
+	 * when first needed, use getDiskoutbws to access)
 	 */
-	public final MaxMinProvider diskoutbws;
+	private MaxMinProvider diskoutbws;
 	/**
-	 * Models the memory write bandwidth on this network node
+	 * Models the memory write bandwidth on this network node (only created when
+	 * first needed, use getMeminbws to access)
 	 */
-	public final MaxMinConsumer meminbws;
+	private MaxMinConsumer meminbws;
 	/**
-	 * Models the memory read bandwidth on this network node
+	 * Models the memory read bandwidth on this network node (only created when
+	 * first needed, use getMemoutbws to access)
 	 */
-	public final MaxMinProvider memoutbws;
+	private MaxMinProvider memoutbws;
 
-	private final ResourceSpreader[] allSpreaders;
+	/**
+	 * The spreaders that are already created for this node. The array is
+	 * filled in the order of the first use of the spreaders, the unused slots
+	 * are at its end and are null.
+	 */
+	private final ResourceSpreader[] allSpreaders = new ResourceSpreader[6];
+	/**
+	 * The number of spreaders already created (i.e., the number of non null
+	 * items in allSpreaders)
+	 */
+	private int createdSpreaders = 0;
+
+	/**
+	 * The input bandwidth of the node, used when the input spreader is created
+	 */
+	private final long maxInBW;
+	/**
+	 * The output bandwidth of the node, used when the output spreader is created
+	 */
+	private final long maxOutBW;
+	/**
+	 * The disk bandwidth of the node, used when the disk spreaders are created
+	 */
+	private final long diskBW;
 
 	/**
 	 * The name of this network node (this could be an IP or what is most suitable
@@ -174,6 +656,31 @@ public class NetworkNode {
 	 * 
 	 */
 	private final Map<String, Integer> latencies;
+	/**
+	 * The registry this node is part of (null if the node was never
+	 * registered). If both parties of a transfer are in the same registry, the
+	 * latency is determined by the registry instead of the latencies map.
+	 */
+	NetworkRegistry registry = null;
+	/**
+	 * The dense identifier of this node in its registry
+	 */
+	int registryId = -1;
+	/**
+	 * The rack of the network topology where this node resides (null if the
+	 * node is not part of a topology)
+	 */
+	NetworkTopology.Rack rack = null;
+	/**
+	 * The aggregated flows initiated from this node in the tick noted in
+	 * pendingFlowsTick, indexed by their destinations. Only used if transfer
+	 * aggregation is enabled (null before the first aggregated transfer).
+	 */
+	private HashMap<NetworkNode, ArrayList<AggregatedFlow>> pendingFlows = null;
+	/**
+	 * The tick in which the flows in pendingFlows were initiated
+	 */
+	private long pendingFlowsTick = -1;
 	/**
 	 * Mapping between the various PM states and its representative disk power
 	 * behaviors.
@@ -195,6 +702,10 @@ public class NetworkNode {
 	 *            the output bw of the node
 	 * @param diskBW
 	 *            the disk bw of the node
+	 * @param latencymap
+	 *            the latencies towards other nodes identified by their names.
+	 *            Could be null if the node's connectivity is going to be defined
+	 *            through a NetworkRegistry.
 	 */
 	public NetworkNode(final String id, final long maxInBW, final long maxOutBW, final long diskBW,
 			final Map<String, Integer> latencymap, Map<String, PowerState> diskPowerTransitions,
@@ -202,20 +713,13 @@ public class NetworkNode {
 		if (diskPowerTransitions == null || networkPowerTransitions == null) {
 			throw new IllegalStateException("Cannot initialize network node without a complete power behavior set");
 		}
-		storagePowerBehavior = Collections.unmodifiableMap(diskPowerTransitions);
-		networkPowerBehavior = Collections.unmodifiableMap(networkPowerTransitions);
+		storagePowerBehavior = HardwareProfile.unmodifiable(diskPowerTransitions);
+		networkPowerBehavior = HardwareProfile.unmodifiable(networkPowerTransitions);
 		name = id;
-		outbws = new MaxMinProvider(maxOutBW);
-		inbws = new MaxMinConsumer(maxInBW);
-		diskinbws = new MaxMinConsumer(diskBW / 2f);
-		diskoutbws = new MaxMinProvider(diskBW / 2f);
-		// Just making sure we will have enough bandwidth for every operation we
-		// could possibly have
-		final double memBW = (maxOutBW + maxInBW + diskBW);
-		meminbws = new MaxMinConsumer(memBW);
-		memoutbws = new MaxMinProvider(memBW);
+		this.maxInBW = maxInBW;
+		this.maxOutBW = maxOutBW;
+		this.diskBW = diskBW;
 		latencies = latencymap;
-		allSpreaders = new ResourceSpreader[] { diskinbws, diskoutbws, outbws, inbws, meminbws, memoutbws };
 		try {
 			setState(State.OFF);
 		} catch (NetworkException nex) {
@@ -223,6 +727,119 @@ public class NetworkNode {
 		}
 	}
 
+	/**
+	 * Makes the newly created spreader known to the node: it receives the power
+	 * behaviour matching the node's current state and is considered in all
+	 * later state changes.
+	 * 
+	 * @param rs
+	 *            the spreader just created
+	 * @param behaviour
+	 *            the power behaviour map of the spreader's kind (null if the
+	 *            spreader has no power behaviour)
+	 */
+	private void registerSpreader(final ResourceSpreader rs, final Map<String, PowerState> behaviour) {
+		if (behaviour != null) {
+			rs.setCurrentPowerBehavior(
+					PowerTransitionGenerator.getPowerStateFromMap(behaviour, currState.toString()));
+		}
+		allSpreaders[createdSpreaders++] = rs;
+	}
+
+	/**
+	 * Models the incoming network connections of this network node. The
+	 * spreader is created on the first call.
+	 * 
+	 * @return the input network spreader of the node
+	 */
+	public MaxMinConsumer getInbws() {
+		if (inbws == null) {
+			inbws = new MaxMinConsumer(maxInBW);
+			registerSpreader(inbws, networkPowerBehavior);
+		}
+		return inbws;
+	}
+
+	/**
+	 * Models the outgoing network connections of this network node. The
+	 * spreader is created on the first call.
+	 * 
+	 * @return the output network spreader of the node
+	 */
+	public MaxMinProvider getOutbws() {
+		if (outbws == null) {
+			outbws = new MaxMinProvider(maxOutBW);
+			registerSpreader(outbws, networkPowerBehavior);
+		}
+		return outbws;
+	}
+
+	/**
+	 * Models the write bandwidth of the disk of this network node. The spreader
+	 * is created on the first call.
+	 * 
+	 * @return the disk write spreader of the node
+	 */
+	public MaxMinConsumer getDiskinbws() {
+		if (diskinbws == null) {
+			diskinbws = new MaxMinConsumer(diskBW / 2f);
+			registerSpreader(diskinbws, storagePowerBehavior);
+		}
+		return diskinbws;
+	}
+
+	/**
+	 * Models the read bandwidth of the disk of this network node. The spreader
+	 * is created on the first call.
+	 * 
+	 * @return the disk read spreader of the node
+	 */
+	public MaxMinProvider getDiskoutbws() {
+		if (diskoutbws == null) {
+			diskoutbws = new MaxMinProvider(diskBW / 2f);
+			registerSpreader(diskoutbws, storagePowerBehavior);
+		}
+		return diskoutbws;
+	}
+
+	/**
+	 * Just making sure we will have enough bandwidth for every operation we
+	 * could possibly have on the memory of the node.
+	 * 
+	 * @return the bandwidth of the memory spreaders
+	 */
+	private double getMemBW() {
+		return maxOutBW + maxInBW + diskBW;
+	}
+
+	/**
+	 * Models the memory write bandwidth on this network node. The spreader is
+	 * created on the first call.
+	 * 
+	 * @return the memory write spreader of the node
+	 */
+	public MaxMinConsumer getMeminbws() {
+		if (meminbws == null) {
+			meminbws = new MaxMinConsumer(getMemBW());
+			registerSpreader(meminbws, null);
+		}
+		return meminbws;
+	}
+
+	/**
+	 * Models the memory read bandwidth on this network node. The spreader is
+	 * created on the first call.
+	 * 
+	 * @return the memory read spreader of the node
+	 */
+	public MaxMinProvider getMemoutbws() {
+		if (memoutbws == null) {
+			memoutbws = new MaxMinProvider(getMemBW());
+			registerSpreader(memoutbws, null);
+		}
+		return memoutbws;
+	}
+
 	/**
 	 * Determines the total output bandwidth available for the node
 	 * 
@@ -230,7 +847,7 @@ public class NetworkNode {
 	 *         outside world
 	 */
 	public long getOutputbw() {
-		return (long) outbws.getPerTickProcessingPower();
+		return maxOutBW;
 	}
 
 	/**
@@ -240,7 +857,7 @@ public class NetworkNode {
 	 *         the outside world
 	 */
 	public long getInputbw() {
-		return (long) inbws.getPerTickProcessingPower();
+		return maxInBW;
 	}
 
 	/**
@@ -250,7 +867,7 @@ public class NetworkNode {
 	 *         or raw disk blocks on its storage subsystem
 	 */
 	public long getDiskbw() {
-		return (long) diskinbws.getPerTickProcessingPower() * 2;
+		return (long) (diskBW / 2f) * 2;
 	}
 
 	/**
@@ -267,17 +884,71 @@ public class NetworkNode {
 	 *            of the transfer
 	 * @return the resource consumption object representing the transfer. This is
 	 *         returned to allow the cancellation of the object or to allow the
-	 *         observation of its state.
+	 *         observation of its state. For transfers crossing racks, this is a
+	 *         handle reflecting all segments of the transfer (see
+	 *         SegmentedTransferEvent).
 	 */
 	public static ResourceConsumption initTransfer(final long size, final double limit, final NetworkNode from,
 			final NetworkNode to, final ResourceConsumption.ConsumptionEvent e) throws NetworkException {
 		from.ensureRunning();
 		to.ensureRunning();
 		if (from == to) {
-			return new SingleTransfer(0, size, limit, from.diskinbws, from.diskoutbws, e);
+			return new SingleTransfer(0, size, limit, from.getDiskinbws(), from.getDiskoutbws(), e);
+		}
+		final int latency = checkConnectivity(from, to);
+		if (from.rack != null && to.rack != null && from.rack != to.rack
+				&& from.rack.getTopology() == to.rack.getTopology()) {
+			// The transfer also needs to pass through the uplink of the source
+			// rack and the downlink of the target rack
+			final SegmentedTransferEvent coupling = new SegmentedTransferEvent(2, e);
+			final SegmentedTransfer handle = new SegmentedTransfer(coupling, size, limit, to.getInbws(),
+					from.getOutbws());
+			final SingleTransfer nodeTransfer = new SingleTransfer(latency, size, limit, to.getInbws(),
+					from.getOutbws(), coupling);
+			coupling.segments[0] = nodeTransfer;
+			if (!coupling.cancelled) {
+				coupling.segments[1] = new SingleTransfer(latency, size, limit, to.rack.downlink, from.rack.uplink,
+						coupling);
+				ResourceConsumption.couple(nodeTransfer, coupling.segments[1]);
+			}
+			return handle;
+		}
+		if (aggregateIdenticalTransfers && latency != 0) {
+			return from.joinFlow(latency, size, limit, to, e);
+		}
+		return new SingleTransfer(latency, size, limit, to.getInbws(), from.getOutbws(), e);
+	}
+
+	/**
+	 * Adds a transfer to an already existing aggregated flow initiated in the
+	 * current tick or starts a new flow if there is no suitable one.
+	 * 
+	 * @return the handle of the newly added member of the flow
+	 */
+	private AggregatedTransfer joinFlow(final int latency, final long size, final double limit,
+			final NetworkNode to, final ResourceConsumption.ConsumptionEvent e) {
+		final long now = Timed.getFireCount();
+		if (pendingFlows == null) {
+			pendingFlows = new HashMap<NetworkNode, ArrayList<AggregatedFlow>>();
+		} else if (pendingFlowsTick != now) {
+			pendingFlows.clear();
+		}
+		pendingFlowsTick = now;
+		ArrayList<AggregatedFlow> toTarget = pendingFlows.get(to);
+		if (toTarget == null) {
+			toTarget = new ArrayList<AggregatedFlow>(1);
+			pendingFlows.put(to, toTarget);
 		} else {
-			return new SingleTransfer(checkConnectivity(from, to), size, limit, to.inbws, from.outbws, e);
+			for (AggregatedFlow flow : toTarget) {
+				if (flow.canJoin(size, limit)) {
+					return flow.join(this, e);
+				}
+			}
 		}
+		final AggregatedFlow flow = new AggregatedFlow(to, size, limit);
+		flow.carrier = new SingleTransfer(latency, size, limit, to.getInbws(), getOutbws(), flow);
+		toTarget.add(flow);
+		return flow.join(this, e);
 	}
 
 	private void ensureRunning() throws NetworkException {
@@ -313,7 +984,7 @@ public class NetworkNode {
 	public ResourceConsumption pushFromMemory(final long size, final double limit, boolean toDisk,
 			final ResourceConsumption.ConsumptionEvent e) throws NetworkException {
 		ensureRunning();
-		return new SingleTransfer(0, size, limit, toDisk ? diskinbws : inbws, memoutbws, e);
+		return new SingleTransfer(0, size, limit, toDisk ? getDiskinbws() : getInbws(), getMemoutbws(), e);
 	}
 
 	/**
@@ -343,12 +1014,15 @@ public class NetworkNode {
 	public ResourceConsumption readToMemory(final long size, final double limit, boolean fromDisk,
 			final ResourceConsumption.ConsumptionEvent e) throws NetworkException {
 		ensureRunning();
-		return new SingleTransfer(0, size, limit, meminbws, fromDisk ? diskoutbws : outbws, e);
+		return new SingleTransfer(0, size, limit, getMeminbws(), fromDisk ? getDiskoutbws() : getOutbws(), e);
 	}
 
 	/**
 	 * Determines if there is direct network connection possible between two network
-	 * nodes
+	 * nodes. If both nodes are placed in the same NetworkTopology then the
+	 * latency is derived from the path between them. Otherwise, if both nodes
+	 * are part of the same NetworkRegistry then the latency is taken from the
+	 * registry, otherwise the latency map of the sending node is consulted.
 	 * 
 	 * @param from
 	 *            the network node which is expected to send some data
@@ -363,12 +1037,32 @@ public class NetworkNode {
 		if (from == to) {
 			return 0;
 		}
-		final Integer lat = from.latencies.get(to.name);
+		if (from.rack != null && to.rack != null && from.rack.getTopology() == to.rack.getTopology()) {
+			return from.rack.getTopology().getLatency(from.rack, to.rack);
+		}
+		if (from.registry != null && from.registry == to.registry) {
+			final int lat = from.registry.getLatency(from.registryId, to.registryId);
+			if (lat == NetworkRegistry.NO_CONNECTION) {
+				throw new NetworkException("No connection between: '" + from.name + "' and '" + to.name + "'");
+			}
+			return lat;
+		}
+		final Integer lat = from.latencies == null ? null : from.latencies.get(to.name);
 		if (lat == null)
 			throw new NetworkException("No connection between: '" + from.name + "' and '" + to.name + "'");
 		return lat;
 	}
 
+	/**
+	 * Allows to query the rack where the node resides
+	 * 
+	 * @return the rack of the node or null if the node is not placed in a
+	 *         network topology
+	 */
+	public NetworkTopology.Rack getRack() {
+		return rack;
+	}
+
 	/**
 	 * Allows to query the networknode's name
 	 * 
@@ -385,7 +1079,8 @@ public class NetworkNode {
 	@Override
 	public String toString() {
 		return "NetworkNode(Id:" + name + " NI:" + getInputbw() + ",NO:" + getOutputbw() + " -- RX:"
-				+ inbws.getTotalProcessed() + " TX:" + outbws.getTotalProcessed() + " --, D:" + getDiskbw() + ")";
+				+ (inbws == null ? 0 : inbws.getTotalProcessed()) + " TX:"
+				+ (outbws == null ? 0 : outbws.getTotalProcessed()) + " --, D:" + getDiskbw() + ")";
 	}
 
 	public void setState(State newState) throws NetworkException {
@@ -394,7 +1089,8 @@ public class NetworkNode {
 				return;
 			}
 			if (currState.equals(State.RUNNING)) {
-				for (ResourceSpreader rs : allSpreaders) {
+				for (int i = 0; i < createdSpreaders; i++) {
+					final ResourceSpreader rs = allSpreaders[i];
 					if (rs.toBeAdded.size() + rs.underProcessing.size() > 0) {
 						throw new NetworkException(
 								"There is still some network activity in progress, cannot transition to a non-running state");
@@ -407,16 +1103,26 @@ public class NetworkNode {
 				newState.toString());
 		PowerState curNwBehaviour = PowerTransitionGenerator.getPowerStateFromMap(networkPowerBehavior,
 				newState.toString());
-		diskinbws.setCurrentPowerBehavior(curStBehaviour);
-		diskoutbws.setCurrentPowerBehavior(curStBehaviour);
-		inbws.setCurrentPowerBehavior(curNwBehaviour);
-		outbws.setCurrentPowerBehavior(curNwBehaviour);
+		// Spreaders not yet created will receive their behaviour when they are
+		// first used
+		if (diskinbws != null) {
+			diskinbws.setCurrentPowerBehavior(curStBehaviour);
+		}
+		if (diskoutbws != null) {
+			diskoutbws.setCurrentPowerBehavior(curStBehaviour);
+		}
+		if (inbws != null) {
+			inbws.setCurrentPowerBehavior(curNwBehaviour);
+		}
+		if (outbws != null) {
+			outbws.setCurrentPowerBehavior(curNwBehaviour);
+		}
 	}
 
 	public long getLastEvent() {
 		long latest = -1;
-		for (ResourceSpreader rs : allSpreaders) {
-			ResourceSpreader.FreqSyncer fs = rs.getSyncer();
+		for (int i = 0; i < createdSpreaders; i++) {
+			ResourceSpreader.FreqSyncer fs = allSpreaders[i].getSyncer();
 			if (fs.isSubscribed()) {
 				latest = Math.max(latest, fs.getNextEvent());
 			}
@@ -0,0 +1,263 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor 
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *  
+ *  This file is part of DISSECT-CF.
+ *  
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *  
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+
+package hu.mta.sztaki.lpds.cloud.simulator.io;
+
+import java.util.Arrays;
+
+/**
+ * Offers dense integer identifiers for network nodes and a primitive latency
+ * store between them. Once two nodes are registered in the same registry, their
+ * connectivity is determined by the registry (and not by the latency maps the
+ * nodes were constructed with), thus no hashing or boxing is needed when a
+ * transfer is initiated between them.
+ * 
+ * Latencies are stored in rows: every row lists the latencies from a particular
+ * <i>latency class</i> towards every registered node. By default each node gets
+ * its own latency class, which results in a dense latency matrix - this is the
+ * recommended setup for small clouds. For large clouds, nodes with the same
+ * connectivity (e.g., the machines of a rack, or machines loaded with the same
+ * latency definitions) should share a latency class, this way the registry only
+ * needs to store a row per class instead of a row per node.
+ * 
+ * <i>WARNING:</i> the registry is not thread safe, it is expected to be used
+ * from the simulation thread only.
+ * 
+ * @author "agent, (c) 2026"
+ */
+public class NetworkRegistry {
+	/**
+	 * The latency value showing that there is no connection between two nodes
+	 */
+	public static final int NO_CONNECTION = -1;
+
+	/**
+	 * The registered nodes indexed by their dense identifiers
+	 */
+	private NetworkNode[] nodes;
+	/**
+	 * The latency class of each registered node (indexed by the dense ids)
+	 */
+	private int[] classOf;
+	/**
+	 * The number of nodes registered so far
+	 */
+	private int nodeCount = 0;
+	/**
+	 * The latency rows of the classes: rows[c][id] tells the latency from class c
+	 * towards the node with the dense identifier id.
+	 */
+	private int[][] rows = new int[4][];
+	/**
+	 * The number of latency classes created so far
+	 */
+	private int classCount = 0;
+
+	/**
+	 * Prepares an empty registry
+	 * 
+	 * @param expectedNodes
+	 *            the number of nodes the registry is expected to hold. The
+	 *            registry can grow beyond this number but at the cost of
+	 *            reallocating its internal arrays.
+	 */
+	public NetworkRegistry(final int expectedNodes) {
+		final int initial = Math.max(expectedNodes, 4);
+		nodes = new NetworkNode[initial];
+		classOf = new int[initial];
+	}
+
+	/**
+	 * Creates a new latency class which initially has no connections towards any
+	 * of the nodes.
+	 * 
+	 * @return the identifier of the new latency class
+	 */
+	public int newLatencyClass() {
+		if (classCount == rows.length) {
+			rows = Arrays.copyOf(rows, classCount * 2);
+		}
+		final int[] row = new int[nodes.length];
+		Arrays.fill(row, NO_CONNECTION);
+		rows[classCount] = row;
+		return classCount++;
+	}
+
+	/**
+	 * Registers a node with its own latency class (i.e., as part of a dense
+	 * latency matrix)
+	 * 
+	 * @param node
+	 *            the node to register
+	 * @return the dense identifier of the node
+	 * @throws IllegalStateException
+	 *             if the node is already registered in some registry
+	 */
+	public int register(final NetworkNode node) {
+		return register(node, newLatencyClass());
+	}
+
+	/**
+	 * Registers a node and assigns it to an already existing latency class. The
+	 * node will have the same latencies towards other nodes as the rest of the
+	 * nodes in the class.
+	 * 
+	 * @param node
+	 *            the node to register
+	 * @param latencyClass
+	 *            the class to be used for determining the latencies originating
+	 *            from the node
+	 * @return the dense identifier of the node
+	 * @throws IllegalStateException
+	 *             if the node is already registered in some registry or if the
+	 *             latency class is unknown
+	 */
+	public int register(final NetworkNode node, final int latencyClass) {
+		if (node.registry != null) {
+			throw new IllegalStateException("Network node " + node.getName() + " is already registered");
+		}
+		if (latencyClass < 0 || latencyClass >= classCount) {
+			throw new IllegalStateException("Unknown latency class: " + latencyClass);
+		}
+		if (nodeCount == nodes.length) {
+			final int newLen = nodeCount * 2;
+			nodes = Arrays.copyOf(nodes, newLen);
+			classOf = Arrays.copyOf(classOf, newLen);
+			for (int i = 0; i < classCount; i++) {
+				final int[] row = Arrays.copyOf(rows[i], newLen);
+				Arrays.fill(row, nodeCount, newLen, NO_CONNECTION);
+				rows[i] = row;
+			}
+		}
+		nodes[nodeCount] = node;
+		classOf[nodeCount] = latencyClass;
+		node.registry = this;
+		node.registryId = nodeCount;
+		return nodeCount++;
+	}
+
+	/**
+	 * Sets the latency from all members of a latency class towards a particular
+	 * node.
+	 * 
+	 * @param latencyClass
+	 *            the class of the source nodes
+	 * @param to
+	 *            the target node (must be registered in this registry)
+	 * @param latency
+	 *            the latency in ticks, or NO_CONNECTION to remove the connection
+	 */
+	public void setClassLatency(final int latencyClass, final NetworkNode to, final int latency) {
+		rows[latencyClass][idOf(to)] = latency;
+	}
+
+	/**
+	 * Sets the latency between two nodes. Note: if the source node shares its
+	 * latency class with others, then this call alters the latencies of all
+	 * the other members of the class as well.
+	 * 
+	 * @param from
+	 *            the source of the connection
+	 * @param to
+	 *            the target of the connection
+	 * @param latency
+	 *            the latency in ticks, or NO_CONNECTION to remove the connection
+	 */
+	public void setLatency(final NetworkNode from, final NetworkNode to, final int latency) {
+		setClassLatency(classOf[idOf(from)], to, latency);
+	}
+
+	/**
+	 * Determines the latency between two registered nodes
+	 * 
+	 * @param fromId
+	 *            the dense identifier of the source node
+	 * @param toId
+	 *            the dense identifier of the target node
+	 * @return the latency in ticks or NO_CONNECTION if the nodes are not
+	 *         connected
+	 */
+	public int getLatency(final int fromId, final int toId) {
+		return rows[classOf[fromId]][toId];
+	}
+
+	/**
+	 * Determines the dense identifier of a node
+	 * 
+	 * @param node
+	 *            the node in question
+	 * @return the identifier
+	 * @throws IllegalStateException
+	 *             if the node is not part of this registry
+	 */
+	public int idOf(final NetworkNode node) {
+		if (node.registry != this) {
+			throw new IllegalStateException("Network node " + node.getName() + " is not part of this registry");
+		}
+		return node.registryId;
+	}
+
+	/**
+	 * Allows to query the latency class of a particular node
+	 * 
+	 * @param node
+	 *            the node in question
+	 * @return the latency class of the node
+	 */
+	public int getLatencyClass(final NetworkNode node) {
+		return classOf[idOf(node)];
+	}
+
+	/**
+	 * Looks up a node based on its dense identifier
+	 * 
+	 * @param id
+	 *            the identifier to look for
+	 * @return the node with the given identifier
+	 */
+	public NetworkNode getNode(final int id) {
+		if (id >= nodeCount) {
+			throw new IndexOutOfBoundsException("No node with id " + id);
+		}
+		return nodes[id];
+	}
+
+	/**
+	 * The number of nodes registered so far
+	 * 
+	 * @return the node count
+	 */
+	public int size() {
+		return nodeCount;
+	}
+
+	/**
+	 * The number of latency classes created so far
+	 * 
+	 * @return the class count
+	 */
+	public int getLatencyClassCount() {
+		return classCount;
+	}
+}
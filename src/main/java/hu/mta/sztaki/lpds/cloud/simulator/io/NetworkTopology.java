@@ -0,0 +1,212 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor 
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *  
+ *  This file is part of DISSECT-CF.
+ *  
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *  
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+
+package hu.mta.sztaki.lpds.cloud.simulator.io;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.resourcemodel.MaxMinConsumer;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.resourcemodel.MaxMinProvider;
+
+/**
+ * A two tier data centre network: network nodes are placed in racks, every
+ * rack has a top of rack switch which is connected to a non-blocking spine.
+ * 
+ * The latency between two nodes is derived from the path between them and
+ * not stored per node pair:
+ * <ul>
+ * <li>within a rack the path is node-&gt;ToR-&gt;node, i.e., the latency is
+ * 2*hostLinkLatency
+ * <li>across racks the path is node-&gt;ToR-&gt;spine-&gt;ToR-&gt;node, i.e.,
+ * the latency is 2*hostLinkLatency+2*uplinkLatency
+ * </ul>
+ * 
+ * Transfers within a rack only use the network spreaders of the two nodes.
+ * Transfers across racks also use the uplink of the source rack and the
+ * downlink of the target rack. These rack level spreaders are shared by all
+ * transfers leaving/entering the rack, thus if the nodes of a rack could send
+ * more than what the uplink allows (i.e., the rack is oversubscribed), then the
+ * transfers slow down accordingly.
+ * 
+ * The topology only keeps a rack reference per node, so it is suitable even
+ * for data centres with hundreds of thousands of nodes.
+ * 
+ * @author "agent, (c) 2026"
+ */
+public class NetworkTopology {
+	/**
+	 * Represents a rack and its top of rack switch
+	 * 
+	 * @author "agent, (c) 2026"
+	 */
+	public class Rack {
+		/**
+		 * The index of the rack in its topology
+		 */
+		public final int id;
+		/**
+		 * Models the link from the top of rack switch towards the spine. All
+		 * transfers leaving the rack are using this provider.
+		 */
+		public final MaxMinProvider uplink;
+		/**
+		 * Models the link from the spine towards the top of rack switch. All
+		 * transfers entering the rack are using this consumer.
+		 */
+		public final MaxMinConsumer downlink;
+		/**
+		 * The number of nodes placed in this rack
+		 */
+		private int nodeCount = 0;
+
+		/**
+		 * Creates the rack with its switch's spine connections
+		 * 
+		 * @param id
+		 *            the index of the rack
+		 * @param uplinkBW
+		 *            the bandwidth of the switch towards the spine (bytes/tick)
+		 * @param downlinkBW
+		 *            the bandwidth of the switch from the spine (bytes/tick)
+		 */
+		private Rack(final int id, final long uplinkBW, final long downlinkBW) {
+			this.id = id;
+			uplink = new MaxMinProvider(uplinkBW);
+			downlink = new MaxMinConsumer(downlinkBW);
+		}
+
+		/**
+		 * The topology this rack belongs to
+		 * 
+		 * @return the topology
+		 */
+		public NetworkTopology getTopology() {
+			return NetworkTopology.this;
+		}
+
+		/**
+		 * The number of nodes in this rack
+		 * 
+		 * @return the node count
+		 */
+		public int getNodeCount() {
+			return nodeCount;
+		}
+
+		@Override
+		public String toString() {
+			return "Rack(" + id + " Nodes:" + nodeCount + " Up:" + uplink.getPerTickProcessingPower() + " Down:"
+					+ downlink.getPerTickProcessingPower() + ")";
+		}
+	}
+
+	/**
+	 * The latency between a node and its top of rack switch (in ticks)
+	 */
+	public final int hostLinkLatency;
+	/**
+	 * The latency between a top of rack switch and the spine (in ticks)
+	 */
+	public final int uplinkLatency;
+	/**
+	 * All the racks of the topology
+	 */
+	private final ArrayList<Rack> racks = new ArrayList<Rack>();
+	/**
+	 * Read only view of the racks
+	 */
+	public final List<Rack> publicRacks = Collections.unmodifiableList(racks);
+
+	/**
+	 * Creates an empty topology
+	 * 
+	 * @param hostLinkLatency
+	 *            the latency between a node and its top of rack switch (in
+	 *            ticks)
+	 * @param uplinkLatency
+	 *            the latency between a top of rack switch and the spine (in
+	 *            ticks)
+	 */
+	public NetworkTopology(final int hostLinkLatency, final int uplinkLatency) {
+		if (hostLinkLatency < 0 || uplinkLatency < 0) {
+			throw new IllegalArgumentException("Cannot create a topology with negative latencies");
+		}
+		this.hostLinkLatency = hostLinkLatency;
+		this.uplinkLatency = uplinkLatency;
+	}
+
+	/**
+	 * Adds a new rack to the topology
+	 * 
+	 * @param uplinkBW
+	 *            the bandwidth of the rack's switch towards the spine
+	 *            (bytes/tick)
+	 * @param downlinkBW
+	 *            the bandwidth of the rack's switch from the spine (bytes/tick)
+	 * @return the new rack where nodes can be placed
+	 */
+	public Rack addRack(final long uplinkBW, final long downlinkBW) {
+		final Rack r = new Rack(racks.size(), uplinkBW, downlinkBW);
+		racks.add(r);
+		return r;
+	}
+
+	/**
+	 * Places a node in a rack. After this call the latencies of the node towards
+	 * the other nodes of the topology are determined by the topology.
+	 * 
+	 * @param node
+	 *            the node to be placed
+	 * @param rack
+	 *            the rack where the node is going to reside
+	 * @throws IllegalStateException
+	 *             if the node is already placed in a rack or if the rack is not
+	 *             part of this topology
+	 */
+	public void place(final NetworkNode node, final Rack rack) {
+		if (rack.getTopology() != this) {
+			throw new IllegalStateException("The rack is not part of this topology");
+		}
+		if (node.rack != null) {
+			throw new IllegalStateException("Network node " + node.getName() + " is already placed in a rack");
+		}
+		node.rack = rack;
+		rack.nodeCount++;
+	}
+
+	/**
+	 * Determines the latency of the path between two racks
+	 * 
+	 * @param from
+	 *            the rack of the source node
+	 * @param to
+	 *            the rack of the target node
+	 * @return the latency in ticks
+	 */
+	public int getLatency(final Rack from, final Rack to) {
+		return from == to ? 2 * hostLinkLatency : 2 * (hostLinkLatency + uplinkLatency);
+	}
+}
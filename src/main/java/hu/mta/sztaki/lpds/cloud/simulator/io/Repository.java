@@ -26,10 +26,12 @@
 
 package hu.mta.sztaki.lpds.cloud.simulator.io;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 import hu.mta.sztaki.lpds.cloud.simulator.energy.powermodelling.PowerState;
@@ -56,7 +58,7 @@ public class Repository extends NetworkNode {
 	/**
 	 * Stuff that is already in the current repository
 	 */
-	final HashMap<String, StorageObject> contents = new HashMap<String, StorageObject>(16);
+	final StorageCatalogue contents;
 
 	/**
 	 * Contents that are under transfer, to ensure that we are not allowing the
@@ -77,6 +79,42 @@ public class Repository extends NetworkNode {
 	 * The amount of contents that are about to arrive.
 	 */
 	private long promisedStorage = 0;
+	/**
+	 * Keeps the images fetched for new VM disks, null if images are not
+	 * cached in this repository.
+	 */
+	private ImageCache imageCache = null;
+	/**
+	 * Shares the transfers of concurrent deliveries of the same object, null if
+	 * all deliveries transfer their objects independently.
+	 */
+	private MulticastDelivery multicast = null;
+	/**
+	 * The fraction of a local copy expected to diverge from its original, the
+	 * rest is shared with the original. Negative if local copies are full
+	 * copies.
+	 */
+	private double cowWriteRatio = -1;
+	/**
+	 * The number of copy on write objects sharing the contents of each base
+	 * object. Bases dropped from the repository still occupy their storage
+	 * until their last copy is dropped. The bases are identified by the
+	 * objects themselves: a base replaced by another object under the same id
+	 * is still tracked separately.
+	 */
+	private final IdentityHashMap<StorageObject, Integer> cowReferences = new IdentityHashMap<StorageObject, Integer>();
+	/**
+	 * The objects standing for the currently registered bases of copy on write
+	 * copies, indexed by their ids. Catalogues are not required to return the
+	 * registered object itself on lookups, thus the copies of a base refer to
+	 * the object kept here. The entry is dropped when the base is removed from
+	 * the repository, so a later object under the same id is a different base.
+	 */
+	private final HashMap<String, StorageObject> liveBases = new HashMap<String, StorageObject>();
+	/**
+	 * The amount of storage the copy on write objects do not occupy
+	 */
+	private long cowSavings = 0;
 
 	/**
 	 * Constructor for repository objects
@@ -94,8 +132,34 @@ public class Repository extends NetworkNode {
 	public Repository(final long capacity, final String id, final long maxInBW, final long maxOutBW, final long diskBW,
 			final Map<String, Integer> latencyMap, Map<String, PowerState> diskPowerTransitions,
 			Map<String, PowerState> networkPowerTransitions) {
+		this(capacity, id, maxInBW, maxOutBW, diskBW, latencyMap, diskPowerTransitions, networkPowerTransitions,
+				new MapCatalogue());
+	}
+
+	/**
+	 * Constructor for repository objects with a custom catalogue. E.g., to
+	 * keep millions of small storage objects with a CompactCatalogue.
+	 * 
+	 * @param capacity
+	 *            the storage capacity of the repository
+	 * @param maxInBW
+	 *            the input network bandwidth of the repository
+	 * @param maxOutBW
+	 *            the output network bandwidth of the repository
+	 * @param diskBW
+	 *            the disk bandwidth of the repository
+	 * @param catalogue
+	 *            the empty catalogue to keep the contents of the repository in
+	 */
+	public Repository(final long capacity, final String id, final long maxInBW, final long maxOutBW, final long diskBW,
+			final Map<String, Integer> latencyMap, Map<String, PowerState> diskPowerTransitions,
+			Map<String, PowerState> networkPowerTransitions, final StorageCatalogue catalogue) {
 		super(id, maxInBW, maxOutBW, diskBW, latencyMap, diskPowerTransitions, networkPowerTransitions);
+		if (catalogue.size() != 0) {
+			throw new IllegalArgumentException("The catalogue of a new repository must be empty");
+		}
 		maxStorageCapacity = capacity;
+		contents = catalogue;
 	}
 
 	/**
@@ -110,17 +174,79 @@ public class Repository extends NetworkNode {
 	 *         enough space to store the object
 	 */
 	public boolean registerObject(final StorageObject so) {
-		if (!contents.containsKey(so.id)) {
-			final long futureFree = getFreeStorageCapacity() - so.size;
+		if (!contents.contains(so.id)) {
+			final boolean shared = sharesBase(so);
+			final long stored = shared ? ((CopyOnWriteObject) so).divergentBytes : so.size;
+			final long futureFree = getFreeStorageCapacity() - stored;
 			if (futureFree < 0) {
 				return false;
 			}
-			contents.put(so.id, so);
-			currentStorageUse += so.size;
+			contents.put(so);
+			currentStorageUse += stored;
+			if (shared) {
+				final StorageObject base = ((CopyOnWriteObject) so).base;
+				if (isLiveBase(base)) {
+					liveBases.put(base.id, base);
+				}
+				final Integer refs = cowReferences.get(base);
+				cowReferences.put(base, refs == null ? 1 : refs + 1);
+				cowSavings += so.size - stored;
+			}
 		}
 		return true;
 	}
 
+	/**
+	 * Determines if the object is a copy on write object whose base is kept in
+	 * this repository.
+	 */
+	private boolean sharesBase(final StorageObject so) {
+		if (so instanceof CopyOnWriteObject) {
+			final StorageObject base = ((CopyOnWriteObject) so).base;
+			return isLiveBase(base) || cowReferences.containsKey(base);
+		}
+		return false;
+	}
+
+	/**
+	 * Determines if the object stands for the currently registered object
+	 * with its id.
+	 */
+	private boolean isLiveBase(final StorageObject base) {
+		final StorageObject known = liveBases.get(base.id);
+		return known == null ? contents.get(base.id) == base : known == base;
+	}
+
+	/**
+	 * Finds the object copy on write copies should refer to when sharing the
+	 * contents of a registered object.
+	 * 
+	 * @param registered
+	 *            the object as returned by the catalogue
+	 * @return the object standing for the current registration of the object
+	 */
+	private StorageObject liveBase(final StorageObject registered) {
+		final StorageObject known = liveBases.get(registered.id);
+		if (known != null) {
+			return known;
+		}
+		liveBases.put(registered.id, registered);
+		return registered;
+	}
+
+	/**
+	 * Determines if copy on write copies still share the contents of an object.
+	 * Removing such an object does not free up its storage.
+	 * 
+	 * @param id
+	 *            the storage object id of the object
+	 * @return <i>true</i> if there are copies referring to the object
+	 */
+	boolean hasCopyOnWriteCopies(final String id) {
+		final StorageObject base = liveBases.get(id);
+		return base != null && cowReferences.containsKey(base);
+	}
+
 	/**
 	 * This function is designed to simulate the erase function of the repository
 	 * given that its user knows the StorageObject to be dropped.
@@ -161,13 +287,39 @@ public class Repository extends NetworkNode {
 		if (!underTransfer.contains(soid)) {
 			StorageObject removed = contents.remove(soid);
 			if (removed != null) {
-				currentStorageUse -= removed.size;
+				final StorageObject base = liveBases.remove(soid);
+				if (removed instanceof CopyOnWriteObject
+						&& cowReferences.containsKey(((CopyOnWriteObject) removed).base)) {
+					final CopyOnWriteObject copy = (CopyOnWriteObject) removed;
+					currentStorageUse -= copy.divergentBytes;
+					cowSavings -= copy.size - copy.divergentBytes;
+					releaseBase(copy.base);
+				} else if (base == null || !cowReferences.containsKey(base)) {
+					// Bases with copies keep their storage until their last copy is gone
+					currentStorageUse -= removed.size;
+				}
 				return true;
 			}
 		}
 		return false;
 	}
 
+	/**
+	 * Drops a reference to a base object, releasing its storage if it was the
+	 * last reference and the base is already removed from the repository.
+	 */
+	private void releaseBase(final StorageObject base) {
+		final int refs = cowReferences.get(base) - 1;
+		if (refs > 0) {
+			cowReferences.put(base, refs);
+		} else {
+			cowReferences.remove(base);
+			if (liveBases.get(base.id) != base) {
+				currentStorageUse -= base.size;
+			}
+		}
+	}
+
 	/**
 	 * Initiates transfer from a remote location
 	 * 
@@ -234,6 +386,9 @@ public class Repository extends NetworkNode {
 		if (totransfer == null) {
 			return null;
 		}
+		if (this == target && cowWriteRatio >= 0) {
+			return duplicateCopyOnWrite(totransfer, newId, ev);
+		}
 		return manageStoragePromise(totransfer.size, id, target, new MainStorageActivity() {
 			@Override
 			public ResourceConsumption doStorage() throws NetworkException {
@@ -268,6 +423,173 @@ public class Repository extends NetworkNode {
 		});
 	}
 
+	/**
+	 * Initiates the delivery of a storage object in chunks, fetched in parallel
+	 * from this repository and the given replicas. Contrary to
+	 * requestContentDelivery, the delivery can be resumed after a cancellation
+	 * without transferring the already received chunks again.
+	 * 
+	 * @param id
+	 *            The storage object id that will be transferred
+	 * @param newId
+	 *            The name of the copied storage object id if it needs to be
+	 *            changed (null keeps the original id)
+	 * @param target
+	 *            The target repository where the transferred data will reside
+	 * @param chunkSize
+	 *            The maximum amount of data transferred as a single unit
+	 * @param ev
+	 *            the event to be fired if the delivery is completed or
+	 *            interrupted
+	 * @param replicas
+	 *            other repositories holding the same storage object
+	 * @return the handle of the delivery or <b>null</b> if it is not possible
+	 *         to initiate
+	 * @throws IllegalArgumentException
+	 *             if the chunk size is not positive
+	 */
+	public ChunkedTransfer requestChunkedDelivery(final String id, final String newId, final Repository target,
+			final long chunkSize, final ResourceConsumption.ConsumptionEvent ev, final Repository... replicas) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("Chunks must have a positive size");
+		}
+		if (target == null || (this == target && (newId == null || newId.equals(id))))
+			return null;
+		final StorageObject totransfer = contents.get(id);
+		if (totransfer == null || totransfer.size + target.promisedStorage
+				+ target.currentStorageUse > target.maxStorageCapacity) {
+			return null;
+		}
+		final ArrayList<Repository> sources = new ArrayList<Repository>(replicas.length + 1);
+		sources.add(this);
+		for (Repository r : replicas) {
+			if (r != this && !sources.contains(r)) {
+				sources.add(r);
+			}
+		}
+		target.promisedStorage += totransfer.size;
+		final ChunkedTransfer transfer = new ChunkedTransfer(totransfer, newId, target, chunkSize, sources, ev);
+		if (!transfer.start()) {
+			target.promisedStorage -= totransfer.size;
+			return null;
+		}
+		return transfer;
+	}
+
+	/**
+	 * Reserves storage for an object arriving later on.
+	 * 
+	 * @param size
+	 *            the size of the object
+	 * @return <i>true</i> if there was enough free storage for the object
+	 */
+	boolean reservePromise(final long size) {
+		if (getFreeStorageCapacity() < size) {
+			return false;
+		}
+		promisedStorage += size;
+		return true;
+	}
+
+	/**
+	 * Releases the storage reserved for an arriving object.
+	 * 
+	 * @param size
+	 *            the size of the object
+	 */
+	void releasePromise(final long size) {
+		promisedStorage -= size;
+	}
+
+	/**
+	 * Creates a local copy of an object that shares its contents with the
+	 * object. Only the bytes expected to diverge are written to the disk and
+	 * occupy storage.
+	 * 
+	 * @param original
+	 *            the object to copy
+	 * @param newId
+	 *            the id of the copy
+	 * @param ev
+	 *            the event to be fired if the copy is completed
+	 * @return the consumption object that represents the writing of the copy
+	 *         or <b>null</b> if it is not possible to initiate
+	 */
+	private ResourceConsumption duplicateCopyOnWrite(final StorageObject original, final String newId,
+			final ResourceConsumption.ConsumptionEvent ev) throws NetworkException {
+		final StorageObject base = original instanceof CopyOnWriteObject ? ((CopyOnWriteObject) original).base
+				: liveBase(original);
+		final long divergent = (long) Math.ceil(cowWriteRatio * original.size);
+		return manageStoragePromise(divergent, original.id, this, new MainStorageActivity() {
+			@Override
+			public ResourceConsumption doStorage() throws NetworkException {
+				underTransfer.add(original.id);
+				final ResourceConsumption[] writing = new ResourceConsumption[1];
+				writing[0] = initTransfer(divergent, ResourceConsumption.unlimitedProcessing, Repository.this,
+						Repository.this, new ResourceConsumption.ConsumptionEvent() {
+							private void cleanUpRepos() {
+								underTransfer.remove(original.id);
+								promisedStorage -= divergent;
+							}
+
+							@Override
+							public void conComplete() {
+								cleanUpRepos();
+								if (!registerObject(new CopyOnWriteObject(newId, base, divergent))) {
+									// the base is gone and the full copy does not fit
+									if (ev != null) {
+										ev.conCancelled(writing[0]);
+									}
+									return;
+								}
+								if (ev != null) {
+									ev.conComplete();
+								}
+							}
+
+							@Override
+							public void conCancelled(ResourceConsumption problematic) {
+								cleanUpRepos();
+								if (ev != null) {
+									ev.conCancelled(problematic);
+								}
+							}
+						});
+				return writing[0];
+			}
+		});
+	}
+
+	/**
+	 * Makes the local copies of this repository's objects copy on write
+	 * objects. Copies made afterwards only write and occupy the bytes expected
+	 * to diverge from their originals. Copies are only shared within this
+	 * repository, transfers to other repositories remain full copies.
+	 * 
+	 * @param writeRatio
+	 *            the fraction of a copy expected to be written during its
+	 *            lifetime (between 0 and 1)
+	 * @throws IllegalArgumentException
+	 *             if the ratio is out of range
+	 */
+	public void enableCopyOnWrite(final double writeRatio) {
+		if (writeRatio < 0 || writeRatio > 1) {
+			throw new IllegalArgumentException("The write ratio must be between 0 and 1");
+		}
+		cowWriteRatio = writeRatio;
+	}
+
+	/**
+	 * Retrieves the amount of storage saved by sharing contents amongst the
+	 * copy on write objects and their bases.
+	 * 
+	 * @return the difference between the logical size of the stored objects
+	 *         and the storage they actually occupy
+	 */
+	public long getCopyOnWriteSavings() {
+		return cowSavings;
+	}
+
 	/**
 	 * An internal interface for managing storage related operations
 	 * 
@@ -426,6 +748,62 @@ public class Repository extends NetworkNode {
 		return Collections.unmodifiableCollection(contents.values());
 	}
 
+	/**
+	 * Starts keeping the images fetched from remote repositories for new VM
+	 * disks, so further disks from the same image can be created locally.
+	 * 
+	 * @param budget
+	 *            the total size of images the cache can keep
+	 * @param policy
+	 *            determines which images to drop when the budget is exhausted
+	 * @return the newly attached cache
+	 * @throws IllegalStateException
+	 *             if the repository already has a cache
+	 */
+	public ImageCache enableImageCache(final long budget, final ImageCache.EvictionPolicy policy) {
+		if (imageCache != null) {
+			throw new IllegalStateException("The repository already caches images");
+		}
+		imageCache = new ImageCache(this, budget, policy);
+		return imageCache;
+	}
+
+	/**
+	 * Allows the VMs to determine how to create their disks in this repository.
+	 * 
+	 * @return the image cache of this repository or <b>null</b> if images are
+	 *         not cached here
+	 */
+	public ImageCache getImageCache() {
+		return imageCache;
+	}
+
+	/**
+	 * Lets concurrent deliveries of the same object to this repository share a
+	 * single network transfer.
+	 * 
+	 * @return the coordinator of the deliveries
+	 * @throws IllegalStateException
+	 *             if multicast deliveries are already enabled
+	 */
+	public MulticastDelivery enableMulticastDelivery() {
+		if (multicast != null) {
+			throw new IllegalStateException("The repository already shares its deliveries");
+		}
+		multicast = new MulticastDelivery(this);
+		return multicast;
+	}
+
+	/**
+	 * Allows the VMs to determine how to create their disks in this repository.
+	 * 
+	 * @return the delivery coordinator of this repository or <b>null</b> if
+	 *         deliveries are not shared here
+	 */
+	public MulticastDelivery getMulticastDelivery() {
+		return multicast;
+	}
+
 	/**
 	 * provides a summary of this repository good for debugging.
 	 */
@@ -0,0 +1,173 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *
+ *  This file is part of DISSECT-CF.
+ *
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package hu.mta.sztaki.lpds.cloud.simulator.io;
+
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.resourcemodel.ConsumptionEventAdapter;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.resourcemodel.ResourceConsumption;
+
+/**
+ * The handle of a single delivery that shares a transfer with other
+ * deliveries, then gets its own local copy of the transferred object. This
+ * object never participates in the resource sharing directly: it reports the
+ * state of the shared transfer until the local copy is started, and the state
+ * of the local copy afterwards.
+ *
+ * Cancelling the handle while the transfer is shared only detaches this
+ * delivery from it. The shared transfer is cancelled when its last delivery
+ * is detached. Once the local copy is started, cancelling the handle cancels
+ * the copy.
+ *
+ * <i>WARNING</i> this is an internal representation of the delivery. This
+ * class is not supposed to be used outside of the context of the io package.
+ *
+ * @author "agent, (c) 2026"
+ */
+abstract class SharedDeliveryHandle extends ResourceConsumption {
+	/**
+	 * The event to be fired when the delivery is done, null if no one needs
+	 * to be notified
+	 */
+	final ResourceConsumption.ConsumptionEvent ev;
+	/**
+	 * The transfer shared with the other deliveries
+	 */
+	ResourceConsumption shared;
+	/**
+	 * The local copy made for this delivery, null until it is started
+	 */
+	ResourceConsumption own = null;
+	/**
+	 * Shows if the handle no longer follows the shared transfer (it was
+	 * detached or the shared transfer is over without a local copy)
+	 */
+	private boolean over = false;
+
+	/**
+	 * @param size
+	 *            the size of the delivered object
+	 * @param ev
+	 *            the event to be fired when the delivery is done
+	 */
+	SharedDeliveryHandle(final long size, final ResourceConsumption.ConsumptionEvent ev) {
+		super(size, ResourceConsumption.unlimitedProcessing, null, null,
+				ev == null ? new ConsumptionEventAdapter() : ev);
+		this.ev = ev;
+	}
+
+	/**
+	 * Removes the delivery from the ones sharing the transfer and releases
+	 * the resources reserved for it.
+	 *
+	 * @return <i>true</i> if no other delivery shares the transfer anymore
+	 */
+	abstract boolean detach();
+
+	/**
+	 * Marks the shared transfer over for this handle without a local copy,
+	 * the handle controls nothing afterwards.
+	 */
+	void finish() {
+		over = true;
+	}
+
+	/**
+	 * Fires the cancellation event of the delivery if it is still waiting
+	 * for the shared transfer.
+	 */
+	void fail(final ResourceConsumption problematic) {
+		finish();
+		if (ev != null) {
+			ev.conCancelled(problematic);
+		}
+	}
+
+	private ResourceConsumption current() {
+		if (own != null) {
+			return own;
+		}
+		return over ? null : shared;
+	}
+
+	@Override
+	public double getUnProcessed() {
+		final ResourceConsumption c = current();
+		return c == null ? super.getUnProcessed() : c.getUnProcessed();
+	}
+
+	@Override
+	public double getRealLimit() {
+		final ResourceConsumption c = current();
+		return c == null ? 0 : c.getRealLimit();
+	}
+
+	@Override
+	public long getCompletionDistance() {
+		final ResourceConsumption c = current();
+		return c == null ? super.getCompletionDistance() : c.getCompletionDistance();
+	}
+
+	@Override
+	public boolean isRegistered() {
+		final ResourceConsumption c = current();
+		return c != null && c.isRegistered();
+	}
+
+	@Override
+	public boolean isResumable() {
+		final ResourceConsumption c = current();
+		return c == null ? super.isResumable() : c.isResumable();
+	}
+
+	/**
+	 * Only the local copy can be resumed through the handle, the shared
+	 * transfer is not controlled by a single delivery.
+	 */
+	@Override
+	public boolean registerConsumption() {
+		return own != null && own.registerConsumption();
+	}
+
+	@Override
+	public void suspend() {
+		if (own != null) {
+			own.suspend();
+		}
+	}
+
+	@Override
+	public void cancel() {
+		if (own != null) {
+			own.cancel();
+			return;
+		}
+		if (over) {
+			return;
+		}
+		over = true;
+		if (detach() && shared != null) {
+			shared.cancel();
+		}
+		super.cancel();
+	}
+}
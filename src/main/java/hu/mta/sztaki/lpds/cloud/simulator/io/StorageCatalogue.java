@@ -0,0 +1,83 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor 
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *  
+ *  This file is part of DISSECT-CF.
+ *  
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *  
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package hu.mta.sztaki.lpds.cloud.simulator.io;
+
+import java.util.Collection;
+
+/**
+ * The way a repository keeps track of its contents. Storage objects are
+ * indexed by their ids, a catalogue holds at most a single object with a
+ * given id.
+ * 
+ * @author "agent, (c) 2026"
+ */
+public interface StorageCatalogue {
+	/**
+	 * Finds a storage object
+	 * 
+	 * @param id
+	 *            the id of the object
+	 * @return the object or <b>null</b> if there is no object with the given
+	 *         id
+	 */
+	StorageObject get(String id);
+
+	/**
+	 * Determines if there is an object with the given id
+	 * 
+	 * @param id
+	 *            the id of the object
+	 * @return <i>true</i> if the object is in the catalogue
+	 */
+	boolean contains(String id);
+
+	/**
+	 * Adds a storage object, the catalogue must not have an object with the
+	 * same id already.
+	 * 
+	 * @param so
+	 *            the object to be added
+	 */
+	void put(StorageObject so);
+
+	/**
+	 * Drops a storage object
+	 * 
+	 * @param id
+	 *            the id of the object
+	 * @return the dropped object or <b>null</b> if there was no object with
+	 *         the given id
+	 */
+	StorageObject remove(String id);
+
+	/**
+	 * @return the number of objects in the catalogue
+	 */
+	int size();
+
+	/**
+	 * @return all objects in the catalogue
+	 */
+	Collection<StorageObject> values();
+}
@@ -30,8 +30,10 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -49,6 +51,9 @@ import hu.mta.sztaki.lpds.cloud.simulator.iaas.IaaSService;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.PhysicalMachine;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.pmscheduling.PhysicalMachineController;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.vmscheduling.Scheduler;
+import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkNode;
+import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkRegistry;
+import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkTopology;
 import hu.mta.sztaki.lpds.cloud.simulator.io.Repository;
 
 /**
@@ -59,6 +64,12 @@ import hu.mta.sztaki.lpds.cloud.simulator.io.Repository;
  *         MTA SZTAKI (c) 2012"
  */
 public class CloudLoader {
+	/**
+	 * The maximum number of latency values a loaded cloud is allowed to store in
+	 * its network registry. Clouds with more diverse latency definitions will
+	 * rely on the latency maps of their nodes.
+	 */
+	public static final long maxLatencyMatrixSize = 1 << 24;
 
 	/**
 	 * Offers the IaaSService creator functionality by defining the sax parser for
@@ -78,6 +89,32 @@ public class CloudLoader {
 	 */
 	public static IaaSService loadNodes(String fileName)
 			throws IOException, SAXException, ParserConfigurationException {
+		return loadNodes(fileName, false);
+	}
+
+	/**
+	 * Offers the IaaSService creator functionality by defining the sax parser for
+	 * the XML cloud configuration. Allows the loaded machines to share their
+	 * power behaviour definitions.
+	 * 
+	 * @param fileName
+	 *            the name of the xml file containing the configuration of the cloud
+	 * @param shareHardwareProfiles
+	 *            if <i>true</i>, machines and repositories with identical power
+	 *            behaviour use the same power state objects (see
+	 *            HardwareProfile). This reduces the memory footprint of large
+	 *            clouds, but the shared power states are frozen: their
+	 *            characteristics cannot be altered (e.g., to simulate DVFS).
+	 * @return the instantiated IaaSservice that complies with the configuration
+	 *         specified in the XML file received as the parameter
+	 * @throws IOException
+	 *             if there was some problem with finding/accessing the xml file
+	 * @throws SAXException
+	 *             if there was some problem parsing the configuration file
+	 * @throws ParserConfigurationException
+	 */
+	public static IaaSService loadNodes(String fileName, final boolean shareHardwareProfiles)
+			throws IOException, SAXException, ParserConfigurationException {
 		Calendar c = Calendar.getInstance();
 		System.out.println("Cloud Loader starts for: " + fileName + " at " + c.getTimeInMillis());
 		final ArrayList<IaaSService> returner = new ArrayList<IaaSService>();
@@ -100,6 +137,21 @@ public class CloudLoader {
 			long outbw;
 			long diskbw;
 			HashMap<String, Integer> latencymap;
+			/**
+			 * The latency maps already in use, nodes with equal latency
+			 * definitions share the same map.
+			 */
+			final HashMap<Map<String, Integer>, Map<String, Integer>> latencyProfiles = new HashMap<Map<String, Integer>, Map<String, Integer>>();
+			final ArrayList<NetworkNode> loadedNodes = new ArrayList<NetworkNode>();
+			final ArrayList<Map<String, Integer>> loadedLatencies = new ArrayList<Map<String, Integer>>();
+			/**
+			 * The network topology of the cloud (if there is one defined)
+			 */
+			NetworkTopology topology;
+			/**
+			 * The rack where the currently loaded nodes should be placed
+			 */
+			NetworkTopology.Rack currentRack;
 			EnumMap<PowerTransitionGenerator.PowerStateKind, Map<String, PowerState>> powerTransitions = new EnumMap<PowerTransitionGenerator.PowerStateKind, Map<String, PowerState>>(
 					PowerTransitionGenerator.PowerStateKind.class);
 			PowerTransitionGenerator.PowerStateKind currentKind;
@@ -121,6 +173,17 @@ public class CloudLoader {
 					}
 				}
 				if (incloud) {
+					if (qName.equals("topology")) {
+						topology = new NetworkTopology(Integer.parseInt(attributes.getValue("hostLatency")),
+								Integer.parseInt(attributes.getValue("uplinkLatency")));
+					}
+					if (qName.equals("rack")) {
+						if (topology == null) {
+							throw new SAXException("Racks can only be defined after the topology");
+						}
+						currentRack = topology.addRack(Long.parseLong(attributes.getValue("uplinkBW")),
+								Long.parseLong(attributes.getValue("downlinkBW")));
+					}
 					if (qName.equals("machine")) {
 						inmachine = true;
 						latencymap = new HashMap<String, Integer>();
@@ -137,6 +200,9 @@ public class CloudLoader {
 					}
 					if (qName.equals("repository")) {
 						inrepo = true;
+						if (!inmachine) {
+							latencymap = new HashMap<String, Integer>();
+						}
 						disksize = Long.parseLong(attributes.getValue("capacity"));
 						diskbw = Long.parseLong(attributes.getValue("diskBW"));
 						inbw = Long.parseLong(attributes.getValue("inBW"));
@@ -177,32 +243,121 @@ public class CloudLoader {
 			public void endElement(String uri, String localName, String qName) throws SAXException {
 				if (qName.equals("cloud")) {
 					incloud = false;
+					registerNetwork();
 				}
 				if (incloud) {
 					if (qName.equals("repository")) {
 						inrepo = false;
 						if (!inmachine) {
-							Repository newRepo = new Repository(disksize, rid, inbw, outbw, diskbw, latencymap,
-									powerTransitions.get(PowerTransitionGenerator.PowerStateKind.storage),
-									powerTransitions.get(PowerTransitionGenerator.PowerStateKind.network));
+							Repository newRepo = new Repository(disksize, rid, inbw, outbw, diskbw, sharedLatencies(),
+									powerBehavior(PowerTransitionGenerator.PowerStateKind.storage),
+									powerBehavior(PowerTransitionGenerator.PowerStateKind.network));
+							placeInRack(newRepo);
 							returner.get(0).registerRepository(newRepo);
 						}
 					}
 					if (qName.equals("machine")) {
 						inmachine = false;
-						returner.get(0)
-								.registerHost(new PhysicalMachine(cores, processing, memory,
-										new Repository(disksize, rid, inbw, outbw, diskbw, latencymap,
-												powerTransitions.get(PowerTransitionGenerator.PowerStateKind.storage),
-												powerTransitions.get(PowerTransitionGenerator.PowerStateKind.network)),
-										startuptime, shutdowntime,
-										powerTransitions.get(PowerTransitionGenerator.PowerStateKind.host)));
+						final Repository disk = new Repository(disksize, rid, inbw, outbw, diskbw, sharedLatencies(),
+								powerBehavior(PowerTransitionGenerator.PowerStateKind.storage),
+								powerBehavior(PowerTransitionGenerator.PowerStateKind.network));
+						placeInRack(disk);
+						returner.get(0).registerHost(new PhysicalMachine(cores, processing, memory, disk, startuptime,
+								shutdowntime, powerBehavior(PowerTransitionGenerator.PowerStateKind.host)));
 						powerTransitions = new EnumMap<PowerTransitionGenerator.PowerStateKind, Map<String, PowerState>>(
 								PowerTransitionGenerator.PowerStateKind.class);
 					}
 					if (qName.equals("powerstates")) {
 						currentKind = null;
 					}
+					if (qName.equals("rack")) {
+						currentRack = null;
+					}
+				}
+			}
+
+			/**
+			 * Determines the power behaviour of the currently loaded node
+			 * 
+			 * @param kind
+			 *            the kind of power behaviour needed
+			 * @return the power states loaded for the node, or their shared
+			 *         version if hardware profiles are shared
+			 */
+			private Map<String, PowerState> powerBehavior(final PowerTransitionGenerator.PowerStateKind kind) {
+				final Map<String, PowerState> loaded = powerTransitions.get(kind);
+				return shareHardwareProfiles ? HardwareProfile.intern(loaded) : loaded;
+			}
+
+			/**
+			 * Remembers the newly loaded node for the network registry and puts
+			 * it into the current rack if there is one.
+			 * 
+			 * @param node
+			 *            the node just loaded
+			 */
+			private void placeInRack(final NetworkNode node) {
+				loadedNodes.add(node);
+				if (currentRack != null) {
+					topology.place(node, currentRack);
+				}
+			}
+
+			/**
+			 * Ensures that nodes with equal latency definitions share the same
+			 * latency map
+			 * 
+			 * @return the shared version of the last loaded latency map
+			 */
+			private Map<String, Integer> sharedLatencies() {
+				Map<String, Integer> shared = latencyProfiles.get(latencymap);
+				if (shared == null) {
+					shared = Collections.unmodifiableMap(latencymap);
+					latencyProfiles.put(latencymap, shared);
+				}
+				loadedLatencies.add(shared);
+				return shared;
+			}
+
+			/**
+			 * Puts all loaded nodes in a network registry so transfers amongst
+			 * them do not need to look up their latencies by name. Nodes with
+			 * the same latency map share their latency class. If the latency
+			 * matrix would be too large, the nodes are left with their latency
+			 * maps only.
+			 */
+			private void registerNetwork() {
+				if ((long) latencyProfiles.size() * loadedNodes.size() > maxLatencyMatrixSize) {
+					return;
+				}
+				final NetworkRegistry registry = new NetworkRegistry(loadedNodes.size());
+				final IdentityHashMap<Map<String, Integer>, Integer> classes = new IdentityHashMap<Map<String, Integer>, Integer>();
+				final HashMap<String, ArrayList<NetworkNode>> byName = new HashMap<String, ArrayList<NetworkNode>>();
+				for (int i = 0; i < loadedNodes.size(); i++) {
+					final NetworkNode node = loadedNodes.get(i);
+					final Map<String, Integer> lm = loadedLatencies.get(i);
+					Integer latencyClass = classes.get(lm);
+					if (latencyClass == null) {
+						latencyClass = registry.newLatencyClass();
+						classes.put(lm, latencyClass);
+					}
+					registry.register(node, latencyClass);
+					ArrayList<NetworkNode> named = byName.get(node.getName());
+					if (named == null) {
+						named = new ArrayList<NetworkNode>(1);
+						byName.put(node.getName(), named);
+					}
+					named.add(node);
+				}
+				for (Map.Entry<Map<String, Integer>, Integer> c : classes.entrySet()) {
+					for (Map.Entry<String, Integer> lat : c.getKey().entrySet()) {
+						final ArrayList<NetworkNode> targets = byName.get(lat.getKey());
+						if (targets != null) {
+							for (NetworkNode target : targets) {
+								registry.setClassLatency(c.getValue(), target, lat.getValue());
+							}
+						}
+					}
 				}
 			}
 		});
@@ -0,0 +1,192 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor 
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *  
+ *  This file is part of DISSECT-CF.
+ *  
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *  
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package hu.mta.sztaki.lpds.cloud.simulator.util;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import hu.mta.sztaki.lpds.cloud.simulator.energy.powermodelling.PowerState;
+
+/**
+ * Allows physical machines and network nodes with identical hardware to share
+ * the same power behaviour definitions instead of each holding their own
+ * copies. Interned power state maps are unmodifiable and are handed out as the
+ * very same object for every structurally equal input (i.e., maps listing the
+ * same states with the same minimum consumption, consumption range and
+ * consumption model).
+ * 
+ * Interning is opt-in: the CloudLoader only uses it when asked to share the
+ * hardware profiles of the loaded machines.
+ * 
+ * The power states of an interned profile are frozen copies of the ones
+ * passed in (see PowerState.frozenCopy), the passed maps and their states are
+ * left untouched. Frozen states reject changes of their characteristics (e.g.,
+ * PowerState.setMinConsumption to simulate DVFS) with an
+ * IllegalStateException, so a change can never leak to the other machines
+ * built with the profile. As frozen states never change, the energy meters of
+ * these machines do not subscribe to them either. Machines that need
+ * alterable power state characteristics should not be built with interned
+ * profiles.
+ * 
+ * Memory implications: without interning, an XML defined PM held 3 hash maps,
+ * their entries and around 2 distinct power state objects per entry (the power
+ * state itself, its consumption model and its listener list). With interning
+ * every PM sharing a profile only holds references to the three canonical
+ * maps.
+ * 
+ * @author "agent, (c) 2026"
+ */
+public class HardwareProfile {
+	/**
+	 * The canonical power state maps indexed by their structural signature
+	 */
+	private static final HashMap<String, Map<String, PowerState>> internedMaps = new HashMap<String, Map<String, PowerState>>();
+	/**
+	 * The canonical power states indexed by their structural signature
+	 */
+	private static final HashMap<String, PowerState> internedStates = new HashMap<String, PowerState>();
+	/**
+	 * All maps ever returned by the interning functions, these are not wrapped
+	 * again when they are passed to a constructor that needs an unmodifiable
+	 * view
+	 */
+	private static final Set<Map<String, PowerState>> canonicalMaps = Collections
+			.newSetFromMap(new IdentityHashMap<Map<String, PowerState>, Boolean>());
+
+	/**
+	 * Not intended to be instantiated, only offers static functionality.
+	 */
+	private HardwareProfile() {
+	}
+
+	/**
+	 * Determines the structural signature of a power state
+	 * 
+	 * @param ps
+	 *            the power state to get the signature for
+	 * @return the signature that is equal for power states that behave the same
+	 *         way
+	 */
+	private static String signature(final PowerState ps) {
+		// the textual representation lists all behaviour defining properties
+		return ps.toString();
+	}
+
+	/**
+	 * Returns the canonical version of a power state map. Subsequent calls with
+	 * structurally equal maps return the very same unmodifiable map object.
+	 * 
+	 * @param transitions
+	 *            the power state map to intern (it is not altered by this call)
+	 * @return the shared, unmodifiable representation of the power state map
+	 */
+	public static synchronized Map<String, PowerState> intern(final Map<String, PowerState> transitions) {
+		if (transitions == null || canonicalMaps.contains(transitions)) {
+			return transitions;
+		}
+		final TreeMap<String, String> sigs = new TreeMap<String, String>();
+		for (Map.Entry<String, PowerState> e : transitions.entrySet()) {
+			sigs.put(e.getKey(), signature(e.getValue()));
+		}
+		final String mapSig = sigs.toString();
+		Map<String, PowerState> canonical = internedMaps.get(mapSig);
+		if (canonical == null) {
+			final HashMap<String, PowerState> copy = new HashMap<String, PowerState>(transitions.size());
+			for (Map.Entry<String, PowerState> e : transitions.entrySet()) {
+				final String stateSig = sigs.get(e.getKey());
+				PowerState ps = internedStates.get(stateSig);
+				if (ps == null) {
+					ps = e.getValue().frozenCopy();
+					internedStates.put(stateSig, ps);
+				}
+				copy.put(e.getKey(), ps);
+			}
+			canonical = Collections.unmodifiableMap(copy);
+			internedMaps.put(mapSig, canonical);
+			canonicalMaps.add(canonical);
+		}
+		return canonical;
+	}
+
+	/**
+	 * Interns all the power state maps of a complete power transition set (e.g.,
+	 * the ones generated by the PowerTransitionGenerator).
+	 * 
+	 * @param transitions
+	 *            the power transition set to intern
+	 * @return a new power transition set which only refers to canonical power
+	 *         state maps
+	 */
+	public static EnumMap<PowerTransitionGenerator.PowerStateKind, Map<String, PowerState>> intern(
+			final EnumMap<PowerTransitionGenerator.PowerStateKind, Map<String, PowerState>> transitions) {
+		final EnumMap<PowerTransitionGenerator.PowerStateKind, Map<String, PowerState>> returner = new EnumMap<PowerTransitionGenerator.PowerStateKind, Map<String, PowerState>>(
+				PowerTransitionGenerator.PowerStateKind.class);
+		for (Map.Entry<PowerTransitionGenerator.PowerStateKind, Map<String, PowerState>> e : transitions.entrySet()) {
+			returner.put(e.getKey(), intern(e.getValue()));
+		}
+		return returner;
+	}
+
+	/**
+	 * Offers an unmodifiable view of the passed power state map. If the map was
+	 * already interned then there is no need for a new view as the map itself is
+	 * unmodifiable.
+	 * 
+	 * @param transitions
+	 *            the map to get the unmodifiable view for
+	 * @return the unmodifiable representation of the map
+	 */
+	public static synchronized Map<String, PowerState> unmodifiable(final Map<String, PowerState> transitions) {
+		return canonicalMaps.contains(transitions) ? transitions : Collections.unmodifiableMap(transitions);
+	}
+
+	/**
+	 * Forgets all interned power behaviour. Useful between independent
+	 * simulations to release the memory of the profiles no longer used. Maps
+	 * interned before the call stay usable, but they will not be shared with
+	 * the maps interned afterwards.
+	 */
+	public static synchronized void clearStatics() {
+		internedMaps.clear();
+		internedStates.clear();
+		canonicalMaps.clear();
+	}
+
+	/**
+	 * Tells whether a particular power state map is the canonical one offered by
+	 * this class.
+	 * 
+	 * @param transitions
+	 *            the map to check
+	 * @return <i>true</i> if the map is shared through interning
+	 */
+	public static synchronized boolean isInterned(final Map<String, PowerState> transitions) {
+		return canonicalMaps.contains(transitions);
+	}
+}
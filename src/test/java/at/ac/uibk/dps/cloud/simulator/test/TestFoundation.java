@@ -26,6 +26,7 @@
 package at.ac.uibk.dps.cloud.simulator.test;
 
 import hu.mta.sztaki.lpds.cloud.simulator.Timed;
+import hu.mta.sztaki.lpds.cloud.simulator.util.HardwareProfile;
 
 import org.junit.Before;
 
@@ -34,6 +35,7 @@ public class TestFoundation {
 	@Before
 	public void resetSimulator() {
 		Timed.resetTimed();
+		HardwareProfile.clearStatics();
 	}
 
 }
@@ -25,16 +25,21 @@
 
 package at.ac.uibk.dps.cloud.simulator.test.complex;
 
+import java.io.File;
+import java.io.FileWriter;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
 import at.ac.uibk.dps.cloud.simulator.test.IaaSRelatedFoundation;
+import at.ac.uibk.dps.cloud.simulator.test.simple.UtilTest;
 import hu.mta.sztaki.lpds.cloud.simulator.Timed;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.IaaSService;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.PhysicalMachine;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.VirtualMachine;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.VirtualMachine.State;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.VMManager.VMManagementException;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.constraints.AlterableResourceConstraints;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.constraints.ResourceConstraints;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.pmscheduling.AlwaysOnMachines;
@@ -45,8 +50,11 @@ import hu.mta.sztaki.lpds.cloud.simulator.iaas.resourcemodel.ResourceConsumption
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.vmscheduling.FirstFitScheduler;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.vmscheduling.RoundRobinScheduler;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.vmscheduling.Scheduler;
+import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkNode.NetworkException;
 import hu.mta.sztaki.lpds.cloud.simulator.io.Repository;
 import hu.mta.sztaki.lpds.cloud.simulator.io.VirtualAppliance;
+import hu.mta.sztaki.lpds.cloud.simulator.util.CloudLoader;
+import hu.mta.sztaki.lpds.cloud.simulator.util.HardwareProfile;
 import hu.mta.sztaki.lpds.cloud.simulator.util.SeedSyncer;
 
 public class IaaSPerformanceTest extends IaaSRelatedFoundation {
@@ -144,6 +152,112 @@ public class IaaSPerformanceTest extends IaaSRelatedFoundation {
 		genericPerformanceCheck(RoundRobinScheduler.class, AlwaysOnMachines.class);
 	}
 
+	static final int lifecycleCount = 1000;
+
+	private void vmLifecycle(final VirtualAppliance lva, final PhysicalMachine from, final PhysicalMachine to)
+			throws VMManagementException, NetworkException {
+		final VirtualMachine vm = new VirtualMachine(lva);
+		vm.switchOn(from.allocateResources(from.getCapacities(), true, PhysicalMachine.defaultAllocLen),
+				from.localDisk);
+		Timed.simulateUntilLastEvent();
+		from.migrateVM(vm, to);
+		Timed.simulateUntilLastEvent();
+		vm.destroy(false);
+		Timed.simulateUntilLastEvent();
+		Assert.assertEquals("The VM should be destroyed after its lifecycle", State.DESTROYED, vm.getState());
+	}
+
+	@Test(timeout = 1500)
+	public void vmLifecyclePerformance() throws Exception {
+		final PhysicalMachine from = dummyPMcreator();
+		final PhysicalMachine to = dummyPMcreator();
+		final VirtualAppliance lva = new VirtualAppliance("LifecycleVA", 1000, 0, false, 1000);
+		from.localDisk.registerObject(lva);
+		from.turnon();
+		to.turnon();
+		Timed.simulateUntilLastEvent();
+		final long before = System.nanoTime();
+		for (int i = 0; i < lifecycleCount; i++) {
+			vmLifecycle(lva, from, to);
+		}
+		final double cyclesPerSec = lifecycleCount * 1e9 / (System.nanoTime() - before);
+		Assert.assertTrue("Create/start/migrate/destroy cycles should not leave disks behind",
+				to.localDisk.contents().isEmpty());
+		realStdOut.println("VM create/start/migrate/destroy cycles per second: " + cyclesPerSec);
+	}
+
+	static final int footprintPMCount = 5000;
+
+	private static long usedHeap() {
+		final Runtime rt = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+	/**
+	 * Determines the heap retained by the PMs of an XML defined cloud.
+	 * 
+	 * @param cloudFile
+	 *            the XML cloud definition with footprintPMCount identical PMs
+	 * @param share
+	 *            should the PMs share their hardware profiles
+	 * @param allSpreaders
+	 *            should every spreader of the PMs' network nodes be created
+	 *            (as if all of them were used)
+	 * @return the bytes retained per PM
+	 */
+	private long pmFootprint(final File cloudFile, final boolean share, final boolean allSpreaders)
+			throws Exception {
+		HardwareProfile.clearStatics();
+		final long before = usedHeap();
+		final IaaSService cloud = CloudLoader.loadNodes(cloudFile.toString(), share);
+		if (allSpreaders) {
+			for (PhysicalMachine pm : cloud.machines) {
+				pm.localDisk.getInbws();
+				pm.localDisk.getOutbws();
+				pm.localDisk.getDiskinbws();
+				pm.localDisk.getDiskoutbws();
+				pm.localDisk.getMeminbws();
+				pm.localDisk.getMemoutbws();
+			}
+		}
+		final long footprint = (usedHeap() - before) / footprintPMCount;
+		Assert.assertEquals("All PMs should be loaded", footprintPMCount, cloud.machines.size());
+		return footprint;
+	}
+
+	/**
+	 * The measurement behind the memory footprint figures of shared hardware
+	 * profiles and lazily created spreaders. The figures are only printed as
+	 * they depend on the JVM and the garbage collector used.
+	 */
+	@Test(timeout = 30000)
+	public void pmFootprintMeasurement() throws Exception {
+		final String def = new UtilTest().cloudDef;
+		final int machineStart = def.indexOf("<machine ");
+		final int machineEnd = def.indexOf("</machine>") + "</machine>\n".length();
+		final File cloudFile = File.createTempFile("dissect-test", "footprint");
+		final FileWriter fw = new FileWriter(cloudFile);
+		fw.write(def.substring(0, machineStart));
+		for (int i = 0; i < footprintPMCount; i++) {
+			fw.write(def.substring(machineStart, machineEnd));
+		}
+		fw.write(def.substring(machineEnd));
+		fw.close();
+		final long eagerSeparate = pmFootprint(cloudFile, false, true);
+		final long lazySeparate = pmFootprint(cloudFile, false, false);
+		final long eagerShared = pmFootprint(cloudFile, true, true);
+		final long lazyShared = pmFootprint(cloudFile, true, false);
+		cloudFile.delete();
+		HardwareProfile.clearStatics();
+		realStdOut.println("Retained bytes/PM with all spreaders, separate profiles: " + eagerSeparate);
+		realStdOut.println("Retained bytes/PM with all spreaders, shared profiles: " + eagerShared);
+		realStdOut.println("Retained bytes/PM with lazy spreaders, separate profiles: " + lazySeparate);
+		realStdOut.println("Retained bytes/PM with lazy spreaders, shared profiles: " + lazyShared);
+	}
+
 	// FIXME: this should be below 100ms!
 	@Test(timeout = 700)
 	public void pmRegistrationPerformance() throws Exception {
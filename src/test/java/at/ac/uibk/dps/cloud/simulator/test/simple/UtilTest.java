@@ -24,13 +24,19 @@
  */
 package at.ac.uibk.dps.cloud.simulator.test.simple;
 
+import hu.mta.sztaki.lpds.cloud.simulator.energy.powermodelling.PowerState;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.IaaSService;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.pmscheduling.AlwaysOnMachines;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.vmscheduling.FirstFitScheduler;
+import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkNode;
 import hu.mta.sztaki.lpds.cloud.simulator.util.CloudLoader;
+import hu.mta.sztaki.lpds.cloud.simulator.util.HardwareProfile;
+import hu.mta.sztaki.lpds.cloud.simulator.util.PowerTransitionGenerator;
 
 import java.io.File;
 import java.io.RandomAccessFile;
+import java.util.EnumMap;
+import java.util.Map;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -84,7 +90,118 @@ public class UtilTest extends TestFoundation {
 				cloud.machines.size());
 		Assert.assertEquals("Only one repository should be loaded", 1,
 				cloud.repositories.size());
+		Assert.assertEquals("The PM's disk should reach the repository with the loaded latency", 5,
+				NetworkNode.checkConnectivity(cloud.machines.get(0).localDisk, cloud.repositories.get(0)));
+		Assert.assertEquals("The repository should reach the PM's disk with the loaded latency", 5,
+				NetworkNode.checkConnectivity(cloud.repositories.get(0), cloud.machines.get(0).localDisk));
 		temp.delete();
 	}
 
+	@Test(timeout = 600)
+	public void cloudLoaderTopologyTest() throws Exception {
+		String rack = "<rack uplinkBW=\"1000\" downlinkBW=\"1000\">\n";
+		String topologyDef = cloudDef
+				.replaceFirst("<machine ", "<topology hostLatency=\"1\" uplinkLatency=\"2\" />\n" + rack + "<machine ")
+				.replaceFirst("<repository id=\"repo\"", "</rack>\n" + rack + "<repository id=\"repo\"")
+				.replaceFirst("</cloud>", "</rack>\n</cloud>");
+		File temp = File.createTempFile("dissect-test", "cloudLoader");
+		RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+		raf.writeBytes(topologyDef);
+		raf.close();
+		IaaSService cloud = CloudLoader.loadNodes(temp.toString());
+		NetworkNode disk = cloud.machines.get(0).localDisk;
+		NetworkNode repo = cloud.repositories.get(0);
+		Assert.assertNotNull("The PM's disk should be placed in a rack", disk.getRack());
+		Assert.assertNotSame("The nodes should be in different racks", disk.getRack(), repo.getRack());
+		Assert.assertEquals("The latency should be derived from the topology", 6,
+				NetworkNode.checkConnectivity(disk, repo));
+		temp.delete();
+	}
+
+	@Test(timeout = 600)
+	public void hardwareProfileInterningTest() throws Exception {
+		EnumMap<PowerTransitionGenerator.PowerStateKind, Map<String, PowerState>> first = HardwareProfile
+				.intern(PowerTransitionGenerator.generateTransitions(20, 200, 300, 10, 20));
+		EnumMap<PowerTransitionGenerator.PowerStateKind, Map<String, PowerState>> second = HardwareProfile
+				.intern(PowerTransitionGenerator.generateTransitions(20, 200, 300, 10, 20));
+		EnumMap<PowerTransitionGenerator.PowerStateKind, Map<String, PowerState>> other = HardwareProfile
+				.intern(PowerTransitionGenerator.generateTransitions(20, 200, 400, 10, 20));
+		for (PowerTransitionGenerator.PowerStateKind k : PowerTransitionGenerator.PowerStateKind.values()) {
+			Assert.assertSame("Identical hardware should share its power behaviour", first.get(k), second.get(k));
+			Assert.assertTrue("Interned maps should be recognised", HardwareProfile.isInterned(first.get(k)));
+			Assert.assertSame("Interned maps should not be wrapped again", first.get(k),
+					HardwareProfile.unmodifiable(first.get(k)));
+		}
+		Assert.assertNotSame("Different hardware should not share its host behaviour",
+				first.get(PowerTransitionGenerator.PowerStateKind.host),
+				other.get(PowerTransitionGenerator.PowerStateKind.host));
+		try {
+			first.get(PowerTransitionGenerator.PowerStateKind.host).clear();
+			Assert.fail("Interned power behaviour should not be modifiable");
+		} catch (UnsupportedOperationException e) {
+			// Expected
+		}
+		HardwareProfile.clearStatics();
+		Assert.assertFalse("Cleared profiles should not be recognised",
+				HardwareProfile.isInterned(first.get(PowerTransitionGenerator.PowerStateKind.host)));
+		Assert.assertNotSame("Profiles interned after clearing should not be shared with earlier ones",
+				first.get(PowerTransitionGenerator.PowerStateKind.host), HardwareProfile
+						.intern(PowerTransitionGenerator.generateTransitions(20, 200, 300, 10, 20))
+						.get(PowerTransitionGenerator.PowerStateKind.host));
+	}
+
+	@Test(timeout = 600)
+	public void internedStatesFrozenTest() throws Exception {
+		Map<String, PowerState> original = PowerTransitionGenerator.generateTransitions(20, 200, 300, 10, 20)
+				.get(PowerTransitionGenerator.PowerStateKind.host);
+		Map<String, PowerState> interned = HardwareProfile.intern(original);
+		for (Map.Entry<String, PowerState> e : interned.entrySet()) {
+			final PowerState ps = e.getValue();
+			Assert.assertTrue("Interned power states should be frozen", ps.isFrozen());
+			Assert.assertFalse("The interned map's states should not be frozen", original.get(e.getKey()).isFrozen());
+			try {
+				ps.setMinConsumption(ps.getMinConsumption() / 2);
+				Assert.fail("Shared power states should not be alterable");
+			} catch (IllegalStateException ex) {
+				// Expected
+			}
+			Assert.assertSame("Frozen states need no further copies", ps, ps.frozenCopy());
+		}
+		original.values().iterator().next().setMinConsumption(1);
+		Assert.assertNotEquals("The interned copy should not follow the original", 1,
+				interned.get(original.keySet().iterator().next()).getMinConsumption(), 0);
+	}
+
+	private IaaSService loadTwoMachines(boolean share) throws Exception {
+		int machineStart = cloudDef.indexOf("<machine ");
+		int machineEnd = cloudDef.indexOf("</machine>") + "</machine>\n".length();
+		String machine = cloudDef.substring(machineStart, machineEnd);
+		File temp = File.createTempFile("dissect-test", "cloudLoader");
+		RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+		raf.writeBytes(cloudDef.substring(0, machineEnd) + machine + cloudDef.substring(machineEnd));
+		raf.close();
+		IaaSService cloud = CloudLoader.loadNodes(temp.toString(), share);
+		temp.delete();
+		Assert.assertEquals("Both PMs should be loaded", 2, cloud.machines.size());
+		return cloud;
+	}
+
+	@Test(timeout = 600)
+	public void cloudLoaderHardwareSharingTest() throws Exception {
+		IaaSService separate = loadTwoMachines(false);
+		Assert.assertNotSame("Machines should have their own power states by default",
+				separate.machines.get(0).getCurrentPowerBehavior(), separate.machines.get(1).getCurrentPowerBehavior());
+		IaaSService shared = loadTwoMachines(true);
+		Assert.assertSame("Identical machines should share their power states if requested",
+				shared.machines.get(0).getCurrentPowerBehavior(), shared.machines.get(1).getCurrentPowerBehavior());
+		separate.machines.get(0).getCurrentPowerBehavior().setMinConsumption(1);
+		Assert.assertNotEquals("Separate power states should change independently", 1,
+				separate.machines.get(1).getCurrentPowerBehavior().getMinConsumption(), 0);
+		try {
+			shared.machines.get(0).getCurrentPowerBehavior().setMinConsumption(1);
+			Assert.fail("A change of a shared power state would affect all machines sharing it");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+	}
 }
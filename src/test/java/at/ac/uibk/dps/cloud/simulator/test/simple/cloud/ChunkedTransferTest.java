@@ -0,0 +1,164 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor 
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *  
+ *  This file is part of DISSECT-CF.
+ *  
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *  
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package at.ac.uibk.dps.cloud.simulator.test.simple.cloud;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import at.ac.uibk.dps.cloud.simulator.test.ConsumptionEventAssert;
+import at.ac.uibk.dps.cloud.simulator.test.IaaSRelatedFoundation;
+import hu.mta.sztaki.lpds.cloud.simulator.Timed;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.resourcemodel.ResourceConsumption;
+import hu.mta.sztaki.lpds.cloud.simulator.io.ChunkedTransfer;
+import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkNode;
+import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkNode.NetworkException;
+import hu.mta.sztaki.lpds.cloud.simulator.io.Repository;
+import hu.mta.sztaki.lpds.cloud.simulator.io.StorageObject;
+
+public class ChunkedTransferTest extends IaaSRelatedFoundation {
+	final static long bandwidth = 1;
+	final static long chunkSize = 1000;
+	final static long objectSize = 10 * chunkSize;
+	final static String objectId = "Big";
+	Repository source, replica, target;
+
+	private Repository createRepo(boolean withObject) throws NetworkException {
+		Repository r = new Repository(objectSize * 10, generateName("R", 1), 2 * bandwidth, bandwidth, bandwidth,
+				globalLatencyMap, defaultStorageTransitions, defaultNetworkTransitions);
+		r.setState(NetworkNode.State.RUNNING);
+		if (withObject) {
+			r.registerObject(new StorageObject(objectId, objectSize, false));
+		}
+		return r;
+	}
+
+	/**
+	 * Counts the outcomes of a resumable delivery
+	 */
+	static class Outcomes implements ResourceConsumption.ConsumptionEvent {
+		int completions = 0;
+		int interruptions = 0;
+
+		@Override
+		public void conComplete() {
+			completions++;
+		}
+
+		@Override
+		public void conCancelled(ResourceConsumption problematic) {
+			interruptions++;
+		}
+	}
+
+	@Before
+	public void repoSetup() throws NetworkException {
+		source = createRepo(true);
+		replica = createRepo(true);
+		target = createRepo(false);
+	}
+
+	private long deliver(Repository... replicas) {
+		long before = Timed.getFireCount();
+		ChunkedTransfer t = source.requestChunkedDelivery(objectId, null, target, chunkSize,
+				new ConsumptionEventAssert(), replicas);
+		Assert.assertNotNull("Should start the delivery", t);
+		Timed.simulateUntilLastEvent();
+		Assert.assertTrue(t.isComplete());
+		Assert.assertEquals(1, t.getProgress(), 0.000001);
+		Assert.assertEquals(10, t.getReceivedChunks());
+		Assert.assertNotNull("The object should arrive", target.lookup(objectId));
+		Assert.assertEquals("No storage should remain reserved", target.getMaxStorageCapacity() - objectSize,
+				target.getFreeStorageCapacity());
+		return Timed.getFireCount() - before;
+	}
+
+	@Test(timeout = 100)
+	public void singleSourceTest() {
+		deliver();
+	}
+
+	@Test(timeout = 100)
+	public void stripedTest() {
+		long single = deliver();
+		target.deregisterObject(objectId);
+		long striped = deliver(replica);
+		Assert.assertTrue("Two replicas should halve the transfer time (" + striped + " vs " + single + ")",
+				striped * 3 < single * 2);
+	}
+
+	@Test(timeout = 100)
+	public void resumeTest() {
+		Outcomes outcomes = new Outcomes();
+		ChunkedTransfer t = source.requestChunkedDelivery(objectId, "Copy", target, chunkSize, outcomes);
+		Timed.simulateUntil(Timed.getFireCount() + 4500);
+		Assert.assertTrue("Should be halfway", t.getProgress() >= 0.4 && t.getProgress() < 0.5);
+		t.cancel();
+		Timed.simulateUntilLastEvent();
+		Assert.assertTrue(t.isInterrupted());
+		Assert.assertEquals(1, outcomes.interruptions);
+		Assert.assertEquals("Completed chunks should be kept", 4, t.getReceivedChunks());
+		Assert.assertEquals(0.4, t.getProgress(), 0.000001);
+		Assert.assertNull("Should not register partial objects", target.lookup("Copy"));
+		long before = Timed.getFireCount();
+		Assert.assertTrue(t.resume());
+		Timed.simulateUntilLastEvent();
+		Assert.assertTrue(t.isComplete());
+		Assert.assertEquals(1, outcomes.completions);
+		Assert.assertNotNull(target.lookup("Copy"));
+		Assert.assertTrue("Only the missing chunks should be transferred",
+				Timed.getFireCount() - before < 7 * chunkSize / bandwidth);
+	}
+
+	@Test(timeout = 100)
+	public void failoverTest() {
+		ChunkedTransfer t = source.requestChunkedDelivery(objectId, null, target, chunkSize, new Outcomes(),
+				replica);
+		Timed.simulateUntil(Timed.getFireCount() + 500);
+		Assert.assertEquals(2, t.getActiveSources());
+		t.cancel();
+		Timed.simulateUntilLastEvent();
+		Assert.assertTrue(t.isInterrupted());
+		source.deregisterObject(objectId);
+		Assert.assertTrue("The remaining replica should carry on", t.resume());
+		Assert.assertEquals(1, t.getActiveSources());
+		Timed.simulateUntilLastEvent();
+		Assert.assertTrue(t.isComplete());
+	}
+
+	@Test(timeout = 100)
+	public void abandonTest() {
+		ChunkedTransfer t = source.requestChunkedDelivery(objectId, null, target, chunkSize, new Outcomes());
+		Timed.simulateUntil(Timed.getFireCount() + 1500);
+		t.abandon();
+		Timed.simulateUntilLastEvent();
+		Assert.assertEquals("The reserved storage should be released", target.getMaxStorageCapacity(),
+				target.getFreeStorageCapacity());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidChunkTest() {
+		source.requestChunkedDelivery(objectId, null, target, 0, null);
+	}
+}
@@ -0,0 +1,237 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor 
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *  
+ *  This file is part of DISSECT-CF.
+ *  
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *  
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package at.ac.uibk.dps.cloud.simulator.test.simple.cloud;
+
+import java.util.HashMap;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import at.ac.uibk.dps.cloud.simulator.test.ConsumptionEventAssert;
+import at.ac.uibk.dps.cloud.simulator.test.PMRelatedFoundation;
+import hu.mta.sztaki.lpds.cloud.simulator.Timed;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.VirtualMachine;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.resourcemodel.ResourceConsumption;
+import hu.mta.sztaki.lpds.cloud.simulator.io.ImageCache;
+import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkNode;
+import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkNode.NetworkException;
+import hu.mta.sztaki.lpds.cloud.simulator.io.Repository;
+import hu.mta.sztaki.lpds.cloud.simulator.io.StorageObject;
+import hu.mta.sztaki.lpds.cloud.simulator.io.VirtualAppliance;
+
+public class ImageCacheTest extends PMRelatedFoundation {
+	public final static long imageSize = 100000;
+	Repository source, target;
+
+	@Before
+	public void repoSetup() throws NetworkException {
+		HashMap<String, Integer> lm = NetworkNodeTest.setupALatencyMap();
+		source = new Repository(RepositoryTest.storageCapacity, NetworkNodeTest.sourceName, NetworkNodeTest.inBW,
+				NetworkNodeTest.outBW, NetworkNodeTest.diskBW, lm, defaultStorageTransitions,
+				defaultNetworkTransitions);
+		target = new Repository(RepositoryTest.storageCapacity, NetworkNodeTest.targetName, NetworkNodeTest.inBW,
+				NetworkNodeTest.outBW, NetworkNodeTest.diskBW, lm, defaultStorageTransitions,
+				defaultNetworkTransitions);
+		source.setState(NetworkNode.State.RUNNING);
+		target.setState(NetworkNode.State.RUNNING);
+		for (String id : new String[] { "A", "B", "C" }) {
+			source.registerObject(new StorageObject(id, imageSize, false));
+		}
+		source.registerObject(new StorageObject("Big", 2 * imageSize, false));
+	}
+
+	private void createDisk(ImageCache cache, String image, String disk) throws NetworkException {
+		Assert.assertNotNull("Should be able to create the disk",
+				cache.createDisk(image, source, disk, new ConsumptionEventAssert()));
+		Timed.simulateUntilLastEvent();
+		Assert.assertNotNull("The disk should be created", target.lookup(disk));
+	}
+
+	@Test(timeout = 100)
+	public void hitAfterMissTest() throws NetworkException {
+		ImageCache cache = target.enableImageCache(3 * imageSize, ImageCache.EvictionPolicy.LRU);
+		createDisk(cache, "A", "Disk1");
+		Assert.assertTrue("The image should be cached", cache.isCached("A"));
+		createDisk(cache, "A", "Disk2");
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(1, cache.getMisses());
+		Assert.assertEquals("The image should only cross the network once", imageSize, cache.getFetchedBytes());
+	}
+
+	@Test(timeout = 100)
+	public void coalescedMissTest() throws NetworkException {
+		ImageCache cache = target.enableImageCache(3 * imageSize, ImageCache.EvictionPolicy.LRU);
+		cache.createDisk("A", source, "Disk1", new ConsumptionEventAssert());
+		cache.createDisk("A", source, "Disk2", new ConsumptionEventAssert());
+		Timed.simulateUntilLastEvent();
+		Assert.assertNotNull(target.lookup("Disk1"));
+		Assert.assertNotNull(target.lookup("Disk2"));
+		Assert.assertEquals(2, cache.getMisses());
+		Assert.assertEquals("Concurrent misses should share the transfer", imageSize, cache.getFetchedBytes());
+	}
+
+	@Test(timeout = 100)
+	public void cancelledMissTest() throws NetworkException {
+		ImageCache cache = target.enableImageCache(3 * imageSize, ImageCache.EvictionPolicy.LRU);
+		ConsumptionEventAssert cancelled = new ConsumptionEventAssert();
+		ResourceConsumption first = cache.createDisk("A", source, "Disk1", cancelled);
+		cache.createDisk("A", source, "Disk2", new ConsumptionEventAssert(true));
+		first.cancel();
+		Assert.assertTrue("The withdrawn request should be notified", cancelled.isCancelled());
+		Timed.simulateUntilLastEvent();
+		Assert.assertNull("The withdrawn disk should not be created", target.lookup("Disk1"));
+		Assert.assertNotNull("The other disk should still be created", target.lookup("Disk2"));
+		Assert.assertTrue(cache.isCached("A"));
+	}
+
+	@Test(timeout = 100)
+	public void abandonedMissTest() throws NetworkException {
+		ImageCache cache = target.enableImageCache(3 * imageSize, ImageCache.EvictionPolicy.LRU);
+		ResourceConsumption first = cache.createDisk("A", source, "Disk1", new ConsumptionEventAssert());
+		ResourceConsumption second = cache.createDisk("A", source, "Disk2", new ConsumptionEventAssert());
+		first.cancel();
+		second.cancel();
+		Assert.assertEquals("The reservation should be dropped", 0, cache.getUsage());
+		Timed.simulateUntilLastEvent();
+		Assert.assertNull("The fetch should be cancelled", target.lookup("A"));
+		Assert.assertFalse(cache.isCached("A"));
+		Assert.assertEquals(0, cache.getUsage());
+	}
+
+	/**
+	 * Fetches A and B, then uses B more often but A more recently before
+	 * requesting C.
+	 */
+	private ImageCache evictionScenario(ImageCache.EvictionPolicy policy) throws NetworkException {
+		ImageCache cache = target.enableImageCache(2 * imageSize, policy);
+		createDisk(cache, "A", "Disk1");
+		createDisk(cache, "B", "Disk2");
+		createDisk(cache, "B", "Disk3");
+		createDisk(cache, "B", "Disk4");
+		createDisk(cache, "A", "Disk5");
+		createDisk(cache, "C", "Disk6");
+		Assert.assertEquals(1, cache.getEvictions());
+		Assert.assertTrue(cache.isCached("C"));
+		Assert.assertEquals(2 * imageSize, cache.getUsage());
+		return cache;
+	}
+
+	@Test(timeout = 100)
+	public void lruEvictionTest() throws NetworkException {
+		ImageCache cache = evictionScenario(ImageCache.EvictionPolicy.LRU);
+		Assert.assertTrue("The most recently used image should stay", cache.isCached("A"));
+		Assert.assertNull("The evicted image should leave the repository", target.lookup("B"));
+	}
+
+	@Test(timeout = 100)
+	public void lfuEvictionTest() throws NetworkException {
+		ImageCache cache = evictionScenario(ImageCache.EvictionPolicy.LFU);
+		Assert.assertTrue("The most frequently used image should stay", cache.isCached("B"));
+		Assert.assertNull("The evicted image should leave the repository", target.lookup("A"));
+	}
+
+	@Test(timeout = 100)
+	public void sizeEvictionTest() throws NetworkException {
+		ImageCache cache = target.enableImageCache(3 * imageSize, ImageCache.EvictionPolicy.SIZE);
+		createDisk(cache, "Big", "Disk1");
+		createDisk(cache, "A", "Disk2");
+		createDisk(cache, "B", "Disk3");
+		Assert.assertFalse("The largest image should go", cache.isCached("Big"));
+		Assert.assertTrue(cache.isCached("A"));
+		Assert.assertTrue(cache.isCached("B"));
+	}
+
+	@Test(timeout = 100)
+	public void sharedImageEvictionTest() throws NetworkException {
+		target.enableCopyOnWrite(0.1);
+		ImageCache cache = target.enableImageCache(imageSize, ImageCache.EvictionPolicy.LRU);
+		createDisk(cache, "A", "Disk1");
+		final long freeWithDisk = target.getFreeStorageCapacity();
+		createDisk(cache, "B", "Disk2");
+		Assert.assertEquals("An image shared by its disks should not be evicted", 0, cache.getEvictions());
+		Assert.assertTrue(cache.isCached("A"));
+		Assert.assertFalse("The new image should not fit the budget", cache.isCached("B"));
+		Assert.assertEquals(imageSize, cache.getUsage());
+		Assert.assertEquals("The uncached disk should be a full copy", freeWithDisk - imageSize,
+				target.getFreeStorageCapacity());
+		Assert.assertTrue(target.deregisterObject("Disk1"));
+		createDisk(cache, "C", "Disk3");
+		Assert.assertEquals("Unshared images should be evicted again", 1, cache.getEvictions());
+		Assert.assertTrue(cache.isCached("C"));
+	}
+
+	@Test(timeout = 100)
+	public void oversizedImageTest() throws NetworkException {
+		ImageCache cache = target.enableImageCache(imageSize, ImageCache.EvictionPolicy.LRU);
+		createDisk(cache, "Big", "Disk1");
+		Assert.assertFalse("Images over the budget should not be kept", cache.isCached("Big"));
+		Assert.assertNull(target.lookup("Big"));
+		Assert.assertEquals(0, cache.getUsage());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void doubleCacheTest() {
+		target.enableImageCache(imageSize, ImageCache.EvictionPolicy.LRU);
+		target.enableImageCache(imageSize, ImageCache.EvictionPolicy.LFU);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeBudgetTest() {
+		target.enableImageCache(-1, ImageCache.EvictionPolicy.LRU);
+	}
+
+	@Test(timeout = 100)
+	public void vmPreparationTest() throws Exception {
+		VirtualAppliance va = new VirtualAppliance("VA", 1, 0, false, imageSize);
+		source.registerObject(va);
+		ImageCache cache = target.enableImageCache(imageSize, ImageCache.EvictionPolicy.LRU);
+		VirtualMachine first = new VirtualMachine(va);
+		VirtualMachine second = new VirtualMachine(va);
+		first.prepare(source, target);
+		Timed.simulateUntilLastEvent();
+		second.prepare(source, target);
+		Timed.simulateUntilLastEvent();
+		Assert.assertEquals(VirtualMachine.State.SHUTDOWN, first.getState());
+		Assert.assertEquals(VirtualMachine.State.SHUTDOWN, second.getState());
+		Assert.assertEquals("The second VM should use the cached appliance", 1, cache.getHits());
+	}
+
+	@Test(timeout = 100)
+	public void vmDestroyedDuringFetchTest() throws Exception {
+		VirtualAppliance va = new VirtualAppliance("VA", 1, 0, false, imageSize);
+		source.registerObject(va);
+		target.enableImageCache(imageSize, ImageCache.EvictionPolicy.LRU);
+		VirtualMachine first = new VirtualMachine(va);
+		VirtualMachine second = new VirtualMachine(va);
+		first.prepare(source, target);
+		second.prepare(source, target);
+		Assert.assertEquals(VirtualMachine.State.INITIAL_TR, second.getState());
+		first.destroy(false);
+		Timed.simulateUntilLastEvent();
+		Assert.assertEquals(VirtualMachine.State.DESTROYED, first.getState());
+		Assert.assertEquals("The other VM should not be destroyed with the first", VirtualMachine.State.SHUTDOWN,
+				second.getState());
+	}
+}
@@ -0,0 +1,206 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor 
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *  
+ *  This file is part of DISSECT-CF.
+ *  
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *  
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package at.ac.uibk.dps.cloud.simulator.test.simple.cloud;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import at.ac.uibk.dps.cloud.simulator.test.ConsumptionEventAssert;
+import at.ac.uibk.dps.cloud.simulator.test.IaaSRelatedFoundation;
+import hu.mta.sztaki.lpds.cloud.simulator.Timed;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.IaaSService;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.PhysicalMachine;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.VirtualMachine;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.constraints.ConstantConstraints;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.resourcemodel.ResourceConsumption;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.pmscheduling.AlwaysOnMachines;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.vmscheduling.FirstFitScheduler;
+import hu.mta.sztaki.lpds.cloud.simulator.io.ImageCache;
+import hu.mta.sztaki.lpds.cloud.simulator.io.ImageSwarm;
+import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkNode;
+import hu.mta.sztaki.lpds.cloud.simulator.io.Repository;
+import hu.mta.sztaki.lpds.cloud.simulator.io.VirtualAppliance;
+
+public class ImageSwarmTest extends IaaSRelatedFoundation {
+	final static int stormSize = 16;
+
+	/**
+	 * Creates a disk from the same VA on several repositories at once.
+	 * 
+	 * @return the time needed to create all disks
+	 */
+	private long bootStorm(ImageSwarm swarm) throws Exception {
+		Repository origin = dummyRepoCreator(true);
+		origin.setState(NetworkNode.State.RUNNING);
+		VirtualAppliance va = (VirtualAppliance) origin.contents().iterator().next();
+		ImageCache[] caches = new ImageCache[stormSize];
+		for (int i = 0; i < stormSize; i++) {
+			Repository r = dummyRepoCreator(false);
+			r.setState(NetworkNode.State.RUNNING);
+			caches[i] = r.enableImageCache(va.size, ImageCache.EvictionPolicy.LRU);
+			if (swarm != null) {
+				swarm.join(caches[i]);
+			}
+		}
+		long before = Timed.getFireCount();
+		for (ImageCache cache : caches) {
+			Assert.assertNotNull("Should be able to request the disk",
+					cache.createDisk(va.id, origin, "Disk", new ConsumptionEventAssert()));
+		}
+		Timed.simulateUntilLastEvent();
+		for (ImageCache cache : caches) {
+			Assert.assertNotNull("The disk should be created", cache.repository.lookup("Disk"));
+		}
+		return Timed.getFireCount() - before;
+	}
+
+	@Test(timeout = 100)
+	public void logarithmicStormTest() throws Exception {
+		long direct = bootStorm(null);
+		ImageSwarm swarm = new ImageSwarm(1);
+		long assisted = bootStorm(swarm);
+		Assert.assertEquals("Every cache should fetch the VA once", stormSize,
+				swarm.getOriginTransfers() + swarm.getPeerTransfers());
+		Assert.assertTrue("The origin should only serve a copy per doubling round",
+				swarm.getOriginTransfers() <= 1 + Integer.numberOfTrailingZeros(stormSize));
+		Assert.assertTrue("Peers should speed up the storm (" + assisted + " vs " + direct + ")",
+				assisted * 2 < direct);
+	}
+
+	@Test(timeout = 100)
+	public void wideFanoutTest() throws Exception {
+		ImageSwarm swarm = new ImageSwarm(stormSize);
+		bootStorm(swarm);
+		Assert.assertEquals("The origin should serve everyone if it can", stormSize, swarm.getOriginTransfers());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void noFanoutTest() {
+		new ImageSwarm(0);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void doubleJoinTest() {
+		ImageCache cache = dummyRepoCreator(false).enableImageCache(vaSize, ImageCache.EvictionPolicy.LRU);
+		new ImageSwarm(1).join(cache);
+		new ImageSwarm(1).join(cache);
+	}
+
+	/**
+	 * Creates running repositories with image caches in a swarm.
+	 */
+	private ImageCache[] swarmMembers(ImageSwarm swarm, int count) throws Exception {
+		ImageCache[] caches = new ImageCache[count];
+		for (int i = 0; i < count; i++) {
+			Repository r = dummyRepoCreator(false);
+			r.setState(NetworkNode.State.RUNNING);
+			caches[i] = r.enableImageCache(vaSize, ImageCache.EvictionPolicy.LRU);
+			swarm.join(caches[i]);
+		}
+		return caches;
+	}
+
+	@Test(timeout = 100)
+	public void queuedCancelTest() throws Exception {
+		Repository origin = dummyRepoCreator(true);
+		origin.setState(NetworkNode.State.RUNNING);
+		VirtualAppliance va = (VirtualAppliance) origin.contents().iterator().next();
+		ImageSwarm swarm = new ImageSwarm(1);
+		ImageCache[] caches = swarmMembers(swarm, 2);
+		ConsumptionEventAssert servedEv = new ConsumptionEventAssert();
+		ConsumptionEventAssert queuedEv = new ConsumptionEventAssert();
+		ResourceConsumption served = caches[0].createDisk(va.id, origin, "Disk", servedEv);
+		ResourceConsumption queued = caches[1].createDisk(va.id, origin, "Disk", queuedEv);
+		Assert.assertNotSame("The waiting request should have its own handle", served, queued);
+		Assert.assertFalse("The waiting request should not transfer yet", queued.isRegistered());
+		queued.cancel();
+		Assert.assertTrue("The waiting request should be cancelled", queuedEv.isCancelled());
+		Assert.assertFalse("Cancelling the waiting request should not affect the others", servedEv.isCancelled());
+		Timed.simulateUntilLastEvent();
+		Assert.assertTrue("The served request should complete", servedEv.isCompleted());
+		Assert.assertNotNull("The served disk should be created", caches[0].repository.lookup("Disk"));
+		Assert.assertNull("The cancelled disk should not be created", caches[1].repository.lookup("Disk"));
+		Assert.assertEquals("Only the served request should transfer", 1,
+				swarm.getOriginTransfers() + swarm.getPeerTransfers());
+	}
+
+	@Test(timeout = 100)
+	public void unavailableSeedTest() throws Exception {
+		Repository origin = dummyRepoCreator(true);
+		origin.setState(NetworkNode.State.RUNNING);
+		VirtualAppliance va = (VirtualAppliance) origin.contents().iterator().next();
+		ImageSwarm swarm = new ImageSwarm(1);
+		ImageCache[] caches = swarmMembers(swarm, 3);
+		caches[0].createDisk(va.id, origin, "Disk", new ConsumptionEventAssert());
+		Timed.simulateUntilLastEvent();
+		Assert.assertTrue("The first member should hold the VA", caches[0].isCached(va.id));
+		swarm.leave(caches[0]);
+		Assert.assertNull("The member should be out of the swarm", caches[0].getSwarm());
+		caches[1].createDisk(va.id, origin, "Disk", new ConsumptionEventAssert());
+		Timed.simulateUntilLastEvent();
+		Assert.assertEquals("A withdrawn member should not serve", 0, swarm.getPeerTransfers());
+		caches[1].repository.setState(NetworkNode.State.OFF);
+		caches[2].createDisk(va.id, origin, "Disk", new ConsumptionEventAssert());
+		Timed.simulateUntilLastEvent();
+		Assert.assertEquals("A switched off member should not serve", 0, swarm.getPeerTransfers());
+		Assert.assertEquals("The origin should serve all requests", 3, swarm.getOriginTransfers());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void foreignLeaveTest() {
+		ImageCache cache = dummyRepoCreator(false).enableImageCache(vaSize, ImageCache.EvictionPolicy.LRU);
+		new ImageSwarm(1).leave(cache);
+	}
+
+	@Test(timeout = 100)
+	public void iaasDeregistrationTest() throws Exception {
+		IaaSService iaas = setupIaaS(FirstFitScheduler.class, AlwaysOnMachines.class, 2, 1);
+		ImageSwarm swarm = iaas.enablePeerAssistedDistribution(vaSize, ImageCache.EvictionPolicy.LRU, 1);
+		Timed.simulateUntilLastEvent();
+		PhysicalMachine pm = iaas.machines.get(0);
+		iaas.deregisterHost(pm);
+		Assert.assertNull("A deregistered PM should leave the swarm", pm.localDisk.getImageCache().getSwarm());
+		iaas.registerHost(pm);
+		Assert.assertSame("A registered PM should join the swarm again", swarm,
+				pm.localDisk.getImageCache().getSwarm());
+	}
+
+	@Test(timeout = 100)
+	public void iaasDeploymentTest() throws Exception {
+		IaaSService iaas = setupIaaS(FirstFitScheduler.class, AlwaysOnMachines.class, stormSize / 2, 1);
+		ImageSwarm swarm = iaas.enablePeerAssistedDistribution(vaSize, ImageCache.EvictionPolicy.LRU, 1);
+		PhysicalMachine late = dummyPMcreator();
+		iaas.registerHost(late);
+		Assert.assertSame("Later PMs should join the swarm", swarm, late.localDisk.getImageCache().getSwarm());
+		Repository r = iaas.repositories.get(0);
+		VirtualAppliance va = (VirtualAppliance) r.contents().iterator().next();
+		Timed.simulateUntilLastEvent();
+		VirtualMachine[] vms = iaas.requestVM(va, new ConstantConstraints(1, 1, vaSize), r, iaas.machines.size());
+		Timed.simulateUntilLastEvent();
+		for (VirtualMachine vm : vms) {
+			Assert.assertEquals("All VMs should run", VirtualMachine.State.RUNNING, vm.getState());
+		}
+		Assert.assertTrue("The PMs should serve each other", swarm.getPeerTransfers() > 0);
+	}
+}
@@ -0,0 +1,204 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor 
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *  
+ *  This file is part of DISSECT-CF.
+ *  
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *  
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package at.ac.uibk.dps.cloud.simulator.test.simple.cloud;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import at.ac.uibk.dps.cloud.simulator.test.ConsumptionEventAssert;
+import at.ac.uibk.dps.cloud.simulator.test.IaaSRelatedFoundation;
+import hu.mta.sztaki.lpds.cloud.simulator.Timed;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.IaaSService;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.VirtualMachine;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.constraints.ConstantConstraints;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.pmscheduling.AlwaysOnMachines;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.resourcemodel.ResourceConsumption;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.vmscheduling.FirstFitScheduler;
+import hu.mta.sztaki.lpds.cloud.simulator.io.MulticastDelivery;
+import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkNode;
+import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkNode.NetworkException;
+import hu.mta.sztaki.lpds.cloud.simulator.io.Repository;
+import hu.mta.sztaki.lpds.cloud.simulator.io.StorageObject;
+import hu.mta.sztaki.lpds.cloud.simulator.io.VirtualAppliance;
+
+public class MulticastDeliveryTest extends IaaSRelatedFoundation {
+	Repository source, target;
+	VirtualAppliance va;
+
+	@Before
+	public void repoSetup() throws NetworkException {
+		source = dummyRepoCreator(true);
+		target = dummyRepoCreator(false);
+		source.setState(NetworkNode.State.RUNNING);
+		target.setState(NetworkNode.State.RUNNING);
+		va = (VirtualAppliance) source.contents().iterator().next();
+	}
+
+	@Test(timeout = 100)
+	public void sharedTransferTest() throws Exception {
+		MulticastDelivery multicast = target.enableMulticastDelivery();
+		for (int i = 0; i < 3; i++) {
+			Assert.assertNotNull(multicast.deliver(va.id, source, "Disk" + i, new ConsumptionEventAssert()));
+		}
+		Timed.simulateUntilLastEvent();
+		Assert.assertEquals("All deliveries should complete", 3, ConsumptionEventAssert.hits.size());
+		for (int i = 0; i < 3; i++) {
+			Assert.assertNotNull("The copy should arrive", target.lookup("Disk" + i));
+		}
+		Assert.assertEquals(2, multicast.getSharedDeliveries());
+		Assert.assertEquals(2 * va.size, multicast.getSavedBytes());
+	}
+
+	@Test(timeout = 100)
+	public void copiesFromApplianceTest() throws Exception {
+		MulticastDelivery multicast = target.enableMulticastDelivery();
+		final long freeBefore = target.getFreeStorageCapacity();
+		multicast.deliver(va.id, source, "Disk0", new ConsumptionEventAssert() {
+			@Override
+			public void conComplete() {
+				super.conComplete();
+				// the first VM is done with its copy, the others should not need it
+				Assert.assertTrue("The first copy should be removable", target.deregisterObject("Disk0"));
+			}
+		});
+		for (int i = 1; i < 3; i++) {
+			multicast.deliver(va.id, source, "Disk" + i, new ConsumptionEventAssert());
+		}
+		Timed.simulateUntilLastEvent();
+		for (int i = 1; i < 3; i++) {
+			Assert.assertNotNull("The copy should arrive", target.lookup("Disk" + i));
+		}
+		Assert.assertNull("The staged appliance should be dropped", target.lookup(va.id));
+		Assert.assertEquals("Only the remaining copies should occupy storage", freeBefore - 2 * va.size,
+				target.getFreeStorageCapacity());
+	}
+
+	@Test(timeout = 100)
+	public void reservedCapacityTest() throws Exception {
+		// room for the staged appliance and two copies
+		Assert.assertTrue(target.registerObject(
+				new StorageObject("Filler", target.getFreeStorageCapacity() - 3 * va.size, false)));
+		MulticastDelivery multicast = target.enableMulticastDelivery();
+		Assert.assertNotNull(multicast.deliver(va.id, source, "Disk0", new ConsumptionEventAssert(true)));
+		Assert.assertNotNull(multicast.deliver(va.id, source, "Disk1", new ConsumptionEventAssert(true)));
+		Assert.assertNull("The third copy should not fit", multicast.deliver(va.id, source, "Disk2",
+				new ConsumptionEventAssert()));
+		Timed.simulateUntilLastEvent();
+		Assert.assertNotNull(target.lookup("Disk0"));
+		Assert.assertNotNull(target.lookup("Disk1"));
+		Assert.assertEquals("The accepted deliveries should be shared", 1, multicast.getSharedDeliveries());
+	}
+
+	@Test(timeout = 100)
+	public void separateSourcesTest() throws Exception {
+		Repository other = dummyRepoCreator(true);
+		other.setState(NetworkNode.State.RUNNING);
+		MulticastDelivery multicast = target.enableMulticastDelivery();
+		multicast.deliver(va.id, source, "Disk1", new ConsumptionEventAssert());
+		multicast.deliver(va.id, other, "Disk2", new ConsumptionEventAssert());
+		Timed.simulateUntilLastEvent();
+		Assert.assertEquals("Different sources should not share transfers", 0, multicast.getSharedDeliveries());
+		Assert.assertNotNull(target.lookup("Disk2"));
+	}
+
+	@Test(timeout = 100)
+	public void cancelledDeliveryTest() throws Exception {
+		MulticastDelivery multicast = target.enableMulticastDelivery();
+		final long freeBefore = target.getFreeStorageCapacity();
+		ConsumptionEventAssert cancelled = new ConsumptionEventAssert();
+		ResourceConsumption first = multicast.deliver(va.id, source, "Disk0", cancelled);
+		multicast.deliver(va.id, source, "Disk1", new ConsumptionEventAssert(true));
+		first.cancel();
+		Assert.assertTrue("The withdrawn delivery should be notified", cancelled.isCancelled());
+		Timed.simulateUntilLastEvent();
+		Assert.assertNull("The withdrawn copy should not arrive", target.lookup("Disk0"));
+		Assert.assertNotNull("The other copy should still arrive", target.lookup("Disk1"));
+		Assert.assertEquals("Only the remaining copy should occupy storage", freeBefore - va.size,
+				target.getFreeStorageCapacity());
+	}
+
+	@Test(timeout = 100)
+	public void allCancelledTest() throws Exception {
+		MulticastDelivery multicast = target.enableMulticastDelivery();
+		final long freeBefore = target.getFreeStorageCapacity();
+		ResourceConsumption first = multicast.deliver(va.id, source, "Disk0", new ConsumptionEventAssert());
+		ResourceConsumption second = multicast.deliver(va.id, source, "Disk1", new ConsumptionEventAssert());
+		first.cancel();
+		second.cancel();
+		Timed.simulateUntilLastEvent();
+		Assert.assertNull("The transfer should be cancelled", target.lookup(va.id));
+		Assert.assertEquals("No storage should be reserved", freeBefore, target.getFreeStorageCapacity());
+		Assert.assertNotNull("A new delivery should start its own transfer",
+				multicast.deliver(va.id, source, "Disk2", new ConsumptionEventAssert()));
+		Timed.simulateUntilLastEvent();
+		Assert.assertNotNull(target.lookup("Disk2"));
+		Assert.assertEquals(1, multicast.getSharedDeliveries());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void doubleEnableTest() {
+		target.enableMulticastDelivery();
+		target.enableMulticastDelivery();
+	}
+
+	@Test(timeout = 100)
+	public void colocatedDeploymentTest() throws Exception {
+		final int vmCount = 4;
+		IaaSService iaas = setupIaaS(FirstFitScheduler.class, AlwaysOnMachines.class, 1, vmCount);
+		iaas.enableMulticastDeployment();
+		Repository r = iaas.repositories.get(0);
+		Timed.simulateUntilLastEvent();
+		VirtualMachine[] vms = iaas.requestVM((VirtualAppliance) r.contents().iterator().next(),
+				new ConstantConstraints(1, dummyPMPerCorePP, vaSize), r, vmCount);
+		Timed.simulateUntilLastEvent();
+		for (VirtualMachine vm : vms) {
+			Assert.assertEquals("All VMs should run", VirtualMachine.State.RUNNING, vm.getState());
+		}
+		Assert.assertEquals("Only a single VA transfer should reach the PM", vmCount - 1,
+				iaas.machines.get(0).localDisk.getMulticastDelivery().getSharedDeliveries());
+	}
+
+	@Test(timeout = 100)
+	public void colocatedDestroyTest() throws Exception {
+		IaaSService iaas = setupIaaS(FirstFitScheduler.class, AlwaysOnMachines.class, 1, 2);
+		iaas.enableMulticastDeployment();
+		Repository r = iaas.repositories.get(0);
+		Timed.simulateUntilLastEvent();
+		final VirtualMachine[] vms = iaas.requestVM((VirtualAppliance) r.contents().iterator().next(),
+				new ConstantConstraints(1, dummyPMPerCorePP, vaSize), r, 2);
+		while (!VirtualMachine.State.INITIAL_TR.equals(vms[0].getState())) {
+			Timed.fire();
+		}
+		Timed.fire();
+		Assert.assertEquals("The VMs should share the transfer when one is destroyed", VirtualMachine.State.INITIAL_TR,
+				vms[1].getState());
+		Assert.assertEquals(1, iaas.machines.get(0).localDisk.getMulticastDelivery().getSharedDeliveries());
+		vms[0].destroy(false);
+		Timed.simulateUntilLastEvent();
+		Assert.assertEquals(VirtualMachine.State.DESTROYED, vms[0].getState());
+		Assert.assertEquals("The co-located VM should not be destroyed with the other",
+				VirtualMachine.State.RUNNING, vms[1].getState());
+	}
+}
@@ -33,10 +33,13 @@ import org.junit.Test;
 
 import at.ac.uibk.dps.cloud.simulator.test.ConsumptionEventAssert;
 import at.ac.uibk.dps.cloud.simulator.test.PMRelatedFoundation;
+import hu.mta.sztaki.lpds.cloud.simulator.DeferredEvent;
 import hu.mta.sztaki.lpds.cloud.simulator.Timed;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.resourcemodel.ResourceConsumption;
 import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkNode;
 import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkNode.NetworkException;
+import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkRegistry;
+import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkTopology;
 
 public class NetworkNodeTest extends PMRelatedFoundation {
 	public final static String completeMessage = "Complete";
@@ -82,7 +85,7 @@ public class NetworkNodeTest extends PMRelatedFoundation {
 		Assert.assertEquals("Unexpected disk bandwidth", diskBW, source.getDiskbw());
 		Assert.assertEquals("Unexpected name", sourceName, source.getName());
 		Assert.assertEquals("Already used some bandwidth without requesting transfers", 0,
-				source.inbws.getTotalProcessed() + source.outbws.getTotalProcessed(), 0);
+				source.getInbws().getTotalProcessed() + source.getOutbws().getTotalProcessed(), 0);
 	}
 
 	@Test(timeout = 100)
@@ -164,13 +167,13 @@ public class NetworkNodeTest extends PMRelatedFoundation {
 		setupTransfer(dataToBeSent, source, target, aSecond + targetlat);
 		simulateThenExpectEventNum(1);
 		Assert.assertEquals("It is not expected to have incoming transfers in source", 0,
-				source.inbws.getTotalProcessed(), 0);
+				source.getInbws().getTotalProcessed(), 0);
 		Assert.assertEquals("It is not expected to have outgoing transfers in target", 0,
-				target.outbws.getTotalProcessed(), 0);
+				target.getOutbws().getTotalProcessed(), 0);
 		Assert.assertEquals("Outgoing transfers on source are reported badly", dataToBeSent,
-				source.outbws.getTotalProcessed(), 0);
+				source.getOutbws().getTotalProcessed(), 0);
 		Assert.assertEquals("Incoming transfers on target are reported badly", dataToBeSent,
-				target.inbws.getTotalProcessed(), 0);
+				target.getInbws().getTotalProcessed(), 0);
 	}
 
 	@Test(timeout = 100)
@@ -178,9 +181,9 @@ public class NetworkNodeTest extends PMRelatedFoundation {
 		setupTransfer(dataToBeStored, source, source, aSecond);
 		simulateThenExpectEventNum(1);
 		Assert.assertEquals("It is not expected to have network transfers within the node", 0,
-				source.inbws.getTotalProcessed(), 0);
+				source.getInbws().getTotalProcessed(), 0);
 		Assert.assertEquals("It is not expected to have network transfers within the node", 0,
-				source.outbws.getTotalProcessed(), 0);
+				source.getOutbws().getTotalProcessed(), 0);
 	}
 
 	@Test(timeout = 100)
@@ -190,13 +193,13 @@ public class NetworkNodeTest extends PMRelatedFoundation {
 		setupTransfer(dataToBeStored, source, source, aSecond);
 		simulateThenExpectEventNum(3);
 		Assert.assertEquals("Incoming transfers on source are reported badly", dataToBeSent,
-				source.inbws.getTotalProcessed(), 0);
+				source.getInbws().getTotalProcessed(), 0);
 		Assert.assertEquals("Outgoing transfers on source are reported badly", dataToBeSent,
-				source.outbws.getTotalProcessed(), 0);
+				source.getOutbws().getTotalProcessed(), 0);
 		Assert.assertEquals("Incoming transfers on target are reported badly", dataToBeSent,
-				target.inbws.getTotalProcessed(), 0);
+				target.getInbws().getTotalProcessed(), 0);
 		Assert.assertEquals("Outgoing transfers on target are reported badly", dataToBeSent,
-				target.outbws.getTotalProcessed(), 0);
+				target.getOutbws().getTotalProcessed(), 0);
 	}
 
 	/**
@@ -215,23 +218,287 @@ public class NetworkNodeTest extends PMRelatedFoundation {
 		setupTransfer(dataToBeSent, source, target, 2 * aSecond - offset + targetlat);
 		simulateThenExpectEventNum(2);
 		Assert.assertEquals("Outgoing transfers on source are reported badly", 2 * dataToBeSent,
-				source.outbws.getTotalProcessed(), 0);
+				source.getOutbws().getTotalProcessed(), 0);
 	}
 
 	@Test(timeout = 100)
 	public void midSimulationRxTest() throws NetworkException {
 		setupTransfer(dataToBeSent, source, target, aSecond + targetlat);
 		Timed.simulateUntil(Timed.getFireCount() + targetlat);
-		double startingPoint = source.outbws.getTotalProcessed();
+		double startingPoint = source.getOutbws().getTotalProcessed();
 		do {
 			Timed.fire();
-			final double current = source.outbws.getTotalProcessed();
+			final double current = source.getOutbws().getTotalProcessed();
 			if (startingPoint == current && ConsumptionEventAssert.hits.isEmpty()) {
 				Assert.fail("Output sent bytes should always increase after a timing event " + Timed.getFireCount());
 			}
 			startingPoint = current;
 		} while (ConsumptionEventAssert.hits.isEmpty());
 		Assert.assertEquals("The final outgoing transfer amount is reported incorrectly", dataToBeSent,
-				source.outbws.getTotalProcessed(), 0);
+				source.getOutbws().getTotalProcessed(), 0);
+	}
+
+	@Test(timeout = 100)
+	public void lateSpreaderCreationTest() throws NetworkException {
+		NetworkNode late = new NetworkNode("Late", inBW, outBW, diskBW, setupALatencyMap(), defaultStorageTransitions,
+				defaultNetworkTransitions);
+		Assert.assertTrue("Node toString does not contain node name:", late.toString().contains("Late"));
+		late.setState(NetworkNode.State.RUNNING);
+		Assert.assertSame("Spreaders should be created only once", late.getDiskinbws(), late.getDiskinbws());
+		Assert.assertSame("Late disk spreaders should follow the node's state",
+				defaultStorageTransitions.get(NetworkNode.State.RUNNING.toString()),
+				late.getDiskoutbws().getCurrentPowerBehavior());
+		Assert.assertSame("Late network spreaders should follow the node's state",
+				defaultNetworkTransitions.get(NetworkNode.State.RUNNING.toString()),
+				late.getInbws().getCurrentPowerBehavior());
+		late.setState(NetworkNode.State.OFF);
+		Assert.assertSame("Created spreaders should still follow the node's state",
+				defaultNetworkTransitions.get(NetworkNode.State.OFF.toString()),
+				late.getInbws().getCurrentPowerBehavior());
+		Assert.assertEquals("Unexpected memory bandwidth", inBW + outBW + diskBW,
+				late.getMemoutbws().getPerTickProcessingPower(), 0);
+	}
+
+	@Test(timeout = 100)
+	public void registryLatencyTest() throws NetworkException {
+		NetworkRegistry registry = new NetworkRegistry(1);
+		registry.register(source);
+		int shared = registry.newLatencyClass();
+		registry.register(target, shared);
+		registry.register(third, shared);
+		registry.setLatency(source, target, 7);
+		registry.setClassLatency(shared, source, 11);
+		Assert.assertEquals("Registry should have grown", 3, registry.size());
+		Assert.assertSame("Dense ids should identify the nodes", third, registry.getNode(registry.idOf(third)));
+		Assert.assertEquals("Registry latency should be used", 7, NetworkNode.checkConnectivity(source, target));
+		Assert.assertEquals("Class latency should be shared", 11, NetworkNode.checkConnectivity(target, source));
+		Assert.assertEquals("Class latency should be shared", 11, NetworkNode.checkConnectivity(third, source));
+		try {
+			NetworkNode.checkConnectivity(source, third);
+			Assert.fail("Registered nodes should not use their latency maps");
+		} catch (NetworkException ex) {
+			// Expected
+		}
+		NetworkNode outsider = new NetworkNode("Outsider", inBW, outBW, diskBW, setupALatencyMap(),
+				defaultStorageTransitions, defaultNetworkTransitions);
+		Assert.assertEquals("Nodes outside the registry should use their latency maps", sourcelat,
+				NetworkNode.checkConnectivity(outsider, source));
+		try {
+			registry.register(source);
+			Assert.fail("Nodes should not be registered twice");
+		} catch (IllegalStateException ex) {
+			// Expected
+		}
+	}
+
+	@Test(timeout = 100)
+	public void topologyOversubscriptionTest() throws NetworkException {
+		NetworkTopology topology = new NetworkTopology(1, 2);
+		// The uplink can only serve a single node at full speed
+		NetworkTopology.Rack first = topology.addRack(outBW, 2 * inBW);
+		NetworkTopology.Rack second = topology.addRack(outBW, 2 * inBW);
+		NetworkNode fourth = new NetworkNode("Fourth", inBW, outBW, diskBW, null, defaultStorageTransitions,
+				defaultNetworkTransitions);
+		fourth.setState(NetworkNode.State.RUNNING);
+		topology.place(source, first);
+		topology.place(third, first);
+		topology.place(target, second);
+		topology.place(fourth, second);
+		Assert.assertEquals("Intra rack latency should be derived from the path", 2,
+				NetworkNode.checkConnectivity(source, third));
+		Assert.assertEquals("Inter rack latency should be derived from the path", 6,
+				NetworkNode.checkConnectivity(source, fourth));
+		Assert.assertSame("Nodes should know their racks", second, fourth.getRack());
+		// Both transfers share the uplink of the first rack
+		setupTransfer(dataToBeSent, source, target, 2 * aSecond + 6);
+		setupTransfer(dataToBeSent, third, fourth, 2 * aSecond + 6);
+		simulateThenExpectEventNum(2);
+		Assert.assertEquals("The uplink should have carried both transfers", 2 * dataToBeSent,
+				first.uplink.getTotalProcessed(), 0);
+		Assert.assertEquals("The downlink should have carried both transfers", 2 * dataToBeSent,
+				second.downlink.getTotalProcessed(), 0);
+		// Transfers within the rack do not use the uplink
+		setupTransfer(dataToBeSent, source, third, aSecond + 2);
+		simulateThenExpectEventNum(3);
+		Assert.assertEquals("The uplink should not be used within the rack", 2 * dataToBeSent,
+				first.uplink.getTotalProcessed(), 0);
+	}
+
+	@Test(timeout = 100)
+	public void crossRackHandleTest() throws NetworkException {
+		NetworkTopology topology = new NetworkTopology(1, 2);
+		// The spine is the bottleneck, it allows only half of the node speed
+		NetworkTopology.Rack first = topology.addRack(outBW / 2, inBW);
+		NetworkTopology.Rack second = topology.addRack(outBW / 2, inBW);
+		topology.place(source, first);
+		topology.place(target, second);
+		final ResourceConsumption complete = NetworkNode.initTransfer(dataToBeSent,
+				ResourceConsumption.unlimitedProcessing, source, target,
+				new ConsumptionEventAssert(Timed.getFireCount() + 6 + 2 * aSecond, true));
+		final ConsumptionEventAssert toCancel = new ConsumptionEventAssert();
+		final ResourceConsumption cancelled = NetworkNode.initTransfer(dataToBeSent,
+				ResourceConsumption.unlimitedProcessing, target, source, toCancel);
+		Assert.assertEquals("The handle should report the full size before the transfer starts", dataToBeSent,
+				complete.getUnProcessed(), 0);
+		new DeferredEvent(6 + 3 * aSecond / 2) {
+			@Override
+			protected void eventAction() {
+				// The node segment is throttled to the speed of the spine segment
+				Assert.assertTrue("The spine segment should still be under way", complete.isRegistered());
+				Assert.assertTrue("The handle should report the slower segment",
+						complete.getUnProcessed() >= dataToBeSent / 4);
+				Assert.assertEquals("The handle should report the limit of the slower segment", outBW / 2,
+						complete.getRealLimit(), 1);
+				cancelled.cancel();
+				Assert.assertFalse("All segments should stop with the handle", cancelled.isRegistered());
+				Assert.assertFalse("A cancelled transfer should not be resumable", cancelled.isResumable());
+			}
+		};
+		simulateThenExpectEventNum(1);
+		Assert.assertTrue("The initiator should be notified about the cancellation", toCancel.isCancelled());
+		Assert.assertEquals("The completed transfer should not have remaining data", 0, complete.getUnProcessed(),
+				0);
+		Assert.assertEquals("The cancelled transfer should not use the spine after its cancellation",
+				3 * dataToBeSent / 4, second.uplink.getTotalProcessed(), 1);
+	}
+
+	@Test(timeout = 100)
+	public void crossRackCouplingTest() throws NetworkException {
+		NetworkTopology topology = new NetworkTopology(1, 2);
+		// The uplink only allows a quarter of the node speed
+		NetworkTopology.Rack first = topology.addRack(outBW / 4, inBW);
+		NetworkTopology.Rack second = topology.addRack(outBW / 4, inBW);
+		topology.place(source, first);
+		topology.place(third, first);
+		topology.place(target, second);
+		final ResourceConsumption crossing = NetworkNode.initTransfer(dataToBeSent,
+				ResourceConsumption.unlimitedProcessing, source, target, new ConsumptionEventAssert());
+		final long start = Timed.getFireCount();
+		final long[] localDone = new long[1];
+		NetworkNode.initTransfer(dataToBeSent, ResourceConsumption.unlimitedProcessing, source, third,
+				new ConsumptionEventAssert() {
+					@Override
+					public void conComplete() {
+						super.conComplete();
+						localDone[0] = Timed.getFireCount();
+					}
+				});
+		new DeferredEvent(6 + aSecond / 2) {
+			@Override
+			protected void eventAction() {
+				Assert.assertEquals("The crossing transfer should not use more than its uplink share", outBW / 4,
+						crossing.getRealLimit(), 1);
+			}
+		};
+		simulateThenExpectEventNum(2);
+		// The local transfer gets the source's bandwidth the uplink leaves unused
+		Assert.assertEquals("The local transfer should not be slowed down by the throttled one",
+				start + 2 + 4 * aSecond / 3, localDone[0], 10);
+	}
+
+	@Test(timeout = 100)
+	public void crossRackCancelTest() throws NetworkException {
+		NetworkTopology topology = new NetworkTopology(1, 2);
+		NetworkTopology.Rack first = topology.addRack(outBW, inBW);
+		NetworkTopology.Rack second = topology.addRack(outBW, inBW);
+		topology.place(source, first);
+		topology.place(target, second);
+		final ResourceConsumption[] reported = new ResourceConsumption[1];
+		final ResourceConsumption transfer = NetworkNode.initTransfer(dataToBeSent,
+				ResourceConsumption.unlimitedProcessing, source, target, new ConsumptionEventAssert() {
+					@Override
+					public void conCancelled(ResourceConsumption problematic) {
+						super.conCancelled(problematic);
+						reported[0] = problematic;
+					}
+				});
+		new DeferredEvent(6 + aSecond / 2) {
+			@Override
+			protected void eventAction() {
+				transfer.cancel();
+			}
+		};
+		Timed.simulateUntilLastEvent();
+		Assert.assertSame("The initiator should see its own handle cancelled", transfer, reported[0]);
+	}
+
+	@Test(timeout = 100)
+	public void aggregatedTransferTest() throws NetworkException {
+		NetworkNode.aggregateIdenticalTransfers = true;
+		try {
+			final ResourceConsumption[] members = new ResourceConsumption[4];
+			final ConsumptionEventAssert toCancel = new ConsumptionEventAssert();
+			// Four transfers share the bandwidth for a second, then three
+			// continue with the remaining 3/4 of their data
+			final long expectedCompletion = Timed.getFireCount() + targetlat + aSecond + 9 * aSecond / 4;
+			for (int i = 0; i < 3; i++) {
+				members[i] = NetworkNode.initTransfer(dataToBeSent, ResourceConsumption.unlimitedProcessing, source,
+						target, new ConsumptionEventAssert(expectedCompletion, true));
+			}
+			members[3] = NetworkNode.initTransfer(dataToBeSent, ResourceConsumption.unlimitedProcessing, source,
+					target, toCancel);
+			Assert.assertEquals("Members should report their full size before the transfer starts", dataToBeSent,
+					members[3].getUnProcessed(), 0);
+			new DeferredEvent(targetlat + aSecond) {
+				@Override
+				protected void eventAction() {
+					Assert.assertTrue("The aggregated transfer should be under way", members[3].isRegistered());
+					members[3].cancel();
+				}
+			};
+			simulateThenExpectEventNum(3);
+			Assert.assertTrue("The cancelled member should be notified", toCancel.isCancelled());
+			Assert.assertEquals("The cancelled member should retain its remaining data", 3 * dataToBeSent / 4,
+					members[3].getUnProcessed(), 1);
+			Assert.assertEquals("Completed members should not have remaining data", 0, members[0].getUnProcessed(),
+					0);
+			Assert.assertEquals("All members should be accounted on the source", 3 * dataToBeSent + dataToBeSent / 4,
+					source.getOutbws().getTotalProcessed(), 1);
+			Assert.assertEquals("All members should be accounted on the target", 3 * dataToBeSent + dataToBeSent / 4,
+					target.getInbws().getTotalProcessed(), 1);
+		} finally {
+			NetworkNode.aggregateIdenticalTransfers = false;
+		}
+	}
+
+	@Test(timeout = 100)
+	public void aggregatedTransferResumeTest() throws NetworkException {
+		NetworkNode.aggregateIdenticalTransfers = true;
+		try {
+			final long start = Timed.getFireCount() + targetlat;
+			// The two members share the bandwidth for a second, then the first
+			// continues alone while the second is suspended for a second
+			final ResourceConsumption first = NetworkNode.initTransfer(dataToBeSent,
+					ResourceConsumption.unlimitedProcessing, source, target,
+					new ConsumptionEventAssert(start + 3 * aSecond / 2, true));
+			final ResourceConsumption second = NetworkNode.initTransfer(dataToBeSent,
+					ResourceConsumption.unlimitedProcessing, source, target,
+					new ConsumptionEventAssert(start + 5 * aSecond / 2, true));
+			new DeferredEvent(targetlat + aSecond) {
+				@Override
+				protected void eventAction() {
+					second.suspend();
+					Assert.assertFalse("The suspended member should not be transferring", second.isRegistered());
+					Assert.assertEquals("The suspended member should retain its remaining data", dataToBeSent / 2,
+							second.getUnProcessed(), 1);
+					Assert.assertTrue("The suspended member should be resumable", second.isResumable());
+				}
+			};
+			new DeferredEvent(targetlat + 2 * aSecond) {
+				@Override
+				protected void eventAction() {
+					Assert.assertTrue("The suspended member should be resumable on its own",
+							second.registerConsumption());
+					Assert.assertTrue("The resumed member should be transferring", second.isRegistered());
+				}
+			};
+			simulateThenExpectEventNum(2);
+			Assert.assertEquals("The resumed member should complete", 0, second.getUnProcessed(), 0);
+			Assert.assertEquals("Both members should be accounted on the target", 2 * dataToBeSent,
+					target.getInbws().getTotalProcessed(), 1);
+			Assert.assertFalse("A completed member should not be registered again", first.registerConsumption());
+		} finally {
+			NetworkNode.aggregateIdenticalTransfers = false;
+		}
 	}
 }
@@ -36,10 +36,12 @@ import at.ac.uibk.dps.cloud.simulator.test.PMRelatedFoundation;
 import hu.mta.sztaki.lpds.cloud.simulator.DeferredEvent;
 import hu.mta.sztaki.lpds.cloud.simulator.Timed;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.resourcemodel.ResourceConsumption;
+import hu.mta.sztaki.lpds.cloud.simulator.io.CompactCatalogue;
 import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkNode;
 import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkNode.NetworkException;
 import hu.mta.sztaki.lpds.cloud.simulator.io.Repository;
 import hu.mta.sztaki.lpds.cloud.simulator.io.StorageObject;
+import hu.mta.sztaki.lpds.cloud.simulator.io.VirtualAppliance;
 import hu.mta.sztaki.lpds.cloud.simulator.util.SeedSyncer;
 
 public class RepositoryTest extends PMRelatedFoundation {
@@ -331,4 +333,182 @@ public class RepositoryTest extends PMRelatedFoundation {
 		Timed.simulateUntilLastEvent();
 		Assert.assertTrue("Should receive cancel event", cae.isCancelled());
 	}
+
+	private long duplicateAll(StorageObject original, int copies) throws NetworkException {
+		long before = Timed.getFireCount();
+		for (int i = 0; i < copies; i++) {
+			Assert.assertNotNull("Should be able to copy",
+					source.duplicateContent(original.id, "Copy" + i, new ConsumptionEventAssert()));
+		}
+		Timed.simulateUntilLastEvent();
+		for (int i = 0; i < copies; i++) {
+			Assert.assertEquals("Copies should keep the logical size", original.size,
+					source.lookup("Copy" + i).size);
+		}
+		return Timed.getFireCount() - before;
+	}
+
+	@Test(timeout = 100)
+	public void copyOnWriteTest() throws NetworkException {
+		final StorageObject fixed = new StorageObject("Fixed", NetworkNodeTest.diskBW * 100, false);
+		registerWithCheck(fixed);
+		long full = duplicateAll(fixed, 1);
+		source.deregisterObject("Copy0");
+		source.enableCopyOnWrite(0.1);
+		long cow = duplicateAll(fixed, 3);
+		Assert.assertTrue("Copy on write should only write the divergent bytes", cow * 2 < full);
+		final long divergent = fixed.size / 10;
+		Assert.assertEquals("Copies should only occupy their divergent bytes",
+				storageCapacity - fixed.size - 3 * divergent, source.getFreeStorageCapacity());
+		Assert.assertEquals(3 * (fixed.size - divergent), source.getCopyOnWriteSavings());
+	}
+
+	@Test(timeout = 100)
+	public void copyOnWriteBaseRetentionTest() throws NetworkException {
+		final StorageObject fixed = new StorageObject("Fixed", NetworkNodeTest.diskBW * 100, false);
+		registerWithCheck(fixed);
+		source.enableCopyOnWrite(0);
+		duplicateAll(fixed, 2);
+		final long used = source.getFreeStorageCapacity();
+		Assert.assertTrue(source.deregisterObject(fixed));
+		Assert.assertNull(source.lookup(fixed.id));
+		Assert.assertEquals("The base should be kept for its copies", used, source.getFreeStorageCapacity());
+		source.duplicateContent("Copy0", "CopyOfCopy", new ConsumptionEventAssert());
+		Timed.simulateUntilLastEvent();
+		source.deregisterObject("Copy0");
+		source.deregisterObject("Copy1");
+		Assert.assertEquals("The base should be kept for the last copy", used, source.getFreeStorageCapacity());
+		source.deregisterObject("CopyOfCopy");
+		Assert.assertEquals("Should not have any occupied storage", storageCapacity,
+				source.getFreeStorageCapacity());
+		Assert.assertEquals(0, source.getCopyOnWriteSavings());
+	}
+
+	@Test(timeout = 100)
+	public void copyOnWriteReplacedBaseTest() throws NetworkException {
+		final StorageObject fixed = new StorageObject("Fixed", NetworkNodeTest.diskBW * 100, false);
+		registerWithCheck(fixed);
+		source.enableCopyOnWrite(0);
+		duplicateAll(fixed, 1);
+		Assert.assertTrue(source.deregisterObject(fixed));
+		// A different object under the id of the retained base
+		final StorageObject replacement = new StorageObject("Fixed", NetworkNodeTest.diskBW * 50, false);
+		registerWithCheck(replacement);
+		Assert.assertNotNull(source.duplicateContent("Fixed", "Other", new ConsumptionEventAssert()));
+		Timed.simulateUntilLastEvent();
+		Assert.assertEquals("Both bases should occupy their storage",
+				storageCapacity - fixed.size - replacement.size, source.getFreeStorageCapacity());
+		source.deregisterObject("Copy0");
+		Assert.assertEquals("The first base should go with its last copy", storageCapacity - replacement.size,
+				source.getFreeStorageCapacity());
+		Assert.assertTrue(source.deregisterObject(replacement));
+		Assert.assertEquals("The replacement should be kept for its copy", storageCapacity - replacement.size,
+				source.getFreeStorageCapacity());
+		source.deregisterObject("Other");
+		Assert.assertEquals("Should not have any occupied storage", storageCapacity,
+				source.getFreeStorageCapacity());
+		Assert.assertEquals(0, source.getCopyOnWriteSavings());
+	}
+
+	@Test(timeout = 100)
+	public void copyOnWriteUnfittingCopyTest() throws NetworkException {
+		final StorageObject fixed = new StorageObject("Fixed", NetworkNodeTest.diskBW * 100, false);
+		registerWithCheck(fixed);
+		source.enableCopyOnWrite(0.1);
+		duplicateAll(fixed, 1);
+		// The copy arrives in full, without its base
+		source.requestContentDelivery("Copy0", target, new ConsumptionEventAssert());
+		Timed.simulateUntilLastEvent();
+		target.enableCopyOnWrite(0.1);
+		final long divergent = fixed.size / 10;
+		Assert.assertTrue(target.registerObject(
+				new StorageObject("Filler", target.getFreeStorageCapacity() - divergent, false)));
+		final ConsumptionEventAssert cae = new ConsumptionEventAssert();
+		Assert.assertNotNull(target.duplicateContent("Copy0", "Copy1", cae));
+		Timed.simulateUntilLastEvent();
+		Assert.assertTrue("A copy without a base to share should not fit", cae.isCancelled());
+		Assert.assertNull(target.lookup("Copy1"));
+		Assert.assertEquals(divergent, target.getFreeStorageCapacity());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidWriteRatioTest() {
+		source.enableCopyOnWrite(1.5);
+	}
+
+	private Repository compactRepo(final CompactCatalogue catalogue) {
+		return new Repository(storageCapacity, "Compact", NetworkNodeTest.inBW, NetworkNodeTest.outBW,
+				NetworkNodeTest.diskBW, NetworkNodeTest.setupALatencyMap(), defaultStorageTransitions,
+				defaultNetworkTransitions, catalogue);
+	}
+
+	@Test(timeout = 1000)
+	public void compactCatalogueTest() {
+		final Repository compact = compactRepo(new CompactCatalogue());
+		final int count = 100000;
+		for (int i = 0; i < count; i++) {
+			Assert.assertTrue(compact.registerObject(new StorageObject("O" + i, i + 1, false)));
+		}
+		compact.registerObject(so);
+		compact.registerObject(new StorageObject("O0", 1000, false));
+		Assert.assertEquals("Duplicate registrations should not be stored", 1, compact.lookup("O0").size);
+		final long used = (long) count * (count + 1) / 2 + so.size;
+		Assert.assertEquals(storageCapacity - used, compact.getFreeStorageCapacity());
+		final StorageObject found = compact.lookup("O41");
+		Assert.assertEquals("O41", found.id);
+		Assert.assertEquals(42, found.size);
+		Assert.assertTrue(compact.deregisterObject("O41"));
+		Assert.assertNull(compact.lookup("O41"));
+		Assert.assertFalse(compact.deregisterObject("O41"));
+		Assert.assertEquals(storageCapacity - used + 42, compact.getFreeStorageCapacity());
+		Assert.assertTrue("Freed slots should be reusable", compact.registerObject(new StorageObject("New", 5, false)));
+		Assert.assertEquals(5, compact.lookup("New").size);
+		Assert.assertEquals(84, compact.lookup("O83").size);
+		Assert.assertEquals(count + 1, compact.contents().size());
+	}
+
+	@Test(timeout = 100)
+	public void compactCatalogueKeepsAppliancesTest() throws NetworkException {
+		final Repository compact = compactRepo(new CompactCatalogue(1));
+		final VirtualAppliance va = new VirtualAppliance("VA", 100, 0);
+		compact.registerObject(so);
+		compact.registerObject(va);
+		Assert.assertSame("Appliances should be kept as they are", va, compact.lookup(va.id));
+		compact.setState(NetworkNode.State.RUNNING);
+		compact.requestContentDelivery(so.id, target, new ConsumptionEventAssert());
+		Timed.simulateUntilLastEvent();
+		Assert.assertEquals(so.size, target.lookup(so.id).size);
+	}
+
+	@Test(timeout = 100)
+	public void compactCatalogueCopyOnWriteTest() throws NetworkException {
+		final Repository compact = compactRepo(new CompactCatalogue());
+		compact.setState(NetworkNode.State.RUNNING);
+		final StorageObject base = new StorageObject("Base", 1000000, false);
+		Assert.assertTrue(compact.registerObject(base));
+		compact.enableCopyOnWrite(0.1);
+		for (int i = 0; i < 3; i++) {
+			Assert.assertNotNull(compact.duplicateContent(base.id, "Copy" + i, new ConsumptionEventAssert()));
+		}
+		Timed.simulateUntilLastEvent();
+		Assert.assertEquals("Copies should only occupy their divergent bytes", storageCapacity - 1300000,
+				compact.getFreeStorageCapacity());
+		Assert.assertEquals(2700000, compact.getCopyOnWriteSavings());
+		Assert.assertTrue(compact.deregisterObject(base.id));
+		Assert.assertEquals("The base should be kept for its copies", storageCapacity - 1300000,
+				compact.getFreeStorageCapacity());
+		for (int i = 0; i < 3; i++) {
+			Assert.assertTrue(compact.deregisterObject("Copy" + i));
+		}
+		Assert.assertEquals("Should not have any occupied storage", storageCapacity,
+				compact.getFreeStorageCapacity());
+		Assert.assertEquals(0, compact.getCopyOnWriteSavings());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void nonEmptyCatalogueTest() {
+		final CompactCatalogue catalogue = new CompactCatalogue();
+		catalogue.put(so);
+		compactRepo(catalogue);
+	}
 }
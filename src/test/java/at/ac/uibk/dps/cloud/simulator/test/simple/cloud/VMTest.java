@@ -37,6 +37,7 @@ import at.ac.uibk.dps.cloud.simulator.test.ConsumptionEventAssert;
 import at.ac.uibk.dps.cloud.simulator.test.IaaSRelatedFoundation;
 import hu.mta.sztaki.lpds.cloud.simulator.DeferredEvent;
 import hu.mta.sztaki.lpds.cloud.simulator.Timed;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.MigrationCost;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.PhysicalMachine;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.VMManager.VMManagementException;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.VirtualMachine;
@@ -45,7 +46,9 @@ import hu.mta.sztaki.lpds.cloud.simulator.iaas.VirtualMachine.StateChangeExcepti
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.constraints.AlterableResourceConstraints;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.constraints.ConstantConstraints;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.constraints.ResourceConstraints;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.resourcemodel.ConsumptionEventAdapter;
 import hu.mta.sztaki.lpds.cloud.simulator.iaas.resourcemodel.ResourceConsumption;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.resourcemodel.TaskGroup;
 import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkNode.NetworkException;
 import hu.mta.sztaki.lpds.cloud.simulator.io.NetworkNode;
 import hu.mta.sztaki.lpds.cloud.simulator.io.Repository;
@@ -710,4 +713,194 @@ public class VMTest extends IaaSRelatedFoundation {
 				PhysicalMachine.migrationAllocLen), true);
 	}
 
+	@Test(timeout = 100)
+	public void idleMigrationCostTest() {
+		MigrationCost c = new MigrationCost(1000000, 0.5, 0, 1000);
+		Assert.assertEquals("An idle VM only needs a full copy and an empty final round", 2, c.rounds);
+		Assert.assertEquals("Should transfer the memory once", 1000000, c.transferredBytes);
+		Assert.assertEquals("Should take as long as the memory transfer", 1000, c.duration, 0.001);
+		Assert.assertEquals("Nothing is left for the final round", 0, c.downtime, 0.001);
+	}
+
+	@Test(timeout = 100)
+	public void dirtyingMigrationCostTest() {
+		final long mem = 1000000000;
+		MigrationCost busy = new MigrationCost(mem, 1, mem, 1000000);
+		Assert.assertEquals("A VM dirtying all its memory should use all rounds", MigrationCost.maxRounds + 2,
+				busy.rounds);
+		Assert.assertEquals("Every round should copy the whole memory", mem * busy.rounds, busy.transferredBytes);
+		Assert.assertEquals("The final round copies the whole memory", 1000, busy.downtime, 0.001);
+		MigrationCost calm = new MigrationCost(mem, 0.0001, mem, 1000000);
+		Assert.assertTrue("Slower dirtying should converge earlier", calm.rounds < busy.rounds);
+		Assert.assertTrue("Slower dirtying should transfer less", calm.transferredBytes < busy.transferredBytes);
+		Assert.assertTrue("Slower dirtying should finish earlier", calm.duration < busy.duration);
+		Assert.assertTrue("Should copy more than the memory", calm.transferredBytes > mem);
+		Assert.assertTrue("The final round should be short",
+				calm.downtime * 1000000 < MigrationCost.WWS_TERMINAL_SIZE);
+	}
+
+	@Test(expected = IllegalArgumentException.class, timeout = 100)
+	public void noBandwidthMigrationCostTest() {
+		new MigrationCost(1000, 0, 0, 0);
+	}
+
+	@Test(timeout = 100)
+	public void vmMigrationEstimateTest() throws VMManagementException, NetworkException {
+		switchOnVMwithMaxCapacity(centralVMwithBG, true);
+		ResourceConsumption task = centralVMwithBG.newComputeTask(100 * aSecond, 1, new ConsumptionEventAssert());
+		// lets the task start
+		Timed.fire();
+		// a slow link, so the task has the time to dirty its memory
+		final double bandwidth = 1;
+		MigrationCost idle = centralVMwithBG.estimateLiveMigration(bandwidth);
+		Assert.assertEquals("Without dirtying only the memory should be transferred", centralVMwithBG.getMemSize(),
+				idle.transferredBytes);
+		task.setMemDirtyingRate(1);
+		task.setMemSize(centralVMwithBG.getMemSize());
+		MigrationCost dirtying = centralVMwithBG.estimateLiveMigration(bandwidth);
+		Assert.assertTrue("The dirtied memory should be transferred again",
+				dirtying.transferredBytes > idle.transferredBytes);
+	}
+
+	@Test(timeout = 100)
+	public void vmMigrationPathEstimateTest() throws VMManagementException, NetworkException {
+		final long fastBW = 1000;
+		final PhysicalMachine fast = new PhysicalMachine(pm.getCapacities().getRequiredCPUs(),
+				pm.getCapacities().getRequiredProcessingPower(), pm.getCapacities().getRequiredMemory(),
+				new Repository(pm.localDisk.getMaxStorageCapacity(), generateName("Fast", 1), fastBW, fastBW, fastBW,
+						globalLatencyMap, defaultStorageTransitions, defaultNetworkTransitions),
+				1, 1, defaultHostTransitions);
+		fast.turnon();
+		Timed.simulateUntilLastEvent();
+		centralVMwithBG.switchOn(fast.allocateResources(fast.getCapacities(), true, PhysicalMachine.defaultAllocLen),
+				repo);
+		Timed.simulateUntilLastEvent();
+		Assert.assertEquals("Initially the memory is sent from the host",
+				centralVMwithBG.estimateLiveMigration(fastBW).duration,
+				centralVMwithBG.estimateLiveMigration().duration, 0);
+		// The remote disk VM keeps sending its memory from its first host
+		centralVMwithBG.migrate(pm.allocateResources(pm.getCapacities(), true, PhysicalMachine.migrationAllocLen));
+		Timed.simulateUntilLastEvent();
+		Assert.assertSame("The VM should be migrated", pm, centralVMwithBG.getResourceAllocation().getHost());
+		Assert.assertTrue("The estimate should follow the path of the migration",
+				centralVMwithBG.estimateLiveMigration().duration < centralVMwithBG
+						.estimateLiveMigration(pm.localDisk.getOutputbw()).duration);
+	}
+
+	@Test(expected = IllegalStateException.class, timeout = 100)
+	public void unplacedMigrationEstimateTest() {
+		centralVM.estimateLiveMigration();
+	}
+
+	private static class GroupFinish implements TaskGroup.TaskGroupEvent {
+		int calls = 0;
+		long finishedAt = -1;
+
+		@Override
+		public void tasksFinished(TaskGroup group) {
+			calls++;
+			finishedAt = Timed.getFireCount();
+		}
+	}
+
+	@Test(timeout = 100)
+	public void computeTaskGroupTest() throws VMManagementException, NetworkException {
+		switchOnVMwithMaxCapacity(centralVM, true);
+		final int count = 100;
+		final double ctLen = aSecond;
+		final GroupFinish gf = new GroupFinish();
+		long before = Timed.getFireCount();
+		final TaskGroup group = centralVM.newComputeTasks(ctLen, 1, count, gf);
+		Assert.assertEquals(count, group.getTaskCount());
+		Timed.simulateUntilLastEvent();
+		Assert.assertEquals("The group should notify only once", 1, gf.calls);
+		Assert.assertTrue(group.isFinished());
+		Assert.assertEquals(count, group.getCompletedTasks());
+		Assert.assertEquals(0, group.getCancelledTasks());
+		final long groupDuration = gf.finishedAt - before;
+		// The same tasks submitted one by one
+		final long[] completions = new long[2];
+		before = Timed.getFireCount();
+		for (int i = 0; i < count; i++) {
+			centralVM.newComputeTask(ctLen, 1, new ConsumptionEventAdapter() {
+				@Override
+				public void conComplete() {
+					completions[0]++;
+					completions[1] = Timed.getFireCount();
+				}
+			});
+		}
+		Timed.simulateUntilLastEvent();
+		Assert.assertEquals(count, completions[0]);
+		// The second batch starts in the tick the first one finished
+		Assert.assertEquals("Bulk submission should not alter the processing", completions[1] - before,
+				groupDuration, 1);
+	}
+
+	@Test(timeout = 100)
+	public void computeTaskGroupKillTest() throws VMManagementException, NetworkException {
+		switchOnVMwithMaxCapacity(centralVM, true);
+		final GroupFinish gf = new GroupFinish();
+		final TaskGroup group = centralVM.newComputeTasks(100 * aSecond, 1, 10, gf);
+		Timed.fire();
+		centralVM.switchoff(true);
+		Timed.simulateUntilLastEvent();
+		Assert.assertEquals("The group should notify only once", 1, gf.calls);
+		Assert.assertEquals(10, group.getCancelledTasks());
+		Assert.assertEquals(0, group.getCompletedTasks());
+	}
+
+	@Test(timeout = 100)
+	public void computeTaskGroupOnNonRunningVMTest() throws NetworkException {
+		Assert.assertNull("Tasks should not be accepted by a destroyed VM",
+				centralVM.newComputeTasks(1, 1, 10, new GroupFinish()));
+	}
+
+	private long runTaskGroup(final int count, final double limit, final boolean aggregated) throws NetworkException {
+		final GroupFinish gf = new GroupFinish();
+		final long before = Timed.getFireCount();
+		final TaskGroup group = centralVM.newComputeTasks(aSecond, limit, count, aggregated, gf);
+		Assert.assertEquals(count, group.getTaskCount());
+		Assert.assertEquals(aggregated ? 1 : count, group.getConsumptionCount());
+		Timed.fire();
+		Assert.assertEquals(aggregated ? 1 : count, centralVM.underProcessing.size());
+		Timed.simulateUntilLastEvent();
+		Assert.assertEquals("The group should notify only once", 1, gf.calls);
+		Assert.assertEquals(count, group.getCompletedTasks());
+		return gf.finishedAt - before;
+	}
+
+	@Test(timeout = 100)
+	public void aggregatedTaskGroupTest() throws VMManagementException, NetworkException {
+		switchOnVMwithMaxCapacity(centralVM, true);
+		final double before = pm.getTotalProcessed();
+		final long aggregatedDuration = runTaskGroup(100, 1, true);
+		final double aggregatedProcessing = pm.getTotalProcessed() - before;
+		final long separateDuration = runTaskGroup(100, 1, false);
+		Assert.assertEquals("Aggregation should not alter the processing", separateDuration, aggregatedDuration, 1);
+		Assert.assertEquals("All tasks should be accounted on the host", 100 * aSecond, aggregatedProcessing,
+				aSecond / 1000.0);
+	}
+
+	@Test(timeout = 100)
+	public void aggregatedTaskGroupSharingTest() throws VMManagementException, NetworkException {
+		switchOnVMwithMaxCapacity(centralVM, true);
+		final long aggregatedDuration = runTaskGroup(50, ResourceConsumption.unlimitedProcessing, true);
+		final long separateDuration = runTaskGroup(50, ResourceConsumption.unlimitedProcessing, false);
+		Assert.assertEquals("Aggregated tasks should get the same share of the VM", separateDuration,
+				aggregatedDuration, 1);
+	}
+
+	@Test(timeout = 100)
+	public void aggregatedTaskGroupKillTest() throws VMManagementException, NetworkException {
+		switchOnVMwithMaxCapacity(centralVM, true);
+		final GroupFinish gf = new GroupFinish();
+		final TaskGroup group = centralVM.newComputeTasks(100 * aSecond, 1, 10, true, gf);
+		Assert.assertTrue(group.isAggregated());
+		Timed.fire();
+		centralVM.switchoff(true);
+		Timed.simulateUntilLastEvent();
+		Assert.assertEquals("The group should notify only once", 1, gf.calls);
+		Assert.assertEquals(10, group.getCancelledTasks());
+	}
 }
@@ -0,0 +1,122 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor 
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *  
+ *  This file is part of DISSECT-CF.
+ *  
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *  
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+
+package at.ac.uibk.dps.cloud.simulator.test.simple.cloud.pmscheduler;
+
+import java.util.EnumSet;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import at.ac.uibk.dps.cloud.simulator.test.IaaSRelatedFoundation;
+import hu.mta.sztaki.lpds.cloud.simulator.Timed;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.IaaSService;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.PhysicalMachine;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.VirtualMachine;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.constraints.ConstantConstraints;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.pmscheduling.MultiPMController;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.pmscheduling.PMStateIndex;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.pmscheduling.SchedulingDependentMachines;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.vmscheduling.FirstFitScheduler;
+import hu.mta.sztaki.lpds.cloud.simulator.io.Repository;
+import hu.mta.sztaki.lpds.cloud.simulator.io.VirtualAppliance;
+
+public class PMStateIndexTest extends IaaSRelatedFoundation {
+	PhysicalMachine small, large, other;
+	PMStateIndex index;
+
+	@Before
+	public void setupIndex() {
+		small = dummyPMsCreator(1, 1, dummyPMPerCorePP, dummyPMMemory)[0];
+		large = dummyPMsCreator(1, 4, dummyPMPerCorePP, dummyPMMemory)[0];
+		other = dummyPMsCreator(1, 1, dummyPMPerCorePP, dummyPMMemory)[0];
+		index = new PMStateIndex();
+		index.add(small);
+		index.add(large);
+		index.add(other);
+	}
+
+	@Test(timeout = 100)
+	public void orderingTest() {
+		Assert.assertEquals(3, index.count(PhysicalMachine.State.OFF));
+		Assert.assertSame("The largest PM should be offered first", large,
+				index.getLargest(PhysicalMachine.ToOfforOff));
+		large.turnon();
+		Assert.assertSame("Equal PMs should be offered in the order they were added", small,
+				index.getLargest(PhysicalMachine.ToOfforOff));
+		Assert.assertEquals(1, index.count(PhysicalMachine.State.SWITCHINGON));
+		Timed.simulateUntilLastEvent();
+		Assert.assertSame(large, index.getLargest(EnumSet.of(PhysicalMachine.State.RUNNING)));
+		Assert.assertEquals(2, index.count(PhysicalMachine.State.OFF));
+	}
+
+	@Test(timeout = 100)
+	public void removalTest() {
+		index.remove(large);
+		index.remove(large);
+		Assert.assertEquals(2, index.size());
+		large.turnon();
+		Timed.simulateUntilLastEvent();
+		Assert.assertEquals("Removed PMs should not be followed", 0,
+				index.count(PhysicalMachine.State.RUNNING));
+		index.remove(small);
+		index.remove(other);
+		Assert.assertNull(index.getLargest(PhysicalMachine.ToOfforOff));
+	}
+
+	private IaaSService heterogeneousIaaS(final Class<? extends SchedulingDependentMachines> pmsch)
+			throws Exception {
+		final IaaSService iaas = setupIaaS(FirstFitScheduler.class, pmsch, 3, 1);
+		iaas.registerHost(large);
+		return iaas;
+	}
+
+	@Test(timeout = 100)
+	public void largestFirstWakeupTest() throws Exception {
+		final IaaSService iaas = heterogeneousIaaS(SchedulingDependentMachines.class);
+		final Repository repo = iaas.repositories.get(0);
+		final VirtualMachine vm = iaas.requestVM((VirtualAppliance) repo.contents().iterator().next(),
+				small.getCapacities(), repo, 1)[0];
+		Timed.simulateUntilLastEvent();
+		Assert.assertEquals(VirtualMachine.State.RUNNING, vm.getState());
+		Assert.assertEquals("Only the largest PM should be switched on", 1, iaas.runningMachines.size());
+		Assert.assertSame(large, iaas.runningMachines.get(0));
+	}
+
+	@Test(timeout = 100)
+	public void multiPMWakeupTest() throws Exception {
+		final IaaSService iaas = heterogeneousIaaS(MultiPMController.class);
+		final Repository repo = iaas.repositories.get(0);
+		final VirtualMachine[] vms = iaas.requestVM((VirtualAppliance) repo.contents().iterator().next(),
+				new ConstantConstraints(1, dummyPMPerCorePP, dummyPMMemory / 8), repo, 5);
+		Timed.simulateUntilLastEvent();
+		for (final VirtualMachine vm : vms) {
+			Assert.assertEquals(VirtualMachine.State.RUNNING, vm.getState());
+		}
+		Assert.assertEquals("The large PM and a single small one should be enough", 2,
+				iaas.runningMachines.size());
+		Assert.assertTrue(iaas.runningMachines.contains(large));
+	}
+}
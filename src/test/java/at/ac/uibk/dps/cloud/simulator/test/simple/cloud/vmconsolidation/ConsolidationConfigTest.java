@@ -0,0 +1,115 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor 
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *  
+ *  This file is part of DISSECT-CF.
+ *  
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *  
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package at.ac.uibk.dps.cloud.simulator.test.simple.cloud.vmconsolidation;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import at.ac.uibk.dps.cloud.simulator.test.IaaSRelatedFoundation;
+import hu.mta.sztaki.lpds.cloud.simulator.Timed;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.IaaSService;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.PhysicalMachine;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.VirtualMachine;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.constraints.ConstantConstraints;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.pmscheduling.ConsolidationFriendlyPmScheduler;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation.ConsolidationConfig;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation.GaConsolidator;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.vmscheduling.FirstFitScheduler;
+import hu.mta.sztaki.lpds.cloud.simulator.io.Repository;
+import hu.mta.sztaki.lpds.cloud.simulator.io.VirtualAppliance;
+
+public class ConsolidationConfigTest extends IaaSRelatedFoundation {
+	@Test(timeout = 100)
+	public void propertiesParsingTest() {
+		Properties props = new Properties();
+		props.setProperty("upperThreshold", "0.8");
+		props.setProperty("gaNrIterations", "3");
+		props.setProperty("doLocalSearch2", "true");
+		props.setProperty("customKey", "customValue");
+		ConsolidationConfig config = new ConsolidationConfig.Builder(props).build();
+		Assert.assertEquals("Should use the specified threshold", 0.8, config.upperThreshold, 0);
+		Assert.assertEquals("Should use the specified iteration count", 3, config.gaNrIterations);
+		Assert.assertTrue("Should use the specified local search", config.doLocalSearch2);
+		Assert.assertEquals("Should fall back to the default for unspecified values", 0.25, config.lowerThreshold,
+				0);
+		Assert.assertEquals("Should keep unknown properties", "customValue", config.getProperty("customKey"));
+		ConsolidationConfig altered = config.toBuilder().setSeed(10).build();
+		Assert.assertEquals("Should keep the unchanged values", 3, altered.gaNrIterations);
+		Assert.assertEquals("Should not alter the original config", 50, config.seed);
+		Assert.assertEquals("Should use the new seed", 10, altered.seed);
+	}
+
+	@Test(timeout = 1000)
+	public void fileRoundTripTest() throws Exception {
+		ConsolidationConfig config = new ConsolidationConfig.Builder().setPsoC1(7).setMutationProb(0.5).build();
+		File file = File.createTempFile("consolidation", ".xml");
+		try {
+			FileOutputStream out = new FileOutputStream(file);
+			config.toProperties().storeToXML(out, null);
+			out.close();
+			ConsolidationConfig loaded = ConsolidationConfig.load(file);
+			Assert.assertEquals("Should load the stored learning factor", 7, loaded.psoC1);
+			Assert.assertEquals("Should load the stored mutation probability", 0.5, loaded.mutationProb, 0);
+			Assert.assertEquals("Should have the same contents", config.toProperties(), loaded.toProperties());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test(timeout = 1000)
+	public void programmaticConsolidatorTest() throws Exception {
+		IaaSService iaas = new IaaSService(FirstFitScheduler.class, ConsolidationFriendlyPmScheduler.class);
+		Repository r = dummyRepoCreator(true);
+		iaas.registerRepository(r);
+		VirtualAppliance va = (VirtualAppliance) r.contents().iterator().next();
+		PhysicalMachine[] pms = dummyPMsCreator(2, 2, 1, vaSize * 40);
+		iaas.bulkHostRegistration(Arrays.asList(pms));
+		VirtualMachine[] vms = iaas.requestVM(va, new ConstantConstraints(1, 1, 1), r, 4);
+		Timed.simulateUntilLastEvent();
+		// Leave a single VM on both PMs
+		boolean[] dropped = new boolean[pms.length];
+		for (VirtualMachine vm : vms) {
+			for (int i = 0; i < pms.length; i++) {
+				if (!dropped[i] && vm.getResourceAllocation().getHost() == pms[i]) {
+					vm.destroy(true);
+					dropped[i] = true;
+					break;
+				}
+			}
+		}
+		Timed.simulateUntilLastEvent();
+		Assert.assertEquals("Both PMs should be in use before consolidation", 2, iaas.runningMachines.size());
+		ConsolidationConfig config = new ConsolidationConfig.Builder().setGaNrIterations(5)
+				.setGaPopulationSize(4).build();
+		GaConsolidator ga = new GaConsolidator(iaas, 600, config);
+		Assert.assertSame("Should use the given config", config, ga.getConfig());
+		Timed.simulateUntil(Timed.getFireCount() + 1000);
+		Assert.assertEquals("The VMs should be consolidated to a single PM", 1, iaas.runningMachines.size());
+	}
+}
@@ -0,0 +1,414 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor 
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *  
+ *  This file is part of DISSECT-CF.
+ *  
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *  
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package at.ac.uibk.dps.cloud.simulator.test.simple.cloud.vmconsolidation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import at.ac.uibk.dps.cloud.simulator.test.IaaSRelatedFoundation;
+import hu.mta.sztaki.lpds.cloud.simulator.Timed;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.IaaSService;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.PhysicalMachine;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.VirtualMachine;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.constraints.ConstantConstraints;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.pmscheduling.ConsolidationFriendlyPmScheduler;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation.AbcConsolidator;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation.ConsolidationConfig;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation.ConsolidationStats;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation.Fitness;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation.GaConsolidator;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation.IndexedFfdConsolidator;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation.ModelBasedConsolidator;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation.PsoConsolidator;
+import hu.mta.sztaki.lpds.cloud.simulator.iaas.vmscheduling.FirstFitScheduler;
+import hu.mta.sztaki.lpds.cloud.simulator.io.Repository;
+import hu.mta.sztaki.lpds.cloud.simulator.io.VirtualAppliance;
+
+public class SolutionBasedConsolidatorTest extends IaaSRelatedFoundation {
+	final static int pmCount = 4;
+	IaaSService iaas;
+	VirtualMachine[] remaining;
+
+	/**
+	 * Leaves a single VM on each PM, so the VMs could be packed onto half of
+	 * the PMs.
+	 */
+	@Before
+	public void spreadVMs() throws Exception {
+		iaas = new IaaSService(FirstFitScheduler.class, ConsolidationFriendlyPmScheduler.class);
+		remaining = spreadVMs(iaas, pmCount);
+		Assert.assertEquals("All PMs should be in use before consolidation", pmCount, iaas.runningMachines.size());
+	}
+
+	private VirtualMachine[] spreadVMs(IaaSService cloud, int count) throws Exception {
+		Repository r = dummyRepoCreator(true);
+		cloud.registerRepository(r);
+		VirtualAppliance va = (VirtualAppliance) r.contents().iterator().next();
+		PhysicalMachine[] pms = dummyPMsCreator(count, 2, 1, vaSize * 40);
+		cloud.bulkHostRegistration(Arrays.asList(pms));
+		VirtualMachine[] vms = cloud.requestVM(va, new ConstantConstraints(1, 1, 1), r, 2 * count);
+		Timed.simulateUntilLastEvent();
+		VirtualMachine[] kept = new VirtualMachine[count];
+		for (VirtualMachine vm : vms) {
+			int host = Arrays.asList(pms).indexOf(vm.getResourceAllocation().getHost());
+			if (kept[host] == null) {
+				kept[host] = vm;
+			} else {
+				vm.destroy(true);
+			}
+		}
+		Timed.simulateUntilLastEvent();
+		for (VirtualMachine vm : kept) {
+			Assert.assertNotNull("Every PM should keep a VM", vm);
+		}
+		return kept;
+	}
+
+	private void checkConsolidated() {
+		Timed.simulateUntil(Timed.getFireCount() + 1000);
+		Assert.assertTrue("The consolidation should free up PMs", iaas.runningMachines.size() < pmCount);
+		for (VirtualMachine vm : remaining) {
+			Assert.assertEquals("The VMs should survive the consolidation", VirtualMachine.State.RUNNING,
+					vm.getState());
+		}
+	}
+
+	@Test(timeout = 2000)
+	public void gaWithBfdSearchTest() {
+		new GaConsolidator(iaas, 600,
+				new ConsolidationConfig.Builder().setGaNrIterations(10).setGaPopulationSize(6).build());
+		checkConsolidated();
+	}
+
+	@Test(timeout = 2000)
+	public void gaWithSimpleSearchTest() {
+		new GaConsolidator(iaas, 600, new ConsolidationConfig.Builder().setDoLocalSearch1(false)
+				.setDoLocalSearch2(true).setGaNrIterations(10).setGaPopulationSize(6).build());
+		checkConsolidated();
+	}
+
+	@Test(timeout = 2000)
+	public void abcTest() {
+		new AbcConsolidator(iaas, 600,
+				new ConsolidationConfig.Builder().setAbcNrIterations(10).setAbcPopulationSize(6).build());
+		checkConsolidated();
+	}
+
+	@Test(timeout = 2000)
+	public void psoTest() {
+		new PsoConsolidator(iaas, 600,
+				new ConsolidationConfig.Builder().setPsoNrIterations(10).setPsoSwarmSize(6).build());
+		checkConsolidated();
+	}
+
+	@Test(timeout = 5000)
+	public void parallelReproducibilityTest() throws Exception {
+		final int bigger = 16;
+		IaaSService other = new IaaSService(FirstFitScheduler.class, ConsolidationFriendlyPmScheduler.class);
+		spreadVMs(other, bigger);
+		IaaSService third = new IaaSService(FirstFitScheduler.class, ConsolidationFriendlyPmScheduler.class);
+		spreadVMs(third, bigger);
+		ConsolidationConfig.Builder builder = new ConsolidationConfig.Builder().setGaNrIterations(10)
+				.setGaPopulationSize(12);
+		GaConsolidator sequential = new GaConsolidator(other, 600, builder.build());
+		GaConsolidator parallel = new GaConsolidator(third, 600, builder.setParallelism(4).build());
+		Timed.simulateUntil(Timed.getFireCount() + 1000);
+		Assert.assertNotNull("The consolidation should have happened", sequential.getBestSolution());
+		Assert.assertEquals("The thread count should not influence the outcome",
+				sequential.getBestSolution().toString(), parallel.getBestSolution().toString());
+		Assert.assertEquals("Should free up the same PMs", other.runningMachines.size(),
+				third.runningMachines.size());
+		Assert.assertTrue("Should free up PMs", other.runningMachines.size() < bigger);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void noThreadsTest() {
+		new ConsolidationConfig.Builder().setParallelism(0);
+	}
+
+	private ConsolidationStats checkBudgetHonoured(ModelBasedConsolidator cons, int initialEvaluations) {
+		Timed.simulateUntil(Timed.getFireCount() + 1000);
+		ConsolidationStats stats = cons.getStats();
+		Assert.assertNotNull("The consolidation should have happened", stats);
+		Assert.assertTrue("Should stop due to the budget", stats.isBudgetExhausted());
+		Assert.assertEquals("Should not start any iterations", 0, stats.getIterations());
+		Assert.assertEquals("Should only evaluate the initial population", initialEvaluations,
+				stats.getEvaluations());
+		for (VirtualMachine vm : remaining) {
+			Assert.assertEquals("The best solution so far should keep the VMs running",
+					VirtualMachine.State.RUNNING, vm.getState());
+		}
+		return stats;
+	}
+
+	@Test(timeout = 2000)
+	public void gaEvaluationBudgetTest() {
+		checkBudgetHonoured(new GaConsolidator(iaas, 600, new ConsolidationConfig.Builder()
+				.setGaNrIterations(1000).setGaPopulationSize(6).setEvaluationBudget(1).build()), 6);
+	}
+
+	@Test(timeout = 2000)
+	public void abcEvaluationBudgetTest() {
+		checkBudgetHonoured(new AbcConsolidator(iaas, 600, new ConsolidationConfig.Builder()
+				.setAbcNrIterations(1000).setAbcPopulationSize(6).setEvaluationBudget(1).build()), 6);
+	}
+
+	@Test(timeout = 2000)
+	public void psoEvaluationBudgetTest() {
+		checkBudgetHonoured(new PsoConsolidator(iaas, 600, new ConsolidationConfig.Builder()
+				.setPsoNrIterations(1000).setPsoSwarmSize(6).setEvaluationBudget(1).build()), 6);
+	}
+
+	@Test(timeout = 2000)
+	public void convergenceStatsTest() {
+		GaConsolidator ga = new GaConsolidator(iaas, 600, new ConsolidationConfig.Builder().setGaNrIterations(10)
+				.setGaPopulationSize(6).setTimeBudget(1000000).build());
+		Assert.assertNull("No statistics before consolidation", ga.getStats());
+		checkConsolidated();
+		ConsolidationStats stats = ga.getStats();
+		Assert.assertFalse("The budget should not run out", stats.isBudgetExhausted());
+		Assert.assertTrue("Should do some iterations", stats.getIterations() > 0);
+		Assert.assertEquals("Should report all iterations", stats.getIterations(),
+				stats.getBestPerIteration().size());
+		Assert.assertTrue("Should count the evaluations", stats.getEvaluations() > 6);
+		Assert.assertTrue("Should measure the time spent", stats.getElapsedNanos() > 0);
+		Fitness previous = null;
+		for (Fitness f : stats.getBestPerIteration()) {
+			if (previous != null) {
+				Assert.assertTrue("The best fitness should never get worse",
+						f.getTotalOverAllocated() <= previous.getTotalOverAllocated()
+								&& (f.getTotalOverAllocated() < previous.getTotalOverAllocated()
+										|| f.getNrActivePms() <= previous.getNrActivePms()));
+			}
+			previous = f;
+		}
+		Assert.assertEquals("The best solution should be reported", ga.getBestFitness().toString(),
+				previous.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeBudgetTest() {
+		new ConsolidationConfig.Builder().setTimeBudget(-1);
+	}
+
+	@Test(timeout = 2000)
+	public void decisionLatencyTest() throws Exception {
+		final long latency = 100;
+		GaConsolidator ga = new GaConsolidator(iaas, 600, new ConsolidationConfig.Builder().setGaNrIterations(10)
+				.setGaPopulationSize(6).setDecisionLatency(latency).build());
+		while (!ga.isRoundPending()) {
+			Timed.fire();
+		}
+		// fire() has already advanced the time past the snapshot
+		final long snapshot = Timed.getFireCount() - 1;
+		Timed.simulateUntil(snapshot + latency - 1);
+		Assert.assertTrue("The decision should not be applied before the latency passes", ga.isRoundPending());
+		Assert.assertNull("The statistics should not be published before the decision", ga.getStats());
+		Assert.assertEquals("No PM should be freed up before the decision", pmCount, iaas.runningMachines.size());
+		// The IaaS changes while the optimizer works on the snapshot
+		remaining[0].destroy(true);
+		Timed.simulateUntil(snapshot + latency + 1000);
+		Assert.assertFalse("The decision should have been applied", ga.isRoundPending());
+		Assert.assertNotNull("The statistics should be published with the decision", ga.getStats());
+		Assert.assertTrue("The published statistics should be complete", ga.getStats().getElapsedNanos() > 0);
+		Assert.assertTrue("The consolidation should free up PMs", iaas.runningMachines.size() < pmCount);
+		for (int i = 1; i < remaining.length; i++) {
+			Assert.assertEquals("The VMs should survive the consolidation", VirtualMachine.State.RUNNING,
+					remaining[i].getState());
+		}
+	}
+
+	private int countConsolidationThreads() {
+		int count = 0;
+		for (Thread t : Thread.getAllStackTraces().keySet()) {
+			if (t.isAlive() && t.getName().equals("Consolidation-GaConsolidator"))
+				count++;
+		}
+		return count;
+	}
+
+	@Test(timeout = 2000)
+	public void backgroundShutdownTest() throws Exception {
+		final long latency = 100;
+		GaConsolidator ga = new GaConsolidator(iaas, 600, new ConsolidationConfig.Builder().setGaNrIterations(10)
+				.setGaPopulationSize(6).setDecisionLatency(latency).build());
+		while (!ga.isRoundPending()) {
+			Timed.fire();
+		}
+		final int threads = countConsolidationThreads();
+		Assert.assertTrue("The background thread should be running", threads > 0);
+		ga.shutdown();
+		// the next round would need a new thread, so it is not simulated
+		Timed.simulateUntil(Timed.getFireCount() + latency);
+		Assert.assertFalse("The pending decision should still be applied", ga.isRoundPending());
+		Assert.assertNotNull("The pending round should be published", ga.getStats());
+		while (countConsolidationThreads() >= threads) {
+			Thread.sleep(10);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeLatencyTest() {
+		new ConsolidationConfig.Builder().setDecisionLatency(-1);
+	}
+
+	private void checkWarmStart(ModelBasedConsolidator cons) throws Exception {
+		checkConsolidated();
+		ConsolidationStats first = cons.getStats();
+		Assert.assertEquals("There is nothing to start from in the first round", 0, first.getWarmStarts());
+		// The remembered placement of this VM has to be skipped in the next round
+		remaining[0].destroy(true);
+		Timed.simulateUntil(Timed.getFireCount() + 600);
+		ConsolidationStats second = cons.getStats();
+		Assert.assertNotSame("There should be another round", first, second);
+		Assert.assertTrue("The next round should start from the elites", second.getWarmStarts() > 0);
+		Assert.assertTrue("Should keep the PMs freed up", iaas.runningMachines.size() < pmCount);
+		for (int i = 1; i < remaining.length; i++) {
+			Assert.assertEquals("The VMs should survive the consolidation", VirtualMachine.State.RUNNING,
+					remaining[i].getState());
+		}
+	}
+
+	@Test(timeout = 2000)
+	public void gaWarmStartTest() throws Exception {
+		checkWarmStart(new GaConsolidator(iaas, 600, new ConsolidationConfig.Builder().setGaNrIterations(10)
+				.setGaPopulationSize(6).setWarmStartElites(2).build()));
+	}
+
+	@Test(timeout = 2000)
+	public void abcWarmStartTest() throws Exception {
+		checkWarmStart(new AbcConsolidator(iaas, 600, new ConsolidationConfig.Builder().setAbcNrIterations(10)
+				.setAbcPopulationSize(6).setWarmStartElites(2).build()));
+	}
+
+	@Test(timeout = 2000)
+	public void psoWarmStartTest() throws Exception {
+		checkWarmStart(new PsoConsolidator(iaas, 600, new ConsolidationConfig.Builder().setPsoNrIterations(10)
+				.setPsoSwarmSize(6).setWarmStartElites(2).build()));
+	}
+
+	/**
+	 * Records the source, the target and the duration (until the VM runs again)
+	 * of each migration.
+	 */
+	private static class MigrationRecorder implements VirtualMachine.StateChange {
+		final ArrayList<Object[]> migrations = new ArrayList<>();
+		final HashMap<VirtualMachine, Object[]> ongoing = new HashMap<>();
+
+		@Override
+		public void stateChanged(VirtualMachine vm, VirtualMachine.State oldState, VirtualMachine.State newState) {
+			if (newState == VirtualMachine.State.MIGRATING) {
+				ongoing.put(vm, new Object[] { vm.getResourceAllocation().getHost(), null, Timed.getFireCount(), null });
+			} else if (newState == VirtualMachine.State.RUNNING && ongoing.containsKey(vm)) {
+				Object[] m = ongoing.remove(vm);
+				m[1] = vm.getResourceAllocation().getHost();
+				m[3] = Timed.getFireCount();
+				migrations.add(m);
+			}
+		}
+
+		int maxConcurrency(PhysicalMachine pm) {
+			int max = 0;
+			for (Object[] m : migrations) {
+				int concurrent = 0;
+				for (Object[] o : migrations) {
+					if ((o[0] == pm || o[1] == pm) && (Long) o[2] <= (Long) m[2] && (Long) m[2] < (Long) o[3]) {
+						concurrent++;
+					}
+				}
+				max = Math.max(max, concurrent);
+			}
+			return max;
+		}
+	}
+
+	/**
+	 * Without the limit, some PMs of this setup take part in two migrations at
+	 * the same time.
+	 */
+	@Test(timeout = 5000)
+	public void migrationLimitTest() throws Exception {
+		final int bigger = 16;
+		IaaSService cloud = new IaaSService(FirstFitScheduler.class, ConsolidationFriendlyPmScheduler.class);
+		VirtualMachine[] vms = spreadVMs(cloud, bigger);
+		MigrationRecorder recorder = new MigrationRecorder();
+		for (VirtualMachine vm : vms) {
+			vm.subscribeStateChange(recorder);
+		}
+		new GaConsolidator(cloud, 600, new ConsolidationConfig.Builder().setGaNrIterations(10)
+				.setGaPopulationSize(12).setMaxMigrationsPerPm(1).build());
+		Timed.simulateUntil(Timed.getFireCount() + 100000);
+		Assert.assertFalse("Should migrate", recorder.migrations.isEmpty());
+		Assert.assertTrue("Should free up PMs", cloud.runningMachines.size() < bigger);
+		for (PhysicalMachine pm : cloud.machines) {
+			Assert.assertTrue("A PM should only take part in a single migration at a time",
+					recorder.maxConcurrency(pm) <= 1);
+		}
+		for (VirtualMachine vm : vms) {
+			Assert.assertEquals("The VMs should survive the consolidation", VirtualMachine.State.RUNNING,
+					vm.getState());
+		}
+	}
+
+	@Test(timeout = 2000)
+	public void migrationCostAwareTest() {
+		GaConsolidator ga = new GaConsolidator(iaas, 600, new ConsolidationConfig.Builder().setGaNrIterations(10)
+				.setGaPopulationSize(6).setMigrationCostAware(true).build());
+		checkConsolidated();
+		Fitness best = ga.getBestFitness();
+		Assert.assertTrue("Should migrate", best.getNrMigrations() > 0);
+		Assert.assertEquals("Idle VMs should only transfer their memory once",
+				best.getNrMigrations() * remaining[0].getMemSize(), best.getMigrationCost());
+		Assert.assertTrue("The duration of the migrations should be estimated", best.getMigrationTime() > 0);
+	}
+
+	@Test(timeout = 2000)
+	public void indexedFfdTest() {
+		new IndexedFfdConsolidator(iaas, 600);
+		checkConsolidated();
+	}
+
+	/**
+	 * Every PM can host two of the VMs, so first fit decreasing should find
+	 * the optimal packing.
+	 */
+	@Test(timeout = 10000)
+	public void indexedFfdPackingTest() throws Exception {
+		final int bigger = 64;
+		IaaSService cloud = new IaaSService(FirstFitScheduler.class, ConsolidationFriendlyPmScheduler.class);
+		VirtualMachine[] vms = spreadVMs(cloud, bigger);
+		new IndexedFfdConsolidator(cloud, 600);
+		Timed.simulateUntil(Timed.getFireCount() + 100000);
+		Assert.assertEquals("Should pack the VMs in pairs", bigger / 2, cloud.runningMachines.size());
+		for (VirtualMachine vm : vms) {
+			Assert.assertEquals("The VMs should survive the consolidation", VirtualMachine.State.RUNNING,
+					vm.getState());
+		}
+	}
+}
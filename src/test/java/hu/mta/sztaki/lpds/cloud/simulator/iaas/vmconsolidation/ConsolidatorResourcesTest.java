@@ -0,0 +1,53 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *
+ *  This file is part of DISSECT-CF.
+ *
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import at.ac.uibk.dps.cloud.simulator.test.IaaSRelatedFoundation;
+
+/**
+ * Checks how the consolidators manage their threads, thus it needs to be in
+ * the package of the consolidators.
+ */
+public class ConsolidatorResourcesTest extends IaaSRelatedFoundation {
+
+	@Test(timeout = 1000)
+	public void sharedPoolTest() {
+		ForkJoinPool first = SolutionBasedConsolidator.sharedPool(3);
+		Assert.assertSame("Consolidators with the same parallelism should share their pool", first,
+				SolutionBasedConsolidator.sharedPool(3));
+		Assert.assertNotSame("Different parallelism needs a different pool", first,
+				SolutionBasedConsolidator.sharedPool(2));
+		Assert.assertEquals("The pool should have the requested parallelism", 3, first.getParallelism());
+		SolutionBasedConsolidator.shutdownSharedPools();
+		Assert.assertTrue("The shared pools should be shut down", first.isShutdown());
+		ForkJoinPool second = SolutionBasedConsolidator.sharedPool(3);
+		Assert.assertNotSame("A new pool should be created after the shutdown", first, second);
+		Assert.assertFalse("The new pool should be usable", second.isShutdown());
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *
+ *  This file is part of DISSECT-CF.
+ *
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the PM index of the indexed FFD consolidator, which is package
+ * private.
+ */
+public class PmCapacityIndexTest {
+
+	/**
+	 * The linear scan the index replaces.
+	 */
+	private static int scanFirstFit(PmCapacityIndex index, double[] freeProc, double[] freeMem, double proc,
+			double mem) {
+		int best = -1;
+		for (int pm = 0; pm < freeProc.length; pm++) {
+			if (!index.contains(pm) || freeProc[pm] < proc || freeMem[pm] < mem) {
+				continue;
+			}
+			if (best == -1 || freeProc[pm] < freeProc[best]
+					|| freeProc[pm] == freeProc[best] && freeMem[pm] < freeMem[best]) {
+				best = pm;
+			}
+		}
+		return best;
+	}
+
+	@Test(timeout = 5000)
+	public void matchesLinearScanTest() {
+		final Random rnd = new Random(7);
+		final int pmCount = 200;
+		final double[] freeProc = new double[pmCount];
+		final double[] freeMem = new double[pmCount];
+		final PmCapacityIndex index = new PmCapacityIndex(freeProc, freeMem);
+		for (int pm = 0; pm < pmCount; pm++) {
+			freeProc[pm] = rnd.nextInt(16);
+			freeMem[pm] = rnd.nextInt(16) * 1000;
+			index.add(pm);
+		}
+		for (int step = 0; step < 20000; step++) {
+			final int pm = rnd.nextInt(pmCount);
+			if (index.contains(pm)) {
+				index.remove(pm);
+				freeProc[pm] = rnd.nextInt(16);
+				freeMem[pm] = rnd.nextInt(16) * 1000;
+				if (rnd.nextBoolean()) {
+					index.add(pm);
+				}
+			} else {
+				index.add(pm);
+			}
+			final double proc = rnd.nextInt(16);
+			final double mem = rnd.nextInt(16) * 1000;
+			Assert.assertEquals("Should find the same PM as a scan", scanFirstFit(index, freeProc, freeMem, proc, mem),
+					index.firstFit(proc, mem));
+		}
+		final List<Integer> ordered = index.toList();
+		for (int i = 1; i < ordered.size(); i++) {
+			final int prev = ordered.get(i - 1);
+			final int next = ordered.get(i);
+			Assert.assertTrue("Should list the PMs in the order of their free capacities",
+					freeProc[prev] < freeProc[next] || freeProc[prev] == freeProc[next] && freeMem[prev] <= freeMem[next]);
+		}
+	}
+
+	/**
+	 * All but one PMs have plenty of processing power but too little memory,
+	 * and the single fitting PM is the last in the order. A scan through the
+	 * PMs with enough processing power would take about a billion steps here.
+	 */
+	@Test(timeout = 2000)
+	public void memoryBoundScalingTest() {
+		final int pmCount = 100000;
+		final double[] freeProc = new double[pmCount];
+		final double[] freeMem = new double[pmCount];
+		final PmCapacityIndex index = new PmCapacityIndex(freeProc, freeMem);
+		for (int pm = 0; pm < pmCount; pm++) {
+			freeProc[pm] = 1 + pm;
+			freeMem[pm] = 100;
+			index.add(pm);
+		}
+		final int roomy = pmCount - 1;
+		index.remove(roomy);
+		freeMem[roomy] = 1000000;
+		index.add(roomy);
+		for (int query = 0; query < 10000; query++) {
+			Assert.assertEquals("Only the last PM has enough memory", roomy, index.firstFit(1, 1000));
+		}
+	}
+}
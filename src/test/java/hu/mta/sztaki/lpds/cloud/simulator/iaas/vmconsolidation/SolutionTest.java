@@ -0,0 +1,235 @@
+/*
+ *  ========================================================================
+ *  DIScrete event baSed Energy Consumption simulaTor
+ *    					             for Clouds and Federations (DISSECT-CF)
+ *  ========================================================================
+ *
+ *  This file is part of DISSECT-CF.
+ *
+ *  DISSECT-CF is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or (at
+ *  your option) any later version.
+ *
+ *  DISSECT-CF is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ *  General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with DISSECT-CF.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  (C) Copyright 2026, agent (agent@local)
+ */
+package hu.mta.sztaki.lpds.cloud.simulator.iaas.vmconsolidation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import at.ac.uibk.dps.cloud.simulator.test.IaaSRelatedFoundation;
+
+/**
+ * Checks the bookkeeping of the solutions directly, thus it needs to be in the
+ * package of the solutions.
+ */
+public class SolutionTest extends IaaSRelatedFoundation {
+	final static int pmCount = 4;
+	List<ModelPM> bins;
+	List<ModelVM> vms;
+
+	/**
+	 * Creates running model PMs, the first two of them host a small VM each.
+	 */
+	@Before
+	public void createModel() {
+		bins = new ArrayList<>();
+		vms = new ArrayList<>();
+		for (int i = 0; i < pmCount; i++) {
+			ModelPM pm = new ModelPM(dummyPMcreator(), 8, 1, 8000, i, 0.75, 0.25);
+			pm.setState(ModelPM.State.NORMAL_RUNNING);
+			bins.add(pm);
+		}
+		for (int i = 0; i < 2; i++) {
+			ModelVM vm = new ModelVM(null, bins.get(i), 1, 0.5, 1000, i);
+			bins.get(i).addVM(vm);
+			vms.add(vm);
+		}
+	}
+
+	private Solution unchangedSolution(ConsolidationConfig config) {
+		Solution s = new Solution(bins, 0.2, config);
+		s.createUnchangedSolution();
+		return s;
+	}
+
+	private double totalProcLoad(Solution s) {
+		double total = 0;
+		for (double load : s.procLoads) {
+			total += load;
+		}
+		return total;
+	}
+
+	private int countMigrations(Solution s) {
+		int migrations = 0;
+		for (ModelVM vm : vms) {
+			if (s.getHost(vm) != vm.getInitialPm())
+				migrations++;
+		}
+		return migrations;
+	}
+
+	@Test(timeout = 1000)
+	public void cloneKeepsActivePmsTest() {
+		Solution s = unchangedSolution(ConsolidationConfig.loadDefault());
+		Assert.assertEquals("Only the hosting PMs should be in use", 2, s.evaluate().nrActivePms);
+		Solution c = s.clone();
+		Assert.assertEquals("The clone should not use more PMs", 2, c.evaluate().nrActivePms);
+		Assert.assertEquals("The clone should have the same migrations", 0, c.evaluate().nrMigrations);
+	}
+
+	@Test(timeout = 1000)
+	public void exactMigrationCountTest() {
+		Solution s = unchangedSolution(ConsolidationConfig.loadDefault());
+		s.moveVm(0, 2);
+		Assert.assertEquals("Moving away from the initial host is a migration", 1, s.evaluate().nrMigrations);
+		s.moveVm(0, 3);
+		Assert.assertEquals("Moving between non-initial hosts is still a single migration", 1,
+				s.evaluate().nrMigrations);
+		s.moveVm(0, 0);
+		Assert.assertEquals("Moving back to the initial host is no migration", 0, s.evaluate().nrMigrations);
+		s.moveVm(1, 0);
+		s.improve();
+		Assert.assertEquals("The local search should count the final hosts only", countMigrations(s),
+				s.evaluate().nrMigrations);
+	}
+
+	@SuppressWarnings("deprecation")
+	@Test(timeout = 1000)
+	public void defaultConfigConstructorTest() {
+		Solution s = new Solution(bins, 0.2);
+		Assert.assertEquals("Should use the default configuration", ConsolidationConfig.loadDefault().seed,
+				s.config.seed);
+		s.createUnchangedSolution();
+		Assert.assertEquals("Should be usable like the configured solutions", 2, s.evaluate().nrActivePms);
+	}
+
+	@Test(timeout = 1000)
+	public void simpleSearchReleasesSourceTest() {
+		Solution s = unchangedSolution(new ConsolidationConfig.Builder().setDoLocalSearch2(true).build());
+		s.simpleConsolidatorImprove();
+		Assert.assertEquals("The load should neither be lost nor duplicated", 1, totalProcLoad(s), 1e-9);
+		Assert.assertEquals("The VMs should be packed to a single PM", 1, s.evaluate().nrActivePms);
+	}
+
+	/**
+	 * Creates a model where the VMs do not fit onto the PMs in any order, so
+	 * the genetic operators produce overloaded and underloaded PMs alike.
+	 */
+	private List<ModelPM> crowdedModel(Random rnd) {
+		List<ModelPM> crowded = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			ModelPM pm = new ModelPM(dummyPMcreator(), 8, 1, 8000, i, 0.75, 0.25);
+			pm.setState(ModelPM.State.NORMAL_RUNNING);
+			crowded.add(pm);
+		}
+		for (int i = 0; i < 24; i++) {
+			ModelPM host = crowded.get(rnd.nextInt(crowded.size()));
+			ModelVM vm = new ModelVM(null, host, 1 + rnd.nextInt(3), 1, 500 + rnd.nextInt(2500), i);
+			vm.setMigrationCost(vm.getResources().getRequiredMemory());
+			vm.setMigrationTime(1 + rnd.nextInt(100));
+			host.addVM(vm);
+		}
+		return crowded;
+	}
+
+	/**
+	 * Recounts the fitness of a solution from its mapping only and compares it
+	 * with the incrementally maintained one.
+	 */
+	private void assertFitnessRecounted(Solution s) {
+		final Solution.Problem p = s.problem;
+		final double[] proc = new double[p.pms.length];
+		final long[] mem = new long[p.pms.length];
+		final boolean[] used = new boolean[p.pms.length];
+		int migrations = 0;
+		long migrationCost = 0;
+		long migrationTime = 0;
+		for (int vm = 0; vm < s.mapping.length; vm++) {
+			final int pm = s.mapping[vm];
+			proc[pm] += p.vmProc[vm];
+			mem[pm] += p.vmMem[vm];
+			used[pm] = true;
+			if (pm != p.initialHosts[vm]) {
+				migrations++;
+				migrationCost += p.vmMigrationCost[vm];
+				migrationTime += p.vmMigrationTime[vm];
+			}
+		}
+		int active = 0;
+		double overAllocated = 0;
+		for (int pm = 0; pm < p.pms.length; pm++) {
+			Assert.assertEquals("The processing load should match the mapping", proc[pm], s.procLoads[pm], 1e-9);
+			Assert.assertEquals("The memory load should match the mapping", mem[pm], s.memLoads[pm]);
+			if (used[pm])
+				active++;
+			if (proc[pm] > p.procUpper[pm])
+				overAllocated += proc[pm] / p.procUpper[pm];
+			if (mem[pm] > p.memUpper[pm])
+				overAllocated += mem[pm] / p.memUpper[pm];
+		}
+		final Fitness f = s.evaluate();
+		Assert.assertEquals("Active PMs should match the mapping", active, f.nrActivePms);
+		Assert.assertEquals("Overloads should match the mapping", overAllocated, f.totalOverAllocated, 1e-9);
+		Assert.assertEquals("Migrations should match the mapping", migrations, f.nrMigrations);
+		Assert.assertEquals("Migration costs should match the mapping", migrationCost, f.migrationCost);
+		Assert.assertEquals("Migration times should match the mapping", migrationTime, f.migrationTime);
+	}
+
+	/**
+	 * Applies random sequences of the genetic operators and the local search,
+	 * checking the incremental fitness after every step. The local search
+	 * limited to the changed PMs is also compared to one examining all PMs.
+	 */
+	@Test(timeout = 5000)
+	public void incrementalFitnessTest() {
+		final Random rnd = new Random(42);
+		final ConsolidationConfig config = new ConsolidationConfig.Builder().setDoLocalSearch1(false).build();
+		final Solution first = new Solution(crowdedModel(rnd), 0.3, config);
+		first.createUnchangedSolution();
+		assertFitnessRecounted(first);
+		final List<Solution> population = new ArrayList<>();
+		population.add(first);
+		for (int i = 0; i < 5; i++) {
+			Solution member = first.mutate();
+			assertFitnessRecounted(member);
+			population.add(member);
+		}
+		for (int step = 0; step < 500; step++) {
+			final int target = rnd.nextInt(population.size());
+			final Solution s = population.get(target);
+			switch (rnd.nextInt(3)) {
+			case 0:
+				population.set(target, s.mutate());
+				break;
+			case 1:
+				population.set(target, s.recombinate(population.get(rnd.nextInt(population.size()))));
+				break;
+			default:
+				final Solution fullScan = s.clone();
+				fullScan.markAllDirty();
+				fullScan.improve();
+				s.improve();
+				Assert.assertArrayEquals("Examining the changed PMs only should not alter the local search",
+						fullScan.mapping, s.mapping);
+				assertFitnessRecounted(fullScan);
+			}
+			assertFitnessRecounted(population.get(target));
+		}
+	}
+}